@@ -0,0 +1,57 @@
+package ecommerce.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.service.CompraService;
+import ecommerce.service.CompraServiceBuilder;
+import ecommerce.service.MotorPrecificacao;
+
+/**
+ * {@link CompraService#calcularCustoTotal} para carrinhos de 1 a 10 mil linhas, nos dois motores de precificação.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CalculoCustoTotalBenchmark
+{
+	@Param({ "1", "10", "100", "1000", "10000" })
+	public int linhas;
+
+	@Param({ "BIG_DECIMAL", "PONTO_FIXO" })
+	public MotorPrecificacao motor;
+
+	private CompraService service;
+	private CarrinhoDeCompras carrinho;
+
+	@Setup
+	public void preparar()
+	{
+		service = CompraServiceBuilder.compraService().motor(motor).build();
+		carrinho = CarrinhosDeBenchmark.criar(linhas, null, 42L);
+	}
+
+	@Benchmark
+	public BigDecimal calcularCustoTotal()
+	{
+		return service.calcularCustoTotal(carrinho, Regiao.NORDESTE, TipoCliente.PRATA);
+	}
+}
@@ -0,0 +1,78 @@
+package ecommerce.benchmark;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.TipoProduto;
+
+/**
+ * Carrinhos sintéticos e reprodutíveis (semente fixa) para os benchmarks.
+ *
+ * Distribuição dos produtos: tipos uniformes, 15% frágeis; 70% leves (até 2 kg), 25% médios (2 a 15 kg) e 5% móveis
+ * pesados e volumosos, em que o peso cúbico costuma superar o físico.
+ */
+final class CarrinhosDeBenchmark
+{
+	private static final int TAMANHO_CATALOGO = 500;
+
+	private CarrinhosDeBenchmark()
+	{
+	}
+
+	static CarrinhoDeCompras criar(int linhas, Cliente cliente, long semente)
+	{
+		Random random = new Random(semente);
+		List<Produto> catalogo = catalogo(random);
+
+		List<ItemCompra> itens = new ArrayList<>(linhas);
+		for (int i = 0; i < linhas; i++)
+		{
+			Produto produto = catalogo.get(random.nextInt(catalogo.size()));
+			itens.add(new ItemCompra((long) i + 1, produto, 1L + random.nextInt(4)));
+		}
+		return new CarrinhoDeCompras(1L, cliente, itens, null);
+	}
+
+	private static List<Produto> catalogo(Random random)
+	{
+		TipoProduto[] tipos = TipoProduto.values();
+		List<Produto> produtos = new ArrayList<>(TAMANHO_CATALOGO);
+		for (int i = 0; i < TAMANHO_CATALOGO; i++)
+		{
+			int faixa = random.nextInt(100);
+			TipoProduto tipo;
+			BigDecimal peso;
+			BigDecimal[] dimensoes;
+			if (faixa < 5)
+			{
+				tipo = TipoProduto.MOVEL;
+				peso = decimal(random, 2_000, 8_000);
+				dimensoes = new BigDecimal[] { decimal(random, 8_000, 20_000), decimal(random, 5_000, 10_000),
+						decimal(random, 5_000, 12_000) };
+			}
+			else
+			{
+				tipo = tipos[random.nextInt(tipos.length)];
+				peso = faixa < 75 ? decimal(random, 10, 200) : decimal(random, 200, 1_500);
+				dimensoes = new BigDecimal[] { decimal(random, 500, 6_000), decimal(random, 500, 4_000),
+						decimal(random, 200, 3_000) };
+			}
+
+			produtos.add(new Produto((long) i + 1, "Produto " + i, null, decimal(random, 500, 200_000), peso,
+					dimensoes[0], dimensoes[1], dimensoes[2], random.nextInt(100) < 15, tipo));
+		}
+		return produtos;
+	}
+
+	/** Valor com duas casas decimais entre {@code minimo} e {@code maximo} centésimos. */
+	private static BigDecimal decimal(Random random, long minimo, long maximo)
+	{
+		return BigDecimal.valueOf(minimo + (long) (random.nextDouble() * (maximo - minimo)), 2);
+	}
+}
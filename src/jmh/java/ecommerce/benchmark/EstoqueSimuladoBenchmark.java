@@ -0,0 +1,62 @@
+package ecommerce.benchmark;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.external.fake.EstoqueSimulado;
+
+/**
+ * Vazão de baixas no {@link EstoqueSimulado} com todas as threads disponíveis, para pedidos de um e de três produtos
+ * escolhidos entre {@code produtos} ids (poucos produtos = mais disputa pelas mesmas listras).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+public class EstoqueSimuladoBenchmark
+{
+	@Param({ "16", "100000" })
+	public int produtos;
+
+	private EstoqueSimulado estoque;
+
+	@Setup
+	public void preparar()
+	{
+		estoque = new EstoqueSimulado(Long.MAX_VALUE / 4);
+	}
+
+	@Benchmark
+	public EstoqueBaixaDTO darBaixaUmProduto()
+	{
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		return estoque.darBaixa(List.of(1L + random.nextInt(produtos)), List.of(1L));
+	}
+
+	@Benchmark
+	public EstoqueBaixaDTO darBaixaTresProdutos()
+	{
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		return estoque.darBaixa(
+				List.of(1L + random.nextInt(produtos), 1L + random.nextInt(produtos), 1L + random.nextInt(produtos)),
+				List.of(1L, 2L, 1L));
+	}
+}
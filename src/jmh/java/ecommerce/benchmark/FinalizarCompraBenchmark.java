@@ -0,0 +1,157 @@
+package ecommerce.benchmark;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.PrecificacaoCarrinho;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.fake.DistribuicaoLatencia;
+import ecommerce.external.fake.PagamentoSimulado;
+import ecommerce.service.CarrinhoDeComprasService;
+import ecommerce.service.ClienteService;
+import ecommerce.service.CompraService;
+import ecommerce.service.CompraServiceBuilder;
+import ecommerce.service.MotorPrecificacao;
+
+/**
+ * {@link CompraService#finalizarCompra} de ponta a ponta, com estoque e pagamento simulados em processo que esperam
+ * {@code latenciaMicros} em cada chamada externa.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FinalizarCompraBenchmark
+{
+	@Param({ "10", "100" })
+	public int linhas;
+
+	@Param({ "0", "500" })
+	public long latenciaMicros;
+
+	@Param({ "BIG_DECIMAL", "PONTO_FIXO" })
+	public MotorPrecificacao motor;
+
+	private CompraService service;
+
+	@Setup
+	public void preparar()
+	{
+		Cliente cliente = new Cliente(1L, "Cliente", Regiao.SUL, TipoCliente.BRONZE);
+		CarrinhoDeCompras carrinho = CarrinhosDeBenchmark.criar(linhas, cliente, 42L);
+		long latenciaNanos = TimeUnit.MICROSECONDS.toNanos(latenciaMicros);
+
+		service = CompraServiceBuilder.compraService()
+				.carrinhos(new CarrinhoFixo(carrinho, cliente))
+				.clientes(new ClienteFixo(cliente))
+				.estoque(new EstoqueComLatencia(latenciaNanos))
+				.pagamento(new PagamentoSimulado(new PagamentoSimulado.Configuracao(DistribuicaoLatencia.FIXA,
+						Duration.ofNanos(latenciaNanos), Duration.ZERO, Duration.ZERO, 0, 0, Duration.ZERO)))
+				.motor(motor)
+				.build();
+	}
+
+	@Benchmark
+	public CompraDTO finalizarCompra()
+	{
+		return service.finalizarCompra(1L, 1L);
+	}
+
+	private static void esperar(long nanos)
+	{
+		if (nanos > 0)
+		{
+			LockSupport.parkNanos(nanos);
+		}
+	}
+
+	static final class ClienteFixo extends ClienteService
+	{
+		private final Cliente cliente;
+
+		ClienteFixo(Cliente cliente)
+		{
+			super(null);
+			this.cliente = cliente;
+		}
+
+		@Override
+		public Cliente buscarPorId(Long clienteId)
+		{
+			return cliente;
+		}
+	}
+
+	static final class CarrinhoFixo extends CarrinhoDeComprasService
+	{
+		private final CarrinhoDeCompras carrinho;
+		private final PrecificacaoCarrinho precificacao;
+
+		CarrinhoFixo(CarrinhoDeCompras carrinho, Cliente cliente)
+		{
+			super(null);
+			this.carrinho = carrinho;
+			this.precificacao = PrecificacaoCarrinho.de(carrinho, cliente);
+		}
+
+		@Override
+		public CarrinhoDeCompras buscarPorCarrinhoIdEClienteId(Long carrinhoId, Cliente cliente)
+		{
+			return carrinho;
+		}
+
+		@Override
+		public Optional<PrecificacaoCarrinho> buscarPrecificacao(Long carrinhoId, Long clienteId)
+		{
+			return Optional.of(precificacao);
+		}
+	}
+
+	static final class EstoqueComLatencia implements IEstoqueExternal
+	{
+		private final long latenciaNanos;
+
+		EstoqueComLatencia(long latenciaNanos)
+		{
+			this.latenciaNanos = latenciaNanos;
+		}
+
+		@Override
+		public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
+		{
+			esperar(latenciaNanos);
+			return new EstoqueBaixaDTO(true);
+		}
+
+		@Override
+		public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades)
+		{
+			esperar(latenciaNanos);
+			return new DisponibilidadeDTO(true, List.of());
+		}
+	}
+}
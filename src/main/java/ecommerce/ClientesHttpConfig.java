@@ -0,0 +1,56 @@
+package ecommerce;
+
+import java.util.Map;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.io.HttpClientConnectionManager;
+import org.apache.hc.core5.pool.ConnPoolControl;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import ecommerce.external.http.EstoqueClient;
+import ecommerce.external.http.EstoqueHttp;
+import ecommerce.external.http.MetricasConexoesHttp;
+import ecommerce.external.http.PagamentoClient;
+import ecommerce.external.http.PagamentoHttp;
+
+/**
+ * Estoque e pagamento reais, por HTTP ({@code ecommerce.externo.modo=HTTP}), no lugar dos simulados: clientes Feign
+ * sobre o pool de conexões do Apache HttpClient 5 ({@code spring.cloud.openfeign.httpclient.*}), com conexões
+ * mantidas abertas entre as chamadas, tempos limite por cliente ({@code spring.cloud.openfeign.client.config.*}) e
+ * respostas comprimidas. Continuam protegidos por {@link ResilienciaExternaConfig}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "ecommerce.externo.modo", havingValue = "HTTP")
+@EnableFeignClients(clients = { EstoqueClient.class, PagamentoClient.class })
+public class ClientesHttpConfig
+{
+	@Bean
+	public EstoqueHttp estoqueHttp(EstoqueClient client)
+	{
+		return new EstoqueHttp(client);
+	}
+
+	@Bean
+	public PagamentoHttp pagamentoHttp(PagamentoClient client)
+	{
+		return new PagamentoHttp(client);
+	}
+
+	@Bean
+	public MetricasConexoesHttp metricasConexoesHttp(HttpClientConnectionManager conexoes,
+			@Value("${ecommerce.estoque.url}") String urlEstoque,
+			@Value("${ecommerce.pagamento.url}") String urlPagamento)
+	{
+		if (!(conexoes instanceof ConnPoolControl<?>))
+		{
+			throw new IllegalStateException("Clientes HTTP exigem o pool de conexões do Apache HttpClient 5.");
+		}
+		@SuppressWarnings("unchecked")
+		ConnPoolControl<HttpRoute> pool = (ConnPoolControl<HttpRoute>) conexoes;
+		return new MetricasConexoesHttp(pool, Map.of("estoque", urlEstoque, "pagamento", urlPagamento));
+	}
+}
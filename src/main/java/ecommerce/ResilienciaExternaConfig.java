@@ -0,0 +1,78 @@
+package ecommerce;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.external.fake.EstoqueSimulado;
+import ecommerce.external.fake.PagamentoSimulado;
+import ecommerce.external.http.EstoqueHttp;
+import ecommerce.external.http.PagamentoHttp;
+import ecommerce.external.resiliencia.EstoqueResiliente;
+import ecommerce.external.resiliencia.PagamentoResiliente;
+import ecommerce.external.resiliencia.ProtecaoChamadas;
+
+/**
+ * Estoque e pagamento protegidos por {@link ProtecaoChamadas} ({@code ecommerce.resiliencia.*}): os decoradores são
+ * os beans primários de {@link IEstoqueExternal} e {@link IPagamentoExternal}, injetados em
+ * {@link ecommerce.service.CompraService}. Cada serviço tem seu próprio limite de chamadas simultâneas, de modo que
+ * um provedor lento não prende todas as threads das requisições. Protegem os clientes HTTP
+ * ({@link ClientesHttpConfig}) ou, sem eles, os serviços simulados. Desligado com
+ * {@code ecommerce.resiliencia.habilitado=false}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "ecommerce.resiliencia.habilitado", havingValue = "true", matchIfMissing = true)
+public class ResilienciaExternaConfig
+{
+	@Bean
+	public ProtecaoChamadas protecaoEstoque(
+			@Value("${ecommerce.resiliencia.estoque.concorrencia-maxima:32}") int concorrenciaMaxima,
+			@Value("${ecommerce.resiliencia.estoque.tempo-limite:PT2S}") Duration tempoLimite,
+			@Value("${ecommerce.resiliencia.estoque.falhas-para-abrir:5}") int falhasParaAbrir,
+			@Value("${ecommerce.resiliencia.estoque.tempo-aberto:PT10S}") Duration tempoAberto,
+			@Value("${ecommerce.threads-virtuais.habilitado:false}") boolean threadsVirtuais)
+	{
+		return new ProtecaoChamadas("estoque",
+				new ProtecaoChamadas.Configuracao(concorrenciaMaxima, tempoLimite, falhasParaAbrir, tempoAberto),
+				threadsVirtuais);
+	}
+
+	@Bean
+	public ProtecaoChamadas protecaoPagamento(
+			@Value("${ecommerce.resiliencia.pagamento.concorrencia-maxima:32}") int concorrenciaMaxima,
+			@Value("${ecommerce.resiliencia.pagamento.tempo-limite:PT3S}") Duration tempoLimite,
+			@Value("${ecommerce.resiliencia.pagamento.falhas-para-abrir:5}") int falhasParaAbrir,
+			@Value("${ecommerce.resiliencia.pagamento.tempo-aberto:PT10S}") Duration tempoAberto,
+			@Value("${ecommerce.threads-virtuais.habilitado:false}") boolean threadsVirtuais)
+	{
+		return new ProtecaoChamadas("pagamento",
+				new ProtecaoChamadas.Configuracao(concorrenciaMaxima, tempoLimite, falhasParaAbrir, tempoAberto),
+				threadsVirtuais);
+	}
+
+	@Bean
+	@Primary
+	public IEstoqueExternal estoqueResiliente(ObjectProvider<EstoqueHttp> http,
+			ObjectProvider<EstoqueSimulado> simulado, @Qualifier("protecaoEstoque") ProtecaoChamadas protecao)
+	{
+		IEstoqueExternal destino = http.getIfAvailable();
+		return EstoqueResiliente.decorar(destino != null ? destino : simulado.getObject(), protecao);
+	}
+
+	@Bean
+	@Primary
+	public IPagamentoExternal pagamentoResiliente(ObjectProvider<PagamentoHttp> http,
+			ObjectProvider<PagamentoSimulado> simulado, @Qualifier("protecaoPagamento") ProtecaoChamadas protecao)
+	{
+		IPagamentoExternal destino = http.getIfAvailable();
+		return new PagamentoResiliente(destino != null ? destino : simulado.getObject(), protecao);
+	}
+}
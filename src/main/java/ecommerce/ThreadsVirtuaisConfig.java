@@ -0,0 +1,28 @@
+package ecommerce;
+
+import java.util.concurrent.Executors;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Modo de threads virtuais ({@code ecommerce.threads-virtuais.habilitado=true}): cada requisição HTTP é atendida em
+ * uma thread virtual, em vez das threads do pool do Tomcat ({@code server.tomcat.threads.max}).
+ *
+ * Uma requisição de {@code /finalizar} passa a maior parte do tempo bloqueada nas chamadas de estoque e pagamento;
+ * em uma thread virtual, o bloqueio libera a thread de plataforma e o número de compras em andamento deixa de ser
+ * limitado pelo tamanho do pool. As chamadas paralelas de {@link ecommerce.service.ExecutorChamadasExternas} seguem
+ * a mesma propriedade.
+ */
+@Configuration
+@ConditionalOnProperty(name = "ecommerce.threads-virtuais.habilitado", havingValue = "true")
+public class ThreadsVirtuaisConfig
+{
+	@Bean
+	public TomcatProtocolHandlerCustomizer<?> executorTomcatComThreadsVirtuais()
+	{
+		return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+	}
+}
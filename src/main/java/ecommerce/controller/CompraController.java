@@ -1,24 +1,35 @@
 package ecommerce.controller;
 
+import java.net.URI;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import ecommerce.dto.CompraDTO;
-import ecommerce.service.CompraService;
+import ecommerce.dto.FinalizacaoDTO;
+import ecommerce.dto.SituacaoFinalizacao;
+import ecommerce.external.ChamadaRecusadaException;
+import ecommerce.external.TempoEsgotadoException;
+import ecommerce.service.CoalescedorFinalizacao;
+import ecommerce.service.FilaCheiaException;
+import ecommerce.service.FinalizacaoAssincrona;
 
 @RestController
 @RequestMapping("/")
 public class CompraController
 {
 
-	private final CompraService compraService;
+	private final CoalescedorFinalizacao finalizacao;
+	private final FinalizacaoAssincrona finalizacaoAssincrona;
 
 	@Autowired
-	public CompraController(CompraService compraService)
+	public CompraController(CoalescedorFinalizacao finalizacao, FinalizacaoAssincrona finalizacaoAssincrona)
 	{
-		this.compraService = compraService;
+		this.finalizacao = finalizacao;
+		this.finalizacaoAssincrona = finalizacaoAssincrona;
 	}
 
 	@PostMapping("/finalizar")
@@ -26,21 +37,86 @@ public class CompraController
 	{
 		try
 		{
-			CompraDTO compraDTO = compraService.finalizarCompra(carrinhoId, clienteId);
+			CompraDTO compraDTO = finalizacao.finalizarCompra(carrinhoId, clienteId);
 			return ResponseEntity.ok(compraDTO);
 		}
+		catch (Exception e)
+		{
+			return ResponseEntity.status(statusDoErro(e)).body(compraComErro(e));
+		}
+	}
+
+	/**
+	 * Variante assíncrona do {@code /finalizar}: responde {@code 202} com o identificador da finalização, que é
+	 * executada em segundo plano e acompanhada em {@code GET /finalizacoes/{id}}; com a fila cheia, {@code 429}.
+	 */
+	@PostMapping("/finalizacoes")
+	public ResponseEntity<FinalizacaoDTO> enfileirarCompra(@RequestParam Long carrinhoId, @RequestParam Long clienteId)
+	{
+		try
+		{
+			String id = finalizacaoAssincrona.enfileirar(carrinhoId, clienteId);
+			return ResponseEntity.accepted().location(URI.create("/finalizacoes/" + id))
+					.body(new FinalizacaoDTO(id, SituacaoFinalizacao.PENDENTE, null));
+		}
 		catch (IllegalArgumentException e)
 		{
-			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new CompraDTO(false, null, e.getMessage()));
+			return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+					.body(new FinalizacaoDTO(null, null, new CompraDTO(false, null, e.getMessage())));
 		}
-		catch (IllegalStateException e)
+		catch (FilaCheiaException e)
 		{
-			return ResponseEntity.status(HttpStatus.CONFLICT).body(new CompraDTO(false, null, e.getMessage()));
+			return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "1")
+					.body(new FinalizacaoDTO(null, null, new CompraDTO(false, null, e.getMessage())));
 		}
-		catch (Exception e)
+	}
+
+	/**
+	 * Situação da finalização assíncrona: {@code 202} enquanto pendente ou em processamento; depois, o mesmo status e
+	 * a mesma {@link CompraDTO} que o {@code /finalizar} responderia.
+	 */
+	@GetMapping("/finalizacoes/{finalizacaoId}")
+	public ResponseEntity<FinalizacaoDTO> consultarCompra(@PathVariable String finalizacaoId)
+	{
+		FinalizacaoAssincrona.Resultado resultado = finalizacaoAssincrona.consultar(finalizacaoId);
+		if (resultado == null)
 		{
-			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-					.body(new CompraDTO(false, null, "Erro ao processar compra."));
+			return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new FinalizacaoDTO(finalizacaoId, null,
+					new CompraDTO(false, null, "Finalização não encontrada.")));
 		}
+		switch (resultado.situacao())
+		{
+			case CONCLUIDA:
+				return ResponseEntity.ok(new FinalizacaoDTO(finalizacaoId, resultado.situacao(), resultado.compra()));
+			case FALHOU:
+				return ResponseEntity.status(statusDoErro(resultado.erro()))
+						.body(new FinalizacaoDTO(finalizacaoId, resultado.situacao(), compraComErro(resultado.erro())));
+			default:
+				return ResponseEntity.accepted().body(new FinalizacaoDTO(finalizacaoId, resultado.situacao(), null));
+		}
+	}
+
+	private static HttpStatus statusDoErro(Throwable e)
+	{
+		if (e instanceof IllegalArgumentException)
+		{
+			return HttpStatus.BAD_REQUEST;
+		}
+		if (e instanceof IllegalStateException)
+		{
+			return HttpStatus.CONFLICT;
+		}
+		if (e instanceof ChamadaRecusadaException || e instanceof TempoEsgotadoException)
+		{
+			return HttpStatus.SERVICE_UNAVAILABLE;
+		}
+		return HttpStatus.INTERNAL_SERVER_ERROR;
+	}
+
+	private static CompraDTO compraComErro(Throwable e)
+	{
+		String mensagem = statusDoErro(e) == HttpStatus.INTERNAL_SERVER_ERROR ? "Erro ao processar compra."
+				: e.getMessage();
+		return new CompraDTO(false, null, mensagem);
 	}
 }
@@ -0,0 +1,72 @@
+package ecommerce.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ecommerce.dto.CotacaoDTO;
+import ecommerce.dto.CotacaoRequisicaoDTO;
+import ecommerce.service.CotacaoService;
+import ecommerce.service.LoteCotacao;
+
+@RestController
+@RequestMapping("/")
+public class CotacaoController
+{
+
+	private final CotacaoService cotacaoService;
+	private final ObjectMapper objectMapper;
+
+	@Autowired
+	public CotacaoController(CotacaoService cotacaoService, ObjectMapper objectMapper)
+	{
+		this.cotacaoService = cotacaoService;
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * Cota vários carrinhos sem cobrar o cliente. A resposta é NDJSON (um {@link CotacaoDTO} por linha), enviada à
+	 * medida que cada cotação termina.
+	 */
+	@PostMapping(value = "/cotacoes", produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public ResponseEntity<StreamingResponseBody> cotar(@RequestBody List<CotacaoRequisicaoDTO> pedidos)
+	{
+		LoteCotacao lote;
+		try
+		{
+			lote = cotacaoService.cotar(pedidos);
+		}
+		catch (IllegalArgumentException e)
+		{
+			CotacaoDTO erro = new CotacaoDTO(null, null, false, null, e.getMessage());
+			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(saida -> escrever(saida, erro));
+		}
+
+		StreamingResponseBody corpo = saida -> {
+			try (lote)
+			{
+				while (lote.hasNext())
+				{
+					escrever(saida, lote.next());
+				}
+			}
+		};
+		return ResponseEntity.ok(corpo);
+	}
+
+	private void escrever(OutputStream saida, CotacaoDTO cotacao) throws IOException
+	{
+		saida.write(objectMapper.writeValueAsBytes(cotacao));
+		saida.write('\n');
+		saida.flush();
+	}
+}
@@ -0,0 +1,8 @@
+package ecommerce.dto;
+
+import java.util.List;
+
+public record BaixaEstoqueDTO(List<Long> produtosIds, List<Long> produtosQuantidades)
+{
+
+}
@@ -0,0 +1,5 @@
+package ecommerce.dto;
+
+public record CotacaoRequisicaoDTO(Long carrinhoId, Long clienteId)
+{
+}
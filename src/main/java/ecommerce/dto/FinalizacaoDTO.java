@@ -0,0 +1,9 @@
+package ecommerce.dto;
+
+/**
+ * Acompanhamento de uma finalização assíncrona; {@code compra} só é preenchida quando a finalização termina (com a
+ * mensagem de erro, quando falha).
+ */
+public record FinalizacaoDTO(String finalizacaoId, SituacaoFinalizacao situacao, CompraDTO compra)
+{
+}
@@ -0,0 +1,7 @@
+package ecommerce.dto;
+
+/** Etapa de uma finalização assíncrona. */
+public enum SituacaoFinalizacao
+{
+	PENDENTE, PROCESSANDO, CONCLUIDA, FALHOU
+}
@@ -0,0 +1,112 @@
+package ecommerce.entity;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+
+/**
+ * Cancelamento de pagamento ainda não entregue ao provedor (outbox): gravado quando a compra falha depois do
+ * pagamento autorizado e removido quando o cancelamento é aceito. No máximo um por transação de pagamento. Uma
+ * autorização sem resposta não tem transação: o cancelamento vai pela chave de idempotência com que foi pedida.
+ * Com o H2 em memória padrão, a tabela vive só enquanto o processo.
+ */
+@Entity
+public class CancelamentoPagamentoPendente
+{
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	private Long clienteId;
+
+	@Column(unique = true)
+	private Long transacaoId;
+
+	@Column(unique = true, length = 64)
+	private String chaveIdempotencia;
+
+	private Instant registradoEm;
+
+	/** Tentativas de entrega que falharam. */
+	private int tentativas;
+
+	private Instant proximaTentativa;
+
+	@Column(length = 500)
+	private String ultimoErro;
+
+	public CancelamentoPagamentoPendente()
+	{
+	}
+
+	public CancelamentoPagamentoPendente(Long clienteId, Long transacaoId, Instant registradoEm)
+	{
+		this.clienteId = clienteId;
+		this.transacaoId = transacaoId;
+		this.registradoEm = registradoEm;
+		this.proximaTentativa = registradoEm;
+	}
+
+	/** Cancelamento da autorização pedida com a chave, sem transação conhecida. */
+	public static CancelamentoPagamentoPendente porChave(Long clienteId, String chaveIdempotencia,
+			Instant registradoEm)
+	{
+		CancelamentoPagamentoPendente cancelamento = new CancelamentoPagamentoPendente(clienteId, null, registradoEm);
+		cancelamento.chaveIdempotencia = chaveIdempotencia;
+		return cancelamento;
+	}
+
+	/** Registra uma entrega que falhou e agenda a próxima. */
+	public void falhou(String erro, Instant proximaTentativa)
+	{
+		this.tentativas++;
+		this.ultimoErro = erro != null && erro.length() > 500 ? erro.substring(0, 500) : erro;
+		this.proximaTentativa = proximaTentativa;
+	}
+
+	// Getters
+	public Long getId()
+	{
+		return id;
+	}
+
+	public Long getClienteId()
+	{
+		return clienteId;
+	}
+
+	public Long getTransacaoId()
+	{
+		return transacaoId;
+	}
+
+	public String getChaveIdempotencia()
+	{
+		return chaveIdempotencia;
+	}
+
+	public Instant getRegistradoEm()
+	{
+		return registradoEm;
+	}
+
+	public int getTentativas()
+	{
+		return tentativas;
+	}
+
+	public Instant getProximaTentativa()
+	{
+		return proximaTentativa;
+	}
+
+	public String getUltimoErro()
+	{
+		return ultimoErro;
+	}
+}
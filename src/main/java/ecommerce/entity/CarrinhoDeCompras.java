@@ -1,8 +1,10 @@
 package ecommerce.entity;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Entity;
@@ -12,6 +14,7 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.Transient;
 
 @Entity
 public class CarrinhoDeCompras
@@ -32,6 +35,13 @@ public class CarrinhoDeCompras
 
 	private LocalDate data;
 
+	/**
+	 * Totais mantidos por {@link #adicionarItem}, {@link #alterarQuantidade} e {@link #removerItem}. Não são
+	 * persistidos: um carrinho lido do banco começa sem eles.
+	 */
+	@Transient
+	private TotaisCarrinho totais;
+
 	public CarrinhoDeCompras()
 	{
 	}
@@ -73,6 +83,7 @@ public class CarrinhoDeCompras
 	public void setItens(List<ItemCompra> itens)
 	{
 		this.itens = itens;
+		this.totais = null;
 	}
 
 	public LocalDate getData()
@@ -84,4 +95,152 @@ public class CarrinhoDeCompras
 	{
 		this.data = data;
 	}
+
+	// ======= ALTERAÇÃO DOS ITENS =======
+
+	/**
+	 * Adiciona {@code quantidade} unidades do produto: soma à linha existente do mesmo produto ou cria uma nova.
+	 * Os totais do carrinho são atualizados apenas com a contribuição da linha.
+	 *
+	 * @return a linha do produto
+	 */
+	public ItemCompra adicionarItem(Produto produto, long quantidade)
+	{
+		validar(produto, quantidade);
+		TotaisCarrinho atuais = totaisParaAlteracao();
+
+		ItemCompra existente = buscarItem(produto);
+		if (existente != null)
+		{
+			long anterior = existente.getQuantidade();
+			long nova = Math.addExact(anterior, quantidade);
+			existente.setQuantidade(nova);
+			atuais.alterarQuantidade(existente, anterior);
+			return existente;
+		}
+
+		ItemCompra item = new ItemCompra();
+		item.setProduto(produto);
+		item.setQuantidade(quantidade);
+		itens.add(item);
+		atuais.adicionarLinha(item);
+		return item;
+	}
+
+	/** Troca a quantidade de uma linha do carrinho. */
+	public void alterarQuantidade(ItemCompra item, long quantidade)
+	{
+		if (item == null || !contem(item))
+		{
+			throw new IllegalArgumentException("Item não pertence ao carrinho.");
+		}
+		validar(item.getProduto(), quantidade);
+		TotaisCarrinho atuais = totaisParaAlteracao();
+
+		long anterior = item.getQuantidade();
+		item.setQuantidade(quantidade);
+		atuais.alterarQuantidade(item, anterior);
+	}
+
+	/** Remove uma linha do carrinho; retorna {@code false} se a linha não pertence ao carrinho. */
+	public boolean removerItem(ItemCompra item)
+	{
+		if (item == null || !contem(item))
+		{
+			return false;
+		}
+		TotaisCarrinho atuais = totaisParaAlteracao();
+
+		itens.removeIf(i -> i == item);
+		atuais.removerLinha(item);
+		return true;
+	}
+
+	/**
+	 * Totais do carrinho, ou {@code null} quando não há totais que valham para os itens atuais: carrinho novo ainda
+	 * não alterado pelos métodos acima, lista substituída por {@link #setItens}, linhas incluídas ou removidas
+	 * diretamente em {@link #getItens()}, ou quantidade ou produto de uma linha alterados pelos setters.
+	 */
+	public TotaisCarrinho getTotais()
+	{
+		if (totais != null && itens != null && totais.correspondeA(itens))
+		{
+			return totais;
+		}
+		return null;
+	}
+
+	/** Recalcula os totais a partir de todos os itens. */
+	public TotaisCarrinho recalcularTotais()
+	{
+		if (itens == null)
+		{
+			itens = new ArrayList<>();
+		}
+		for (ItemCompra item : itens)
+		{
+			if (item == null)
+			{
+				throw new IllegalArgumentException("Item ou produto nulo não permitido.");
+			}
+			validar(item.getProduto(), item.getQuantidade() == null ? 0 : item.getQuantidade());
+		}
+		totais = TotaisCarrinho.de(itens);
+		return totais;
+	}
+
+	private TotaisCarrinho totaisParaAlteracao()
+	{
+		TotaisCarrinho atuais = getTotais();
+		return atuais != null ? atuais : recalcularTotais();
+	}
+
+	private ItemCompra buscarItem(Produto produto)
+	{
+		for (ItemCompra item : itens)
+		{
+			Produto outro = item.getProduto();
+			if (outro == produto || (produto.getId() != null && Objects.equals(produto.getId(), outro.getId())))
+			{
+				return item;
+			}
+		}
+		return null;
+	}
+
+	private boolean contem(ItemCompra item)
+	{
+		if (itens == null)
+		{
+			return false;
+		}
+		for (ItemCompra i : itens)
+		{
+			if (i == item)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void validar(Produto produto, long quantidade)
+	{
+		if (produto == null)
+		{
+			throw new IllegalArgumentException("Item ou produto nulo não permitido.");
+		}
+		if (quantidade <= 0)
+		{
+			throw new IllegalArgumentException("Quantidade deve ser maior que zero.");
+		}
+		if (produto.getPreco() == null || produto.getPreco().compareTo(BigDecimal.ZERO) < 0)
+		{
+			throw new IllegalArgumentException("Preço inválido (nulo ou negativo).");
+		}
+		if (produto.getPesoFisico() == null || produto.getPesoFisico().compareTo(BigDecimal.ZERO) < 0)
+		{
+			throw new IllegalArgumentException("Peso inválido (nulo ou negativo).");
+		}
+	}
 }
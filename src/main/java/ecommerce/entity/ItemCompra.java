@@ -6,6 +6,7 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Transient;
 
 @Entity
 public class ItemCompra
@@ -21,6 +22,10 @@ public class ItemCompra
 
 	private Long quantidade;
 
+	/** Alterações de produto ou quantidade nesta instância; ver {@link TotaisCarrinho}. */
+	@Transient
+	private int alteracoes;
+
 	public ItemCompra()
 	{
 	}
@@ -51,6 +56,7 @@ public class ItemCompra
 	public void setProduto(Produto produto)
 	{
 		this.produto = produto;
+		alteracoes++;
 	}
 
 	public Long getQuantidade()
@@ -61,5 +67,11 @@ public class ItemCompra
 	public void setQuantidade(Long quantidade)
 	{
 		this.quantidade = quantidade;
+		alteracoes++;
+	}
+
+	int getAlteracoes()
+	{
+		return alteracoes;
 	}
 }
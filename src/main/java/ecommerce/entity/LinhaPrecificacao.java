@@ -0,0 +1,25 @@
+package ecommerce.entity;
+
+import java.math.BigDecimal;
+
+/**
+ * Linha de carrinho com apenas os dados que a precificação lê: quantidade e, do produto, id, versão, preço, peso,
+ * dimensões, fragilidade e tipo (sem nome nem descrição). Região e tipo do cliente do carrinho vêm na mesma linha,
+ * iguais em todas, para que o carrinho inteiro seja lido em uma única consulta.
+ *
+ * Produzida por projeção ({@code select new}) em {@code CarrinhoDeComprasRepository#findPrecificacao}: não é
+ * entidade e não fica no contexto de persistência.
+ */
+public record LinhaPrecificacao(Regiao regiao, TipoCliente tipoCliente, Long produtoId, Long versao,
+		Long quantidade, BigDecimal preco, BigDecimal pesoFisico, BigDecimal comprimento, BigDecimal largura,
+		BigDecimal altura, Boolean fragil, TipoProduto tipo)
+{
+	/** Linha com os dados de um item já carregado. */
+	public static LinhaPrecificacao de(ItemCompra item, Regiao regiao, TipoCliente tipoCliente)
+	{
+		Produto produto = item.getProduto();
+		return new LinhaPrecificacao(regiao, tipoCliente, produto.getId(), produto.getVersao(), item.getQuantidade(),
+				produto.getPreco(), produto.getPesoFisico(), produto.getComprimento(), produto.getLargura(),
+				produto.getAltura(), produto.isFragil(), produto.getTipo());
+	}
+}
@@ -0,0 +1,49 @@
+package ecommerce.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Retrato imutável de um carrinho para precificação: região e tipo do cliente e as linhas do carrinho, na ordem dos
+ * itens. Desligado do contexto de persistência, pode ser usado fora da transação que o leu.
+ */
+public record PrecificacaoCarrinho(Regiao regiao, TipoCliente tipoCliente, List<LinhaPrecificacao> linhas)
+{
+	public PrecificacaoCarrinho
+	{
+		linhas = List.copyOf(linhas);
+	}
+
+	/** Retrato a partir das linhas da projeção (não vazias), que trazem também região e tipo do cliente. */
+	public static PrecificacaoCarrinho de(List<LinhaPrecificacao> linhas)
+	{
+		LinhaPrecificacao primeira = linhas.get(0);
+		return new PrecificacaoCarrinho(primeira.regiao(), primeira.tipoCliente(), linhas);
+	}
+
+	/** Retrato de um carrinho já carregado, com a região e o tipo do cliente informado. */
+	public static PrecificacaoCarrinho de(CarrinhoDeCompras carrinho, Cliente cliente)
+	{
+		Regiao regiao = cliente.getRegiao();
+		TipoCliente tipoCliente = cliente.getTipo();
+
+		List<LinhaPrecificacao> linhas = new ArrayList<>();
+		if (carrinho.getItens() != null)
+		{
+			for (ItemCompra item : carrinho.getItens())
+			{
+				if (item == null || item.getProduto() == null)
+				{
+					throw new IllegalArgumentException("Item ou produto nulo não permitido.");
+				}
+				linhas.add(LinhaPrecificacao.de(item, regiao, tipoCliente));
+			}
+		}
+		return new PrecificacaoCarrinho(regiao, tipoCliente, linhas);
+	}
+
+	public boolean isVazio()
+	{
+		return linhas.isEmpty();
+	}
+}
@@ -1,6 +1,10 @@
 package ecommerce.entity;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.DomainEvents;
 
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
@@ -8,6 +12,8 @@ import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Transient;
+import jakarta.persistence.Version;
 
 @Entity
 public class Produto
@@ -38,6 +44,24 @@ public class Produto
 	@Enumerated(EnumType.STRING)
 	private TipoProduto tipo;
 
+	/**
+	 * Versão incrementada a cada alteração persistida; identifica o estado do produto nos caches de precificação.
+	 *
+	 * É também controle otimista: salvar um produto com versão diferente da gravada (alteração feita sobre uma leitura
+	 * já substituída) falha com {@code ObjectOptimisticLockingFailureException}. Para alterar, leia o produto ou
+	 * informe a versão lida. Por ser primitiva, a versão não decide se o produto é novo: um produto com id continua
+	 * sendo tratado pelo {@code save} como existente, e não inserido de novo.
+	 */
+	@Version
+	private long versao;
+
+	/**
+	 * Alterações feitas nesta instância pelos setters dos campos usados na precificação; os
+	 * {@link TotaisCarrinho} a comparam para perceber um produto alterado depois de contabilizado.
+	 */
+	@Transient
+	private int alteracoes;
+
 	public Produto()
 	{
 	}
@@ -57,6 +81,13 @@ public class Produto
 		this.tipo = tipo;
 	}
 
+	/** Eventos publicados pelo repositório em {@code save}/{@code delete}; usados para invalidar caches. */
+	@DomainEvents
+	protected Collection<ProdutoAlteradoEvento> eventosDeAlteracao()
+	{
+		return id == null ? List.of() : List.of(new ProdutoAlteradoEvento(id));
+	}
+
 	// Getters e Setters
 	public Long getId()
 	{
@@ -96,6 +127,7 @@ public class Produto
 	public void setPreco(BigDecimal preco)
 	{
 		this.preco = preco;
+		alteracoes++;
 	}
 
 	public BigDecimal getPesoFisico()
@@ -106,6 +138,7 @@ public class Produto
 	public void setPesoFisico(BigDecimal pesoFisico)
 	{
 		this.pesoFisico = pesoFisico;
+		alteracoes++;
 	}
 
 	public BigDecimal getComprimento()
@@ -116,6 +149,7 @@ public class Produto
 	public void setComprimento(BigDecimal comprimento)
 	{
 		this.comprimento = comprimento;
+		alteracoes++;
 	}
 
 	public BigDecimal getLargura()
@@ -126,6 +160,7 @@ public class Produto
 	public void setLargura(BigDecimal largura)
 	{
 		this.largura = largura;
+		alteracoes++;
 	}
 
 	public BigDecimal getAltura()
@@ -136,6 +171,7 @@ public class Produto
 	public void setAltura(BigDecimal altura)
 	{
 		this.altura = altura;
+		alteracoes++;
 	}
 
 	public Boolean isFragil()
@@ -146,6 +182,7 @@ public class Produto
 	public void setFragil(Boolean fragil)
 	{
 		this.fragil = fragil;
+		alteracoes++;
 	}
 
 	public TipoProduto getTipo()
@@ -156,5 +193,21 @@ public class Produto
 	public void setTipo(TipoProduto tipo)
 	{
 		this.tipo = tipo;
+		alteracoes++;
+	}
+
+	public long getVersao()
+	{
+		return versao;
+	}
+
+	public void setVersao(long versao)
+	{
+		this.versao = versao;
+	}
+
+	int getAlteracoes()
+	{
+		return alteracoes;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,8 @@
+package ecommerce.entity;
+
+/**
+ * Publicado pelo {@code ProdutoRepository} sempre que um {@link Produto} é salvo ou removido.
+ */
+public record ProdutoAlteradoEvento(Long produtoId)
+{
+}
@@ -0,0 +1,183 @@
+package ecommerce.entity;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Totais de um {@link CarrinhoDeCompras} mantidos incrementalmente pelos métodos de alteração do carrinho.
+ *
+ * Guarda quantidade e subtotal por {@link TipoProduto} (indexados por {@link TipoProduto#ordinal()}), subtotal,
+ * peso tributável total, quantidade de itens frágeis e número de linhas. Cada alteração soma ou subtrai apenas a
+ * contribuição da linha afetada, de modo que a precificação lê os totais sem refazer as contas de cada item.
+ *
+ * Para cada linha contabilizada fica guardado o produto e os contadores de alteração da linha e do produto. Assim,
+ * uma quantidade ou um produto alterado diretamente pelos setters, fora dos métodos do carrinho, torna os totais
+ * obsoletos ({@link #correspondeA}) em vez de deixá-los errados.
+ */
+public final class TotaisCarrinho
+{
+	private static final BigDecimal PESO_CUBICO_DIVISOR = BigDecimal.valueOf(6000);
+
+	private static final TipoProduto[] TIPOS = TipoProduto.values();
+
+	/** Lista de itens para a qual os totais foram calculados; outra lista indica totais obsoletos. */
+	private final List<ItemCompra> itens;
+
+	/** Estado de cada linha (pela identidade do item) no momento em que foi contabilizada. */
+	private final Map<ItemCompra, Marca> marcas = new IdentityHashMap<>();
+
+	private final long[] quantidadePorTipo = new long[TIPOS.length];
+	private final BigDecimal[] subtotalPorTipo = new BigDecimal[TIPOS.length];
+	private BigDecimal subtotal = BigDecimal.ZERO;
+	private BigDecimal pesoTributavel = BigDecimal.ZERO;
+	private long quantidadeFragil;
+
+	private TotaisCarrinho(List<ItemCompra> itens)
+	{
+		this.itens = itens;
+		for (int i = 0; i < TIPOS.length; i++)
+		{
+			subtotalPorTipo[i] = BigDecimal.ZERO;
+		}
+	}
+
+	/** Totais calculados do zero a partir dos itens (que devem ter produto e quantidade válidos). */
+	static TotaisCarrinho de(List<ItemCompra> itens)
+	{
+		TotaisCarrinho totais = new TotaisCarrinho(itens);
+		for (ItemCompra item : itens)
+		{
+			totais.adicionarLinha(item);
+		}
+		return totais;
+	}
+
+	/** Peso tributável unitário: o maior entre o peso físico e o peso cúbico (C x L x A / 6000, 4 casas). */
+	public static BigDecimal pesoTributavel(Produto produto)
+	{
+		return pesoTributavel(produto.getPesoFisico(), produto.getComprimento(), produto.getLargura(),
+				produto.getAltura());
+	}
+
+	/** Peso tributável unitário a partir do peso físico e das dimensões. */
+	public static BigDecimal pesoTributavel(BigDecimal pesoFisico, BigDecimal comprimento, BigDecimal largura,
+			BigDecimal altura)
+	{
+		BigDecimal pesoCubico = comprimento
+				.multiply(largura)
+				.multiply(altura)
+				.divide(PESO_CUBICO_DIVISOR, 4, RoundingMode.HALF_UP);
+
+		return pesoFisico.max(pesoCubico);
+	}
+
+	/**
+	 * Indica se os totais ainda valem para os itens: mesma lista, mesmas linhas e nenhuma alteração de quantidade ou
+	 * produto desde que foram contabilizadas. Compara apenas referências e contadores, sem refazer contas.
+	 */
+	boolean correspondeA(List<ItemCompra> itensAtuais)
+	{
+		if (itens != itensAtuais || marcas.size() != itensAtuais.size())
+		{
+			return false;
+		}
+		for (ItemCompra item : itensAtuais)
+		{
+			Marca marca = marcas.get(item);
+			if (marca == null || !marca.confere(item))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	void adicionarLinha(ItemCompra item)
+	{
+		marcas.put(item, Marca.de(item));
+		somar(item.getProduto(), item.getQuantidade());
+	}
+
+	void removerLinha(ItemCompra item)
+	{
+		marcas.remove(item);
+		somar(item.getProduto(), -item.getQuantidade());
+	}
+
+	/** Contabiliza a nova quantidade de uma linha já alterada ({@code item.getQuantidade()}). */
+	void alterarQuantidade(ItemCompra item, long quantidadeAnterior)
+	{
+		somar(item.getProduto(), item.getQuantidade() - quantidadeAnterior);
+		marcas.put(item, Marca.de(item));
+	}
+
+	private void somar(Produto produto, long quantidade)
+	{
+		BigDecimal qtd = BigDecimal.valueOf(quantidade);
+		BigDecimal totalItem = produto.getPreco().multiply(qtd);
+		int tipo = produto.getTipo().ordinal();
+
+		subtotal = subtotal.add(totalItem);
+		quantidadePorTipo[tipo] += quantidade;
+		subtotalPorTipo[tipo] = subtotalPorTipo[tipo].add(totalItem);
+		pesoTributavel = pesoTributavel.add(pesoTributavel(produto).multiply(qtd));
+
+		if (Boolean.TRUE.equals(produto.isFragil()))
+		{
+			quantidadeFragil += quantidade;
+		}
+	}
+
+	public boolean isVazio()
+	{
+		return marcas.isEmpty();
+	}
+
+	public long getQuantidadePorTipo(TipoProduto tipo)
+	{
+		return quantidadePorTipo[tipo.ordinal()];
+	}
+
+	public BigDecimal getSubtotalPorTipo(TipoProduto tipo)
+	{
+		return subtotalPorTipo[tipo.ordinal()];
+	}
+
+	public BigDecimal getSubtotal()
+	{
+		return subtotal;
+	}
+
+	public BigDecimal getPesoTributavel()
+	{
+		return pesoTributavel;
+	}
+
+	public long getQuantidadeFragil()
+	{
+		return quantidadeFragil;
+	}
+
+	public int getLinhas()
+	{
+		return marcas.size();
+	}
+
+	/** Produto e contadores de alteração de uma linha quando foi contabilizada. */
+	private record Marca(Produto produto, int alteracoesItem, int alteracoesProduto)
+	{
+		static Marca de(ItemCompra item)
+		{
+			return new Marca(item.getProduto(), item.getAlteracoes(), item.getProduto().getAlteracoes());
+		}
+
+		boolean confere(ItemCompra item)
+		{
+			return item.getProduto() == produto && item.getAlteracoes() == alteracoesItem
+					&& produto.getAlteracoes() == alteracoesProduto;
+		}
+	}
+}
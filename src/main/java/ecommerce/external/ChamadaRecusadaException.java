@@ -0,0 +1,15 @@
+package ecommerce.external;
+
+/**
+ * Chamada a um serviço externo recusada sem ser feita: o serviço está com o circuito aberto ou já atingiu o limite
+ * de chamadas simultâneas.
+ */
+public class ChamadaRecusadaException extends RuntimeException
+{
+	private static final long serialVersionUID = 1L;
+
+	public ChamadaRecusadaException(String mensagem)
+	{
+		super(mensagem);
+	}
+}
@@ -0,0 +1,45 @@
+package ecommerce.external;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ecommerce.dto.BaixaEstoqueDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+
+/**
+ * Estoque que aceita várias baixas em uma única chamada. Cada baixa do lote continua tudo-ou-nada e independente
+ * das demais: uma baixa sem estoque (ou inválida) tem {@code sucesso = false} sem afetar as outras.
+ */
+public interface IBaixaEmLoteEstoqueExternal extends IEstoqueExternal
+{
+
+	/** Resultados na mesma ordem das baixas recebidas. */
+	public List<EstoqueBaixaDTO> darBaixaEmLote(List<BaixaEstoqueDTO> baixas);
+
+	/**
+	 * Como {@link #darBaixaEmLote(List)}, com as baixas em arrays: a baixa {@code i} é
+	 * {@code produtosIds[i]}/{@code produtosQuantidades[i]}, e {@code true} na posição {@code i} indica que ela foi
+	 * aplicada. Por padrão converte para listas; estoques que trabalham com arrays sobrescrevem.
+	 */
+	public default boolean[] darBaixaEmLote(long[][] produtosIds, long[][] produtosQuantidades)
+	{
+		List<BaixaEstoqueDTO> baixas = new ArrayList<>(produtosIds.length);
+		for (int i = 0; i < produtosIds.length; i++)
+		{
+			baixas.add(new BaixaEstoqueDTO(ItensEstoque.emLista(produtosIds[i]),
+					ItensEstoque.emLista(produtosQuantidades[i])));
+		}
+		List<EstoqueBaixaDTO> resultados = darBaixaEmLote(baixas);
+		if (resultados == null || resultados.size() != baixas.size())
+		{
+			throw new IllegalStateException("Estoque devolveu resultados que não correspondem ao lote.");
+		}
+		boolean[] aplicadas = new boolean[resultados.size()];
+		for (int i = 0; i < aplicadas.length; i++)
+		{
+			aplicadas[i] = resultados.get(i).sucesso();
+		}
+		return aplicadas;
+	}
+
+}
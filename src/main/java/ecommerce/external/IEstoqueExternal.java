@@ -1,10 +1,16 @@
 package ecommerce.external;
 
+import java.util.BitSet;
 import java.util.List;
 
 import ecommerce.dto.DisponibilidadeDTO;
 import ecommerce.dto.EstoqueBaixaDTO;
 
+/**
+ * Estoque consultado pela compra. Os métodos com {@code long[]} são a forma sem boxing dos métodos com listas, para
+ * carrinhos grandes; por padrão convertem os arrays e chamam os métodos com listas, e estoques que trabalham com
+ * arrays os reimplementam (ver {@link ItensEstoque}).
+ */
 public interface IEstoqueExternal
 {
 
@@ -12,4 +18,26 @@ public interface IEstoqueExternal
 
 	public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades);
 
+	/** Baixa tudo-ou-nada; {@code true} quando aplicada. */
+	public default boolean darBaixa(long[] produtosIds, long[] produtosQuantidades)
+	{
+		EstoqueBaixaDTO baixa = darBaixa(ItensEstoque.emLista(produtosIds), ItensEstoque.emLista(produtosQuantidades));
+		return Boolean.TRUE.equals(baixa.sucesso());
+	}
+
+	/**
+	 * Posições do pedido que não podem ser atendidas; vazio quando tudo está disponível. Um pedido indisponível sem os
+	 * produtos identificados não aponta nenhuma posição (ver {@link ItensEstoque#indisponiveis}).
+	 */
+	public default BitSet verificarIndisponiveis(long[] produtosIds, long[] produtosQuantidades)
+	{
+		DisponibilidadeDTO disponibilidade = verificarDisponibilidade(ItensEstoque.emLista(produtosIds),
+				ItensEstoque.emLista(produtosQuantidades));
+		if (Boolean.TRUE.equals(disponibilidade.disponivel()))
+		{
+			return ItensEstoque.posicoes(produtosIds, disponibilidade.idsProdutosIndisponiveis());
+		}
+		return ItensEstoque.indisponiveis(produtosIds, disponibilidade.idsProdutosIndisponiveis());
+	}
+
 }
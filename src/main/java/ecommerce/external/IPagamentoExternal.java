@@ -1,11 +1,30 @@
 package ecommerce.external;
 
+import java.util.UUID;
+
 import ecommerce.dto.PagamentoDTO;
 
 public interface IPagamentoExternal
 {
 
-	PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal);
+	/** Autorização com uma chave de idempotência nova, para chamadas que não precisam reconciliar. */
+	default PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal)
+	{
+		return autorizarPagamento(clienteId, custoTotal, UUID.randomUUID().toString());
+	}
+
+	/**
+	 * Autoriza o pagamento; repetições com a mesma {@code chaveIdempotencia} não geram outra autorização. Com a chave,
+	 * uma autorização sem resposta (tempo esgotado) pode ser cancelada por {@link #cancelarPorChave}, mesmo que o
+	 * provedor só a conclua depois.
+	 */
+	PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal, String chaveIdempotencia);
 
 	void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId);
+
+	/**
+	 * Cancela a autorização feita com a chave, se houve; se ela ainda não chegou ao provedor, a chave fica anulada e a
+	 * autorização, quando chegar, é recusada.
+	 */
+	void cancelarPorChave(Long clienteId, String chaveIdempotencia);
 }
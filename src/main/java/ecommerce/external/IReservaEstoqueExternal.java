@@ -0,0 +1,36 @@
+package ecommerce.external;
+
+import java.util.List;
+
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
+
+/**
+ * Estoque com reservas: {@link #reservar} separa as unidades do pedido por um prazo definido pelo estoque;
+ * {@link #confirmar} (ou {@link #confirmarEmLote}) transforma a reserva em baixa e {@link #liberar} devolve as
+ * unidades. Reservas não confirmadas nem liberadas expiram sozinhas ao fim do prazo.
+ */
+public interface IReservaEstoqueExternal extends IEstoqueExternal
+{
+
+	public ReservaEstoqueDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades);
+
+	/** Forma sem boxing de {@link #reservar(List, List)}. */
+	public default ReservaEstoqueDTO reservar(long[] produtosIds, long[] produtosQuantidades)
+	{
+		return reservar(ItensEstoque.emLista(produtosIds), ItensEstoque.emLista(produtosQuantidades));
+	}
+
+	/** Confirma a reserva; falha se ela já expirou ou foi liberada. */
+	public EstoqueBaixaDTO confirmar(Long reservaId);
+
+	/**
+	 * Confirma várias reservas em uma única chamada; resultados na mesma ordem das reservas, cada confirmação
+	 * independente das demais (uma reserva expirada não afeta as outras).
+	 */
+	public List<EstoqueBaixaDTO> confirmarEmLote(List<Long> reservasIds);
+
+	/** Devolve as unidades da reserva; não faz nada se ela já foi confirmada, liberada ou expirou. */
+	public void liberar(Long reservaId);
+
+}
@@ -0,0 +1,171 @@
+package ecommerce.external;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Conversões entre as duas formas dos pedidos de estoque: listas ({@code List<Long>}, usadas nos DTOs e nas
+ * chamadas remotas) e arrays primitivos ({@code long[]}, sem boxing, usados na compra). Indisponibilidade na forma
+ * primitiva é um {@link BitSet} sobre as posições do pedido: o bit {@code i} ligado indica que a linha {@code i} não
+ * pode ser atendida. Quando o estoque recusa o pedido sem dizer quais produtos faltam, só o bit logo depois da última
+ * posição fica ligado (ver {@link #indisponiveis}): o pedido é recusado sem que nenhuma linha seja apontada.
+ */
+public final class ItensEstoque
+{
+	private ItensEstoque()
+	{
+	}
+
+	/** Lista com os mesmos valores, na mesma ordem; {@code null} continua {@code null}. */
+	public static List<Long> emLista(long[] valores)
+	{
+		if (valores == null)
+		{
+			return null;
+		}
+		List<Long> lista = new ArrayList<>(valores.length);
+		for (long valor : valores)
+		{
+			lista.add(valor);
+		}
+		return lista;
+	}
+
+	/**
+	 * Arrays com os ids e as quantidades das listas; recusa listas nulas ou de tamanhos diferentes e elementos nulos,
+	 * com as mensagens do estoque.
+	 */
+	public static long[][] emArrays(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		if (produtosIds == null || produtosQuantidades == null || produtosIds.size() != produtosQuantidades.size())
+		{
+			throw new IllegalArgumentException("Listas de produtos e quantidades devem ter o mesmo tamanho.");
+		}
+		long[] ids = new long[produtosIds.size()];
+		long[] quantidades = new long[ids.length];
+		for (int i = 0; i < ids.length; i++)
+		{
+			Long id = produtosIds.get(i);
+			Long quantidade = produtosQuantidades.get(i);
+			if (id == null || quantidade == null)
+			{
+				throw new IllegalArgumentException("Produto e quantidade (maior que zero) são obrigatórios.");
+			}
+			ids[i] = id;
+			quantidades[i] = quantidade;
+		}
+		return new long[][] { ids, quantidades };
+	}
+
+	/** Posições do pedido cujo produto está entre os indisponíveis. */
+	public static BitSet posicoes(long[] produtosIds, Collection<Long> indisponiveis)
+	{
+		BitSet posicoes = new BitSet(produtosIds.length);
+		if (indisponiveis == null || indisponiveis.isEmpty())
+		{
+			return posicoes;
+		}
+		Collection<Long> consulta = indisponiveis.size() > 8 ? new HashSet<>(indisponiveis) : indisponiveis;
+		for (int i = 0; i < produtosIds.length; i++)
+		{
+			if (consulta.contains(produtosIds[i]))
+			{
+				posicoes.set(i);
+			}
+		}
+		return posicoes;
+	}
+
+	/**
+	 * Posições do pedido cujo produto está entre os indisponíveis informados pelo estoque; se nenhum produto do pedido
+	 * foi informado, o bit {@code produtosIds.length}, que marca a indisponibilidade sem produtos identificados.
+	 */
+	public static BitSet indisponiveis(long[] produtosIds, Collection<Long> informados)
+	{
+		BitSet posicoes = posicoes(produtosIds, informados);
+		if (posicoes.isEmpty())
+		{
+			posicoes.set(produtosIds.length);
+		}
+		return posicoes;
+	}
+
+	/** {@code false} quando as posições só dizem que o pedido não pode ser atendido, sem apontar os produtos. */
+	public static boolean identificaProdutos(long[] produtosIds, BitSet posicoes)
+	{
+		return posicoes.nextSetBit(produtosIds.length) < 0;
+	}
+
+	/** Ids dos produtos das posições indisponíveis, sem repetição e em ordem crescente. */
+	public static List<Long> idsIndisponiveis(long[] produtosIds, BitSet posicoes)
+	{
+		long[] ids = new long[posicoes.cardinality()];
+		int quantidade = 0;
+		for (int i = posicoes.nextSetBit(0); i >= 0 && i < produtosIds.length; i = posicoes.nextSetBit(i + 1))
+		{
+			ids[quantidade++] = produtosIds[i];
+		}
+		Arrays.sort(ids);
+		List<Long> distintos = new ArrayList<>(quantidade);
+		for (int i = 0; i < quantidade; i++)
+		{
+			if (i == 0 || ids[i] != ids[i - 1])
+			{
+				distintos.add(ids[i]);
+			}
+		}
+		return distintos;
+	}
+
+	/**
+	 * Quantidade total de cada produto de um pedido: nas {@code tamanho} primeiras posições, os ids em ordem crescente e
+	 * sem repetição e, na mesma posição, a soma das quantidades das linhas com o id. Usada pelo estoque simulado (saldo
+	 * por produto) e pelo cache de disponibilidade (limites por produto).
+	 */
+	public static final class Totais
+	{
+		public final long[] ids;
+		public final long[] quantidades;
+		public final int tamanho;
+
+		private Totais(long[] ids, int tamanho)
+		{
+			this.ids = ids;
+			this.quantidades = new long[tamanho];
+			this.tamanho = tamanho;
+		}
+
+		// ids ordenados e sem repetição; as quantidades de cada posição são somadas no id dela (busca binária)
+		public static Totais de(long[] produtosIds, long[] produtosQuantidades)
+		{
+			long[] ids = produtosIds.clone();
+			Arrays.sort(ids);
+			int distintos = 0;
+			for (int i = 0; i < ids.length; i++)
+			{
+				if (i == 0 || ids[i] != ids[i - 1])
+				{
+					ids[distintos++] = ids[i];
+				}
+			}
+
+			Totais totais = new Totais(ids, distintos);
+			for (int i = 0; i < produtosIds.length; i++)
+			{
+				int posicao = totais.posicao(produtosIds[i]);
+				totais.quantidades[posicao] = Math.addExact(totais.quantidades[posicao], produtosQuantidades[i]);
+			}
+			return totais;
+		}
+
+		/** Posição do id entre os distintos; negativa quando o id não está no pedido. */
+		public int posicao(long id)
+		{
+			return Arrays.binarySearch(ids, 0, tamanho, id);
+		}
+	}
+}
@@ -0,0 +1,12 @@
+package ecommerce.external;
+
+/** Chamada a um serviço externo que não respondeu dentro do prazo. */
+public class TempoEsgotadoException extends RuntimeException
+{
+	private static final long serialVersionUID = 1L;
+
+	public TempoEsgotadoException(String mensagem)
+	{
+		super(mensagem);
+	}
+}
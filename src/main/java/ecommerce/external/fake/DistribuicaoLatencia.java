@@ -0,0 +1,17 @@
+package ecommerce.external.fake;
+
+/**
+ * Distribuição da latência simulada por {@link PagamentoSimulado}.
+ *
+ * <ul>
+ * <li>{@code FIXA}: toda chamada leva a latência base.</li>
+ * <li>{@code NORMAL}: normal com média igual à latência base e o desvio-padrão configurado (sem valores
+ * negativos).</li>
+ * <li>{@code CAUDA_LONGA}: log-normal com mediana (p50) igual à latência base e p99 configurado, para reproduzir
+ * caudas de latência de produção.</li>
+ * </ul>
+ */
+public enum DistribuicaoLatencia
+{
+	FIXA, NORMAL, CAUDA_LONGA
+}
@@ -1,28 +1,504 @@
 package ecommerce.external.fake;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
+import ecommerce.dto.BaixaEstoqueDTO;
 import ecommerce.dto.DisponibilidadeDTO;
 import ecommerce.dto.EstoqueBaixaDTO;
-import ecommerce.external.IEstoqueExternal;
+import ecommerce.dto.ReservaEstoqueDTO;
+import ecommerce.external.IBaixaEmLoteEstoqueExternal;
+import ecommerce.external.IReservaEstoqueExternal;
+import ecommerce.external.ItensEstoque;
+import ecommerce.external.ItensEstoque.Totais;
+import jakarta.annotation.PreDestroy;
 
+/**
+ * Estoque em memória, seguro para uso concorrente.
+ *
+ * O saldo de cada produto fica em um {@link AtomicLong}; produtos ainda não cadastrados começam com
+ * {@code ecommerce.estoque.quantidade-inicial} unidades (padrão 1000, o mesmo do application.properties). Consultas
+ * de disponibilidade apenas leem os saldos, sem travas. Baixas são tudo-ou-nada: as travas das listras dos produtos
+ * do pedido (uma {@link ReentrantLock} para cada grupo de produtos, escolhido pelo id) são adquiridas em ordem
+ * crescente de listra, o que evita deadlock entre pedidos concorrentes; com todas adquiridas, os saldos são
+ * conferidos e só então decrementados. Não há trava global: pedidos com produtos de listras diferentes não esperam
+ * uns pelos outros.
+ *
+ * Reservas dão baixa nas unidades do mesmo jeito e as guardam por {@code ecommerce.estoque.reserva-ttl}; a expiração
+ * das reservas não confirmadas é feita por uma {@link RodaDeTemporizacao} (uma thread para todas as reservas), que
+ * devolve as unidades ao estoque.
+ *
+ * Com {@code ecommerce.estoque.latencia}, cada chamada espera esse tempo antes de ser atendida, simulando um
+ * estoque remoto lento.
+ *
+ * Baixas em lote adquirem uma única vez as travas de todas as listras do lote e processam os pedidos em ordem, cada
+ * um tudo-ou-nada.
+ *
+ * As operações trabalham sobre arrays primitivos ({@code long[]}); os métodos com listas só convertem o pedido e
+ * chamam os com arrays.
+ */
 @Service
-public class EstoqueSimulado implements IEstoqueExternal
+@ConditionalOnProperty(name = "ecommerce.externo.modo", havingValue = "SIMULADO", matchIfMissing = true)
+public class EstoqueSimulado implements IReservaEstoqueExternal, IBaixaEmLoteEstoqueExternal
 {
+	private static final Duration TICK_RESERVAS = Duration.ofMillis(10);
+	private static final int BALDES_RESERVAS = 512;
+
+	private final long quantidadeInicial;
+	private final Duration ttlReserva;
+	private final long latenciaNanos;
+	private final ConcurrentHashMap<Long, AtomicLong> saldos = new ConcurrentHashMap<>();
+	private final ReentrantLock[] listras;
+	private final int mascara;
+
+	private final AtomicLong sequenciaReservas = new AtomicLong();
+	private final ConcurrentHashMap<Long, Reserva> reservas = new ConcurrentHashMap<>();
+	private final RodaDeTemporizacao expiracoes = new RodaDeTemporizacao("expiracao-reservas", TICK_RESERVAS,
+			BALDES_RESERVAS);
+
+	public EstoqueSimulado()
+	{
+		this(0);
+	}
+
+	public EstoqueSimulado(long quantidadeInicial)
+	{
+		this(quantidadeInicial, Duration.ofSeconds(30));
+	}
+
+	public EstoqueSimulado(long quantidadeInicial, Duration ttlReserva)
+	{
+		this(quantidadeInicial, ttlReserva, Duration.ZERO);
+	}
+
+	@Autowired
+	public EstoqueSimulado(@Value("${ecommerce.estoque.quantidade-inicial:1000}") long quantidadeInicial,
+			@Value("${ecommerce.estoque.reserva-ttl:PT30S}") Duration ttlReserva,
+			@Value("${ecommerce.estoque.latencia:PT0S}") Duration latencia)
+	{
+		this.quantidadeInicial = quantidadeInicial;
+		this.ttlReserva = ttlReserva;
+		this.latenciaNanos = latencia.toNanos();
+		int quantidade = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 16 - 1) << 1;
+		this.listras = new ReentrantLock[quantidade];
+		for (int i = 0; i < quantidade; i++)
+		{
+			listras[i] = new ReentrantLock();
+		}
+		this.mascara = quantidade - 1;
+	}
 
 	@Override
 	public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
 	{
-		// TODO Auto-generated method stub
-		return null;
+		long[][] pedido = ItensEstoque.emArrays(produtosIds, produtosQuantidades);
+		return new EstoqueBaixaDTO(darBaixa(pedido[0], pedido[1]));
+	}
+
+	@Override
+	public boolean darBaixa(long[] produtosIds, long[] produtosQuantidades)
+	{
+		esperarLatencia();
+		return baixar(pedido(produtosIds, produtosQuantidades));
+	}
+
+	@Override
+	public List<EstoqueBaixaDTO> darBaixaEmLote(List<BaixaEstoqueDTO> baixas)
+	{
+		esperarLatencia();
+		Totais[] pedidos = new Totais[baixas.size()];
+		for (int i = 0; i < pedidos.length; i++)
+		{
+			BaixaEstoqueDTO baixa = baixas.get(i);
+			try
+			{
+				pedidos[i] = pedido(baixa.produtosIds(), baixa.produtosQuantidades());
+			}
+			catch (IllegalArgumentException e)
+			{
+				pedidos[i] = null; // só esta baixa falha
+			}
+		}
+
+		List<EstoqueBaixaDTO> resultados = new ArrayList<>(pedidos.length);
+		for (boolean aplicada : baixarEmLote(pedidos))
+		{
+			resultados.add(new EstoqueBaixaDTO(aplicada));
+		}
+		return resultados;
+	}
+
+	@Override
+	public boolean[] darBaixaEmLote(long[][] produtosIds, long[][] produtosQuantidades)
+	{
+		esperarLatencia();
+		Totais[] pedidos = new Totais[produtosIds.length];
+		for (int i = 0; i < pedidos.length; i++)
+		{
+			try
+			{
+				pedidos[i] = pedido(produtosIds[i], produtosQuantidades[i]);
+			}
+			catch (IllegalArgumentException e)
+			{
+				pedidos[i] = null; // só esta baixa falha
+			}
+		}
+		return baixarEmLote(pedidos);
+	}
+
+	/** Aplica os pedidos do lote com as listras de todos travadas; pedido {@code null} (inválido) não é aplicado. */
+	private boolean[] baixarEmLote(Totais[] pedidos)
+	{
+		boolean[] aplicadas = new boolean[pedidos.length];
+		int[] travas = listrasOrdenadas(pedidos);
+		travar(travas);
+		try
+		{
+			for (int i = 0; i < pedidos.length; i++)
+			{
+				aplicadas[i] = pedidos[i] != null && baixarTravado(pedidos[i]);
+			}
+		}
+		finally
+		{
+			destravar(travas);
+		}
+		return aplicadas;
+	}
+
+	@Override
+	public ReservaEstoqueDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		long[][] pedido = ItensEstoque.emArrays(produtosIds, produtosQuantidades);
+		return reservar(pedido[0], pedido[1]);
+	}
+
+	@Override
+	public ReservaEstoqueDTO reservar(long[] produtosIds, long[] produtosQuantidades)
+	{
+		esperarLatencia();
+		Totais pedido = pedido(produtosIds, produtosQuantidades);
+		if (!baixar(pedido))
+		{
+			return new ReservaEstoqueDTO(false, null, indisponiveis(pedido));
+		}
+
+		Reserva reserva = new Reserva(sequenciaReservas.incrementAndGet(), pedido);
+		// no mapa antes de agendar: uma expiração que dispare logo em seguida encontra a reserva para remover; o id só
+		// chega a quem confirma ou libera depois do retorno, com a expiração já atribuída
+		reservas.put(reserva.id, reserva);
+		reserva.expiracao = expiracoes.agendar(ttlReserva, () -> devolver(reserva));
+		return new ReservaEstoqueDTO(true, reserva.id, List.of());
+	}
+
+	@Override
+	public EstoqueBaixaDTO confirmar(Long reservaId)
+	{
+		esperarLatencia();
+		return new EstoqueBaixaDTO(confirmarReserva(reservaId));
+	}
+
+	@Override
+	public List<EstoqueBaixaDTO> confirmarEmLote(List<Long> reservasIds)
+	{
+		esperarLatencia();
+		List<EstoqueBaixaDTO> resultados = new ArrayList<>(reservasIds.size());
+		for (Long reservaId : reservasIds)
+		{
+			resultados.add(new EstoqueBaixaDTO(confirmarReserva(reservaId)));
+		}
+		return resultados;
+	}
+
+	private boolean confirmarReserva(Long reservaId)
+	{
+		Reserva reserva = reservaId == null ? null : reservas.remove(reservaId);
+		// a roda pode ter disparado a expiração antes da remoção: quem vencer o cancelar() decide
+		return reserva != null && reserva.expiracao.cancelar();
+	}
+
+	@Override
+	public void liberar(Long reservaId)
+	{
+		esperarLatencia();
+		Reserva reserva = reservaId == null ? null : reservas.remove(reservaId);
+		if (reserva != null && reserva.expiracao.cancelar())
+		{
+			devolver(reserva);
+		}
+	}
+
+	public int reservasPendentes()
+	{
+		return reservas.size();
+	}
+
+	@PreDestroy
+	public void encerrar()
+	{
+		expiracoes.encerrar();
+	}
+
+	/** Latência simulada de cada chamada ({@code ecommerce.estoque.latencia}), fora das travas. */
+	private void esperarLatencia()
+	{
+		if (latenciaNanos <= 0)
+		{
+			return;
+		}
+		try
+		{
+			Thread.sleep(Duration.ofNanos(latenciaNanos));
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void devolver(Reserva reserva)
+	{
+		reservas.remove(reserva.id);
+		int[] travas = listrasOrdenadas(reserva.pedido);
+		travar(travas);
+		try
+		{
+			for (int i = 0; i < reserva.pedido.tamanho; i++)
+			{
+				saldo(reserva.pedido.ids[i]).addAndGet(reserva.pedido.quantidades[i]);
+			}
+		}
+		finally
+		{
+			destravar(travas);
+		}
+	}
+
+	private boolean baixar(Totais pedido)
+	{
+		int[] travas = listrasOrdenadas(pedido);
+
+		travar(travas);
+		try
+		{
+			return baixarTravado(pedido);
+		}
+		finally
+		{
+			destravar(travas);
+		}
+	}
+
+	/** Confere e decrementa os saldos do pedido; as travas das suas listras já estão com a thread atual. */
+	private boolean baixarTravado(Totais pedido)
+	{
+		AtomicLong[] saldosPedido = new AtomicLong[pedido.tamanho];
+		for (int i = 0; i < pedido.tamanho; i++)
+		{
+			saldosPedido[i] = saldo(pedido.ids[i]);
+			if (saldosPedido[i].get() < pedido.quantidades[i])
+			{
+				return false;
+			}
+		}
+		for (int i = 0; i < pedido.tamanho; i++)
+		{
+			saldosPedido[i].addAndGet(-pedido.quantidades[i]);
+		}
+		return true;
 	}
 
+	private void travar(int[] travas)
+	{
+		for (int i = 0; i < travas.length; i++)
+		{
+			listras[travas[i]].lock();
+		}
+	}
+
+	private void destravar(int[] travas)
+	{
+		for (int i = travas.length - 1; i >= 0; i--)
+		{
+			listras[travas[i]].unlock();
+		}
+	}
+
+	/** Disponibilidade do pedido; os ids indisponíveis são informados sem repetição, em ordem crescente. */
 	@Override
 	public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades)
 	{
-		// TODO Auto-generated method stub
-		return null;
+		long[][] pedido = ItensEstoque.emArrays(produtosIds, produtosQuantidades);
+		BitSet indisponiveis = verificarIndisponiveis(pedido[0], pedido[1]);
+		return new DisponibilidadeDTO(indisponiveis.isEmpty(), ItensEstoque.idsIndisponiveis(pedido[0], indisponiveis));
+	}
+
+	/**
+	 * Posições indisponíveis do pedido; com o mesmo produto em várias posições, a soma das quantidades é comparada ao
+	 * saldo e todas essas posições ficam indisponíveis juntas.
+	 */
+	@Override
+	public BitSet verificarIndisponiveis(long[] produtosIds, long[] produtosQuantidades)
+	{
+		esperarLatencia();
+		Totais pedido = pedido(produtosIds, produtosQuantidades);
+		boolean[] faltando = new boolean[pedido.tamanho];
+		boolean algumFaltando = false;
+		for (int i = 0; i < pedido.tamanho; i++)
+		{
+			faltando[i] = quantidadeDisponivel(pedido.ids[i]) < pedido.quantidades[i];
+			algumFaltando |= faltando[i];
+		}
+
+		BitSet indisponiveis = new BitSet(produtosIds.length);
+		for (int i = 0; algumFaltando && i < produtosIds.length; i++)
+		{
+			if (faltando[pedido.posicao(produtosIds[i])])
+			{
+				indisponiveis.set(i);
+			}
+		}
+		return indisponiveis;
+	}
+
+	private List<Long> indisponiveis(Totais pedido)
+	{
+		List<Long> indisponiveis = new ArrayList<>();
+		for (int i = 0; i < pedido.tamanho; i++)
+		{
+			if (quantidadeDisponivel(pedido.ids[i]) < pedido.quantidades[i])
+			{
+				indisponiveis.add(pedido.ids[i]);
+			}
+		}
+		return indisponiveis;
+	}
+
+	public long quantidadeDisponivel(Long produtoId)
+	{
+		AtomicLong saldo = saldos.get(produtoId);
+		return saldo == null ? quantidadeInicial : saldo.get();
+	}
+
+	/** Define o saldo do produto, descartando o anterior. */
+	public void definirQuantidade(Long produtoId, long quantidade)
+	{
+		ReentrantLock trava = listras[listra(produtoId)];
+		trava.lock();
+		try
+		{
+			saldo(produtoId).set(quantidade);
+		}
+		finally
+		{
+			trava.unlock();
+		}
+	}
+
+	public void repor(Long produtoId, long quantidade)
+	{
+		ReentrantLock trava = listras[listra(produtoId)];
+		trava.lock();
+		try
+		{
+			saldo(produtoId).addAndGet(quantidade);
+		}
+		finally
+		{
+			trava.unlock();
+		}
+	}
+
+	private AtomicLong saldo(Long produtoId)
+	{
+		AtomicLong saldo = saldos.get(produtoId);
+		return saldo != null ? saldo : saldos.computeIfAbsent(produtoId, id -> new AtomicLong(quantidadeInicial));
+	}
+
+	private int listra(long produtoId)
+	{
+		long h = produtoId * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mascara;
+	}
+
+	/**
+	 * Listras dos produtos dos pedidos, sem repetição e em ordem crescente (ordem de aquisição das travas); pedidos
+	 * nulos são ignorados.
+	 */
+	private int[] listrasOrdenadas(Totais... pedidos)
+	{
+		int total = 0;
+		for (Totais pedido : pedidos)
+		{
+			total += pedido == null ? 0 : pedido.tamanho;
+		}
+		int[] indices = new int[total];
+		int posicao = 0;
+		for (Totais pedido : pedidos)
+		{
+			for (int i = 0; pedido != null && i < pedido.tamanho; i++)
+			{
+				indices[posicao++] = listra(pedido.ids[i]);
+			}
+		}
+		Arrays.sort(indices);
+
+		int distintos = 0;
+		for (int i = 0; i < indices.length; i++)
+		{
+			if (i == 0 || indices[i] != indices[i - 1])
+			{
+				indices[distintos++] = indices[i];
+			}
+		}
+		return distintos == indices.length ? indices : Arrays.copyOf(indices, distintos);
+	}
+
+	private static final class Reserva
+	{
+		final long id;
+		final Totais pedido;
+		volatile RodaDeTemporizacao.Agendamento expiracao;
+
+		Reserva(long id, Totais pedido)
+		{
+			this.id = id;
+			this.pedido = pedido;
+		}
+	}
+
+	private static Totais pedido(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		long[][] pedido = ItensEstoque.emArrays(produtosIds, produtosQuantidades);
+		return pedido(pedido[0], pedido[1]);
+	}
+
+	/** Pedido com ids em ordem crescente e quantidades de ids repetidos somadas; recusa quantidades não positivas. */
+	private static Totais pedido(long[] produtosIds, long[] produtosQuantidades)
+	{
+		if (produtosIds == null || produtosQuantidades == null || produtosIds.length != produtosQuantidades.length)
+		{
+			throw new IllegalArgumentException("Listas de produtos e quantidades devem ter o mesmo tamanho.");
+		}
+		for (long quantidade : produtosQuantidades)
+		{
+			if (quantidade <= 0)
+			{
+				throw new IllegalArgumentException("Produto e quantidade (maior que zero) são obrigatórios.");
+			}
+		}
+		return Totais.de(produtosIds, produtosQuantidades);
 	}
 }
@@ -1,25 +1,234 @@
 package ecommerce.external.fake;
 
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import ecommerce.dto.PagamentoDTO;
 import ecommerce.external.IPagamentoExternal;
+import ecommerce.external.TempoEsgotadoException;
 
+/**
+ * Pagamento simulado em processo, para testes de carga locais do {@code /finalizar}.
+ *
+ * Cada chamada espera uma latência sorteada da {@link DistribuicaoLatencia} configurada. Uma fração
+ * ({@code ecommerce.pagamento.taxa-tempo-esgotado}) das autorizações não responde: espera
+ * {@code ecommerce.pagamento.tempo-esgotado} e lança {@link TempoEsgotadoException}; outra fração
+ * ({@code ecommerce.pagamento.taxa-recusa}) é recusada. As demais são autorizadas com um {@code transacaoId} único,
+ * gerado por um contador atômico (sem trava). Os cancelamentos recebidos ficam registrados; uma chave de idempotência
+ * cancelada anula a autorização feita com ela e recusa as que chegarem depois. As chaves das autorizações não são
+ * guardadas: uma repetição com a mesma chave gera outra transação.
+ *
+ * Sem configuração, autoriza tudo imediatamente.
+ */
 @Service
+@ConditionalOnProperty(name = "ecommerce.externo.modo", havingValue = "SIMULADO", matchIfMissing = true)
 public class PagamentoSimulado implements IPagamentoExternal
 {
+	/** Quantil 0,99 da normal padrão: converte o p99 da cauda longa no desvio da log-normal. */
+	private static final double Z_P99 = 2.3263478740408408;
+
+	private final Configuracao configuracao;
+	private final double mu;
+	private final double sigma;
+
+	private final AtomicLong transacoes = new AtomicLong();
+	private final LongAdder autorizados = new LongAdder();
+	private final LongAdder recusados = new LongAdder();
+	private final LongAdder temposEsgotados = new LongAdder();
+	private final LongAdder cancelamentos = new LongAdder();
+	private final Set<Long> transacoesCanceladas = ConcurrentHashMap.newKeySet();
+	private final Set<String> chavesCanceladas = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * @param distribuicao      forma da latência de cada chamada
+	 * @param latenciaBase      latência fixa, média da normal ou mediana da cauda longa
+	 * @param desvio            desvio-padrão da normal
+	 * @param p99               p99 da cauda longa (não menor que a latência base)
+	 * @param taxaRecusa        fração das autorizações recusadas, entre 0 e 1
+	 * @param taxaTempoEsgotado fração das autorizações sem resposta, entre 0 e 1
+	 * @param tempoEsgotado     espera antes de lançar {@link TempoEsgotadoException}
+	 */
+	public record Configuracao(DistribuicaoLatencia distribuicao, Duration latenciaBase, Duration desvio,
+			Duration p99, double taxaRecusa, double taxaTempoEsgotado, Duration tempoEsgotado)
+	{
+		public Configuracao
+		{
+			if (taxaRecusa < 0 || taxaTempoEsgotado < 0 || taxaRecusa + taxaTempoEsgotado > 1)
+			{
+				throw new IllegalArgumentException("Taxas de recusa e de tempo esgotado devem somar entre 0 e 1.");
+			}
+			if (latenciaBase.isNegative() || desvio.isNegative() || tempoEsgotado.isNegative())
+			{
+				throw new IllegalArgumentException("Latências não podem ser negativas.");
+			}
+			if (distribuicao == DistribuicaoLatencia.CAUDA_LONGA && (latenciaBase.isZero()
+					|| p99.compareTo(latenciaBase) < 0))
+			{
+				throw new IllegalArgumentException("Cauda longa exige latência base positiva e p99 não menor que ela.");
+			}
+		}
+
+		/** Sem latência e sem falhas. */
+		public static Configuracao imediata()
+		{
+			return new Configuracao(DistribuicaoLatencia.FIXA, Duration.ZERO, Duration.ZERO, Duration.ZERO, 0, 0,
+					Duration.ZERO);
+		}
+	}
+
+	public PagamentoSimulado()
+	{
+		this(Configuracao.imediata());
+	}
+
+	@Autowired
+	public PagamentoSimulado(
+			@Value("${ecommerce.pagamento.latencia.distribuicao:FIXA}") DistribuicaoLatencia distribuicao,
+			@Value("${ecommerce.pagamento.latencia.base:PT0S}") Duration latenciaBase,
+			@Value("${ecommerce.pagamento.latencia.desvio:PT0S}") Duration desvio,
+			@Value("${ecommerce.pagamento.latencia.p99:PT0S}") Duration p99,
+			@Value("${ecommerce.pagamento.taxa-recusa:0}") double taxaRecusa,
+			@Value("${ecommerce.pagamento.taxa-tempo-esgotado:0}") double taxaTempoEsgotado,
+			@Value("${ecommerce.pagamento.tempo-esgotado:PT5S}") Duration tempoEsgotado)
+	{
+		this(new Configuracao(distribuicao, latenciaBase, desvio, p99, taxaRecusa, taxaTempoEsgotado,
+				tempoEsgotado));
+	}
+
+	public PagamentoSimulado(Configuracao configuracao)
+	{
+		this.configuracao = configuracao;
+		if (configuracao.distribuicao() == DistribuicaoLatencia.CAUDA_LONGA)
+		{
+			double mediana = configuracao.latenciaBase().toNanos();
+			this.mu = Math.log(mediana);
+			this.sigma = Math.log(configuracao.p99().toNanos() / mediana) / Z_P99;
+		}
+		else
+		{
+			this.mu = 0;
+			this.sigma = 0;
+		}
+	}
 
 	@Override
-	public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal)
+	public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal, String chaveIdempotencia)
 	{
-		// TODO Auto-generated method stub
-		return null;
+		double sorteio = ThreadLocalRandom.current().nextDouble();
+		if (sorteio < configuracao.taxaTempoEsgotado())
+		{
+			temposEsgotados.increment();
+			esperar(configuracao.tempoEsgotado().toNanos());
+			throw new TempoEsgotadoException("Tempo esgotado ao autorizar pagamento.");
+		}
+
+		esperar(sortearLatenciaNanos());
+		if (sorteio < configuracao.taxaTempoEsgotado() + configuracao.taxaRecusa()
+				|| chaveIdempotencia != null && chavesCanceladas.contains(chaveIdempotencia))
+		{
+			recusados.increment();
+			return new PagamentoDTO(false, null);
+		}
+
+		autorizados.increment();
+		return new PagamentoDTO(true, transacoes.incrementAndGet());
 	}
 
 	@Override
 	public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId)
 	{
-		// TODO Auto-generated method stub
+		esperar(sortearLatenciaNanos());
+		cancelamentos.increment();
+		if (pagamentoTransacaoId != null)
+		{
+			transacoesCanceladas.add(pagamentoTransacaoId);
+		}
+	}
+
+	@Override
+	public void cancelarPorChave(Long clienteId, String chaveIdempotencia)
+	{
+		esperar(sortearLatenciaNanos());
+		cancelamentos.increment();
+		if (chaveIdempotencia != null)
+		{
+			chavesCanceladas.add(chaveIdempotencia);
+		}
+	}
+
+	/** Latência de uma chamada, em nanossegundos, sorteada da distribuição configurada. */
+	long sortearLatenciaNanos()
+	{
+		long base = configuracao.latenciaBase().toNanos();
+		switch (configuracao.distribuicao())
+		{
+			case NORMAL:
+				double normal = base + ThreadLocalRandom.current().nextGaussian() * configuracao.desvio().toNanos();
+				return Math.max(0, (long) normal);
+			case CAUDA_LONGA:
+				return (long) Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian());
+			default:
+				return base;
+		}
+	}
+
+	private static void esperar(long nanos)
+	{
+		if (nanos <= 0)
+		{
+			return;
+		}
+		try
+		{
+			Thread.sleep(Duration.ofNanos(nanos));
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public Configuracao getConfiguracao()
+	{
+		return configuracao;
+	}
+
+	public long getAutorizados()
+	{
+		return autorizados.sum();
+	}
+
+	public long getRecusados()
+	{
+		return recusados.sum();
+	}
+
+	public long getTemposEsgotados()
+	{
+		return temposEsgotados.sum();
+	}
+
+	public long getCancelamentos()
+	{
+		return cancelamentos.sum();
+	}
+
+	public boolean foiCancelado(Long transacaoId)
+	{
+		return transacoesCanceladas.contains(transacaoId);
+	}
 
+	public boolean foiCanceladaChave(String chaveIdempotencia)
+	{
+		return chaveIdempotencia != null && chavesCanceladas.contains(chaveIdempotencia);
 	}
 }
@@ -0,0 +1,171 @@
+package ecommerce.external.fake;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Roda de temporização (hashed timing wheel) para muitos prazos curtos com uma única thread.
+ *
+ * A roda tem {@code baldes} posições e avança uma posição a cada {@code tick}. Um agendamento cai no balde do tick
+ * do seu prazo, com o número de voltas completas que ainda faltam; a cada tick só o balde atual é percorrido.
+ * Agendar e cancelar não usam trava: novos agendamentos entram em uma fila concorrente que a thread da roda esvazia
+ * a cada tick, e o cancelamento apenas marca o agendamento. A precisão é de um tick.
+ */
+final class RodaDeTemporizacao
+{
+	private static final Logger LOG = LoggerFactory.getLogger(RodaDeTemporizacao.class);
+
+	private final String nome;
+	private final long tickNanos;
+	private final ArrayDeque<Agendamento>[] baldes;
+	private final int mascara;
+	private final ConcurrentLinkedQueue<Agendamento> novos = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean iniciada = new AtomicBoolean();
+
+	private volatile boolean encerrada;
+	private volatile long inicio;
+	private long tick; // só a thread da roda lê e escreve
+
+	@SuppressWarnings("unchecked")
+	RodaDeTemporizacao(String nome, Duration tick, int baldes)
+	{
+		if (Integer.bitCount(baldes) != 1)
+		{
+			throw new IllegalArgumentException("Número de baldes deve ser potência de 2.");
+		}
+		this.nome = nome;
+		this.tickNanos = tick.toNanos();
+		this.baldes = new ArrayDeque[baldes];
+		for (int i = 0; i < baldes; i++)
+		{
+			this.baldes[i] = new ArrayDeque<>();
+		}
+		this.mascara = baldes - 1;
+	}
+
+	/** Agenda {@code acao} para daqui a {@code atraso}; a thread da roda é criada no primeiro agendamento. */
+	Agendamento agendar(Duration atraso, Runnable acao)
+	{
+		iniciar();
+		Agendamento agendamento = new Agendamento(System.nanoTime() + atraso.toNanos(), acao);
+		novos.add(agendamento);
+		return agendamento;
+	}
+
+	void encerrar()
+	{
+		encerrada = true;
+	}
+
+	private void iniciar()
+	{
+		if (iniciada.compareAndSet(false, true))
+		{
+			inicio = System.nanoTime();
+			Thread thread = new Thread(this::girar, nome);
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	private void girar()
+	{
+		while (!encerrada)
+		{
+			long espera = inicio + (tick + 1) * tickNanos - System.nanoTime();
+			if (espera > 0)
+			{
+				LockSupport.parkNanos(this, espera);
+				continue;
+			}
+
+			distribuirNovos();
+			processar(baldes[(int) (tick & mascara)]);
+			tick++;
+		}
+	}
+
+	private void distribuirNovos()
+	{
+		Agendamento agendamento;
+		while ((agendamento = novos.poll()) != null)
+		{
+			if (agendamento.isCancelado())
+			{
+				continue;
+			}
+			long tickDoPrazo = Math.max(tick, (agendamento.prazoNanos - inicio + tickNanos - 1) / tickNanos);
+			agendamento.voltas = (tickDoPrazo - tick) / baldes.length;
+			baldes[(int) (tickDoPrazo & mascara)].add(agendamento);
+		}
+	}
+
+	private void processar(ArrayDeque<Agendamento> balde)
+	{
+		Iterator<Agendamento> agendamentos = balde.iterator();
+		while (agendamentos.hasNext())
+		{
+			Agendamento agendamento = agendamentos.next();
+			if (agendamento.isCancelado())
+			{
+				agendamentos.remove();
+			}
+			else if (agendamento.voltas <= 0)
+			{
+				agendamentos.remove();
+				try
+				{
+					agendamento.disparar();
+				}
+				catch (RuntimeException e)
+				{
+					LOG.error("Falha em ação agendada na roda {}", nome, e);
+				}
+			}
+			else
+			{
+				agendamento.voltas--;
+			}
+		}
+	}
+
+	static final class Agendamento
+	{
+		private final long prazoNanos;
+		private final Runnable acao;
+		private final AtomicBoolean concluido = new AtomicBoolean();
+		private long voltas; // só a thread da roda lê e escreve
+
+		private Agendamento(long prazoNanos, Runnable acao)
+		{
+			this.prazoNanos = prazoNanos;
+			this.acao = acao;
+		}
+
+		/** Cancela o agendamento; retorna {@code false} se a ação já foi disparada ou cancelada. */
+		boolean cancelar()
+		{
+			return concluido.compareAndSet(false, true);
+		}
+
+		boolean isCancelado()
+		{
+			return concluido.get();
+		}
+
+		private void disparar()
+		{
+			if (concluido.compareAndSet(false, true))
+			{
+				acao.run();
+			}
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package ecommerce.external.http;
+
+import java.net.SocketTimeoutException;
+
+import ecommerce.external.TempoEsgotadoException;
+import feign.FeignException;
+import feign.RetryableException;
+
+/**
+ * Converte as falhas das chamadas HTTP nas exceções usadas com os serviços simulados: tempo de leitura esgotado vira
+ * {@link TempoEsgotadoException} e {@code 400} vira {@link IllegalArgumentException} com a mensagem devolvida pelo
+ * serviço; as demais seguem como {@link FeignException}.
+ */
+final class ErrosHttp
+{
+	private ErrosHttp()
+	{
+	}
+
+	static RuntimeException traduzir(FeignException e, String dependencia)
+	{
+		if (e instanceof RetryableException && e.getCause() instanceof SocketTimeoutException)
+		{
+			return new TempoEsgotadoException("Tempo esgotado na chamada ao serviço de " + dependencia + ".");
+		}
+		if (e.status() == 400)
+		{
+			String mensagem = e.contentUTF8();
+			return new IllegalArgumentException(mensagem == null || mensagem.isBlank() ? e.getMessage() : mensagem);
+		}
+		return e;
+	}
+}
@@ -0,0 +1,26 @@
+package ecommerce.external.http;
+
+import java.util.List;
+
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import ecommerce.dto.BaixaEstoqueDTO;
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+
+/** API HTTP do serviço de estoque ({@code ecommerce.estoque.url}). */
+@FeignClient(name = "estoque", url = "${ecommerce.estoque.url}")
+public interface EstoqueClient
+{
+
+	@GetMapping("/estoque/disponibilidade")
+	DisponibilidadeDTO verificarDisponibilidade(@RequestParam("produtosIds") List<Long> produtosIds,
+			@RequestParam("produtosQuantidades") List<Long> produtosQuantidades);
+
+	@PostMapping("/estoque/baixas")
+	EstoqueBaixaDTO darBaixa(@RequestBody BaixaEstoqueDTO baixa);
+}
@@ -0,0 +1,46 @@
+package ecommerce.external.http;
+
+import java.util.List;
+
+import ecommerce.dto.BaixaEstoqueDTO;
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.external.IEstoqueExternal;
+import feign.FeignException;
+
+/** {@link IEstoqueExternal} do serviço de estoque real, pelo {@link EstoqueClient}. */
+public class EstoqueHttp implements IEstoqueExternal
+{
+	private final EstoqueClient client;
+
+	public EstoqueHttp(EstoqueClient client)
+	{
+		this.client = client;
+	}
+
+	@Override
+	public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		try
+		{
+			return client.darBaixa(new BaixaEstoqueDTO(produtosIds, produtosQuantidades));
+		}
+		catch (FeignException e)
+		{
+			throw ErrosHttp.traduzir(e, "estoque");
+		}
+	}
+
+	@Override
+	public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		try
+		{
+			return client.verificarDisponibilidade(produtosIds, produtosQuantidades);
+		}
+		catch (FeignException e)
+		{
+			throw ErrosHttp.traduzir(e, "estoque");
+		}
+	}
+}
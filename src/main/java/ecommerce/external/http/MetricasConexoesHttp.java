@@ -0,0 +1,62 @@
+package ecommerce.external.http;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.DefaultSchemePortResolver;
+import org.apache.hc.client5.http.routing.RoutingSupport;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.pool.ConnPoolControl;
+import org.apache.hc.core5.pool.PoolStats;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Ocupação do pool de conexões HTTP por serviço externo ({@code ecommerce.externo.http.conexoes}, com as tags
+ * {@code cliente} e {@code estado}): conexões emprestadas, ociosas (mantidas abertas para reuso) e requisições
+ * esperando uma conexão, além do máximo por destino. Serviços no mesmo host e porta dividem o mesmo destino do pool.
+ * A latência de cada chamada fica no {@code http.client.requests} dos clientes Feign.
+ */
+public class MetricasConexoesHttp implements MeterBinder
+{
+	private final ConnPoolControl<HttpRoute> pool;
+	private final Map<String, String> urlsPorCliente;
+
+	public MetricasConexoesHttp(ConnPoolControl<HttpRoute> pool, Map<String, String> urlsPorCliente)
+	{
+		this.pool = pool;
+		this.urlsPorCliente = urlsPorCliente;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry)
+	{
+		urlsPorCliente.forEach((cliente, url) -> {
+			HttpRoute destino = destino(url);
+			registrar(registry, cliente, "emprestadas", destino, PoolStats::getLeased);
+			registrar(registry, cliente, "ociosas", destino, PoolStats::getAvailable);
+			registrar(registry, cliente, "aguardando", destino, PoolStats::getPending);
+			registrar(registry, cliente, "maximo", destino, PoolStats::getMax);
+		});
+	}
+
+	private void registrar(MeterRegistry registry, String cliente, String estado, HttpRoute destino,
+			ToDoubleFunction<PoolStats> valor)
+	{
+		Gauge.builder("ecommerce.externo.http.conexoes", pool, p -> valor.applyAsDouble(p.getStats(destino)))
+				.tag("cliente", cliente)
+				.tag("estado", estado)
+				.description("Conexões do pool HTTP com o serviço externo")
+				.register(registry);
+	}
+
+	static HttpRoute destino(String url)
+	{
+		HttpHost host = HttpHost.create(URI.create(url));
+		return new HttpRoute(RoutingSupport.normalize(host, DefaultSchemePortResolver.INSTANCE));
+	}
+}
@@ -0,0 +1,26 @@
+package ecommerce.external.http;
+
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import ecommerce.dto.PagamentoDTO;
+
+/** API HTTP do provedor de pagamento ({@code ecommerce.pagamento.url}). */
+@FeignClient(name = "pagamento", url = "${ecommerce.pagamento.url}")
+public interface PagamentoClient
+{
+
+	@PostMapping("/pagamentos/autorizacoes")
+	PagamentoDTO autorizarPagamento(@RequestParam("clienteId") Long clienteId,
+			@RequestParam("custoTotal") Double custoTotal,
+			@RequestParam("chaveIdempotencia") String chaveIdempotencia);
+
+	@PostMapping("/pagamentos/cancelamentos")
+	void cancelarPagamento(@RequestParam("clienteId") Long clienteId,
+			@RequestParam(name = "transacaoId", required = false) Long transacaoId);
+
+	@PostMapping("/pagamentos/cancelamentos")
+	void cancelarPorChave(@RequestParam("clienteId") Long clienteId,
+			@RequestParam("chaveIdempotencia") String chaveIdempotencia);
+}
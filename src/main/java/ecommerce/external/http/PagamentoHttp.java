@@ -0,0 +1,55 @@
+package ecommerce.external.http;
+
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.external.IPagamentoExternal;
+import feign.FeignException;
+
+/** {@link IPagamentoExternal} do provedor de pagamento real, pelo {@link PagamentoClient}. */
+public class PagamentoHttp implements IPagamentoExternal
+{
+	private final PagamentoClient client;
+
+	public PagamentoHttp(PagamentoClient client)
+	{
+		this.client = client;
+	}
+
+	@Override
+	public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal, String chaveIdempotencia)
+	{
+		try
+		{
+			return client.autorizarPagamento(clienteId, custoTotal, chaveIdempotencia);
+		}
+		catch (FeignException e)
+		{
+			throw ErrosHttp.traduzir(e, "pagamento");
+		}
+	}
+
+	@Override
+	public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId)
+	{
+		try
+		{
+			client.cancelarPagamento(clienteId, pagamentoTransacaoId);
+		}
+		catch (FeignException e)
+		{
+			throw ErrosHttp.traduzir(e, "pagamento");
+		}
+	}
+
+	@Override
+	public void cancelarPorChave(Long clienteId, String chaveIdempotencia)
+	{
+		try
+		{
+			client.cancelarPorChave(clienteId, chaveIdempotencia);
+		}
+		catch (FeignException e)
+		{
+			throw ErrosHttp.traduzir(e, "pagamento");
+		}
+	}
+}
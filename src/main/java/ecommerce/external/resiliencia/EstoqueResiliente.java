@@ -0,0 +1,162 @@
+package ecommerce.external.resiliencia;
+
+import java.util.BitSet;
+import java.util.List;
+
+import ecommerce.dto.BaixaEstoqueDTO;
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
+import ecommerce.external.IBaixaEmLoteEstoqueExternal;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IReservaEstoqueExternal;
+
+/**
+ * {@link IEstoqueExternal} com as chamadas passando por {@link ProtecaoChamadas}.
+ *
+ * Use {@link #decorar}: o decorador aceita as mesmas capacidades do estoque decorado (reservas, baixas em lote, ambas
+ * ou nenhuma), e {@link ecommerce.service.CompraService} e {@link ecommerce.service.LoteBaixasEstoque} continuam
+ * usando esses caminhos.
+ */
+public class EstoqueResiliente implements IEstoqueExternal
+{
+	protected final IEstoqueExternal estoque;
+	protected final ProtecaoChamadas protecao;
+
+	protected EstoqueResiliente(IEstoqueExternal estoque, ProtecaoChamadas protecao)
+	{
+		this.estoque = estoque;
+		this.protecao = protecao;
+	}
+
+	public static EstoqueResiliente decorar(IEstoqueExternal estoque, ProtecaoChamadas protecao)
+	{
+		boolean reservas = estoque instanceof IReservaEstoqueExternal;
+		boolean baixasEmLote = estoque instanceof IBaixaEmLoteEstoqueExternal;
+		if (reservas && baixasEmLote)
+		{
+			return new Completo(estoque, protecao);
+		}
+		if (reservas)
+		{
+			return new ComReserva(estoque, protecao);
+		}
+		if (baixasEmLote)
+		{
+			return new ComBaixaEmLote(estoque, protecao);
+		}
+		return new EstoqueResiliente(estoque, protecao);
+	}
+
+	@Override
+	public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return protecao.executar(() -> estoque.darBaixa(produtosIds, produtosQuantidades));
+	}
+
+	@Override
+	public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return protecao.executar(() -> estoque.verificarDisponibilidade(produtosIds, produtosQuantidades));
+	}
+
+	@Override
+	public boolean darBaixa(long[] produtosIds, long[] produtosQuantidades)
+	{
+		return protecao.executar(() -> estoque.darBaixa(produtosIds, produtosQuantidades));
+	}
+
+	@Override
+	public BitSet verificarIndisponiveis(long[] produtosIds, long[] produtosQuantidades)
+	{
+		return protecao.executar(() -> estoque.verificarIndisponiveis(produtosIds, produtosQuantidades));
+	}
+
+	/** Decorador de um estoque com reservas. */
+	static class ComReserva extends EstoqueResiliente implements IReservaEstoqueExternal
+	{
+		ComReserva(IEstoqueExternal estoque, ProtecaoChamadas protecao)
+		{
+			super(estoque, protecao);
+		}
+
+		@Override
+		public ReservaEstoqueDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades)
+		{
+			return protecao.executar(() -> ((IReservaEstoqueExternal) estoque).reservar(produtosIds,
+					produtosQuantidades));
+		}
+
+		@Override
+		public ReservaEstoqueDTO reservar(long[] produtosIds, long[] produtosQuantidades)
+		{
+			return protecao.executar(() -> ((IReservaEstoqueExternal) estoque).reservar(produtosIds,
+					produtosQuantidades));
+		}
+
+		@Override
+		public EstoqueBaixaDTO confirmar(Long reservaId)
+		{
+			return protecao.executar(() -> ((IReservaEstoqueExternal) estoque).confirmar(reservaId));
+		}
+
+		@Override
+		public List<EstoqueBaixaDTO> confirmarEmLote(List<Long> reservasIds)
+		{
+			return protecao.executar(() -> ((IReservaEstoqueExternal) estoque).confirmarEmLote(reservasIds));
+		}
+
+		@Override
+		public void liberar(Long reservaId)
+		{
+			protecao.executar(() -> {
+				((IReservaEstoqueExternal) estoque).liberar(reservaId);
+				return null;
+			});
+		}
+	}
+
+	/** Decorador de um estoque com baixas em lote. */
+	static final class ComBaixaEmLote extends EstoqueResiliente implements IBaixaEmLoteEstoqueExternal
+	{
+		ComBaixaEmLote(IEstoqueExternal estoque, ProtecaoChamadas protecao)
+		{
+			super(estoque, protecao);
+		}
+
+		@Override
+		public List<EstoqueBaixaDTO> darBaixaEmLote(List<BaixaEstoqueDTO> baixas)
+		{
+			return protecao.executar(() -> ((IBaixaEmLoteEstoqueExternal) estoque).darBaixaEmLote(baixas));
+		}
+
+		@Override
+		public boolean[] darBaixaEmLote(long[][] produtosIds, long[][] produtosQuantidades)
+		{
+			return protecao.executar(
+					() -> ((IBaixaEmLoteEstoqueExternal) estoque).darBaixaEmLote(produtosIds, produtosQuantidades));
+		}
+	}
+
+	/** Decorador de um estoque com reservas e baixas em lote. */
+	static final class Completo extends ComReserva implements IBaixaEmLoteEstoqueExternal
+	{
+		Completo(IEstoqueExternal estoque, ProtecaoChamadas protecao)
+		{
+			super(estoque, protecao);
+		}
+
+		@Override
+		public List<EstoqueBaixaDTO> darBaixaEmLote(List<BaixaEstoqueDTO> baixas)
+		{
+			return protecao.executar(() -> ((IBaixaEmLoteEstoqueExternal) estoque).darBaixaEmLote(baixas));
+		}
+
+		@Override
+		public boolean[] darBaixaEmLote(long[][] produtosIds, long[][] produtosQuantidades)
+		{
+			return protecao.executar(
+					() -> ((IBaixaEmLoteEstoqueExternal) estoque).darBaixaEmLote(produtosIds, produtosQuantidades));
+		}
+	}
+}
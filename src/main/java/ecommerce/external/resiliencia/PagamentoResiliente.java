@@ -0,0 +1,45 @@
+package ecommerce.external.resiliencia;
+
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.external.IPagamentoExternal;
+
+/**
+ * {@link IPagamentoExternal} com as chamadas passando por {@link ProtecaoChamadas}. Uma autorização abandonada por
+ * tempo esgotado continua em andamento no provedor; quem chamou a reconcilia pela chave de idempotência
+ * ({@link #cancelarPorChave}).
+ */
+public class PagamentoResiliente implements IPagamentoExternal
+{
+	private final IPagamentoExternal pagamento;
+	private final ProtecaoChamadas protecao;
+
+	public PagamentoResiliente(IPagamentoExternal pagamento, ProtecaoChamadas protecao)
+	{
+		this.pagamento = pagamento;
+		this.protecao = protecao;
+	}
+
+	@Override
+	public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal, String chaveIdempotencia)
+	{
+		return protecao.executar(() -> pagamento.autorizarPagamento(clienteId, custoTotal, chaveIdempotencia));
+	}
+
+	@Override
+	public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId)
+	{
+		protecao.executar(() -> {
+			pagamento.cancelarPagamento(clienteId, pagamentoTransacaoId);
+			return null;
+		});
+	}
+
+	@Override
+	public void cancelarPorChave(Long clienteId, String chaveIdempotencia)
+	{
+		protecao.executar(() -> {
+			pagamento.cancelarPorChave(clienteId, chaveIdempotencia);
+			return null;
+		});
+	}
+}
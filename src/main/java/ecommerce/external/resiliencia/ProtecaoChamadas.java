@@ -0,0 +1,386 @@
+package ecommerce.external.resiliencia;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import ecommerce.external.ChamadaRecusadaException;
+import ecommerce.external.TempoEsgotadoException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Proteção das chamadas a um serviço externo: limite de chamadas simultâneas (bulkhead), tempo limite por chamada e
+ * circuito que recusa as chamadas enquanto o serviço falha.
+ *
+ * <ul>
+ * <li>Com {@code concorrenciaMaxima} chamadas em andamento, as seguintes são recusadas na hora com
+ * {@link ChamadaRecusadaException}, em vez de esperar: um serviço lento prende no máximo esse número de threads.</li>
+ * <li>Cada chamada roda em uma thread da própria proteção; quem chamou espera até {@code tempoLimite} e recebe
+ * {@link TempoEsgotadoException}. A chamada atrasada é interrompida e continua ocupando sua vaga até terminar de
+ * fato.</li>
+ * <li>Depois de {@code falhasParaAbrir} falhas seguidas (exceções, inclusive tempo esgotado; exceto
+ * {@link IllegalArgumentException}, que é erro de quem chamou) o circuito abre e recusa as chamadas por
+ * {@code tempoAberto}. Em seguida uma única chamada de teste passa: se der certo, o circuito fecha; se falhar, abre
+ * de novo.</li>
+ * </ul>
+ *
+ * Respostas de negócio negativas (pagamento recusado, estoque insuficiente) não são falhas.
+ */
+public class ProtecaoChamadas implements MeterBinder
+{
+	/** Estados do circuito, em ordem de gravidade (valor da métrica {@code ecommerce.externo.circuito.estado}). */
+	public enum EstadoCircuito
+	{
+		FECHADO, MEIO_ABERTO, ABERTO
+	}
+
+	/**
+	 * @param concorrenciaMaxima chamadas simultâneas permitidas
+	 * @param tempoLimite        espera máxima por uma chamada
+	 * @param falhasParaAbrir    falhas seguidas que abrem o circuito
+	 * @param tempoAberto        tempo em que o circuito aberto recusa chamadas antes da chamada de teste
+	 */
+	public record Configuracao(int concorrenciaMaxima, Duration tempoLimite, int falhasParaAbrir,
+			Duration tempoAberto)
+	{
+		public Configuracao
+		{
+			if (concorrenciaMaxima < 1 || falhasParaAbrir < 1)
+			{
+				throw new IllegalArgumentException("Concorrência máxima e falhas para abrir devem ser maiores que zero.");
+			}
+			if (tempoLimite.isNegative() || tempoLimite.isZero() || tempoAberto.isNegative())
+			{
+				throw new IllegalArgumentException("Tempo limite deve ser positivo e tempo aberto não pode ser negativo.");
+			}
+		}
+	}
+
+	private static final int PENDENTE = 0;
+	private static final int RODANDO = 1;
+	private static final int ABANDONADA = 2;
+
+	private final String dependencia;
+	private final Configuracao configuracao;
+	private final LongSupplier relogio;
+	private final Semaphore vagas;
+	private final ExecutorService executor;
+
+	private final ReentrantLock transicoes = new ReentrantLock();
+	private volatile EstadoCircuito estado = EstadoCircuito.FECHADO;
+	private volatile int falhasSeguidas; // alterado só com transicoes
+	private long abertoAte; // protegido por transicoes
+
+	private final LongAdder recusadasPorConcorrencia = new LongAdder();
+	private final LongAdder recusadasPorCircuito = new LongAdder();
+	private final LongAdder temposEsgotados = new LongAdder();
+	private final LongAdder falhas = new LongAdder();
+	private final LongAdder aberturas = new LongAdder();
+
+	public ProtecaoChamadas(String dependencia, Configuracao configuracao, boolean threadsVirtuais)
+	{
+		this(dependencia, configuracao, threadsVirtuais, System::nanoTime);
+	}
+
+	ProtecaoChamadas(String dependencia, Configuracao configuracao, boolean threadsVirtuais, LongSupplier relogio)
+	{
+		this.dependencia = dependencia;
+		this.configuracao = configuracao;
+		this.relogio = relogio;
+		this.vagas = new Semaphore(configuracao.concorrenciaMaxima());
+		this.executor = threadsVirtuais
+				? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("chamada-" + dependencia + "-", 1).factory())
+				: criarPool(dependencia, configuracao.concorrenciaMaxima());
+	}
+
+	private static ExecutorService criarPool(String dependencia, int threads)
+	{
+		AtomicInteger sequencia = new AtomicInteger();
+		ThreadFactory fabrica = tarefa -> {
+			Thread thread = new Thread(tarefa, "chamada-" + dependencia + "-" + sequencia.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		// as vagas limitam as tarefas a uma por thread: a fila só guarda tarefas por instantes
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), fabrica);
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+
+	public <T> T executar(Callable<T> chamada)
+	{
+		if (!vagas.tryAcquire())
+		{
+			recusadasPorConcorrencia.increment();
+			throw new ChamadaRecusadaException(
+					"Serviço de " + dependencia + " indisponível (limite de chamadas simultâneas).");
+		}
+		if (!permitirPeloCircuito())
+		{
+			vagas.release();
+			recusadasPorCircuito.increment();
+			throw new ChamadaRecusadaException("Serviço de " + dependencia + " indisponível (circuito aberto).");
+		}
+
+		Tarefa<T> tarefa = new Tarefa<>(chamada);
+		try
+		{
+			executor.execute(tarefa);
+		}
+		catch (RejectedExecutionException e)
+		{
+			tarefa.abandonar();
+			throw new ChamadaRecusadaException("Serviço de " + dependencia + " indisponível (encerrando).");
+		}
+
+		try
+		{
+			T resultado = tarefa.get(configuracao.tempoLimite().toNanos(), TimeUnit.NANOSECONDS);
+			registrarSucesso();
+			return resultado;
+		}
+		catch (TimeoutException e)
+		{
+			tarefa.abandonar();
+			temposEsgotados.increment();
+			registrarFalha();
+			throw new TempoEsgotadoException("Tempo esgotado na chamada ao serviço de " + dependencia + ".");
+		}
+		catch (InterruptedException e)
+		{
+			tarefa.abandonar();
+			liberarChamadaDeTeste();
+			Thread.currentThread().interrupt();
+			throw new CompletionException("Chamada interrompida.", e);
+		}
+		catch (ExecutionException e)
+		{
+			Throwable causa = e.getCause();
+			if (causa instanceof IllegalArgumentException)
+			{
+				registrarSucesso(); // o serviço respondeu; o erro é de quem chamou
+			}
+			else
+			{
+				registrarFalha();
+			}
+			if (causa instanceof RuntimeException excecao)
+			{
+				throw excecao;
+			}
+			if (causa instanceof Error erro)
+			{
+				throw erro;
+			}
+			throw new CompletionException(causa);
+		}
+	}
+
+	private boolean permitirPeloCircuito()
+	{
+		if (estado == EstadoCircuito.FECHADO)
+		{
+			return true;
+		}
+		transicoes.lock();
+		try
+		{
+			if (estado == EstadoCircuito.FECHADO)
+			{
+				return true;
+			}
+			if (estado == EstadoCircuito.ABERTO && relogio.getAsLong() - abertoAte >= 0)
+			{
+				estado = EstadoCircuito.MEIO_ABERTO; // esta é a chamada de teste
+				return true;
+			}
+			return false;
+		}
+		finally
+		{
+			transicoes.unlock();
+		}
+	}
+
+	private void registrarSucesso()
+	{
+		if (estado == EstadoCircuito.FECHADO && falhasSeguidas == 0)
+		{
+			return;
+		}
+		transicoes.lock();
+		try
+		{
+			falhasSeguidas = 0;
+			estado = EstadoCircuito.FECHADO;
+		}
+		finally
+		{
+			transicoes.unlock();
+		}
+	}
+
+	private void registrarFalha()
+	{
+		falhas.increment();
+		transicoes.lock();
+		try
+		{
+			falhasSeguidas++;
+			if (estado == EstadoCircuito.MEIO_ABERTO || falhasSeguidas >= configuracao.falhasParaAbrir())
+			{
+				if (estado != EstadoCircuito.ABERTO)
+				{
+					aberturas.increment();
+				}
+				estado = EstadoCircuito.ABERTO;
+				abertoAte = relogio.getAsLong() + configuracao.tempoAberto().toNanos();
+			}
+		}
+		finally
+		{
+			transicoes.unlock();
+		}
+	}
+
+	/** Chamada de teste abandonada sem resultado: o circuito volta a aberto e a próxima chamada testa de novo. */
+	private void liberarChamadaDeTeste()
+	{
+		transicoes.lock();
+		try
+		{
+			if (estado == EstadoCircuito.MEIO_ABERTO)
+			{
+				estado = EstadoCircuito.ABERTO;
+			}
+		}
+		finally
+		{
+			transicoes.unlock();
+		}
+	}
+
+	public EstadoCircuito getEstado()
+	{
+		return estado;
+	}
+
+	public int getEmAndamento()
+	{
+		return configuracao.concorrenciaMaxima() - vagas.availablePermits();
+	}
+
+	public long getRecusadasPorConcorrencia()
+	{
+		return recusadasPorConcorrencia.sum();
+	}
+
+	public long getRecusadasPorCircuito()
+	{
+		return recusadasPorCircuito.sum();
+	}
+
+	public long getTemposEsgotados()
+	{
+		return temposEsgotados.sum();
+	}
+
+	@PreDestroy
+	public void encerrar()
+	{
+		executor.shutdownNow();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry)
+	{
+		Gauge.builder("ecommerce.externo.circuito.estado", this, p -> p.getEstado().ordinal())
+				.tag("dependencia", dependencia)
+				.description("Estado do circuito (0 = fechado, 1 = meio aberto, 2 = aberto)")
+				.register(registry);
+		Gauge.builder("ecommerce.externo.em.andamento", this, ProtecaoChamadas::getEmAndamento)
+				.tag("dependencia", dependencia)
+				.description("Chamadas ao serviço externo em andamento")
+				.register(registry);
+		FunctionCounter.builder("ecommerce.externo.recusadas", recusadasPorConcorrencia, LongAdder::sum)
+				.tags("dependencia", dependencia, "motivo", "concorrencia")
+				.description("Chamadas recusadas sem chegar ao serviço externo")
+				.register(registry);
+		FunctionCounter.builder("ecommerce.externo.recusadas", recusadasPorCircuito, LongAdder::sum)
+				.tags("dependencia", dependencia, "motivo", "circuito")
+				.description("Chamadas recusadas sem chegar ao serviço externo")
+				.register(registry);
+		FunctionCounter.builder("ecommerce.externo.tempo.esgotado", temposEsgotados, LongAdder::sum)
+				.tag("dependencia", dependencia)
+				.description("Chamadas abandonadas por tempo limite")
+				.register(registry);
+		FunctionCounter.builder("ecommerce.externo.falhas", falhas, LongAdder::sum)
+				.tag("dependencia", dependencia)
+				.description("Chamadas que falharam (contam para abrir o circuito)")
+				.register(registry);
+		FunctionCounter.builder("ecommerce.externo.circuito.aberturas", aberturas, LongAdder::sum)
+				.tag("dependencia", dependencia)
+				.description("Vezes em que o circuito abriu")
+				.register(registry);
+	}
+
+	/**
+	 * Chamada que devolve sua vaga quando termina de fato. Abandonada antes de começar, não roda e a vaga é devolvida
+	 * por quem abandonou; abandonada durante a execução, é interrompida e devolve a vaga ao terminar.
+	 */
+	private final class Tarefa<T> extends FutureTask<T>
+	{
+		private final AtomicInteger situacao = new AtomicInteger(PENDENTE);
+
+		Tarefa(Callable<T> chamada)
+		{
+			super(chamada);
+		}
+
+		@Override
+		public void run()
+		{
+			if (!situacao.compareAndSet(PENDENTE, RODANDO))
+			{
+				return;
+			}
+			try
+			{
+				super.run();
+			}
+			finally
+			{
+				vagas.release();
+			}
+		}
+
+		void abandonar()
+		{
+			if (situacao.compareAndSet(PENDENTE, ABANDONADA))
+			{
+				vagas.release();
+			}
+			cancel(true);
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package ecommerce.repository;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import ecommerce.entity.CancelamentoPagamentoPendente;
+
+@Repository
+public interface CancelamentoPagamentoRepository extends JpaRepository<CancelamentoPagamentoPendente, Long>
+{
+
+	boolean existsByTransacaoId(Long transacaoId);
+
+	boolean existsByChaveIdempotencia(String chaveIdempotencia);
+
+	/** Cancelamentos com entrega já devida, os mais antigos primeiro. */
+	List<CancelamentoPagamentoPendente> findByProximaTentativaLessThanEqualOrderByProximaTentativaAsc(Instant agora,
+			Pageable pagina);
+}
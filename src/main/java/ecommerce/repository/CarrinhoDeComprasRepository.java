@@ -1,16 +1,46 @@
 package ecommerce.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import ecommerce.entity.CarrinhoDeCompras;
 import ecommerce.entity.Cliente;
+import ecommerce.entity.LinhaPrecificacao;
 
 @Repository
 public interface CarrinhoDeComprasRepository extends JpaRepository<CarrinhoDeCompras, Long>
 {
 
 	Optional<CarrinhoDeCompras> findByIdAndCliente(Long id, Cliente cliente);
+
+	boolean existsByIdAndClienteId(Long id, Long clienteId);
+
+	/**
+	 * Carrega o carrinho do cliente com cliente, itens e produtos já inicializados, em uma única consulta
+	 * (sem uma consulta por item ou produto ao percorrer os itens).
+	 */
+	@Query("select c from CarrinhoDeCompras c left join fetch c.cliente left join fetch c.itens i "
+			+ "left join fetch i.produto where c.id = :id and c.cliente = :cliente")
+	Optional<CarrinhoDeCompras> findComItensByIdAndCliente(@Param("id") Long id, @Param("cliente") Cliente cliente);
+
+	/**
+	 * Linhas do carrinho do cliente só com as colunas usadas na precificação, em uma única consulta e sem entidades
+	 * gerenciadas. Vazia quando o carrinho não existe, não é do cliente ou não tem itens.
+	 */
+	@Query("select new ecommerce.entity.LinhaPrecificacao(cl.regiao, cl.tipo, p.id, p.versao, i.quantidade, "
+			+ "p.preco, p.pesoFisico, p.comprimento, p.largura, p.altura, p.fragil, p.tipo) "
+			+ "from CarrinhoDeCompras c join c.cliente cl join c.itens i left join i.produto p "
+			+ "where c.id = :id and cl.id = :clienteId order by i.id")
+	List<LinhaPrecificacao> findPrecificacao(@Param("id") Long id, @Param("clienteId") Long clienteId);
+
+	/** Carrega os carrinhos com cliente, itens e produtos já inicializados (uma única consulta). */
+	@Query("select distinct c from CarrinhoDeCompras c left join fetch c.cliente left join fetch c.itens i "
+			+ "left join fetch i.produto where c.id in :ids")
+	List<CarrinhoDeCompras> findAllComItensByIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,250 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.LinhaPrecificacao;
+import ecommerce.entity.PrecificacaoCarrinho;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Custos totais já calculados, para que cotações repetidas de um carrinho inalterado (e o
+ * {@link CompraService#finalizarCompra} seguinte) não refaçam a precificação.
+ *
+ * A chave é o conteúdo do carrinho (id, quantidade e versão do produto de cada item, em ordem de produto), a região, o
+ * tipo de cliente e a geração da {@link TabelaPrecificacao}. A ordem dos itens não entra na chave: a cotação
+ * ({@link CotacaoService}, com o carrinho carregado) e o {@link CompraService#finalizarCompra} (com o retrato de
+ * precificação) consultam e guardam a mesma entrada.
+ *
+ * Como a versão do produto muda a cada alteração persistida, preço ou dimensões novos geram outra chave, e a cotação
+ * da versão anterior não é mais consultada: ela sai do cache quando faltar espaço. Carrinhos com produtos sem id
+ * (ainda não persistidos) não são guardados.
+ *
+ * O cache é limitado a {@code ecommerce.precificacao.cache-cotacoes.capacidade} entradas (0 desabilita), com remoção
+ * aproximada da menos usada recentemente ({@link MapaLruAmostrado}): consultas e inclusões não disputam uma trava.
+ */
+@Component
+public class CacheCotacoes implements MeterBinder
+{
+	private final int capacidade;
+	private final MapaLruAmostrado<ChaveCotacao, BigDecimal> cotacoes;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	@Autowired
+	public CacheCotacoes(@Value("${ecommerce.precificacao.cache-cotacoes.capacidade:10000}") int capacidade)
+	{
+		this.capacidade = capacidade;
+		this.cotacoes = new MapaLruAmostrado<>(Math.max(capacidade, 0));
+	}
+
+	/** Cache desabilitado: nenhuma cotação é guardada. */
+	public static CacheCotacoes desabilitado()
+	{
+		return new CacheCotacoes(0);
+	}
+
+	/** Chave do carrinho, ou {@code null} quando o cache está desabilitado ou algum produto não tem id. */
+	ChaveCotacao chave(CarrinhoDeCompras carrinho, Regiao regiao, TipoCliente tipoCliente, TabelaPrecificacao tabela)
+	{
+		if (capacidade <= 0 || carrinho == null || carrinho.getItens() == null)
+		{
+			return null;
+		}
+
+		List<ItemCompra> itens = carrinho.getItens();
+		long[] conteudo = new long[itens.size() * 3];
+		int i = 0;
+		for (ItemCompra item : itens)
+		{
+			Produto produto = item.getProduto();
+			if (produto.getId() == null)
+			{
+				return null;
+			}
+			conteudo[i++] = produto.getId();
+			conteudo[i++] = item.getQuantidade();
+			conteudo[i++] = produto.getVersao();
+		}
+		return new ChaveCotacao(ordenarPorProduto(conteudo), regiao, tipoCliente, tabela.getGeracao());
+	}
+
+	/** Chave do retrato de precificação, igual à do carrinho com as mesmas linhas. */
+	ChaveCotacao chave(PrecificacaoCarrinho precificacao, TabelaPrecificacao tabela)
+	{
+		if (capacidade <= 0)
+		{
+			return null;
+		}
+
+		List<LinhaPrecificacao> linhas = precificacao.linhas();
+		long[] conteudo = new long[linhas.size() * 3];
+		int i = 0;
+		for (LinhaPrecificacao linha : linhas)
+		{
+			if (linha.produtoId() == null || linha.versao() == null)
+			{
+				return null;
+			}
+			conteudo[i++] = linha.produtoId();
+			conteudo[i++] = linha.quantidade();
+			conteudo[i++] = linha.versao();
+		}
+		return new ChaveCotacao(ordenarPorProduto(conteudo), precificacao.regiao(), precificacao.tipoCliente(),
+				tabela.getGeracao());
+	}
+
+	/** Ordena as triplas (id, quantidade, versão) por id, depois quantidade e versão; carrinhos têm poucas linhas. */
+	static long[] ordenarPorProduto(long[] conteudo)
+	{
+		for (int i = 3; i < conteudo.length; i += 3)
+		{
+			long id = conteudo[i], quantidade = conteudo[i + 1], versao = conteudo[i + 2];
+			int j = i - 3;
+			while (j >= 0 && comparar(conteudo, j, id, quantidade, versao) > 0)
+			{
+				System.arraycopy(conteudo, j, conteudo, j + 3, 3);
+				j -= 3;
+			}
+			conteudo[j + 3] = id;
+			conteudo[j + 4] = quantidade;
+			conteudo[j + 5] = versao;
+		}
+		return conteudo;
+	}
+
+	private static int comparar(long[] conteudo, int posicao, long id, long quantidade, long versao)
+	{
+		int comparacao = Long.compare(conteudo[posicao], id);
+		if (comparacao == 0)
+		{
+			comparacao = Long.compare(conteudo[posicao + 1], quantidade);
+		}
+		return comparacao != 0 ? comparacao : Long.compare(conteudo[posicao + 2], versao);
+	}
+
+	BigDecimal obter(ChaveCotacao chave)
+	{
+		BigDecimal custoTotal = cotacoes.obter(chave);
+		if (custoTotal == null)
+		{
+			misses.increment();
+		}
+		else
+		{
+			hits.increment();
+		}
+		return custoTotal;
+	}
+
+	void guardar(ChaveCotacao chave, BigDecimal custoTotal)
+	{
+		cotacoes.guardar(chave, custoTotal);
+	}
+
+	public int tamanho()
+	{
+		return cotacoes.tamanho();
+	}
+
+	public long getHits()
+	{
+		return hits.sum();
+	}
+
+	public long getMisses()
+	{
+		return misses.sum();
+	}
+
+	public long getRemocoes()
+	{
+		return cotacoes.getRemocoes();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry)
+	{
+		FunctionCounter.builder("ecommerce.cotacao.cache", hits, LongAdder::sum)
+				.tag("resultado", "hit")
+				.description("Consultas ao cache de cotações")
+				.register(registry);
+		FunctionCounter.builder("ecommerce.cotacao.cache", misses, LongAdder::sum)
+				.tag("resultado", "miss")
+				.description("Consultas ao cache de cotações")
+				.register(registry);
+		FunctionCounter.builder("ecommerce.cotacao.cache.remocoes", this, CacheCotacoes::getRemocoes)
+				.description("Cotações removidas do cache cheio para dar lugar a outras")
+				.register(registry);
+		Gauge.builder("ecommerce.cotacao.cache.tamanho", this, CacheCotacoes::tamanho)
+				.description("Cotações em cache")
+				.register(registry);
+		Gauge.builder("ecommerce.cotacao.cache.taxa.acerto", this, CacheCotacoes::taxaDeAcerto)
+				.description("Fração das consultas atendidas pelo cache")
+				.register(registry);
+	}
+
+	private double taxaDeAcerto()
+	{
+		long acertos = hits.sum();
+		long total = acertos + misses.sum();
+		return total == 0 ? 0 : (double) acertos / total;
+	}
+
+	static final class ChaveCotacao
+	{
+		private final long[] conteudo;
+		private final Regiao regiao;
+		private final TipoCliente tipoCliente;
+		private final long geracaoRegras;
+		private final int hash;
+
+		ChaveCotacao(long[] conteudo, Regiao regiao, TipoCliente tipoCliente, long geracaoRegras)
+		{
+			this.conteudo = conteudo;
+			this.regiao = regiao;
+			this.tipoCliente = tipoCliente;
+			this.geracaoRegras = geracaoRegras;
+			int h = Arrays.hashCode(conteudo);
+			h = 31 * h + (regiao == null ? 0 : regiao.hashCode());
+			h = 31 * h + (tipoCliente == null ? 0 : tipoCliente.hashCode());
+			this.hash = 31 * h + Long.hashCode(geracaoRegras);
+		}
+
+		@Override
+		public boolean equals(Object outro)
+		{
+			if (this == outro)
+			{
+				return true;
+			}
+			if (!(outro instanceof ChaveCotacao chave))
+			{
+				return false;
+			}
+			return hash == chave.hash && geracaoRegras == chave.geracaoRegras && regiao == chave.regiao
+					&& tipoCliente == chave.tipoCliente && Arrays.equals(conteudo, chave.conteudo);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+	}
+}
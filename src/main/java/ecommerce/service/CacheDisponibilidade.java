@@ -0,0 +1,364 @@
+package ecommerce.service;
+
+import java.time.Duration;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import ecommerce.external.ItensEstoque;
+import ecommerce.external.ItensEstoque.Totais;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Disponibilidade recente de cada produto, guardada por {@code ecommerce.estoque.cache-disponibilidade.ttl}, para
+ * que a compra não consulte o estoque remoto a cada pedido de um produto já esgotado.
+ *
+ * Para cada produto ficam dois limites aprendidos com as verificações: a maior quantidade já vista disponível e a
+ * menor já vista indisponível. Um pedido com algum produto em quantidade igual ou acima da indisponível é recusado
+ * na hora; um pedido com todos os produtos em quantidades já vistas disponíveis dispensa a verificação; os demais
+ * consultam o estoque. As baixas ajustam os limites: uma baixa aplicada reduz ambos pela quantidade baixada, e uma
+ * recusada apaga a disponibilidade dos produtos do pedido.
+ *
+ * O cache só antecipa a resposta da verificação: a baixa no estoque continua sendo a decisão final, e uma
+ * disponibilidade desatualizada termina, no pior caso, na baixa recusada e no pagamento cancelado. Decisões do cache
+ * que a baixa desmentiu são contadas como obsoletas. Com TTL zero, o cache fica desabilitado.
+ */
+@Component
+public class CacheDisponibilidade implements MeterBinder
+{
+	private static final long SEM_LIMITE = Long.MAX_VALUE;
+
+	private final long ttlNanos;
+	private final int capacidade;
+	private final LongSupplier relogio;
+	private final ConcurrentHashMap<Long, Entrada> produtos = new ConcurrentHashMap<>();
+
+	private final LongAdder disponiveis = new LongAdder();
+	private final LongAdder indisponiveis = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder obsoletas = new LongAdder();
+
+	@Autowired
+	public CacheDisponibilidade(@Value("${ecommerce.estoque.cache-disponibilidade.ttl:PT1S}") Duration ttl,
+			@Value("${ecommerce.estoque.cache-disponibilidade.capacidade:100000}") int capacidade)
+	{
+		this(ttl, capacidade, System::nanoTime);
+	}
+
+	CacheDisponibilidade(Duration ttl, int capacidade, LongSupplier relogio)
+	{
+		if (ttl.isNegative() || capacidade < 0)
+		{
+			throw new IllegalArgumentException("TTL e capacidade não podem ser negativos.");
+		}
+		this.ttlNanos = capacidade == 0 ? 0 : ttl.toNanos();
+		this.capacidade = capacidade;
+		this.relogio = relogio;
+	}
+
+	/** Cache desabilitado: toda verificação vai ao estoque. */
+	public static CacheDisponibilidade desabilitado()
+	{
+		return new CacheDisponibilidade(Duration.ZERO, 0);
+	}
+
+	/**
+	 * Posições indisponíveis do pedido segundo o cache (vazio quando tudo está disponível), ou {@code null} quando o
+	 * cache não sabe responder e o estoque precisa ser consultado.
+	 */
+	public BitSet consultar(long[] produtosIds, long[] produtosQuantidades)
+	{
+		return decidir(produtosIds, produtosQuantidades, true);
+	}
+
+	/**
+	 * Só a parte negativa de {@link #consultar}: posições de produtos sabidamente indisponíveis, ou {@code null}, para
+	 * quem vai ao estoque de qualquer jeito (reserva) e só quer evitar a chamada para produtos esgotados.
+	 */
+	public BitSet consultarIndisponiveis(long[] produtosIds, long[] produtosQuantidades)
+	{
+		return decidir(produtosIds, produtosQuantidades, false);
+	}
+
+	private BitSet decidir(long[] produtosIds, long[] produtosQuantidades, boolean aceitaDisponivel)
+	{
+		if (ttlNanos == 0)
+		{
+			return null;
+		}
+		Totais totais = Totais.de(produtosIds, produtosQuantidades);
+		long agora = relogio.getAsLong();
+		BitSet recusadas = new BitSet(produtosIds.length);
+		boolean todosDisponiveis = true;
+		for (int i = 0; i < totais.tamanho; i++)
+		{
+			Entrada entrada = produtos.get(totais.ids[i]);
+			long quantidade = totais.quantidades[i];
+			if (entrada != null && quantidade >= entrada.indisponivel(agora))
+			{
+				marcar(recusadas, produtosIds, totais.ids[i]);
+			}
+			todosDisponiveis &= entrada != null && quantidade <= entrada.disponivel(agora);
+		}
+
+		if (!recusadas.isEmpty())
+		{
+			indisponiveis.increment();
+			return recusadas;
+		}
+		if (todosDisponiveis && aceitaDisponivel)
+		{
+			disponiveis.increment();
+			return recusadas;
+		}
+		misses.increment();
+		return null;
+	}
+
+	/**
+	 * Guarda o resultado de uma verificação feita no estoque (posições indisponíveis do pedido). Uma recusa sem os
+	 * produtos identificados (ver {@link ItensEstoque#indisponiveis}) não cria entradas, pois não diz qual produto
+	 * falta: como uma baixa recusada, só apaga a disponibilidade dos produtos do pedido já em cache.
+	 */
+	public void registrarVerificacao(long[] produtosIds, long[] produtosQuantidades, BitSet posicoesIndisponiveis)
+	{
+		if (ttlNanos == 0)
+		{
+			return;
+		}
+		Totais totais = Totais.de(produtosIds, produtosQuantidades);
+		if (!ItensEstoque.identificaProdutos(produtosIds, posicoesIndisponiveis))
+		{
+			ajustarExistentes(totais, relogio.getAsLong(), false);
+			return;
+		}
+		boolean[] faltando = new boolean[totais.tamanho];
+		for (int i = posicoesIndisponiveis.nextSetBit(0); i >= 0 && i < produtosIds.length;
+				i = posicoesIndisponiveis.nextSetBit(i + 1))
+		{
+			faltando[totais.posicao(produtosIds[i])] = true;
+		}
+
+		long agora = relogio.getAsLong();
+		for (int i = 0; i < totais.tamanho; i++)
+		{
+			long quantidade = totais.quantidades[i];
+			Entrada verificada = faltando[i]
+					? new Entrada(0, agora, quantidade, agora + ttlNanos)
+					: new Entrada(quantidade, agora + ttlNanos, SEM_LIMITE, agora);
+			atualizar(totais.ids[i], entrada -> entrada == null ? verificada : entrada.combinar(verificada, agora));
+		}
+	}
+
+	/**
+	 * Ajusta os produtos já em cache com o resultado de uma baixa no estoque. Não cria entradas: uma baixa recusada
+	 * não diz quais produtos faltaram.
+	 */
+	public void registrarBaixa(long[] produtosIds, long[] produtosQuantidades, boolean sucesso)
+	{
+		if (ttlNanos == 0)
+		{
+			return;
+		}
+		Totais totais = Totais.de(produtosIds, produtosQuantidades);
+		long agora = relogio.getAsLong();
+		boolean diziaDisponivel = true;
+		boolean diziaIndisponivel = false;
+		for (int i = 0; i < totais.tamanho; i++)
+		{
+			Entrada entrada = produtos.get(totais.ids[i]);
+			diziaDisponivel &= entrada != null && totais.quantidades[i] <= entrada.disponivel(agora);
+			diziaIndisponivel |= entrada != null && totais.quantidades[i] >= entrada.indisponivel(agora);
+		}
+		if (sucesso ? diziaIndisponivel : diziaDisponivel)
+		{
+			obsoletas.increment();
+		}
+		ajustarExistentes(totais, agora, sucesso);
+	}
+
+	/** Baixa aplicada reduz os limites dos produtos já em cache; recusada apaga a disponibilidade deles. */
+	private void ajustarExistentes(Totais totais, long agora, boolean baixados)
+	{
+		for (int i = 0; i < totais.tamanho; i++)
+		{
+			long quantidade = totais.quantidades[i];
+			produtos.computeIfPresent(totais.ids[i], (id, entrada) -> {
+				Entrada ajustada = baixados ? entrada.baixada(quantidade, agora) : entrada.semDisponivel();
+				return ajustada.vencida(agora) ? null : ajustada;
+			});
+		}
+	}
+
+	/**
+	 * Esquece os produtos de uma baixa sem resultado (tempo esgotado, falha do serviço): ela pode ter sido aplicada, ou
+	 * ainda ser, e nenhum dos limites guardados vale mais.
+	 */
+	public void esquecer(long[] produtosIds)
+	{
+		if (ttlNanos == 0)
+		{
+			return;
+		}
+		for (long produtoId : produtosIds)
+		{
+			produtos.remove(produtoId);
+		}
+	}
+
+	/** Remove as entradas vencidas. */
+	public void removerExpiradas()
+	{
+		long agora = relogio.getAsLong();
+		produtos.values().removeIf(entrada -> entrada.vencida(agora));
+	}
+
+	private void atualizar(long produtoId, UnaryOperator<Entrada> atualizacao)
+	{
+		if (produtos.size() >= capacidade && !produtos.containsKey(produtoId))
+		{
+			removerExpiradas();
+			if (produtos.size() >= capacidade)
+			{
+				return; // cheio: o produto fica fora do cache
+			}
+		}
+		long agora = relogio.getAsLong();
+		produtos.compute(produtoId, (id, entrada) -> {
+			Entrada atualizada = atualizacao.apply(entrada);
+			return atualizada.vencida(agora) ? null : atualizada;
+		});
+	}
+
+	private static void marcar(BitSet posicoes, long[] produtosIds, long produtoId)
+	{
+		for (int i = 0; i < produtosIds.length; i++)
+		{
+			if (produtosIds[i] == produtoId)
+			{
+				posicoes.set(i);
+			}
+		}
+	}
+
+	public int tamanho()
+	{
+		return produtos.size();
+	}
+
+	public long getHits()
+	{
+		return disponiveis.sum() + indisponiveis.sum();
+	}
+
+	public long getMisses()
+	{
+		return misses.sum();
+	}
+
+	public long getObsoletas()
+	{
+		return obsoletas.sum();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry)
+	{
+		FunctionCounter.builder("ecommerce.estoque.cache-disponibilidade", disponiveis, LongAdder::sum)
+				.tag("resultado", "disponivel")
+				.description("Verificações de disponibilidade respondidas pelo cache ou enviadas ao estoque")
+				.register(registry);
+		FunctionCounter.builder("ecommerce.estoque.cache-disponibilidade", indisponiveis, LongAdder::sum)
+				.tag("resultado", "indisponivel")
+				.description("Verificações de disponibilidade respondidas pelo cache ou enviadas ao estoque")
+				.register(registry);
+		FunctionCounter.builder("ecommerce.estoque.cache-disponibilidade", misses, LongAdder::sum)
+				.tag("resultado", "miss")
+				.description("Verificações de disponibilidade respondidas pelo cache ou enviadas ao estoque")
+				.register(registry);
+		FunctionCounter.builder("ecommerce.estoque.cache-disponibilidade.obsoletas", obsoletas, LongAdder::sum)
+				.description("Decisões do cache de disponibilidade desmentidas pela baixa no estoque")
+				.register(registry);
+		Gauge.builder("ecommerce.estoque.cache-disponibilidade.tamanho", this, CacheDisponibilidade::tamanho)
+				.description("Produtos no cache de disponibilidade")
+				.register(registry);
+		Gauge.builder("ecommerce.estoque.cache-disponibilidade.taxa.acerto", this, CacheDisponibilidade::taxaDeAcerto)
+				.description("Fração das verificações respondidas pelo cache")
+				.register(registry);
+	}
+
+	private double taxaDeAcerto()
+	{
+		long acertos = getHits();
+		long total = acertos + misses.sum();
+		return total == 0 ? 0 : (double) acertos / total;
+	}
+
+	/**
+	 * Limites conhecidos do saldo de um produto, cada um com seu vencimento: ao menos {@code disponivel} unidades e
+	 * menos de {@code indisponivel}. Limite vencido vale como desconhecido (zero e {@link #SEM_LIMITE}).
+	 */
+	private record Entrada(long disponivel, long disponivelAte, long indisponivel, long indisponivelAte)
+	{
+		long disponivel(long agora)
+		{
+			return disponivelAte - agora > 0 ? disponivel : 0;
+		}
+
+		long indisponivel(long agora)
+		{
+			return indisponivelAte - agora > 0 ? indisponivel : SEM_LIMITE;
+		}
+
+		boolean vencida(long agora)
+		{
+			return disponivel(agora) == 0 && indisponivel(agora) == SEM_LIMITE;
+		}
+
+		/** Limites desta entrada atualizados por uma verificação recente, que prevalece quando os contradiz. */
+		Entrada combinar(Entrada verificada, long agora)
+		{
+			long disponivelAtual = disponivel(agora);
+			long indisponivelAtual = indisponivel(agora);
+			if (verificada.indisponivel != SEM_LIMITE)
+			{
+				// saldo abaixo da quantidade verificada
+				boolean maisRestrita = verificada.indisponivel <= indisponivelAtual;
+				return new Entrada(
+						disponivelAtual < verificada.indisponivel ? disponivelAtual : 0, disponivelAte,
+						maisRestrita ? verificada.indisponivel : indisponivelAtual,
+						maisRestrita ? verificada.indisponivelAte : indisponivelAte);
+			}
+			boolean maisAmpla = verificada.disponivel >= disponivelAtual;
+			return new Entrada(
+					maisAmpla ? verificada.disponivel : disponivelAtual,
+					maisAmpla ? verificada.disponivelAte : disponivelAte,
+					indisponivelAtual > verificada.disponivel ? indisponivelAtual : SEM_LIMITE, indisponivelAte);
+		}
+
+		/** Limites depois de uma baixa aplicada: o saldo caiu {@code quantidade} unidades e era ao menos isso. */
+		Entrada baixada(long quantidade, long agora)
+		{
+			long indisponivelAtual = indisponivel(agora);
+			long indisponivelDepois = indisponivelAtual == SEM_LIMITE || indisponivelAtual <= quantidade ? SEM_LIMITE
+					: indisponivelAtual - quantidade;
+			return new Entrada(Math.max(0, disponivel(agora) - quantidade), disponivelAte, indisponivelDepois,
+					indisponivelAte);
+		}
+
+		/** Limites depois de uma baixa recusada: algum produto do pedido faltou, não se sabe qual. */
+		Entrada semDisponivel()
+		{
+			return new Entrada(0, disponivelAte, indisponivel, indisponivelAte);
+		}
+	}
+}
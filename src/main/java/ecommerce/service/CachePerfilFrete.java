@@ -0,0 +1,147 @@
+package ecommerce.service;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import ecommerce.entity.LinhaPrecificacao;
+import ecommerce.entity.Produto;
+import ecommerce.entity.ProdutoAlteradoEvento;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Cache de {@link PerfilFreteProduto} por {@link Produto#getId()}, guardado com a {@link Produto#getVersao() versão}
+ * do produto de que foi calculado: um produto lido em outra versão não usa o perfil guardado, e o perfil novo
+ * substitui o antigo.
+ *
+ * As entradas também são removidas depois do commit em que o {@code ProdutoRepository} salva ou remove o produto
+ * ({@link ProdutoAlteradoEvento}); antes do commit, uma compra concorrente ainda lê a linha antiga e guardaria o
+ * perfil antigo de novo. Produtos sem id (ainda não persistidos) não são guardados. O cache guarda até
+ * {@code ecommerce.frete.perfil.cache.capacidade} produtos; cheio, cada produto novo substitui um dos usados há
+ * mais tempo ({@link MapaLruAmostrado}).
+ *
+ * Métricas: {@code ecommerce.frete.perfil.cache} (tag {@code resultado=hit|miss}),
+ * {@code ecommerce.frete.perfil.cache.remocoes} e {@code ecommerce.frete.perfil.cache.tamanho}.
+ */
+@Component
+public class CachePerfilFrete implements MeterBinder
+{
+	private static final int CAPACIDADE_PADRAO = 100_000;
+
+	private final MapaLruAmostrado<Long, Entrada> perfis;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	public CachePerfilFrete()
+	{
+		this(CAPACIDADE_PADRAO);
+	}
+
+	@Autowired
+	public CachePerfilFrete(@Value("${ecommerce.frete.perfil.cache.capacidade:100000}") int capacidade)
+	{
+		this.perfis = new MapaLruAmostrado<>(capacidade);
+	}
+
+	PerfilFreteProduto obter(Produto produto)
+	{
+		PerfilFreteProduto perfil = emCache(produto.getId(), produto.getVersao());
+		return perfil != null ? perfil
+				: guardar(produto.getId(), produto.getVersao(), PerfilFreteProduto.de(produto));
+	}
+
+	/** Mesmo perfil, a partir de uma linha do retrato de precificação. */
+	PerfilFreteProduto obter(LinhaPrecificacao linha)
+	{
+		PerfilFreteProduto perfil = emCache(linha.produtoId(), linha.versao());
+		return perfil != null ? perfil : guardar(linha.produtoId(), linha.versao(), PerfilFreteProduto.de(linha));
+	}
+
+	private PerfilFreteProduto emCache(Long id, Long versao)
+	{
+		Entrada entrada = id == null ? null : perfis.obter(id);
+		if (entrada != null && Objects.equals(entrada.versao(), versao))
+		{
+			hits.increment();
+			return entrada.perfil();
+		}
+		misses.increment();
+		return null;
+	}
+
+	private PerfilFreteProduto guardar(Long id, Long versao, PerfilFreteProduto perfil)
+	{
+		if (id != null)
+		{
+			perfis.guardar(id, new Entrada(versao, perfil));
+		}
+		return perfil;
+	}
+
+	public void invalidar(Long produtoId)
+	{
+		if (produtoId != null)
+		{
+			perfis.remover(produtoId);
+		}
+	}
+
+	@TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+	public void aoAlterarProduto(ProdutoAlteradoEvento evento)
+	{
+		invalidar(evento.produtoId());
+	}
+
+	public long getHits()
+	{
+		return hits.sum();
+	}
+
+	public long getMisses()
+	{
+		return misses.sum();
+	}
+
+	/** Produtos removidos para dar lugar a outros, com o cache cheio. */
+	public long getRemocoes()
+	{
+		return perfis.getRemocoes();
+	}
+
+	public int tamanho()
+	{
+		return perfis.tamanho();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry)
+	{
+		FunctionCounter.builder("ecommerce.frete.perfil.cache", hits, LongAdder::sum)
+				.tag("resultado", "hit")
+				.description("Consultas ao cache de perfil de frete")
+				.register(registry);
+		FunctionCounter.builder("ecommerce.frete.perfil.cache", misses, LongAdder::sum)
+				.tag("resultado", "miss")
+				.description("Consultas ao cache de perfil de frete")
+				.register(registry);
+		FunctionCounter.builder("ecommerce.frete.perfil.cache.remocoes", perfis, MapaLruAmostrado::getRemocoes)
+				.description("Perfis de frete removidos do cache cheio para dar lugar a outros produtos")
+				.register(registry);
+		Gauge.builder("ecommerce.frete.perfil.cache.tamanho", perfis, MapaLruAmostrado::tamanho)
+				.description("Produtos com perfil de frete em cache")
+				.register(registry);
+	}
+
+	/** Perfil calculado da versão {@code versao} do produto. */
+	private record Entrada(Long versao, PerfilFreteProduto perfil)
+	{
+	}
+}
@@ -0,0 +1,257 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.LinhaPrecificacao;
+import ecommerce.entity.PrecificacaoCarrinho;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.entity.TotaisCarrinho;
+
+/**
+ * Cálculo do custo total em aritmética inteira ({@code long}).
+ *
+ * Preços são lidos em centavos (escala 2), pesos em miligramas (escala 6) e dimensões em centésimos de cm. Como
+ * todas as regras da {@link TabelaPrecificacao} são exatas até o arredondamento final, os valores intermediários são
+ * mantidos em escalas fixas e apenas o total é arredondado ({@code HALF_UP}) para centavos, reproduzindo o mesmo
+ * resultado de {@code setScale(2, RoundingMode.HALF_UP)}.
+ *
+ * Quando algum valor tem mais casas decimais do que a escala suportada, a tabela de regras não cabe em ponto fixo ou
+ * uma conta estoura {@code long}, o método devolve {@link #NAO_REPRESENTAVEL} e o chamador deve usar o motor
+ * {@code BigDecimal}.
+ */
+final class CalculadoraCustoPontoFixo
+{
+	static final long NAO_REPRESENTAVEL = Long.MIN_VALUE;
+
+	private static final int ESCALA_PRECO = 2;
+	private static final int ESCALA_PESO = 6;
+	private static final int ESCALA_DIMENSAO = 2;
+
+	/** Volume em escala 6 (cm³) dividido por 6000 e convertido para escala 4 do peso cúbico. */
+	private static final long DIVISOR_PESO_CUBICO = 6000L * 100L;
+	/** Peso cúbico em escala 4 para miligramas (escala 6). */
+	private static final long PESO_CUBICO_PARA_MG = 100L;
+
+	private static final long PONTOS_BASE = 10_000L;
+
+	/** Total em escala 10 para centavos. */
+	private static final long ESCALA_TOTAL_PARA_CENTAVOS = 100_000_000L;
+
+	private static final TipoProduto[] TIPOS = TipoProduto.values();
+
+	private CalculadoraCustoPontoFixo()
+	{
+	}
+
+	static long calcularCentavos(CarrinhoDeCompras carrinho, Regiao regiao, TipoCliente tipoCliente,
+			CachePerfilFrete cachePerfilFrete, TabelaPrecificacao tabela)
+	{
+		if (!tabela.suportaPontoFixo())
+		{
+			return NAO_REPRESENTAVEL;
+		}
+
+		try
+		{
+			return calcular(carrinho, regiao, tipoCliente, cachePerfilFrete, tabela);
+		}
+		catch (ArithmeticException e)
+		{
+			return NAO_REPRESENTAVEL;
+		}
+	}
+
+	private static long calcular(CarrinhoDeCompras carrinho, Regiao regiao, TipoCliente tipoCliente,
+			CachePerfilFrete cachePerfilFrete, TabelaPrecificacao tabela)
+	{
+		Acumulado acumulado = new Acumulado();
+		if (carrinho != null && carrinho.getItens() != null)
+		{
+			for (ItemCompra item : carrinho.getItens())
+			{
+				Produto produto = item.getProduto();
+				if (!acumulado.adicionar(produto.getPreco(), produto.getTipo(), cachePerfilFrete.obter(produto),
+						item.getQuantidade()))
+				{
+					return NAO_REPRESENTAVEL;
+				}
+			}
+		}
+		return acumulado.precificar(regiao, tipoCliente, tabela);
+	}
+
+	/** Mesmo cálculo a partir das linhas de um retrato de precificação. */
+	static long calcularCentavos(PrecificacaoCarrinho precificacao, Regiao regiao, TipoCliente tipoCliente,
+			CachePerfilFrete cachePerfilFrete, TabelaPrecificacao tabela)
+	{
+		if (!tabela.suportaPontoFixo())
+		{
+			return NAO_REPRESENTAVEL;
+		}
+
+		try
+		{
+			Acumulado acumulado = new Acumulado();
+			for (LinhaPrecificacao linha : precificacao.linhas())
+			{
+				if (!acumulado.adicionar(linha.preco(), linha.tipo(), cachePerfilFrete.obter(linha),
+						linha.quantidade()))
+				{
+					return NAO_REPRESENTAVEL;
+				}
+			}
+			return acumulado.precificar(regiao, tipoCliente, tabela);
+		}
+		catch (ArithmeticException e)
+		{
+			return NAO_REPRESENTAVEL;
+		}
+	}
+
+	/** Mesmo cálculo a partir dos totais mantidos pelo carrinho, convertidos para centavos e miligramas. */
+	static long calcularCentavos(TotaisCarrinho totais, Regiao regiao, TipoCliente tipoCliente,
+			TabelaPrecificacao tabela)
+	{
+		if (!tabela.suportaPontoFixo())
+		{
+			return NAO_REPRESENTAVEL;
+		}
+
+		try
+		{
+			long[] quantidadePorTipo = new long[TIPOS.length];
+			long[] subtotalPorTipo = new long[TIPOS.length];
+			for (TipoProduto tipo : TIPOS)
+			{
+				quantidadePorTipo[tipo.ordinal()] = totais.getQuantidadePorTipo(tipo);
+				subtotalPorTipo[tipo.ordinal()] = paraEscala(totais.getSubtotalPorTipo(tipo), ESCALA_PRECO);
+			}
+			return precificar(quantidadePorTipo, subtotalPorTipo, paraEscala(totais.getSubtotal(), ESCALA_PRECO),
+					paraEscala(totais.getPesoTributavel(), ESCALA_PESO), totais.getQuantidadeFragil(), totais.isVazio(),
+					regiao, tipoCliente, tabela);
+		}
+		catch (ArithmeticException e)
+		{
+			return NAO_REPRESENTAVEL;
+		}
+	}
+
+	private static long precificar(long[] quantidadePorTipo, long[] subtotalPorTipo, long subtotal, long pesoTotal,
+			long quantidadeFragil, boolean vazio, Regiao regiao, TipoCliente tipoCliente, TabelaPrecificacao tabela)
+	{
+		// subtotal com desconto por tipo (escala 6: centavos x pontos-base)
+		long subtotalComDescontoTipo = Math.multiplyExact(subtotal, PONTOS_BASE);
+		for (int i = 0; i < TIPOS.length; i++)
+		{
+			long pontosBase = tabela.percentualDescontoPorTipoPontosBase(quantidadePorTipo[i]);
+			subtotalComDescontoTipo = Math.subtractExact(subtotalComDescontoTipo,
+					Math.multiplyExact(subtotalPorTipo[i], pontosBase));
+		}
+
+		// desconto por valor (escala 10)
+		long subtotalFinal = Math.multiplyExact(subtotalComDescontoTipo,
+				PONTOS_BASE - tabela.percentualDescontoPorValorPontosBase(subtotalComDescontoTipo));
+
+		// frete base (escala 6)
+		long freteBase = 0;
+		if (!vazio)
+		{
+			long valorPorKg = tabela.valorPorKgInteiro(pesoTotal);
+			freteBase = Math.multiplyExact(pesoTotal, valorPorKg);
+			if (valorPorKg > 0 && freteBase < tabela.getTaxaMinimaFreteEscala6())
+			{
+				freteBase = tabela.getTaxaMinimaFreteEscala6();
+			}
+			freteBase = Math.addExact(freteBase,
+					Math.multiplyExact(tabela.getTaxaFragilPorItemEscala6(), quantidadeFragil));
+		}
+
+		// fator regional combinado com fidelidade (escala 4) -> frete final em escala 10
+		long freteFinal = Math.multiplyExact(freteBase, tabela.fatorFreteEscala4(regiao, tipoCliente));
+
+		long total = Math.addExact(subtotalFinal, freteFinal);
+		return dividirArredondandoMetadeParaCima(total, ESCALA_TOTAL_PARA_CENTAVOS);
+	}
+
+	/** Totais das linhas do carrinho em centavos e miligramas, acumulados linha a linha. */
+	private static final class Acumulado
+	{
+		private final long[] quantidadePorTipo = new long[TIPOS.length];
+		private final long[] subtotalPorTipo = new long[TIPOS.length];
+		private long subtotal;
+		private long pesoTotal;
+		private long quantidadeFragil;
+		private boolean vazio = true;
+
+		/** Soma a linha; {@code false} quando o peso do produto não cabe em miligramas inteiros. */
+		boolean adicionar(BigDecimal preco, TipoProduto tipoProduto, PerfilFreteProduto perfil, long quantidade)
+		{
+			vazio = false;
+			long totalItem = Math.multiplyExact(paraEscala(preco, ESCALA_PRECO), quantidade);
+			int tipo = tipoProduto.ordinal();
+
+			subtotal = Math.addExact(subtotal, totalItem);
+			quantidadePorTipo[tipo] = Math.addExact(quantidadePorTipo[tipo], quantidade);
+			subtotalPorTipo[tipo] = Math.addExact(subtotalPorTipo[tipo], totalItem);
+
+			if (perfil.pesoTributavelMg() == NAO_REPRESENTAVEL)
+			{
+				return false;
+			}
+			pesoTotal = Math.addExact(pesoTotal, Math.multiplyExact(perfil.pesoTributavelMg(), quantidade));
+
+			if (perfil.fragil())
+			{
+				quantidadeFragil = Math.addExact(quantidadeFragil, quantidade);
+			}
+			return true;
+		}
+
+		long precificar(Regiao regiao, TipoCliente tipoCliente, TabelaPrecificacao tabela)
+		{
+			return CalculadoraCustoPontoFixo.precificar(quantidadePorTipo, subtotalPorTipo, subtotal, pesoTotal,
+					quantidadeFragil, vazio, regiao, tipoCliente, tabela);
+		}
+	}
+
+	static long pesoTributavelMg(Produto produto)
+	{
+		return pesoTributavelMg(produto.getPesoFisico(), produto.getComprimento(), produto.getLargura(),
+				produto.getAltura());
+	}
+
+	static long pesoTributavelMg(BigDecimal pesoFisico, BigDecimal comprimento, BigDecimal largura,
+			BigDecimal altura)
+	{
+		long volume = Math.multiplyExact(
+				Math.multiplyExact(paraEscala(comprimento, ESCALA_DIMENSAO), paraEscala(largura, ESCALA_DIMENSAO)),
+				paraEscala(altura, ESCALA_DIMENSAO));
+		long pesoCubico = dividirArredondandoMetadeParaCima(volume, DIVISOR_PESO_CUBICO) * PESO_CUBICO_PARA_MG;
+		return Math.max(paraEscala(pesoFisico, ESCALA_PESO), pesoCubico);
+	}
+
+	/**
+	 * Valor não escalado de {@code valor} na escala informada; lança {@link ArithmeticException} quando o valor tem
+	 * mais casas decimais do que a escala ou não cabe em {@code long}.
+	 */
+	static long paraEscala(BigDecimal valor, int escala)
+	{
+		return valor.movePointRight(escala).longValueExact();
+	}
+
+	static long dividirArredondandoMetadeParaCima(long dividendo, long divisor)
+	{
+		long quociente = dividendo / divisor;
+		long resto = dividendo % divisor;
+		if (Math.abs(resto) * 2 >= divisor)
+		{
+			quociente += Long.signum(dividendo);
+		}
+		return quociente;
+	}
+}
@@ -1,10 +1,16 @@
 package ecommerce.service;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import ecommerce.entity.CarrinhoDeCompras;
 import ecommerce.entity.Cliente;
+import ecommerce.entity.LinhaPrecificacao;
+import ecommerce.entity.PrecificacaoCarrinho;
 import ecommerce.repository.CarrinhoDeComprasRepository;
 
 @Service
@@ -18,9 +24,31 @@ public class CarrinhoDeComprasService
 		this.repository = repository;
 	}
 
+	/** Carrinho do cliente com itens e produtos já carregados, em uma única consulta. */
 	public CarrinhoDeCompras buscarPorCarrinhoIdEClienteId(Long carrinhoId, Cliente cliente)
 	{
-		return repository.findByIdAndCliente(carrinhoId, cliente)
+		return repository.findComItensByIdAndCliente(carrinhoId, cliente)
 				.orElseThrow(() -> new IllegalArgumentException("Carrinho não encontrado."));
 	}
+
+	/**
+	 * Retrato de precificação do carrinho do cliente (projeção, sem carregar cliente nem produtos inteiros); vazio
+	 * quando o carrinho não existe, não é do cliente ou não tem itens.
+	 */
+	public Optional<PrecificacaoCarrinho> buscarPrecificacao(Long carrinhoId, Long clienteId)
+	{
+		List<LinhaPrecificacao> linhas = repository.findPrecificacao(carrinhoId, clienteId);
+		return linhas.isEmpty() ? Optional.empty() : Optional.of(PrecificacaoCarrinho.de(linhas));
+	}
+
+	/** {@code true} quando o carrinho existe e é do cliente; só consulta a existência, sem carregar o carrinho. */
+	public boolean existe(Long carrinhoId, Long clienteId)
+	{
+		return repository.existsByIdAndClienteId(carrinhoId, clienteId);
+	}
+
+	public List<CarrinhoDeCompras> buscarComItensPorIds(Collection<Long> carrinhoIds)
+	{
+		return repository.findAllComItensByIdIn(carrinhoIds);
+	}
 }
@@ -23,4 +23,9 @@ public class ClienteService
 		return repository.findById(clienteId).orElseThrow(() -> new IllegalArgumentException("Cliente não encontrado"));
 	}
 
+	public boolean existe(Long clienteId)
+	{
+		return repository.existsById(clienteId);
+	}
+
 }
@@ -0,0 +1,193 @@
+package ecommerce.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import ecommerce.dto.CompraDTO;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Evita finalizar o mesmo carrinho mais de uma vez quando o cliente repete o {@code POST /finalizar}.
+ *
+ * Enquanto uma finalização de um carrinho está em andamento, novas chamadas para o mesmo carrinho e cliente não
+ * executam {@link CompraService#finalizarCompra}: aguardam e recebem o resultado (ou a exceção) da primeira. Compras
+ * concluídas com sucesso ficam guardadas por {@code ecommerce.finalizacao.resultado-ttl} e respondem às repetições
+ * tardias com o mesmo {@link CompraDTO} (e o mesmo {@code transacaoId}). Falhas não são guardadas: uma nova tentativa
+ * depois da falha executa a compra novamente.
+ *
+ * Chamadas para o mesmo carrinho com outro cliente não são agrupadas.
+ */
+@Component
+public class CoalescedorFinalizacao implements MeterBinder
+{
+	private final CompraService compraService;
+	private final long ttlNanos;
+	private final LongSupplier relogio;
+
+	private final ConcurrentHashMap<Long, Finalizacao> emAndamento = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<Long, ResultadoConcluido> concluidas = new ConcurrentHashMap<>();
+
+	private final LongAdder executadas = new LongAdder();
+	private final LongAdder coalescidas = new LongAdder();
+	private final LongAdder respondidasPeloCache = new LongAdder();
+
+	@Autowired
+	public CoalescedorFinalizacao(CompraService compraService,
+			@Value("${ecommerce.finalizacao.resultado-ttl:PT2M}") Duration ttl)
+	{
+		this(compraService, ttl, System::nanoTime);
+	}
+
+	CoalescedorFinalizacao(CompraService compraService, Duration ttl, LongSupplier relogio)
+	{
+		this.compraService = compraService;
+		this.ttlNanos = ttl.toNanos();
+		this.relogio = relogio;
+	}
+
+	public CompraDTO finalizarCompra(Long carrinhoId, Long clienteId)
+	{
+		if (carrinhoId == null)
+		{
+			return compraService.finalizarCompra(carrinhoId, clienteId);
+		}
+
+		CompraDTO concluida = concluida(carrinhoId, clienteId);
+		if (concluida != null)
+		{
+			return concluida;
+		}
+
+		Finalizacao nova = new Finalizacao(clienteId);
+		Finalizacao existente = emAndamento.putIfAbsent(carrinhoId, nova);
+		if (existente == null)
+		{
+			return executar(carrinhoId, nova);
+		}
+		if (!Objects.equals(existente.clienteId(), clienteId))
+		{
+			executadas.increment();
+			return compraService.finalizarCompra(carrinhoId, clienteId);
+		}
+
+		coalescidas.increment();
+		return EsperaResultado.aguardar(existente.resultado());
+	}
+
+	private CompraDTO concluida(Long carrinhoId, Long clienteId)
+	{
+		ResultadoConcluido concluida = concluidas.get(carrinhoId);
+		if (concluida == null || !Objects.equals(concluida.clienteId(), clienteId)
+				|| concluida.expirou(relogio.getAsLong()))
+		{
+			return null;
+		}
+		respondidasPeloCache.increment();
+		return concluida.compra();
+	}
+
+	private CompraDTO executar(Long carrinhoId, Finalizacao finalizacao)
+	{
+		try
+		{
+			// uma finalização anterior pode ter terminado entre a consulta aos concluídos e o registro desta
+			CompraDTO compra = concluida(carrinhoId, finalizacao.clienteId());
+			if (compra == null)
+			{
+				executadas.increment();
+				compra = compraService.finalizarCompra(carrinhoId, finalizacao.clienteId());
+				if (compra != null && Boolean.TRUE.equals(compra.sucesso()))
+				{
+					concluidas.put(carrinhoId,
+							new ResultadoConcluido(finalizacao.clienteId(), compra, relogio.getAsLong() + ttlNanos));
+				}
+			}
+			finalizacao.resultado().complete(compra);
+			return compra;
+		}
+		catch (RuntimeException | Error e)
+		{
+			finalizacao.resultado().completeExceptionally(e);
+			throw e;
+		}
+		finally
+		{
+			emAndamento.remove(carrinhoId, finalizacao);
+		}
+	}
+
+	/** Remove os resultados concluídos já expirados. */
+	@Scheduled(fixedDelayString = "${ecommerce.finalizacao.resultado-ttl:PT2M}")
+	public void removerExpiradas()
+	{
+		long agora = relogio.getAsLong();
+		concluidas.values().removeIf(concluida -> concluida.expirou(agora));
+	}
+
+	public long getExecutadas()
+	{
+		return executadas.sum();
+	}
+
+	public long getCoalescidas()
+	{
+		return coalescidas.sum();
+	}
+
+	public long getRespondidasPeloCache()
+	{
+		return respondidasPeloCache.sum();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry)
+	{
+		FunctionCounter.builder("ecommerce.finalizacao", executadas, LongAdder::sum)
+				.tag("resultado", "executada")
+				.description("Chamadas de /finalizar por forma de atendimento")
+				.register(registry);
+		FunctionCounter.builder("ecommerce.finalizacao", coalescidas, LongAdder::sum)
+				.tag("resultado", "coalescida")
+				.description("Chamadas de /finalizar por forma de atendimento")
+				.register(registry);
+		FunctionCounter.builder("ecommerce.finalizacao", respondidasPeloCache, LongAdder::sum)
+				.tag("resultado", "cache")
+				.description("Chamadas de /finalizar por forma de atendimento")
+				.register(registry);
+		Gauge.builder("ecommerce.finalizacao.em.andamento", emAndamento, Map::size)
+				.description("Carrinhos com finalização em andamento")
+				.register(registry);
+		Gauge.builder("ecommerce.finalizacao.concluidas.tamanho", concluidas, Map::size)
+				.description("Compras concluídas guardadas para repetições tardias")
+				.register(registry);
+	}
+
+	private record Finalizacao(Long clienteId, CompletableFuture<CompraDTO> resultado)
+	{
+		Finalizacao(Long clienteId)
+		{
+			this(clienteId, new CompletableFuture<>());
+		}
+	}
+
+	private record ResultadoConcluido(Long clienteId, CompraDTO compra, long expiraEmNanos)
+	{
+		boolean expirou(long agora)
+		{
+			return agora - expiraEmNanos >= 0;
+		}
+	}
+}
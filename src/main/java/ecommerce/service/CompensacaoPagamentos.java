@@ -0,0 +1,231 @@
+package ecommerce.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import ecommerce.entity.CancelamentoPagamentoPendente;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.repository.CancelamentoPagamentoRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Cancelamento assíncrono de pagamentos autorizados de compras que falharam depois da autorização (outbox).
+ *
+ * {@link #registrarCancelamento} só grava o cancelamento em uma transação curta e volta: a compra responde o erro sem
+ * esperar o provedor de pagamento. Um registro por {@code transacaoId} (ou por chave de idempotência, para
+ * autorizações sem resposta): repetições são ignoradas. A cada {@code ecommerce.pagamento.compensacao.intervalo},
+ * {@link #entregarPendentes} envia os cancelamentos devidos (até {@code ecommerce.pagamento.compensacao.lote} por
+ * rodada) fora de transação; aceitos, são removidos, e os que falham voltam a ser tentados com espera exponencial, de
+ * {@code espera-inicial} até {@code espera-maxima}.
+ *
+ * O outbox fica no datasource da aplicação, que por padrão é um H2 em memória: os cancelamentos pendentes não
+ * sobrevivem ao fim do processo, e os de uma instância que cai antes de entregá-los se perdem. O outbox tira o
+ * provedor de pagamento do caminho da resposta e repete a entrega enquanto o processo vive; não é durável.
+ *
+ * Sem repositório ({@link #direta}), o cancelamento é enviado na hora, pela thread de quem chamou.
+ */
+@Component
+public class CompensacaoPagamentos implements MeterBinder
+{
+	private static final Logger LOG = LoggerFactory.getLogger(CompensacaoPagamentos.class);
+
+	private final CancelamentoPagamentoRepository repository;
+	private final IPagamentoExternal pagamentoExternal;
+	private final TransactionOperations transacao;
+	private final Duration esperaInicial;
+	private final Duration esperaMaxima;
+	private final int lote;
+	private final Clock relogio;
+
+	private final LongAdder registrados = new LongAdder();
+	private final LongAdder repetidos = new LongAdder();
+	private final LongAdder entregues = new LongAdder();
+	private final LongAdder falhas = new LongAdder();
+
+	@Autowired
+	public CompensacaoPagamentos(CancelamentoPagamentoRepository repository, IPagamentoExternal pagamentoExternal,
+			PlatformTransactionManager transacoes,
+			@Value("${ecommerce.pagamento.compensacao.espera-inicial:PT1S}") Duration esperaInicial,
+			@Value("${ecommerce.pagamento.compensacao.espera-maxima:PT5M}") Duration esperaMaxima,
+			@Value("${ecommerce.pagamento.compensacao.lote:50}") int lote)
+	{
+		this(repository, pagamentoExternal, new TransactionTemplate(transacoes), esperaInicial, esperaMaxima, lote,
+				Clock.systemUTC());
+	}
+
+	CompensacaoPagamentos(CancelamentoPagamentoRepository repository, IPagamentoExternal pagamentoExternal,
+			TransactionOperations transacao, Duration esperaInicial, Duration esperaMaxima, int lote, Clock relogio)
+	{
+		if (lote < 1 || esperaInicial.isNegative() || esperaMaxima.compareTo(esperaInicial) < 0)
+		{
+			throw new IllegalArgumentException("Lote deve ser maior que zero e espera máxima não menor que a inicial.");
+		}
+		this.repository = repository;
+		this.pagamentoExternal = pagamentoExternal;
+		this.transacao = transacao;
+		this.esperaInicial = esperaInicial;
+		this.esperaMaxima = esperaMaxima;
+		this.lote = lote;
+		this.relogio = relogio;
+	}
+
+	/** Cancelamento enviado na hora, para instâncias criadas fora do Spring. */
+	public static CompensacaoPagamentos direta(IPagamentoExternal pagamentoExternal)
+	{
+		return new CompensacaoPagamentos(null, pagamentoExternal, TransactionOperations.withoutTransaction(),
+				Duration.ZERO, Duration.ZERO, 1, Clock.systemUTC());
+	}
+
+	/** Agenda o cancelamento do pagamento; repetições para a mesma transação são ignoradas. */
+	public void registrarCancelamento(Long clienteId, Long transacaoId)
+	{
+		if (repository == null)
+		{
+			pagamentoExternal.cancelarPagamento(clienteId, transacaoId);
+			return;
+		}
+		registrar(() -> transacaoId != null && repository.existsByTransacaoId(transacaoId),
+				() -> new CancelamentoPagamentoPendente(clienteId, transacaoId, relogio.instant()));
+	}
+
+	/**
+	 * Agenda o cancelamento da autorização pedida com a chave de idempotência, para uma autorização sem resposta que
+	 * o provedor pode ter concluído (ou ainda concluir); repetições para a mesma chave são ignoradas.
+	 */
+	public void registrarCancelamentoPorChave(Long clienteId, String chaveIdempotencia)
+	{
+		if (repository == null)
+		{
+			pagamentoExternal.cancelarPorChave(clienteId, chaveIdempotencia);
+			return;
+		}
+		registrar(() -> repository.existsByChaveIdempotencia(chaveIdempotencia),
+				() -> CancelamentoPagamentoPendente.porChave(clienteId, chaveIdempotencia, relogio.instant()));
+	}
+
+	private void registrar(BooleanSupplier jaRegistrado, Supplier<CancelamentoPagamentoPendente> cancelamento)
+	{
+		Boolean registrado;
+		try
+		{
+			registrado = transacao.execute(status -> {
+				if (jaRegistrado.getAsBoolean())
+				{
+					return false;
+				}
+				repository.save(cancelamento.get());
+				return true;
+			});
+		}
+		catch (DataIntegrityViolationException e)
+		{
+			registrado = false; // registrado ao mesmo tempo por outra compra
+		}
+		(Boolean.TRUE.equals(registrado) ? registrados : repetidos).increment();
+	}
+
+	/** Envia os cancelamentos com entrega devida; cada um é removido ou reagendado em sua própria transação. */
+	@Scheduled(fixedDelayString = "${ecommerce.pagamento.compensacao.intervalo:PT1S}")
+	public void entregarPendentes()
+	{
+		if (repository == null)
+		{
+			return;
+		}
+		Instant agora = relogio.instant();
+		List<CancelamentoPagamentoPendente> devidos = transacao.execute(status -> repository
+				.findByProximaTentativaLessThanEqualOrderByProximaTentativaAsc(agora, PageRequest.of(0, lote)));
+		for (CancelamentoPagamentoPendente cancelamento : devidos)
+		{
+			try
+			{
+				if (cancelamento.getTransacaoId() == null && cancelamento.getChaveIdempotencia() != null)
+				{
+					pagamentoExternal.cancelarPorChave(cancelamento.getClienteId(), cancelamento.getChaveIdempotencia());
+				}
+				else
+				{
+					pagamentoExternal.cancelarPagamento(cancelamento.getClienteId(), cancelamento.getTransacaoId());
+				}
+			}
+			catch (RuntimeException e)
+			{
+				falhas.increment();
+				cancelamento.falhou(e.getMessage(), relogio.instant().plus(espera(cancelamento.getTentativas() + 1)));
+				LOG.warn("Falha ao cancelar o pagamento {} (tentativa {}); nova tentativa em {}",
+						cancelamento.getTransacaoId() != null ? cancelamento.getTransacaoId()
+								: cancelamento.getChaveIdempotencia(),
+						cancelamento.getTentativas(), cancelamento.getProximaTentativa());
+				transacao.executeWithoutResult(status -> repository.save(cancelamento));
+				continue;
+			}
+			entregues.increment();
+			transacao.executeWithoutResult(status -> repository.deleteById(cancelamento.getId()));
+		}
+	}
+
+	/** Espera antes da tentativa seguinte à {@code tentativas}-ésima falha: dobra a cada falha, até o máximo. */
+	Duration espera(int tentativas)
+	{
+		int expoente = Math.min(tentativas - 1, 30);
+		Duration espera = esperaInicial.multipliedBy(1L << expoente);
+		return espera.compareTo(esperaMaxima) > 0 ? esperaMaxima : espera;
+	}
+
+	public long getRegistrados()
+	{
+		return registrados.sum();
+	}
+
+	public long getRepetidos()
+	{
+		return repetidos.sum();
+	}
+
+	public long getEntregues()
+	{
+		return entregues.sum();
+	}
+
+	public long getFalhas()
+	{
+		return falhas.sum();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry)
+	{
+		registrarContador(registry, "registrada", registrados);
+		registrarContador(registry, "repetida", repetidos);
+		registrarContador(registry, "entregue", entregues);
+		registrarContador(registry, "falha", falhas);
+	}
+
+	private static void registrarContador(MeterRegistry registry, String resultado, LongAdder contador)
+	{
+		FunctionCounter.builder("ecommerce.pagamento.compensacao", contador, LongAdder::sum)
+				.tag("resultado", resultado)
+				.description("Cancelamentos de pagamento no outbox, por resultado: registrada (gravado), repetida "
+						+ "(já estava gravado), entregue (aceito pelo provedor) ou falha (entrega a tentar de novo)")
+				.register(registry);
+	}
+}
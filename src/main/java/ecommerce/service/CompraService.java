@@ -2,73 +2,328 @@ package ecommerce.service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import ecommerce.entity.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import ecommerce.dto.CompraDTO;
-import ecommerce.dto.DisponibilidadeDTO;
 import ecommerce.dto.EstoqueBaixaDTO;
 import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
+import ecommerce.external.ChamadaRecusadaException;
 import ecommerce.external.IEstoqueExternal;
 import ecommerce.external.IPagamentoExternal;
-import jakarta.transaction.Transactional;
+import ecommerce.external.IReservaEstoqueExternal;
+import ecommerce.external.ItensEstoque;
 
 @Service
 public class CompraService {
 
-	private static final BigDecimal PESO_CUBICO_DIVISOR = BigDecimal.valueOf(6000);
-	private static final BigDecimal TAXA_FRAGIL_POR_ITEM = BigDecimal.valueOf(5);
-	private static final BigDecimal TAXA_MINIMA_FRETE = BigDecimal.valueOf(12);
+	private static final Logger LOG = LoggerFactory.getLogger(CompraService.class);
 
 	private final CarrinhoDeComprasService carrinhoService;
 	private final ClienteService clienteService;
 	private final IEstoqueExternal estoqueExternal;
 	private final IPagamentoExternal pagamentoExternal;
+	private final MotorPrecificacao motorPrecificacao;
+	private final CachePerfilFrete cachePerfilFrete;
+	private final RegrasPrecificacao regrasPrecificacao;
+	private final CacheCotacoes cacheCotacoes;
+	private final ExecutorChamadasExternas executorExterno;
+	private final LoteBaixasEstoque loteBaixas;
+	private final ConsultaDisponibilidade consultaDisponibilidade;
+	private final TransactionOperations transacaoLeitura;
+	private final CompensacaoPagamentos compensacao;
+	private final CacheDisponibilidade cacheDisponibilidade;
 
 	@Autowired
 	public CompraService(CarrinhoDeComprasService carrinhoService, ClienteService clienteService,
-						 IEstoqueExternal estoqueExternal, IPagamentoExternal pagamentoExternal) {
+						 IEstoqueExternal estoqueExternal, IPagamentoExternal pagamentoExternal,
+						 @Value("${ecommerce.precificacao.motor:BIG_DECIMAL}") MotorPrecificacao motorPrecificacao,
+						 CachePerfilFrete cachePerfilFrete, RegrasPrecificacao regrasPrecificacao,
+						 CacheCotacoes cacheCotacoes, ExecutorChamadasExternas executorExterno,
+						 LoteBaixasEstoque loteBaixas, ConsultaDisponibilidade consultaDisponibilidade,
+						 PlatformTransactionManager transacoes, CompensacaoPagamentos compensacao,
+						 CacheDisponibilidade cacheDisponibilidade) {
 		this.carrinhoService = carrinhoService;
 		this.clienteService = clienteService;
 		this.estoqueExternal = estoqueExternal;
 		this.pagamentoExternal = pagamentoExternal;
+		this.motorPrecificacao = motorPrecificacao;
+		this.cachePerfilFrete = cachePerfilFrete;
+		this.regrasPrecificacao = regrasPrecificacao;
+		this.cacheCotacoes = cacheCotacoes;
+		this.executorExterno = executorExterno;
+		this.loteBaixas = loteBaixas;
+		this.consultaDisponibilidade = consultaDisponibilidade;
+		this.transacaoLeitura = transacaoSomenteLeitura(transacoes);
+		this.compensacao = compensacao;
+		this.cacheDisponibilidade = cacheDisponibilidade;
 	}
 
-	@Transactional
+	private static TransactionOperations transacaoSomenteLeitura(PlatformTransactionManager transacoes) {
+		TransactionTemplate template = new TransactionTemplate(transacoes);
+		template.setReadOnly(true);
+		template.setName("CompraService.carregarCompra");
+		return template;
+	}
+
+	/**
+	 * Finaliza a compra sem transação aberta durante as chamadas remotas: o retrato de precificação do carrinho é
+	 * lido em uma transação curta, somente leitura (ver {@link #carregarCompra}), e a precificação, o estoque e o
+	 * pagamento trabalham sobre esse retrato, sem entidades. Assim nenhuma conexão do pool fica presa enquanto o estoque ou o
+	 * pagamento demoram. A única gravação, o cancelamento do pagamento quando a baixa falha (recusada ou sem
+	 * resposta), usa a sua própria transação curta (ver {@link CompensacaoPagamentos}).
+	 */
 	public CompraDTO finalizarCompra(Long carrinhoId, Long clienteId) {
-		Cliente cliente = clienteService.buscarPorId(clienteId);
-		CarrinhoDeCompras carrinho = carrinhoService.buscarPorCarrinhoIdEClienteId(carrinhoId, cliente);
+		CompraCarregada compra = transacaoLeitura.execute(status -> carregarCompra(carrinhoId, clienteId));
+		PrecificacaoCarrinho precificacao = compra.precificacao();
+		long[] produtosIds = compra.produtosIds();
+		long[] produtosQtds = compra.produtosQtds();
+
+		if (estoqueExternal instanceof IReservaEstoqueExternal reservas) {
+			return finalizarComReserva(clienteId, precificacao, produtosIds, produtosQtds, reservas);
+		}
+
+		// a verificação de estoque (remota, com chamada de cobertura opcional) roda em paralelo com a precificação,
+		// que fica nesta thread. Os erros mantêm a precedência da verificação feita antes da precificação: se a
+		// precificação falha, a verificação ainda é aguardada, e itens fora de estoque (ou a falha da própria
+		// verificação) prevalecem sobre o erro da precificação.
+		// Exceções de qualquer um dos lados chegam ao chamador como foram lançadas, mantendo o mapeamento de erros.
+		// Quando o cache de disponibilidade já sabe a resposta, o estoque não é consultado
+		BitSet conhecidas = cacheDisponibilidade.consultar(produtosIds, produtosQtds);
+		Future<BitSet> disponibilidadeFutura = conhecidas != null ? CompletableFuture.completedFuture(conhecidas)
+				: consultaDisponibilidade.consultar(produtosIds, produtosQtds);
+
+		BigDecimal custoTotal;
+		try {
+			custoTotal = calcularCustoTotal(precificacao);
+		} catch (RuntimeException e) {
+			exigirDisponiveis(disponibilidadeFutura, conhecidas != null, produtosIds, produtosQtds);
+			throw e;
+		} catch (Error e) {
+			disponibilidadeFutura.cancel(true);
+			throw e;
+		}
+
+		exigirDisponiveis(disponibilidadeFutura, conhecidas != null, produtosIds, produtosQtds);
+
+		PagamentoDTO pagamento = autorizarPagamento(clienteId, custoTotal);
+		if (!pagamento.autorizado()) {
+			throw new IllegalStateException("Pagamento não autorizado.");
+		}
 
-		List<Long> produtosIds = carrinho.getItens().stream().map(i -> i.getProduto().getId())
-				.collect(Collectors.toList());
-		List<Long> produtosQtds = carrinho.getItens().stream().map(ItemCompra::getQuantidade)
-				.collect(Collectors.toList());
+		// baixa agrupada com as de outras compras concorrentes (ver LoteBaixasEstoque)
+		EstoqueBaixaDTO baixaDTO;
+		try {
+			baixaDTO = loteBaixas.darBaixa(produtosIds, produtosQtds);
+		} catch (RuntimeException e) {
+			// sem resposta, a baixa pode ter sido aplicada (ou ainda ser): o cache esquece os produtos em vez de
+			// registrá-la como recusada
+			cacheDisponibilidade.esquecer(produtosIds);
+			cancelarAposFalha(e, clienteId, pagamento.transacaoId());
+			throw e;
+		}
+		cacheDisponibilidade.registrarBaixa(produtosIds, produtosQtds, baixaDTO.sucesso());
+		if (!baixaDTO.sucesso()) {
+			// cancelamento entregue depois, fora da requisição: a compra responde o erro sem esperar o provedor
+			compensacao.registrarCancelamento(clienteId, pagamento.transacaoId());
+			throw new IllegalStateException("Erro ao dar baixa no estoque.");
+		}
 
-		DisponibilidadeDTO disponibilidade = estoqueExternal.verificarDisponibilidade(produtosIds, produtosQtds);
-		if (!disponibilidade.disponivel()) {
+		return new CompraDTO(true, pagamento.transacaoId(), "Compra finalizada com sucesso.");
+	}
+
+
+	/**
+	 * Lê o retrato de precificação do carrinho (só as colunas usadas, sem cliente nem produtos gerenciados) em uma
+	 * única consulta. Sem linhas (carrinho vazio, inexistente ou de outro cliente), cliente e carrinho são carregados
+	 * inteiros, o que mantém as mensagens de erro de cada caso. Ids e quantidades vão para o estoque em arrays
+	 * primitivos, sem boxing por item.
+	 */
+	private CompraCarregada carregarCompra(Long carrinhoId, Long clienteId) {
+		PrecificacaoCarrinho precificacao = carrinhoService.buscarPrecificacao(carrinhoId, clienteId)
+				.orElseGet(() -> {
+					Cliente cliente = clienteService.buscarPorId(clienteId);
+					return PrecificacaoCarrinho.de(carrinhoService.buscarPorCarrinhoIdEClienteId(carrinhoId, cliente),
+							cliente);
+				});
+
+		List<LinhaPrecificacao> linhas = precificacao.linhas();
+		long[] produtosIds = new long[linhas.size()];
+		long[] produtosQtds = new long[linhas.size()];
+		for (int i = 0; i < produtosIds.length; i++) {
+			LinhaPrecificacao linha = linhas.get(i);
+			if (linha.produtoId() == null || linha.quantidade() == null) {
+				throw new IllegalArgumentException("Produto e quantidade (maior que zero) são obrigatórios.");
+			}
+			produtosIds[i] = linha.produtoId();
+			produtosQtds[i] = linha.quantidade();
+		}
+		return new CompraCarregada(precificacao, produtosIds, produtosQtds);
+	}
+
+	/** Aguarda a verificação de estoque e recusa a compra com itens indisponíveis. */
+	private void exigirDisponiveis(Future<BitSet> disponibilidadeFutura, boolean doCache, long[] produtosIds,
+								   long[] produtosQtds) {
+		BitSet indisponiveis = EsperaResultado.aguardarOuCancelar(disponibilidadeFutura);
+		if (!doCache) {
+			cacheDisponibilidade.registrarVerificacao(produtosIds, produtosQtds, indisponiveis);
+		}
+		if (!indisponiveis.isEmpty()) {
 			throw new IllegalStateException("Itens fora de estoque.");
 		}
+	}
+
+	private record CompraCarregada(PrecificacaoCarrinho precificacao, long[] produtosIds, long[] produtosQtds) {
+	}
 
-		BigDecimal custoTotal = calcularCustoTotal(carrinho, cliente.getRegiao(), cliente.getTipo());
-		PagamentoDTO pagamento = pagamentoExternal.autorizarPagamento(cliente.getId(), custoTotal.doubleValue());
+	/**
+	 * Finalização com reserva de estoque: as unidades ficam separadas enquanto o pagamento é autorizado, de modo que
+	 * o estoque não acaba entre a verificação e a baixa e não há pagamento autorizado e depois cancelado por falta de
+	 * estoque. A reserva roda em paralelo com a precificação; qualquer falha antes da confirmação libera a reserva.
+	 * Como na finalização sem reserva, itens fora de estoque prevalecem sobre um erro da precificação.
+	 */
+	private CompraDTO finalizarComReserva(Long clienteId, PrecificacaoCarrinho precificacao, long[] produtosIds,
+										  long[] produtosQtds, IReservaEstoqueExternal reservas) {
+		// produto sabidamente esgotado: a reserva nem é tentada
+		if (cacheDisponibilidade.consultarIndisponiveis(produtosIds, produtosQtds) != null) {
+			throw new IllegalStateException("Itens fora de estoque.");
+		}
+
+		Future<ReservaEstoqueDTO> reservaFutura = executorExterno.submeter(
+				() -> reservas.reservar(produtosIds, produtosQtds));
+
+		BigDecimal custoTotal;
+		try {
+			custoTotal = calcularCustoTotal(precificacao);
+		} catch (RuntimeException e) {
+			ReservaEstoqueDTO reserva = exigirReserva(reservaFutura, produtosIds, produtosQtds);
+			liberar(reservas, reserva.reservaId());
+			throw e;
+		} catch (Error e) {
+			liberarAoCancelar(reservaFutura, reservas);
+			throw e;
+		}
+
+		ReservaEstoqueDTO reserva = exigirReserva(reservaFutura, produtosIds, produtosQtds);
+
+		PagamentoDTO pagamento = null;
+		try {
+			pagamento = autorizarPagamento(clienteId, custoTotal);
+		} finally {
+			if (pagamento == null || !Boolean.TRUE.equals(pagamento.autorizado())) {
+				liberar(reservas, reserva.reservaId());
+			}
+		}
 		if (!pagamento.autorizado()) {
 			throw new IllegalStateException("Pagamento não autorizado.");
 		}
 
-		EstoqueBaixaDTO baixaDTO = estoqueExternal.darBaixa(produtosIds, produtosQtds);
+		// confirmação agrupada com as de outras compras concorrentes (ver LoteBaixasEstoque)
+		EstoqueBaixaDTO baixaDTO;
+		try {
+			baixaDTO = loteBaixas.confirmar(reserva.reservaId());
+		} catch (RuntimeException e) {
+			// sem resposta, a confirmação pode ter sido aplicada; se não foi, a liberação impede que seja depois
+			cacheDisponibilidade.esquecer(produtosIds);
+			cancelarAposFalha(e, clienteId, pagamento.transacaoId());
+			liberar(reservas, reserva.reservaId());
+			throw e;
+		}
 		if (!baixaDTO.sucesso()) {
-			pagamentoExternal.cancelarPagamento(cliente.getId(), pagamento.transacaoId());
+			// a reserva expirou antes da confirmação
+			compensacao.registrarCancelamento(clienteId, pagamento.transacaoId());
 			throw new IllegalStateException("Erro ao dar baixa no estoque.");
 		}
 
 		return new CompraDTO(true, pagamento.transacaoId(), "Compra finalizada com sucesso.");
 	}
 
+	/** Aguarda a reserva e recusa a compra quando o estoque não reservou os itens. */
+	private ReservaEstoqueDTO exigirReserva(Future<ReservaEstoqueDTO> reservaFutura, long[] produtosIds,
+											long[] produtosQtds) {
+		ReservaEstoqueDTO reserva = EsperaResultado.aguardarOuCancelar(reservaFutura);
+		if (!Boolean.TRUE.equals(reserva.reservado())) {
+			cacheDisponibilidade.registrarVerificacao(produtosIds, produtosQtds,
+					ItensEstoque.indisponiveis(produtosIds, reserva.idsProdutosIndisponiveis()));
+			throw new IllegalStateException("Itens fora de estoque.");
+		}
+		cacheDisponibilidade.registrarBaixa(produtosIds, produtosQtds, true);
+		return reserva;
+	}
+
+	/**
+	 * Autoriza o pagamento com uma chave de idempotência desta compra. Sem resposta (tempo esgotado, falha do
+	 * provedor), a autorização pode ter sido feita, ou ainda ser: o cancelamento pela chave é agendado antes de a
+	 * falha seguir ao chamador. Recusada pela proteção ou pelo provedor (400), não houve autorização.
+	 */
+	private PagamentoDTO autorizarPagamento(Long clienteId, BigDecimal custoTotal) {
+		String chave = UUID.randomUUID().toString();
+		try {
+			return pagamentoExternal.autorizarPagamento(clienteId, custoTotal.doubleValue(), chave);
+		} catch (ChamadaRecusadaException | IllegalArgumentException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			try {
+				compensacao.registrarCancelamentoPorChave(clienteId, chave);
+			} catch (RuntimeException falha) {
+				e.addSuppressed(falha);
+			}
+			throw e;
+		}
+	}
+
+	/** Agenda o cancelamento do pagamento autorizado; uma falha ao agendar não esconde a da compra. */
+	private void cancelarAposFalha(RuntimeException falhaCompra, Long clienteId, Long transacaoId) {
+		try {
+			compensacao.registrarCancelamento(clienteId, transacaoId);
+		} catch (RuntimeException e) {
+			falhaCompra.addSuppressed(e);
+		}
+	}
+
+	/**
+	 * Libera a reserva sem deixar a falha da liberação esconder a da compra: a reserva não liberada expira sozinha.
+	 */
+	private static void liberar(IReservaEstoqueExternal reservas, Long reservaId) {
+		try {
+			reservas.liberar(reservaId);
+		} catch (RuntimeException e) {
+			LOG.warn("Falha ao liberar a reserva {}; ela expira sozinha", reservaId, e);
+		}
+	}
+
+	/** Cancela a reserva em andamento; se ela já tinha sido feita, libera as unidades. */
+	private static void liberarAoCancelar(Future<ReservaEstoqueDTO> reservaFutura, IReservaEstoqueExternal reservas) {
+		if (reservaFutura.cancel(true)) {
+			return; // se o estoque chegou a reservar, a reserva expira sozinha
+		}
+		try {
+			ReservaEstoqueDTO reserva = reservaFutura.get();
+			if (reserva != null && Boolean.TRUE.equals(reserva.reservado())) {
+				liberar(reservas, reserva.reservaId());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			// a reserva falhou: não há o que liberar
+		}
+	}
+
 
 	// ======= METODO PRINCIPAL =======
 	public BigDecimal calcularCustoTotal(CarrinhoDeCompras carrinho, Regiao regiao, TipoCliente tipoCliente) {
@@ -90,25 +345,123 @@ public class CompraService {
 			}
 		}
 
+		// tabela de regras lida uma única vez: uma recarga durante o cálculo não mistura regras antigas e novas
+		TabelaPrecificacao tabela = regrasPrecificacao.atual();
+
+		// cotação já calculada para o mesmo conteúdo de carrinho, região, tipo de cliente e regras
+		CacheCotacoes.ChaveCotacao chave = cacheCotacoes.chave(carrinho, regiao, tipoCliente, tabela);
+		if (chave == null) {
+			return precificar(carrinho, regiao, tipoCliente, tabela);
+		}
+		BigDecimal custoTotal = cacheCotacoes.obter(chave);
+		if (custoTotal == null) {
+			custoTotal = precificar(carrinho, regiao, tipoCliente, tabela);
+			cacheCotacoes.guardar(chave, custoTotal);
+		}
+		return custoTotal;
+	}
+
+	private BigDecimal precificar(CarrinhoDeCompras carrinho, Regiao regiao, TipoCliente tipoCliente,
+			TabelaPrecificacao tabela) {
+		// totais mantidos pelo próprio carrinho quando alterado por ele: custo em O(tipos de produto)
+		TotaisCarrinho totais = carrinho == null ? null : carrinho.getTotais();
+		if (totais != null) {
+			return calcular(totais, regiao, tipoCliente, tabela);
+		}
+		return calcular(carrinho, regiao, tipoCliente, tabela);
+	}
+
+	/**
+	 * Mesmo custo total a partir do retrato de precificação, com a região e o tipo do cliente que ele traz; mesmas
+	 * validações das linhas e mesmo cache de cotações.
+	 */
+	public BigDecimal calcularCustoTotal(PrecificacaoCarrinho precificacao) {
+		if (precificacao == null) {
+			throw new IllegalArgumentException("Item ou produto nulo não permitido.");
+		}
+		for (LinhaPrecificacao linha : precificacao.linhas()) {
+			if (linha.quantidade() == null || linha.quantidade() <= 0) {
+				throw new IllegalArgumentException("Quantidade deve ser maior que zero.");
+			}
+			if (linha.preco() == null || linha.preco().compareTo(BigDecimal.ZERO) < 0) {
+				throw new IllegalArgumentException("Preço inválido (nulo ou negativo).");
+			}
+			if (linha.pesoFisico() == null || linha.pesoFisico().compareTo(BigDecimal.ZERO) < 0) {
+				throw new IllegalArgumentException("Peso inválido (nulo ou negativo).");
+			}
+		}
+
+		TabelaPrecificacao tabela = regrasPrecificacao.atual();
+		CacheCotacoes.ChaveCotacao chave = cacheCotacoes.chave(precificacao, tabela);
+		if (chave == null) {
+			return calcular(precificacao, tabela);
+		}
+		BigDecimal custoTotal = cacheCotacoes.obter(chave);
+		if (custoTotal == null) {
+			custoTotal = calcular(precificacao, tabela);
+			cacheCotacoes.guardar(chave, custoTotal);
+		}
+		return custoTotal;
+	}
+
+	private BigDecimal calcular(PrecificacaoCarrinho precificacao, TabelaPrecificacao tabela) {
+		Regiao regiao = precificacao.regiao();
+		TipoCliente tipoCliente = precificacao.tipoCliente();
+		if (motorPrecificacao == MotorPrecificacao.PONTO_FIXO) {
+			long centavos = CalculadoraCustoPontoFixo.calcularCentavos(precificacao, regiao, tipoCliente,
+					cachePerfilFrete, tabela);
+			if (centavos != CalculadoraCustoPontoFixo.NAO_REPRESENTAVEL) {
+				return BigDecimal.valueOf(centavos, 2);
+			}
+		}
+		return calcular(ResumoCarrinho.de(precificacao, cachePerfilFrete), regiao, tipoCliente, tabela);
+	}
+
+	private BigDecimal calcular(CarrinhoDeCompras carrinho, Regiao regiao, TipoCliente tipoCliente,
+								TabelaPrecificacao tabela) {
+		if (motorPrecificacao == MotorPrecificacao.PONTO_FIXO) {
+			long centavos = CalculadoraCustoPontoFixo.calcularCentavos(carrinho, regiao, tipoCliente,
+					cachePerfilFrete, tabela);
+			if (centavos != CalculadoraCustoPontoFixo.NAO_REPRESENTAVEL) {
+				return BigDecimal.valueOf(centavos, 2);
+			}
+		}
+
+		// resumo do carrinho (subtotais, quantidades por tipo, peso e frágeis) em uma única passada
+		return calcular(ResumoCarrinho.de(carrinho, cachePerfilFrete), regiao, tipoCliente, tabela);
+	}
+
+	private BigDecimal calcular(TotaisCarrinho totais, Regiao regiao, TipoCliente tipoCliente,
+								TabelaPrecificacao tabela) {
+		if (motorPrecificacao == MotorPrecificacao.PONTO_FIXO) {
+			long centavos = CalculadoraCustoPontoFixo.calcularCentavos(totais, regiao, tipoCliente, tabela);
+			if (centavos != CalculadoraCustoPontoFixo.NAO_REPRESENTAVEL) {
+				return BigDecimal.valueOf(centavos, 2);
+			}
+		}
+		return calcular(ResumoCarrinho.de(totais), regiao, tipoCliente, tabela);
+	}
+
+	private BigDecimal calcular(ResumoCarrinho resumo, Regiao regiao, TipoCliente tipoCliente,
+								TabelaPrecificacao tabela) {
+
 		// 1. subtotal dos itens
-		BigDecimal subtotal = calcularSubtotal(carrinho);
+		BigDecimal subtotal = resumo.getSubtotal();
 
 		// 2. desconto por múltiplos itens de mesmo tipo (desconto por tipo e subtotal com desconto por tipo)
-		BigDecimal descontoPorTipo = calcularDescontoPorTipoProduto(carrinho);
+		BigDecimal descontoPorTipo = calcularDescontoPorTipoProduto(resumo, tabela);
 		BigDecimal subtotalComDescontoTipo = subtotal.subtract(descontoPorTipo);
 
 		// 3. desconto por valor de carrinho (desconto por valor e subtotal final)
-		BigDecimal descontoPorValor = calcularDescontoPorValorCarrinho(subtotalComDescontoTipo);
+		BigDecimal descontoPorValor = calcularDescontoPorValorCarrinho(subtotalComDescontoTipo, tabela);
 		BigDecimal subtotalFinal = subtotalComDescontoTipo.subtract(descontoPorValor);
 
-		// 4. cálculo do frete base por peso total (peso total, frete base, fator regional e frete com fator regional)
-		BigDecimal pesoTotal = calcularPesoTotal(carrinho);
-		BigDecimal freteBase = calcularFreteBase(pesoTotal, carrinho);
-		BigDecimal multiplicadorRegiao = freteMultiplicadorPorRegiao(regiao);
-		BigDecimal freteComMultiplicador = freteBase.multiply(multiplicadorRegiao);
+		// 4. cálculo do frete base por peso total (peso total e frete base)
+		BigDecimal pesoTotal = resumo.getPesoTributavel();
+		BigDecimal freteBase = calcularFreteBase(pesoTotal, resumo, tabela);
 
-		// 5. benefício por nível de cliente aplicado no frete
-		BigDecimal freteFinal = aplicarDescontoFidelidadeNoFrete(freteComMultiplicador, tipoCliente);
+		// 5. fator regional combinado com o benefício por nível de cliente aplicado no frete
+		BigDecimal freteFinal = freteBase.multiply(tabela.fatorFrete(regiao, tipoCliente));
 
 		// 6. total da compra
 		BigDecimal totalCompra = subtotalFinal.add(freteFinal);
@@ -118,159 +471,46 @@ public class CompraService {
 
 
 	// ======= METODOS AUXILIARES =======
-	private BigDecimal calcularSubtotal(CarrinhoDeCompras carrinho) {
-		BigDecimal subtotal = BigDecimal.ZERO;
-
-		if (carrinho == null || carrinho.getItens() == null || carrinho.getItens().isEmpty()) {
-			return subtotal;
-		}
-
-		for (ItemCompra item : carrinho.getItens()) {
-			BigDecimal preco = item.getProduto().getPreco();
-			Long quantidade = item.getQuantidade();
-			subtotal = subtotal.add(preco.multiply(BigDecimal.valueOf(quantidade)));
-		}
-		return subtotal;
-	}
-
-	private BigDecimal calcularDescontoPorTipoProduto(CarrinhoDeCompras carrinho) {
+	private BigDecimal calcularDescontoPorTipoProduto(ResumoCarrinho resumo, TabelaPrecificacao tabela) {
 		BigDecimal descontoTotal = BigDecimal.ZERO;
 
-		if (carrinho == null || carrinho.getItens() == null || carrinho.getItens().isEmpty()) {
-			return descontoTotal;
-		}
-
-		List<TipoProduto> tiposVerificados = new ArrayList<>(); // registro de quais tipos já foram verificados
-
-		for (ItemCompra item : carrinho.getItens()) {
-			TipoProduto tipo = item.getProduto().getTipo();
-			if (tiposVerificados.contains(tipo)) continue; // evita calcular o desconto mais de uma vez para o mesmo tipo de produto
-
-			int qtdTotalTipo = 0;
-			BigDecimal subtotalTipo = BigDecimal.ZERO;
-
-			for (ItemCompra it : carrinho.getItens()) {
-				if (it.getProduto().getTipo().equals(tipo)) {
-					qtdTotalTipo += it.getQuantidade();
-					subtotalTipo = subtotalTipo.add(it.getProduto().getPreco()
-							.multiply(BigDecimal.valueOf(it.getQuantidade())));
-				}
+		for (int tipo = 0; tipo < resumo.quantidadeDeTipos(); tipo++) {
+			BigDecimal percentual = tabela.percentualDescontoPorTipo(resumo.getQuantidadePorTipo(tipo));
+			if (percentual == null) {
+				continue; // sem desconto para o tipo (inclui tipos ausentes do carrinho)
 			}
 
-			BigDecimal percentual = BigDecimal.ZERO;
-			if (qtdTotalTipo >= 3 && qtdTotalTipo <= 4) {
-				percentual = BigDecimal.valueOf(0.05);
-			} else if (qtdTotalTipo >= 5 && qtdTotalTipo <= 7) {
-				percentual = BigDecimal.valueOf(0.10);
-			} else if (qtdTotalTipo >= 8){
-				percentual = BigDecimal.valueOf(0.15);
+			BigDecimal subtotalTipo = resumo.getSubtotalPorTipo(tipo);
+			if (subtotalTipo == null) {
+				continue; // tipo sem subtotal: nada a descontar
 			}
-
 			descontoTotal = descontoTotal.add(subtotalTipo.multiply(percentual));
-			tiposVerificados.add(tipo);
 		}
 		return descontoTotal;
 	}
 
-	private BigDecimal calcularDescontoPorValorCarrinho(BigDecimal subtotal) {
+	private BigDecimal calcularDescontoPorValorCarrinho(BigDecimal subtotal, TabelaPrecificacao tabela) {
 		if (subtotal == null) {
 			return BigDecimal.ZERO;
 		}
 
-		if (subtotal.compareTo(BigDecimal.valueOf(1000)) > 0) {
-			return subtotal.multiply(BigDecimal.valueOf(0.20));
-		} else if (subtotal.compareTo(BigDecimal.valueOf(500)) > 0) {
-			return subtotal.multiply(BigDecimal.valueOf(0.10));
-		} else {
-			return BigDecimal.ZERO;
-		}
-	}
-
-	private BigDecimal calcularPesoTotal(CarrinhoDeCompras carrinho) {
-		BigDecimal pesoTotal = BigDecimal.ZERO;
-
-		if (carrinho == null || carrinho.getItens() == null || carrinho.getItens().isEmpty()) {
-			return pesoTotal;
-		}
-
-		for (ItemCompra item : carrinho.getItens()) {
-			Produto produto = item.getProduto();
-			BigDecimal pesoCubico = produto.getComprimento()
-					.multiply(produto.getLargura())
-					.multiply(produto.getAltura())
-					.divide(PESO_CUBICO_DIVISOR, 4, RoundingMode.HALF_UP);
-
-			BigDecimal pesoTributavel = produto.getPesoFisico().max(pesoCubico);
-			pesoTotal = pesoTotal.add(pesoTributavel.multiply(BigDecimal.valueOf(item.getQuantidade())));
-		}
-		return pesoTotal;
+		BigDecimal percentual = tabela.percentualDescontoPorValor(subtotal);
+		return percentual == null ? BigDecimal.ZERO : subtotal.multiply(percentual);
 	}
 
-	private BigDecimal calcularFreteBase(BigDecimal pesoTotal, CarrinhoDeCompras carrinho) {
+	private BigDecimal calcularFreteBase(BigDecimal pesoTotal, ResumoCarrinho resumo, TabelaPrecificacao tabela) {
 
-		if (carrinho == null || carrinho.getItens() == null || carrinho.getItens().isEmpty()) {
+		if (resumo.isVazio()) {
 			return BigDecimal.ZERO;
 		}
 
-		BigDecimal valorPorKg = BigDecimal.ZERO;
-		if (pesoTotal.compareTo(BigDecimal.ZERO) >= 0 && pesoTotal.compareTo(BigDecimal.valueOf(5)) <= 0) {
-			valorPorKg = BigDecimal.ZERO;
-		} else if (pesoTotal.compareTo(BigDecimal.valueOf(5)) > 0 && pesoTotal.compareTo(BigDecimal.valueOf(10)) <= 0) {
-			valorPorKg = BigDecimal.valueOf(2);
-		} else if (pesoTotal.compareTo(BigDecimal.valueOf(10)) > 0 && pesoTotal.compareTo(BigDecimal.valueOf(50)) <= 0) {
-			valorPorKg = BigDecimal.valueOf(4);
-		} else if (pesoTotal.compareTo(BigDecimal.valueOf(50)) > 0) {
-			valorPorKg = BigDecimal.valueOf(7);
-		}
-
+		BigDecimal valorPorKg = tabela.valorPorKg(pesoTotal);
 		BigDecimal frete = pesoTotal.multiply(valorPorKg);
-		if (valorPorKg.compareTo(BigDecimal.ZERO) > 0 && frete.compareTo(TAXA_MINIMA_FRETE) < 0) {
-			frete = TAXA_MINIMA_FRETE;
+		if (valorPorKg.signum() > 0 && frete.compareTo(tabela.getTaxaMinimaFrete()) < 0) {
+			frete = tabela.getTaxaMinimaFrete();
 		}
 
-		BigDecimal taxaFragil = BigDecimal.ZERO;
-		for (ItemCompra item : carrinho.getItens()) {
-			if (Boolean.TRUE.equals(item.getProduto().isFragil())) {
-				taxaFragil = taxaFragil.add(TAXA_FRAGIL_POR_ITEM.multiply(BigDecimal.valueOf(item.getQuantidade())));
-			}
-		}
+		BigDecimal taxaFragil = tabela.getTaxaFragilPorItem().multiply(BigDecimal.valueOf(resumo.getQuantidadeFragil()));
 		return frete.add(taxaFragil);
 	}
-
-	private BigDecimal freteMultiplicadorPorRegiao(Regiao regiao) {
-		if (regiao == null) {
-			return BigDecimal.ONE;
-		}
-
-		switch (regiao) {
-			case SUDESTE:
-				return BigDecimal.valueOf(1.00);
-			case SUL:
-				return BigDecimal.valueOf(1.05);
-			case NORDESTE:
-				return BigDecimal.valueOf(1.10);
-			case CENTRO_OESTE:
-				return BigDecimal.valueOf(1.20);
-			case NORTE:
-				return BigDecimal.valueOf(1.30);
-			default:
-				return BigDecimal.ONE;
-		}
-	}
-
-	private BigDecimal aplicarDescontoFidelidadeNoFrete(BigDecimal frete, TipoCliente tipoCliente) {
-		if (frete == null) {
-			return BigDecimal.ZERO;
-		}
-
-		switch (tipoCliente) {
-			case OURO:
-				return BigDecimal.ZERO;
-			case PRATA:
-				return frete.multiply(BigDecimal.valueOf(0.5));
-			case BRONZE:
-			default:
-				return frete;
-		}
-	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,317 @@
+package ecommerce.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.external.IEstoqueExternal;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Verificação de disponibilidade assíncrona, com chamada de cobertura (hedged request) opcional.
+ *
+ * A consulta roda em uma thread de {@link ExecutorChamadasExternas}. Com {@code ecommerce.estoque.hedge.habilitado},
+ * se ela não responde em um atraso igual ao percentil {@code ecommerce.estoque.hedge.percentil} das latências
+ * recentes (de respostas e de falhas, não de chamadas canceladas; nunca menor que
+ * {@code ecommerce.estoque.hedge.atraso-minimo}), uma segunda consulta igual é feita; vale a primeira resposta
+ * bem-sucedida e a outra chamada é cancelada (interrompida). As coberturas são limitadas por um
+ * orçamento: cada consulta acrescenta {@code ecommerce.estoque.hedge.orcamento} de crédito (até
+ * {@value #CREDITO_MAXIMO} coberturas acumuladas) e cada cobertura gasta um crédito, de modo que as coberturas ficam
+ * em torno dessa fração do tráfego mesmo com o estoque inteiro lento.
+ *
+ * Só a verificação de disponibilidade, que não altera o estoque, é repetida; baixas, reservas e pagamentos nunca
+ * passam por aqui.
+ */
+@Component
+public class ConsultaDisponibilidade implements MeterBinder
+{
+	private static final int AMOSTRAS = 512;
+	private static final int AMOSTRAS_MINIMAS = 64;
+	private static final int RECALCULAR_A_CADA = 32;
+	private static final long CREDITO_MAXIMO = 10;
+	private static final long MILESIMOS = 1000;
+
+	private final IEstoqueExternal estoque;
+	private final Executor executor;
+	private final boolean habilitado;
+	private final double percentil;
+	private final long atrasoMinimoNanos;
+	private final long creditoPorConsulta;
+
+	private final AtomicLongArray latencias = new AtomicLongArray(AMOSTRAS);
+	private final AtomicLong amostrasRegistradas = new AtomicLong();
+	private volatile long atrasoNanos = Long.MAX_VALUE; // sem amostras suficientes, não há cobertura
+	private final AtomicLong credito = new AtomicLong(); // em milésimos de cobertura
+
+	private final LongAdder coberturasEnviadas = new LongAdder();
+	private final LongAdder coberturasVencedoras = new LongAdder();
+	private final LongAdder coberturasNegadas = new LongAdder();
+
+	private final ScheduledThreadPoolExecutor temporizador;
+
+	@Autowired
+	public ConsultaDisponibilidade(IEstoqueExternal estoque, ExecutorChamadasExternas executor,
+			@Value("${ecommerce.estoque.hedge.habilitado:false}") boolean habilitado,
+			@Value("${ecommerce.estoque.hedge.percentil:0.95}") double percentil,
+			@Value("${ecommerce.estoque.hedge.atraso-minimo:PT0.005S}") Duration atrasoMinimo,
+			@Value("${ecommerce.estoque.hedge.orcamento:0.05}") double orcamento)
+	{
+		if (percentil <= 0 || percentil >= 1 || orcamento < 0 || orcamento > 1)
+		{
+			throw new IllegalArgumentException("Percentil deve estar entre 0 e 1 e orçamento entre 0 e 1.");
+		}
+		this.estoque = estoque;
+		this.executor = executor;
+		this.habilitado = habilitado;
+		this.percentil = percentil;
+		this.atrasoMinimoNanos = atrasoMinimo.toNanos();
+		this.creditoPorConsulta = Math.round(orcamento * MILESIMOS);
+		this.temporizador = habilitado ? criarTemporizador() : null;
+	}
+
+	/** Consulta sem cobertura, para instâncias criadas fora do Spring. */
+	public static ConsultaDisponibilidade semHedge(IEstoqueExternal estoque, ExecutorChamadasExternas executor)
+	{
+		return new ConsultaDisponibilidade(estoque, executor, false, 0.95, Duration.ZERO, 0);
+	}
+
+	/**
+	 * Inicia a verificação e devolve o resultado futuro. Cancelar o {@link Future} interrompe as chamadas em
+	 * andamento; falhas chegam como {@link ExecutionException} com a exceção do estoque.
+	 */
+	public Future<DisponibilidadeDTO> consultar(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return iniciar(() -> estoque.verificarDisponibilidade(produtosIds, produtosQuantidades));
+	}
+
+	/**
+	 * Como {@link #consultar(List, List)}, com o pedido em arrays e o resultado em posições indisponíveis (ver
+	 * {@link IEstoqueExternal#verificarIndisponiveis}): vazio quando tudo está disponível.
+	 */
+	public Future<BitSet> consultar(long[] produtosIds, long[] produtosQuantidades)
+	{
+		return iniciar(() -> estoque.verificarIndisponiveis(produtosIds, produtosQuantidades));
+	}
+
+	private <T> Future<T> iniciar(Callable<T> verificacao)
+	{
+		Consulta<T> consulta = new Consulta<>(verificacao);
+		consulta.tentar(false);
+		if (habilitado)
+		{
+			credito.accumulateAndGet(creditoPorConsulta, (atual, mais) -> Math.min(atual + mais,
+					CREDITO_MAXIMO * MILESIMOS));
+			long atraso = atrasoNanos;
+			if (atraso != Long.MAX_VALUE && !consulta.resultado.isDone())
+			{
+				ScheduledFuture<?> cobertura = temporizador.schedule(consulta::cobrir, atraso,
+						TimeUnit.NANOSECONDS);
+				consulta.resultado.whenComplete((disponibilidade, erro) -> cobertura.cancel(false));
+			}
+		}
+		return consulta.resultado;
+	}
+
+	private boolean gastarCredito()
+	{
+		long atual;
+		do
+		{
+			atual = credito.get();
+			if (atual < MILESIMOS)
+			{
+				return false;
+			}
+		}
+		while (!credito.compareAndSet(atual, atual - MILESIMOS));
+		return true;
+	}
+
+	private void registrarLatencia(long nanos)
+	{
+		long n = amostrasRegistradas.getAndIncrement();
+		latencias.set((int) (n % AMOSTRAS), nanos);
+		if (n + 1 >= AMOSTRAS_MINIMAS && (n + 1) % RECALCULAR_A_CADA == 0)
+		{
+			int quantidade = (int) Math.min(n + 1, AMOSTRAS);
+			long[] ordenadas = new long[quantidade];
+			for (int i = 0; i < quantidade; i++)
+			{
+				ordenadas[i] = latencias.get(i);
+			}
+			Arrays.sort(ordenadas);
+			long noPercentil = ordenadas[Math.min(quantidade - 1, (int) Math.ceil(percentil * quantidade) - 1)];
+			atrasoNanos = Math.max(atrasoMinimoNanos, noPercentil);
+		}
+	}
+
+	private static ScheduledThreadPoolExecutor criarTemporizador()
+	{
+		ScheduledThreadPoolExecutor temporizador = new ScheduledThreadPoolExecutor(1, tarefa -> {
+			Thread thread = new Thread(tarefa, "hedge-disponibilidade");
+			thread.setDaemon(true);
+			return thread;
+		});
+		temporizador.setRemoveOnCancelPolicy(true);
+		return temporizador;
+	}
+
+	public Duration getAtraso()
+	{
+		long atraso = atrasoNanos;
+		return atraso == Long.MAX_VALUE ? null : Duration.ofNanos(atraso);
+	}
+
+	public long getCoberturasEnviadas()
+	{
+		return coberturasEnviadas.sum();
+	}
+
+	public long getCoberturasVencedoras()
+	{
+		return coberturasVencedoras.sum();
+	}
+
+	public long getCoberturasNegadas()
+	{
+		return coberturasNegadas.sum();
+	}
+
+	@PreDestroy
+	public void encerrar()
+	{
+		if (temporizador != null)
+		{
+			temporizador.shutdownNow();
+		}
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry)
+	{
+		FunctionCounter.builder("ecommerce.estoque.hedge", coberturasEnviadas, LongAdder::sum)
+				.tag("resultado", "enviada")
+				.description("Chamadas de cobertura da verificação de disponibilidade")
+				.register(registry);
+		FunctionCounter.builder("ecommerce.estoque.hedge", coberturasVencedoras, LongAdder::sum)
+				.tag("resultado", "vencedora")
+				.description("Chamadas de cobertura da verificação de disponibilidade")
+				.register(registry);
+		FunctionCounter.builder("ecommerce.estoque.hedge", coberturasNegadas, LongAdder::sum)
+				.tag("resultado", "sem-orcamento")
+				.description("Chamadas de cobertura da verificação de disponibilidade")
+				.register(registry);
+		TimeGauge.builder("ecommerce.estoque.hedge.atraso", this, TimeUnit.NANOSECONDS,
+				c -> c.atrasoNanos == Long.MAX_VALUE ? 0 : c.atrasoNanos)
+				.description("Espera antes da chamada de cobertura (percentil das latências recentes)")
+				.register(registry);
+	}
+
+	/** Uma verificação com até duas chamadas; o resultado é o da primeira que responder com sucesso. */
+	private final class Consulta<T>
+	{
+		final Callable<T> verificacao;
+		final CompletableFuture<T> resultado = new CompletableFuture<>();
+		final AtomicInteger pendentes = new AtomicInteger();
+
+		Consulta(Callable<T> verificacao)
+		{
+			this.verificacao = verificacao;
+		}
+
+		void cobrir()
+		{
+			if (resultado.isDone())
+			{
+				return;
+			}
+			if (!gastarCredito())
+			{
+				coberturasNegadas.increment();
+				return;
+			}
+			coberturasEnviadas.increment();
+			tentar(true);
+		}
+
+		void tentar(boolean cobertura)
+		{
+			pendentes.incrementAndGet();
+			long inicio = System.nanoTime();
+			FutureTask<T> chamada = new FutureTask<>(verificacao)
+			{
+				@Override
+				protected void done()
+				{
+					if (isCancelled())
+					{
+						return;
+					}
+					// falhas entram nas amostras com o tempo que levaram: um estoque que falha devagar (tempo esgotado)
+					// não some do percentil e não deixa o atraso da cobertura baixo demais
+					if (habilitado)
+					{
+						registrarLatencia(System.nanoTime() - inicio);
+					}
+					try
+					{
+						T disponibilidade = get();
+						if (resultado.complete(disponibilidade) && cobertura)
+						{
+							coberturasVencedoras.increment();
+						}
+					}
+					catch (ExecutionException e)
+					{
+						// com a outra chamada ainda pendente, a resposta dela decide
+						if (pendentes.decrementAndGet() == 0)
+						{
+							resultado.completeExceptionally(e.getCause());
+						}
+					}
+					catch (InterruptedException e)
+					{
+						Thread.currentThread().interrupt();
+					}
+				}
+			};
+			// terminada a consulta (inclusive cancelada por quem chamou), a chamada que sobrou é interrompida
+			resultado.whenComplete((disponibilidade, erro) -> chamada.cancel(true));
+			try
+			{
+				executor.execute(chamada);
+			}
+			catch (RejectedExecutionException e)
+			{
+				if (pendentes.decrementAndGet() == 0)
+				{
+					resultado.completeExceptionally(e);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import ecommerce.dto.CotacaoDTO;
+import ecommerce.dto.CotacaoRequisicaoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Cotação (somente leitura) de vários carrinhos de uma vez.
+ *
+ * Os carrinhos são carregados em uma única consulta e o {@link CompraService#calcularCustoTotal} de cada um roda em
+ * um {@link ForkJoinPool} próprio, limitado a {@code ecommerce.cotacao.paralelismo} threads (padrão: número de
+ * processadores). Nenhuma chamada externa (estoque ou pagamento) é feita.
+ */
+@Service
+public class CotacaoService
+{
+	private final CarrinhoDeComprasService carrinhoService;
+	private final CompraService compraService;
+	private final int maximoPorLote;
+	private final ForkJoinPool pool;
+
+	@Autowired
+	public CotacaoService(CarrinhoDeComprasService carrinhoService, CompraService compraService,
+			@Value("${ecommerce.cotacao.paralelismo:0}") int paralelismo,
+			@Value("${ecommerce.cotacao.maximo-por-lote:5000}") int maximoPorLote)
+	{
+		this.carrinhoService = carrinhoService;
+		this.compraService = compraService;
+		this.maximoPorLote = maximoPorLote;
+		this.pool = new ForkJoinPool(paralelismo > 0 ? paralelismo : Runtime.getRuntime().availableProcessors());
+	}
+
+	public LoteCotacao cotar(List<CotacaoRequisicaoDTO> pedidos)
+	{
+		if (pedidos == null || pedidos.isEmpty())
+		{
+			throw new IllegalArgumentException("Nenhuma cotação solicitada.");
+		}
+		if (pedidos.size() > maximoPorLote)
+		{
+			throw new IllegalArgumentException("Lote excede o máximo de " + maximoPorLote + " cotações.");
+		}
+
+		Set<Long> carrinhoIds = new HashSet<>();
+		for (CotacaoRequisicaoDTO pedido : pedidos)
+		{
+			if (pedido != null && pedido.carrinhoId() != null)
+			{
+				carrinhoIds.add(pedido.carrinhoId());
+			}
+		}
+
+		Map<Long, CarrinhoDeCompras> carrinhos = new HashMap<>();
+		for (CarrinhoDeCompras carrinho : carrinhoService.buscarComItensPorIds(carrinhoIds))
+		{
+			carrinhos.put(carrinho.getId(), carrinho);
+		}
+
+		ExecutorCompletionService<CotacaoDTO> conclusao = new ExecutorCompletionService<>(pool);
+		List<Future<CotacaoDTO>> tarefas = new ArrayList<>(pedidos.size());
+		for (CotacaoRequisicaoDTO pedido : pedidos)
+		{
+			CarrinhoDeCompras carrinho = pedido == null ? null : carrinhos.get(pedido.carrinhoId());
+			tarefas.add(conclusao.submit(() -> cotar(pedido, carrinho)));
+		}
+		return new LoteCotacao(conclusao, tarefas);
+	}
+
+	private CotacaoDTO cotar(CotacaoRequisicaoDTO pedido, CarrinhoDeCompras carrinho)
+	{
+		Long carrinhoId = pedido == null ? null : pedido.carrinhoId();
+		Long clienteId = pedido == null ? null : pedido.clienteId();
+
+		Cliente cliente = carrinho == null ? null : carrinho.getCliente();
+		if (cliente == null || !Objects.equals(cliente.getId(), clienteId))
+		{
+			return new CotacaoDTO(carrinhoId, clienteId, false, null, "Carrinho não encontrado.");
+		}
+
+		try
+		{
+			BigDecimal custoTotal = compraService.calcularCustoTotal(carrinho, cliente.getRegiao(), cliente.getTipo());
+			return new CotacaoDTO(carrinhoId, clienteId, true, custoTotal, null);
+		}
+		catch (IllegalArgumentException e)
+		{
+			return new CotacaoDTO(carrinhoId, clienteId, false, null, e.getMessage());
+		}
+		catch (RuntimeException e)
+		{
+			return new CotacaoDTO(carrinhoId, clienteId, false, null, "Erro ao calcular cotação.");
+		}
+	}
+
+	@PreDestroy
+	public void encerrar()
+	{
+		pool.shutdownNow();
+	}
+}
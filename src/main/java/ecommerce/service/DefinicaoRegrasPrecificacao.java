@@ -0,0 +1,38 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+
+/**
+ * Formato do arquivo de regras de precificação ({@code regras-precificacao.json}). É compilado em uma
+ * {@link TabelaPrecificacao} por {@link RegrasPrecificacao}.
+ */
+public record DefinicaoRegrasPrecificacao(
+		List<FaixaDescontoPorTipo> descontoPorTipo,
+		List<FaixaDescontoPorValor> descontoPorValor,
+		List<FaixaFretePorPeso> fretePorPeso,
+		BigDecimal taxaMinimaFrete,
+		BigDecimal taxaFragilPorItem,
+		BigDecimal multiplicadorRegiaoPadrao,
+		Map<Regiao, BigDecimal> multiplicadorPorRegiao,
+		Map<TipoCliente, BigDecimal> fatorFretePorTipoCliente)
+{
+	/** Desconto aplicado ao subtotal de um tipo de produto com pelo menos {@code quantidadeMinima} unidades. */
+	public record FaixaDescontoPorTipo(long quantidadeMinima, BigDecimal percentual)
+	{
+	}
+
+	/** Desconto aplicado ao subtotal do carrinho quando ele é estritamente maior que {@code acimaDe}. */
+	public record FaixaDescontoPorValor(BigDecimal acimaDe, BigDecimal percentual)
+	{
+	}
+
+	/** Valor por kg para pesos até {@code ate} kg (inclusive); a última faixa não tem limite ({@code ate} nulo). */
+	public record FaixaFretePorPeso(BigDecimal ate, BigDecimal valorPorKg)
+	{
+	}
+}
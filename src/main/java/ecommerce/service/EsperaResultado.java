@@ -0,0 +1,62 @@
+package ecommerce.service;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Espera pelo resultado de uma tarefa feita em outra thread (chamada externa, finalização coalescida, baixa em lote),
+ * relançando a falha da tarefa como ela aconteceu: {@link RuntimeException} e {@link Error} sem o
+ * {@link ExecutionException} em volta, para que quem chamou trate (e o controller mapeie) a exceção original.
+ */
+final class EsperaResultado
+{
+	private EsperaResultado()
+	{
+	}
+
+	/**
+	 * Resultado da tarefa. Interrompida a espera, a tarefa continua (o resultado pode ser de outros que também o
+	 * aguardam) e a interrupção é relançada como {@link CompletionException}.
+	 */
+	static <T> T aguardar(Future<T> futuro)
+	{
+		return aguardar(futuro, false);
+	}
+
+	/** Como {@link #aguardar}, mas a tarefa, usada só por quem espera, é cancelada se a espera for interrompida. */
+	static <T> T aguardarOuCancelar(Future<T> futuro)
+	{
+		return aguardar(futuro, true);
+	}
+
+	private static <T> T aguardar(Future<T> futuro, boolean cancelarSeInterrompido)
+	{
+		try
+		{
+			return futuro.get();
+		}
+		catch (InterruptedException e)
+		{
+			if (cancelarSeInterrompido)
+			{
+				futuro.cancel(true);
+			}
+			Thread.currentThread().interrupt();
+			throw new CompletionException("Compra interrompida.", e);
+		}
+		catch (ExecutionException e)
+		{
+			Throwable causa = e.getCause();
+			if (causa instanceof RuntimeException excecao)
+			{
+				throw excecao;
+			}
+			if (causa instanceof Error erro)
+			{
+				throw erro;
+			}
+			throw new CompletionException(causa);
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package ecommerce.service;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Threads usadas para as chamadas a {@link ecommerce.external.IEstoqueExternal} que {@link CompraService} faz em
+ * paralelo com a precificação.
+ *
+ * São até {@code ecommerce.externo.threads} threads, criadas sob demanda e encerradas após um minuto ociosas; com
+ * {@code ecommerce.threads-virtuais.habilitado=true}, cada chamada roda em uma thread virtual própria, sem limite de
+ * pool. As tarefas são {@link FutureTask}s, de modo que cancelar o {@link Future} interrompe a chamada em andamento.
+ */
+@Component
+public class ExecutorChamadasExternas implements Executor
+{
+	private final ExecutorService pool;
+
+	public ExecutorChamadasExternas(int threads)
+	{
+		this(threads, false);
+	}
+
+	@Autowired
+	public ExecutorChamadasExternas(@Value("${ecommerce.externo.threads:64}") int threads,
+			@Value("${ecommerce.threads-virtuais.habilitado:false}") boolean threadsVirtuais)
+	{
+		if (threadsVirtuais)
+		{
+			this.pool = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("chamada-externa-", 1).factory());
+			return;
+		}
+
+		AtomicInteger sequencia = new AtomicInteger();
+		ThreadFactory fabrica = tarefa -> {
+			Thread thread = new Thread(tarefa, "chamada-externa-" + sequencia.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		ThreadPoolExecutor threadPool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), fabrica);
+		threadPool.allowCoreThreadTimeOut(true);
+		this.pool = threadPool;
+	}
+
+	/** Executor compartilhado (16 threads) para instâncias criadas fora do Spring. */
+	public static ExecutorChamadasExternas padrao()
+	{
+		return Padrao.INSTANCIA;
+	}
+
+	private static final class Padrao
+	{
+		static final ExecutorChamadasExternas INSTANCIA = new ExecutorChamadasExternas(16);
+	}
+
+	<T> Future<T> submeter(Callable<T> chamada)
+	{
+		FutureTask<T> tarefa = new FutureTask<>(chamada);
+		execute(tarefa);
+		return tarefa;
+	}
+
+	@Override
+	public void execute(Runnable tarefa)
+	{
+		pool.execute(tarefa);
+	}
+
+	@PreDestroy
+	public void encerrar()
+	{
+		pool.shutdownNow();
+	}
+}
@@ -0,0 +1,12 @@
+package ecommerce.service;
+
+/** Pedido recusado na hora por falta de espaço na fila de processamento. */
+public class FilaCheiaException extends RuntimeException
+{
+	private static final long serialVersionUID = 1L;
+
+	public FilaCheiaException(String mensagem)
+	{
+		super(mensagem);
+	}
+}
@@ -0,0 +1,300 @@
+package ecommerce.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.dto.SituacaoFinalizacao;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Finalização de compra assíncrona, para picos de tráfego: o pedido é validado (cliente e carrinho do cliente
+ * existentes), entra em uma fila limitada e recebe na hora um identificador;
+ * {@code ecommerce.finalizacao.assincrona.threads} threads executam as finalizações (pelo
+ * {@link CoalescedorFinalizacao}, que também agrupa as repetições) e o resultado é consultado depois pelo
+ * identificador.
+ *
+ * Com a fila ({@code ecommerce.finalizacao.assincrona.capacidade-fila}) cheia e todas as threads ocupadas, o pedido
+ * é recusado na hora com {@link FilaCheiaException}, sem esperar vaga. Finalizações terminadas ficam disponíveis por
+ * {@code ecommerce.finalizacao.assincrona.resultado-ttl}, e no máximo
+ * {@code ecommerce.finalizacao.assincrona.maximo-guardadas} finalizações são acompanhadas: além disso, as terminadas
+ * que expirariam primeiro são descartadas antes do prazo. Pendentes nunca são descartadas: o máximo precisa
+ * comportar todas as que as threads e a fila admitem.
+ */
+@Component
+public class FinalizacaoAssincrona implements MeterBinder
+{
+	private final CoalescedorFinalizacao finalizacao;
+	private final ClienteService clienteService;
+	private final CarrinhoDeComprasService carrinhoService;
+	private final ThreadPoolExecutor executor;
+	private final long ttlNanos;
+	private final int maximoGuardadas;
+	private final LongSupplier relogio;
+
+	private final ConcurrentHashMap<String, Acompanhamento> finalizacoes = new ConcurrentHashMap<>();
+
+	private final LongAdder aceitas = new LongAdder();
+	private final LongAdder recusadas = new LongAdder();
+	private final LongAdder descartadas = new LongAdder();
+
+	@Autowired
+	public FinalizacaoAssincrona(CoalescedorFinalizacao finalizacao, ClienteService clienteService,
+			CarrinhoDeComprasService carrinhoService,
+			@Value("${ecommerce.finalizacao.assincrona.threads:16}") int threads,
+			@Value("${ecommerce.finalizacao.assincrona.capacidade-fila:1000}") int capacidadeFila,
+			@Value("${ecommerce.finalizacao.assincrona.resultado-ttl:PT10M}") Duration ttl,
+			@Value("${ecommerce.finalizacao.assincrona.maximo-guardadas:100000}") int maximoGuardadas)
+	{
+		this(finalizacao, clienteService, carrinhoService, threads, capacidadeFila, ttl, maximoGuardadas,
+				System::nanoTime);
+	}
+
+	FinalizacaoAssincrona(CoalescedorFinalizacao finalizacao, ClienteService clienteService,
+			CarrinhoDeComprasService carrinhoService, int threads, int capacidadeFila, Duration ttl,
+			int maximoGuardadas, LongSupplier relogio)
+	{
+		if (threads < 1 || capacidadeFila < 1)
+		{
+			throw new IllegalArgumentException("Threads e capacidade da fila devem ser maiores que zero.");
+		}
+		if (maximoGuardadas < threads + capacidadeFila)
+		{
+			throw new IllegalArgumentException(
+					"Máximo de finalizações guardadas deve comportar as threads e a fila (" + (threads + capacidadeFila)
+							+ ").");
+		}
+		this.finalizacao = finalizacao;
+		this.clienteService = clienteService;
+		this.carrinhoService = carrinhoService;
+		this.ttlNanos = ttl.toNanos();
+		this.maximoGuardadas = maximoGuardadas;
+		this.relogio = relogio;
+		AtomicInteger numero = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(capacidadeFila), tarefa -> {
+					Thread thread = new Thread(tarefa, "finalizacao-assincrona-" + numero.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}, new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	/**
+	 * Valida e enfileira a finalização; devolve o identificador para {@link #consultar}.
+	 *
+	 * @throws IllegalArgumentException carrinho ou cliente inválido ou inexistente
+	 * @throws FilaCheiaException       fila cheia
+	 */
+	public String enfileirar(Long carrinhoId, Long clienteId)
+	{
+		if (carrinhoId == null || carrinhoId <= 0 || clienteId == null || clienteId <= 0)
+		{
+			throw new IllegalArgumentException("Carrinho e cliente devem ser informados.");
+		}
+		// mesmas mensagens do /finalizar, mas antes do 202: um id inexistente não ocupa a fila nem o acompanhamento
+		if (!clienteService.existe(clienteId))
+		{
+			throw new IllegalArgumentException("Cliente não encontrado");
+		}
+		if (!carrinhoService.existe(carrinhoId, clienteId))
+		{
+			throw new IllegalArgumentException("Carrinho não encontrado.");
+		}
+		if (finalizacoes.size() >= maximoGuardadas)
+		{
+			abrirEspaco();
+		}
+
+		String id = UUID.randomUUID().toString();
+		Acompanhamento acompanhamento = new Acompanhamento(carrinhoId, clienteId);
+		finalizacoes.put(id, acompanhamento);
+		try
+		{
+			executor.execute(() -> executar(acompanhamento));
+		}
+		catch (RejectedExecutionException e)
+		{
+			finalizacoes.remove(id);
+			recusadas.increment();
+			throw new FilaCheiaException("Muitas compras em processamento. Tente novamente em instantes.");
+		}
+		aceitas.increment();
+		return id;
+	}
+
+	private void executar(Acompanhamento acompanhamento)
+	{
+		acompanhamento.situacao = SituacaoFinalizacao.PROCESSANDO;
+		try
+		{
+			CompraDTO compra = finalizacao.finalizarCompra(acompanhamento.carrinhoId, acompanhamento.clienteId);
+			acompanhamento.terminar(SituacaoFinalizacao.CONCLUIDA, compra, null, relogio.getAsLong() + ttlNanos);
+		}
+		catch (RuntimeException | Error e)
+		{
+			acompanhamento.terminar(SituacaoFinalizacao.FALHOU, null, e, relogio.getAsLong() + ttlNanos);
+		}
+	}
+
+	/** Estado atual da finalização, ou {@code null} se o identificador não existe ou o resultado já expirou. */
+	public Resultado consultar(String finalizacaoId)
+	{
+		Acompanhamento acompanhamento = finalizacaoId == null ? null : finalizacoes.get(finalizacaoId);
+		if (acompanhamento == null || acompanhamento.expirou(relogio.getAsLong()))
+		{
+			return null;
+		}
+		return acompanhamento.resultado();
+	}
+
+	/** Remove os resultados terminados já expirados. */
+	@Scheduled(fixedDelayString = "${ecommerce.finalizacao.assincrona.resultado-ttl:PT10M}")
+	public void removerExpiradas()
+	{
+		long agora = relogio.getAsLong();
+		finalizacoes.values().removeIf(acompanhamento -> acompanhamento.expirou(agora));
+	}
+
+	/**
+	 * Acompanhamento no máximo: remove as expiradas e, se não bastar, descarta as terminadas que expirariam primeiro
+	 * até abrir uma vaga. O limite é aproximado com pedidos simultâneos (cada um pode passar por uma vaga só).
+	 */
+	private synchronized void abrirEspaco()
+	{
+		removerExpiradas();
+		int excesso = finalizacoes.size() - maximoGuardadas + 1;
+		if (excesso <= 0)
+		{
+			return;
+		}
+		List<Map.Entry<String, Acompanhamento>> terminadas = new ArrayList<>();
+		for (Map.Entry<String, Acompanhamento> entrada : finalizacoes.entrySet())
+		{
+			if (entrada.getValue().terminado != null)
+			{
+				terminadas.add(entrada);
+			}
+		}
+		terminadas.sort(Comparator.comparingLong(entrada -> entrada.getValue().expiraEmNanos));
+		for (int i = 0; i < excesso && i < terminadas.size(); i++)
+		{
+			Map.Entry<String, Acompanhamento> entrada = terminadas.get(i);
+			if (finalizacoes.remove(entrada.getKey(), entrada.getValue()))
+			{
+				descartadas.increment();
+			}
+		}
+	}
+
+	public int getNaFila()
+	{
+		return executor.getQueue().size();
+	}
+
+	public long getAceitas()
+	{
+		return aceitas.sum();
+	}
+
+	public long getRecusadas()
+	{
+		return recusadas.sum();
+	}
+
+	public long getDescartadas()
+	{
+		return descartadas.sum();
+	}
+
+	@PreDestroy
+	public void encerrar()
+	{
+		executor.shutdownNow();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry)
+	{
+		FunctionCounter.builder("ecommerce.finalizacao.assincrona", aceitas, LongAdder::sum)
+				.tag("resultado", "aceita")
+				.description("Pedidos de finalização assíncrona")
+				.register(registry);
+		FunctionCounter.builder("ecommerce.finalizacao.assincrona", recusadas, LongAdder::sum)
+				.tag("resultado", "fila-cheia")
+				.description("Pedidos de finalização assíncrona")
+				.register(registry);
+		Gauge.builder("ecommerce.finalizacao.assincrona.fila", this, FinalizacaoAssincrona::getNaFila)
+				.description("Finalizações aguardando uma thread")
+				.register(registry);
+		Gauge.builder("ecommerce.finalizacao.assincrona.em.andamento", executor, ThreadPoolExecutor::getActiveCount)
+				.description("Finalizações sendo executadas")
+				.register(registry);
+		FunctionCounter.builder("ecommerce.finalizacao.assincrona.descartadas", descartadas, LongAdder::sum)
+				.description("Finalizações terminadas descartadas antes de expirar, com o acompanhamento no máximo")
+				.register(registry);
+		Gauge.builder("ecommerce.finalizacao.assincrona.guardadas", finalizacoes, Map::size)
+				.description("Finalizações acompanhadas (pendentes e terminadas ainda não expiradas)")
+				.register(registry);
+	}
+
+	/**
+	 * Estado de uma finalização: {@code compra} quando concluída, {@code erro} (a exceção de
+	 * {@link CompraService#finalizarCompra}) quando falhou.
+	 */
+	public record Resultado(SituacaoFinalizacao situacao, CompraDTO compra, Throwable erro)
+	{
+	}
+
+	private static final class Acompanhamento
+	{
+		final Long carrinhoId;
+		final Long clienteId;
+		volatile SituacaoFinalizacao situacao = SituacaoFinalizacao.PENDENTE;
+		volatile Resultado terminado;
+		volatile long expiraEmNanos;
+
+		Acompanhamento(Long carrinhoId, Long clienteId)
+		{
+			this.carrinhoId = carrinhoId;
+			this.clienteId = clienteId;
+		}
+
+		void terminar(SituacaoFinalizacao situacao, CompraDTO compra, Throwable erro, long expiraEmNanos)
+		{
+			this.expiraEmNanos = expiraEmNanos;
+			this.terminado = new Resultado(situacao, compra, erro);
+		}
+
+		Resultado resultado()
+		{
+			Resultado resultado = terminado;
+			return resultado != null ? resultado : new Resultado(situacao, null, null);
+		}
+
+		boolean expirou(long agora)
+		{
+			return terminado != null && agora - expiraEmNanos >= 0;
+		}
+	}
+}
@@ -0,0 +1,355 @@
+package ecommerce.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.external.IBaixaEmLoteEstoqueExternal;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IReservaEstoqueExternal;
+import ecommerce.external.ItensEstoque;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Agrupa as baixas de estoque de compras concorrentes em lotes (group commit).
+ *
+ * Cada {@link #darBaixa} entra em uma fila e aguarda; uma thread coletora forma um lote com as baixas que chegam em
+ * até {@code ecommerce.estoque.lote.janela} depois da primeira, ou com {@code ecommerce.estoque.lote.tamanho-maximo}
+ * baixas, e o envia em uma única chamada a {@link IBaixaEmLoteEstoqueExternal#darBaixaEmLote(long[][], long[][])},
+ * com as baixas em arrays primitivos (em uma thread de
+ * {@link ExecutorChamadasExternas}, enquanto o próximo lote já é coletado). Cada chamador recebe o resultado da sua
+ * própria baixa: uma baixa sem estoque não afeta as outras do lote. Listas inválidas são recusadas na thread do
+ * chamador, antes de entrar na fila; se a chamada do lote inteiro falha, todos os chamadores do lote recebem a
+ * exceção, já que não se sabe quais baixas o estoque aplicou.
+ *
+ * As confirmações de reserva ({@link #confirmar}) passam pela mesma fila e são enviadas juntas em uma chamada a
+ * {@link IReservaEstoqueExternal#confirmarEmLote}; um lote com baixas e confirmações faz uma chamada de cada.
+ *
+ * Com janela zero, ou quando o estoque não aceita lotes, cada baixa é enviada diretamente pela thread do chamador.
+ */
+@Component
+public class LoteBaixasEstoque implements MeterBinder
+{
+	private final IEstoqueExternal estoque;
+	private final IBaixaEmLoteEstoqueExternal estoqueEmLote;
+	private final IReservaEstoqueExternal reservas;
+	private final boolean confirmacoesEmLote;
+	private final Executor executor;
+	private final long janelaNanos;
+	private final int tamanhoMaximo;
+
+	private final LinkedBlockingQueue<Pendente> fila = new LinkedBlockingQueue<>();
+	private final AtomicBoolean iniciado = new AtomicBoolean();
+	private volatile boolean encerrado;
+	private volatile Thread coletor;
+
+	private final LongAdder lotes = new LongAdder();
+	private final LongAdder baixasEmLote = new LongAdder();
+	private volatile DistributionSummary tamanhosLote;
+	private volatile Timer esperasNaFila;
+
+	@Autowired
+	public LoteBaixasEstoque(IEstoqueExternal estoque, ExecutorChamadasExternas executor,
+			@Value("${ecommerce.estoque.lote.janela:2ms}") Duration janela,
+			@Value("${ecommerce.estoque.lote.tamanho-maximo:64}") int tamanhoMaximo)
+	{
+		if (tamanhoMaximo < 1)
+		{
+			throw new IllegalArgumentException("Tamanho máximo do lote deve ser maior que zero.");
+		}
+		this.estoque = estoque;
+		this.estoqueEmLote = !janela.isZero() && estoque instanceof IBaixaEmLoteEstoqueExternal emLote ? emLote
+				: null;
+		this.reservas = estoque instanceof IReservaEstoqueExternal comReservas ? comReservas : null;
+		this.confirmacoesEmLote = !janela.isZero() && reservas != null;
+		this.executor = executor;
+		this.janelaNanos = janela.toNanos();
+		this.tamanhoMaximo = tamanhoMaximo;
+	}
+
+	/** Baixas enviadas uma a uma, sem agrupamento, para instâncias criadas fora do Spring. */
+	public static LoteBaixasEstoque desabilitado(IEstoqueExternal estoque)
+	{
+		return new LoteBaixasEstoque(estoque, ExecutorChamadasExternas.padrao(), Duration.ZERO, 1);
+	}
+
+	public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		if (estoqueEmLote == null || encerrado)
+		{
+			return estoque.darBaixa(produtosIds, produtosQuantidades);
+		}
+		long[][] pedido = ItensEstoque.emArrays(produtosIds, produtosQuantidades);
+		validar(pedido[1]);
+
+		return enfileirar(new Pendente(pedido[0], pedido[1], null),
+				() -> estoque.darBaixa(produtosIds, produtosQuantidades));
+	}
+
+	/**
+	 * Como {@link #darBaixa(List, List)}, com o pedido em arrays. Os arrays vão ao estoque como chegaram, direto ou
+	 * no lote, sem passar por listas.
+	 */
+	public EstoqueBaixaDTO darBaixa(long[] produtosIds, long[] produtosQuantidades)
+	{
+		if (estoqueEmLote == null || encerrado)
+		{
+			return new EstoqueBaixaDTO(estoque.darBaixa(produtosIds, produtosQuantidades));
+		}
+		if (produtosIds == null || produtosQuantidades == null || produtosIds.length != produtosQuantidades.length)
+		{
+			throw new IllegalArgumentException("Listas de produtos e quantidades devem ter o mesmo tamanho.");
+		}
+		validar(produtosQuantidades);
+
+		return enfileirar(new Pendente(produtosIds, produtosQuantidades, null),
+				() -> new EstoqueBaixaDTO(estoque.darBaixa(produtosIds, produtosQuantidades)));
+	}
+
+	/**
+	 * Confirma a reserva, em lote com as confirmações concorrentes. Com janela zero, a confirmação vai diretamente ao
+	 * estoque; um estoque sem reservas recusa a chamada.
+	 */
+	public EstoqueBaixaDTO confirmar(Long reservaId)
+	{
+		if (reservas == null)
+		{
+			throw new IllegalStateException("Estoque não aceita reservas.");
+		}
+		if (!confirmacoesEmLote || encerrado || reservaId == null)
+		{
+			return reservas.confirmar(reservaId);
+		}
+		return enfileirar(new Pendente(null, null, reservaId), () -> reservas.confirmar(reservaId));
+	}
+
+	private EstoqueBaixaDTO enfileirar(Pendente pendente, Supplier<EstoqueBaixaDTO> direta)
+	{
+		iniciar();
+		fila.add(pendente);
+		if (encerrado && fila.remove(pendente))
+		{
+			// o coletor pode ter terminado antes de ver esta operação
+			return direta.get();
+		}
+		return EsperaResultado.aguardar(pendente.resultado());
+	}
+
+	private static void validar(long[] produtosQuantidades)
+	{
+		for (long quantidade : produtosQuantidades)
+		{
+			if (quantidade <= 0)
+			{
+				throw new IllegalArgumentException("Produto e quantidade (maior que zero) são obrigatórios.");
+			}
+		}
+	}
+
+	private void iniciar()
+	{
+		if (iniciado.compareAndSet(false, true))
+		{
+			Thread thread = new Thread(this::coletar, "lote-baixas-estoque");
+			thread.setDaemon(true);
+			coletor = thread;
+			thread.start();
+		}
+	}
+
+	private void coletar()
+	{
+		while (!encerrado)
+		{
+			List<Pendente> lote = new ArrayList<>();
+			try
+			{
+				Pendente primeira = fila.take();
+				lote.add(primeira);
+				long prazo = primeira.chegada() + janelaNanos;
+				while (lote.size() < tamanhoMaximo)
+				{
+					long restante = prazo - System.nanoTime();
+					Pendente proxima = restante > 0 ? fila.poll(restante, TimeUnit.NANOSECONDS) : null;
+					if (proxima == null)
+					{
+						break;
+					}
+					lote.add(proxima);
+					fila.drainTo(lote, tamanhoMaximo - lote.size());
+				}
+			}
+			catch (InterruptedException e)
+			{
+				// encerramento: o lote em formação e o restante da fila ainda são enviados
+				fila.drainTo(lote);
+			}
+			if (!lote.isEmpty())
+			{
+				despachar(lote);
+			}
+		}
+	}
+
+	private void despachar(List<Pendente> lote)
+	{
+		try
+		{
+			executor.execute(() -> enviar(lote));
+		}
+		catch (RejectedExecutionException e)
+		{
+			enviar(lote);
+		}
+	}
+
+	private void enviar(List<Pendente> lote)
+	{
+		List<Pendente> baixas = new ArrayList<>();
+		List<Pendente> confirmacoes = new ArrayList<>();
+		for (Pendente pendente : lote)
+		{
+			(pendente.produtosIds() != null ? baixas : confirmacoes).add(pendente);
+		}
+		if (!baixas.isEmpty())
+		{
+			enviar(baixas, () -> darBaixaEmLote(baixas));
+		}
+		if (!confirmacoes.isEmpty())
+		{
+			enviar(confirmacoes,
+					() -> reservas.confirmarEmLote(confirmacoes.stream().map(Pendente::reservaId).toList()));
+		}
+	}
+
+	private List<EstoqueBaixaDTO> darBaixaEmLote(List<Pendente> baixas)
+	{
+		long[][] produtosIds = new long[baixas.size()][];
+		long[][] produtosQuantidades = new long[baixas.size()][];
+		for (int i = 0; i < produtosIds.length; i++)
+		{
+			produtosIds[i] = baixas.get(i).produtosIds();
+			produtosQuantidades[i] = baixas.get(i).produtosQuantidades();
+		}
+		boolean[] aplicadas = estoqueEmLote.darBaixaEmLote(produtosIds, produtosQuantidades);
+		if (aplicadas == null)
+		{
+			return null;
+		}
+		List<EstoqueBaixaDTO> resultados = new ArrayList<>(aplicadas.length);
+		for (boolean aplicada : aplicadas)
+		{
+			resultados.add(new EstoqueBaixaDTO(aplicada));
+		}
+		return resultados;
+	}
+
+	private void enviar(List<Pendente> lote, Supplier<List<EstoqueBaixaDTO>> chamada)
+	{
+		long agora = System.nanoTime();
+		lotes.increment();
+		baixasEmLote.add(lote.size());
+		DistributionSummary tamanhos = tamanhosLote;
+		Timer esperas = esperasNaFila;
+		if (tamanhos != null)
+		{
+			tamanhos.record(lote.size());
+			for (Pendente pendente : lote)
+			{
+				esperas.record(agora - pendente.chegada(), TimeUnit.NANOSECONDS);
+			}
+		}
+
+		try
+		{
+			List<EstoqueBaixaDTO> resultados = chamada.get();
+			if (resultados == null || resultados.size() != lote.size())
+			{
+				throw new IllegalStateException("Estoque devolveu resultados que não correspondem ao lote.");
+			}
+			for (int i = 0; i < lote.size(); i++)
+			{
+				lote.get(i).resultado().complete(resultados.get(i));
+			}
+		}
+		catch (RuntimeException | Error e)
+		{
+			for (Pendente pendente : lote)
+			{
+				pendente.resultado().completeExceptionally(e);
+			}
+		}
+	}
+
+	public long getLotes()
+	{
+		return lotes.sum();
+	}
+
+	public long getBaixasEmLote()
+	{
+		return baixasEmLote.sum();
+	}
+
+	@PreDestroy
+	public void encerrar()
+	{
+		encerrado = true;
+		Thread thread = coletor;
+		if (thread != null)
+		{
+			thread.interrupt();
+		}
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry)
+	{
+		FunctionCounter.builder("ecommerce.estoque.lote.baixas", baixasEmLote, LongAdder::sum)
+				.description("Baixas de estoque e confirmações de reserva enviadas em lote")
+				.register(registry);
+		FunctionCounter.builder("ecommerce.estoque.lote.envios", lotes, LongAdder::sum)
+				.description("Chamadas em lote (baixas ou confirmações) enviadas ao estoque")
+				.register(registry);
+		esperasNaFila = Timer.builder("ecommerce.estoque.lote.espera")
+				.description("Tempo de cada baixa na fila até o envio do seu lote")
+				.publishPercentileHistogram()
+				.register(registry);
+		tamanhosLote = DistributionSummary.builder("ecommerce.estoque.lote.tamanho")
+				.description("Baixas por lote enviado ao estoque")
+				.publishPercentileHistogram()
+				.maximumExpectedValue((double) tamanhoMaximo)
+				.register(registry);
+	}
+
+	/**
+	 * Baixa ({@code produtosIds} e {@code produtosQuantidades}) ou confirmação de reserva ({@code reservaId})
+	 * aguardando o envio do seu lote.
+	 */
+	private record Pendente(long[] produtosIds, long[] produtosQuantidades, Long reservaId, long chegada,
+			CompletableFuture<EstoqueBaixaDTO> resultado)
+	{
+		Pendente(long[] produtosIds, long[] produtosQuantidades, Long reservaId)
+		{
+			this(produtosIds, produtosQuantidades, reservaId, System.nanoTime(), new CompletableFuture<>());
+		}
+	}
+}
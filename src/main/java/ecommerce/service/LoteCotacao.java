@@ -0,0 +1,73 @@
+package ecommerce.service;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import ecommerce.dto.CotacaoDTO;
+
+/**
+ * Cotações de um lote em cálculo. Os resultados são entregues na ordem em que terminam, não na ordem do pedido;
+ * {@link #close()} cancela as cotações que ainda não começaram.
+ */
+public final class LoteCotacao implements Iterator<CotacaoDTO>, AutoCloseable
+{
+	private final CompletionService<CotacaoDTO> conclusao;
+	private final List<Future<CotacaoDTO>> tarefas;
+	private int entregues;
+
+	LoteCotacao(CompletionService<CotacaoDTO> conclusao, List<Future<CotacaoDTO>> tarefas)
+	{
+		this.conclusao = conclusao;
+		this.tarefas = tarefas;
+	}
+
+	public int tamanho()
+	{
+		return tarefas.size();
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		return entregues < tarefas.size();
+	}
+
+	@Override
+	public CotacaoDTO next()
+	{
+		if (!hasNext())
+		{
+			throw new NoSuchElementException();
+		}
+
+		try
+		{
+			Future<CotacaoDTO> pronta = conclusao.take();
+			entregues++;
+			return pronta.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			close();
+			throw new IllegalStateException("Cotação interrompida.", e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new IllegalStateException("Erro ao calcular cotação.", e.getCause());
+		}
+	}
+
+	@Override
+	public void close()
+	{
+		for (Future<CotacaoDTO> tarefa : tarefas)
+		{
+			tarefa.cancel(false);
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package ecommerce.service;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Mapa concorrente limitado a {@code capacidade} entradas, com remoção aproximada da menos usada recentemente.
+ *
+ * Leituras e escritas vão direto ao {@link ConcurrentHashMap}, sem trava: a leitura só anota o instante do acesso na
+ * entrada. O tamanho é um contador atômico atualizado a cada inclusão e remoção efetivas; quando uma inclusão passa
+ * da capacidade, uma única thread por vez remove entradas até o limite voltar a valer. Cada remoção examina as
+ * próximas {@value #AMOSTRA} entradas de um ponteiro que percorre o mapa em círculo e remove a acessada há mais
+ * tempo entre elas; como o ponteiro avança a cada remoção, todas as entradas acabam examinadas.
+ */
+final class MapaLruAmostrado<K, V>
+{
+	static final int AMOSTRA = 8;
+
+	private final int capacidade;
+	private final ConcurrentHashMap<K, No<V>> entradas = new ConcurrentHashMap<>();
+	private final AtomicInteger tamanho = new AtomicInteger();
+	private final LongAdder remocoes = new LongAdder();
+
+	/** Protege apenas {@link #ponteiro}: leituras e inclusões abaixo da capacidade não a usam. */
+	private final ReentrantLock travaRemocao = new ReentrantLock();
+	private Iterator<Map.Entry<K, No<V>>> ponteiro;
+
+	MapaLruAmostrado(int capacidade)
+	{
+		if (capacidade < 0)
+		{
+			throw new IllegalArgumentException("Capacidade não pode ser negativa.");
+		}
+		this.capacidade = capacidade;
+	}
+
+	V obter(K chave)
+	{
+		No<V> no = entradas.get(chave);
+		if (no == null)
+		{
+			return null;
+		}
+		no.ultimoAcesso = System.nanoTime();
+		return no.valor;
+	}
+
+	/** Guarda ou substitui o valor da chave; com capacidade zero, nada é guardado. */
+	void guardar(K chave, V valor)
+	{
+		if (capacidade == 0)
+		{
+			return;
+		}
+		if (entradas.put(chave, new No<>(valor, System.nanoTime())) == null
+				&& tamanho.incrementAndGet() > capacidade)
+		{
+			reduzirAteCapacidade();
+		}
+	}
+
+	void remover(K chave)
+	{
+		if (entradas.remove(chave) != null)
+		{
+			tamanho.decrementAndGet();
+		}
+	}
+
+	int tamanho()
+	{
+		return tamanho.get();
+	}
+
+	/** Entradas removidas por falta de espaço. */
+	long getRemocoes()
+	{
+		return remocoes.sum();
+	}
+
+	/**
+	 * Uma thread que não consegue a trava deixa a redução para a que a detém: esta confere o tamanho de novo depois de
+	 * liberar a trava e, portanto, vê a inclusão que passou da capacidade.
+	 */
+	private void reduzirAteCapacidade()
+	{
+		while (tamanho.get() > capacidade && travaRemocao.tryLock())
+		{
+			try
+			{
+				while (tamanho.get() > capacidade)
+				{
+					if (!removerMaisAntigaDaAmostra())
+					{
+						break;
+					}
+				}
+			}
+			finally
+			{
+				travaRemocao.unlock();
+			}
+		}
+	}
+
+	private boolean removerMaisAntigaDaAmostra()
+	{
+		Map.Entry<K, No<V>> maisAntiga = null;
+		boolean reiniciou = false;
+		for (int i = 0; i < AMOSTRA; i++)
+		{
+			if (ponteiro == null || !ponteiro.hasNext())
+			{
+				if (reiniciou)
+				{
+					break;
+				}
+				ponteiro = entradas.entrySet().iterator();
+				reiniciou = true;
+				if (!ponteiro.hasNext())
+				{
+					break;
+				}
+			}
+			Map.Entry<K, No<V>> candidata = ponteiro.next();
+			if (maisAntiga == null || candidata.getValue().ultimoAcesso - maisAntiga.getValue().ultimoAcesso < 0)
+			{
+				maisAntiga = candidata;
+			}
+		}
+		if (maisAntiga == null)
+		{
+			return false;
+		}
+		if (entradas.remove(maisAntiga.getKey(), maisAntiga.getValue()))
+		{
+			tamanho.decrementAndGet();
+			remocoes.increment();
+		}
+		return true;
+	}
+
+	private static final class No<V>
+	{
+		final V valor;
+		volatile long ultimoAcesso;
+
+		No(V valor, long ultimoAcesso)
+		{
+			this.valor = valor;
+			this.ultimoAcesso = ultimoAcesso;
+		}
+	}
+}
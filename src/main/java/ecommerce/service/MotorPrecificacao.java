@@ -0,0 +1,15 @@
+package ecommerce.service;
+
+/**
+ * Motor usado por {@link CompraService#calcularCustoTotal}.
+ *
+ * <ul>
+ * <li>{@code BIG_DECIMAL}: cálculo de referência com {@link java.math.BigDecimal}.</li>
+ * <li>{@code PONTO_FIXO}: cálculo em {@code long} (centavos e miligramas), com retorno ao motor de referência
+ * quando algum valor do carrinho não cabe na representação.</li>
+ * </ul>
+ */
+public enum MotorPrecificacao
+{
+	BIG_DECIMAL, PONTO_FIXO
+}
@@ -0,0 +1,47 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+
+import ecommerce.entity.LinhaPrecificacao;
+import ecommerce.entity.Produto;
+import ecommerce.entity.TotaisCarrinho;
+
+/**
+ * Dados de frete de um {@link Produto} que só mudam quando o produto é alterado: peso tributável (maior entre peso
+ * físico e cúbico) e se o produto é frágil.
+ *
+ * @param pesoTributavel   peso tributável em kg
+ * @param pesoTributavelMg peso tributável em miligramas, ou {@link CalculadoraCustoPontoFixo#NAO_REPRESENTAVEL}
+ * @param fragil           se o produto paga a taxa de item frágil
+ */
+record PerfilFreteProduto(BigDecimal pesoTributavel, long pesoTributavelMg, boolean fragil)
+{
+	static PerfilFreteProduto de(Produto produto)
+	{
+		return de(produto.getPesoFisico(), produto.getComprimento(), produto.getLargura(), produto.getAltura(),
+				produto.isFragil());
+	}
+
+	static PerfilFreteProduto de(LinhaPrecificacao linha)
+	{
+		return de(linha.pesoFisico(), linha.comprimento(), linha.largura(), linha.altura(), linha.fragil());
+	}
+
+	private static PerfilFreteProduto de(BigDecimal pesoFisico, BigDecimal comprimento, BigDecimal largura,
+			BigDecimal altura, Boolean fragil)
+	{
+		BigDecimal pesoTributavel = TotaisCarrinho.pesoTributavel(pesoFisico, comprimento, largura, altura);
+
+		long pesoTributavelMg;
+		try
+		{
+			pesoTributavelMg = CalculadoraCustoPontoFixo.pesoTributavelMg(pesoFisico, comprimento, largura, altura);
+		}
+		catch (ArithmeticException e)
+		{
+			pesoTributavelMg = CalculadoraCustoPontoFixo.NAO_REPRESENTAVEL;
+		}
+
+		return new PerfilFreteProduto(pesoTributavel, pesoTributavelMg, Boolean.TRUE.equals(fragil));
+	}
+}
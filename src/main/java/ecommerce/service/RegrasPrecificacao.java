@@ -0,0 +1,136 @@
+package ecommerce.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Fonte da {@link TabelaPrecificacao} em uso.
+ *
+ * As regras são lidas de {@code ecommerce.precificacao.regras} (padrão: {@code classpath:regras-precificacao.json}) e
+ * compiladas na inicialização. O arquivo é verificado periodicamente; quando muda, a nova tabela é compilada e
+ * substitui a anterior de forma atômica. Um arquivo inválido é rejeitado e a tabela anterior continua em uso.
+ */
+@Component
+public class RegrasPrecificacao
+{
+	private static final Logger LOG = LoggerFactory.getLogger(RegrasPrecificacao.class);
+
+	private final Resource definicao;
+	private final ObjectMapper objectMapper;
+
+	/** Serializa recargas; {@link ReentrantLock} em vez de {@code synchronized} para não prender threads virtuais. */
+	private final ReentrantLock recarga = new ReentrantLock();
+
+	private volatile TabelaPrecificacao tabela;
+	private long ultimaModificacao;
+
+	@Autowired
+	public RegrasPrecificacao(
+			@Value("${ecommerce.precificacao.regras:classpath:regras-precificacao.json}") Resource definicao,
+			ObjectMapper objectMapper)
+	{
+		this.definicao = definicao;
+		this.objectMapper = objectMapper;
+		this.ultimaModificacao = ultimaModificacao();
+		this.tabela = compilar();
+	}
+
+	/** Regras do arquivo padrão do classpath, sem recarga automática. */
+	public static RegrasPrecificacao padrao()
+	{
+		return Padrao.INSTANCIA;
+	}
+
+	private static final class Padrao
+	{
+		static final RegrasPrecificacao INSTANCIA = new RegrasPrecificacao(
+				new ClassPathResource("regras-precificacao.json"), new ObjectMapper());
+	}
+
+	TabelaPrecificacao atual()
+	{
+		return tabela;
+	}
+
+	/** Compila o arquivo de regras e passa a usá-lo; se o arquivo for inválido, lança exceção e mantém a tabela atual. */
+	public void recarregar()
+	{
+		recarga.lock();
+		try
+		{
+			long modificacao = ultimaModificacao();
+			tabela = compilar();
+			ultimaModificacao = modificacao;
+		}
+		finally
+		{
+			recarga.unlock();
+		}
+	}
+
+	@Scheduled(fixedDelayString = "${ecommerce.precificacao.regras.intervalo-verificacao:PT10S}")
+	public void recarregarSeAlterado()
+	{
+		recarga.lock();
+		try
+		{
+			long modificacao = ultimaModificacao();
+			if (modificacao == ultimaModificacao)
+			{
+				return;
+			}
+
+			try
+			{
+				recarregar();
+				LOG.info("Regras de precificação recarregadas de {}", definicao);
+			}
+			catch (RuntimeException e)
+			{
+				ultimaModificacao = modificacao; // não tenta de novo até o arquivo mudar outra vez
+				LOG.error("Regras de precificação inválidas em {}; mantendo as anteriores", definicao, e);
+			}
+		}
+		finally
+		{
+			recarga.unlock();
+		}
+	}
+
+	private TabelaPrecificacao compilar()
+	{
+		try (InputStream entrada = definicao.getInputStream())
+		{
+			return TabelaPrecificacao.compilar(objectMapper.readValue(entrada, DefinicaoRegrasPrecificacao.class));
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException("Não foi possível ler as regras de precificação em " + definicao, e);
+		}
+	}
+
+	private long ultimaModificacao()
+	{
+		try
+		{
+			return definicao.lastModified();
+		}
+		catch (IOException e)
+		{
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.LinhaPrecificacao;
+import ecommerce.entity.PrecificacaoCarrinho;
+import ecommerce.entity.Produto;
+import ecommerce.entity.TipoProduto;
+import ecommerce.entity.TotaisCarrinho;
+
+/**
+ * Totais do carrinho acumulados em uma única passada pelos itens.
+ *
+ * Quantidade e subtotal por {@link TipoProduto} ficam em arrays indexados por {@link TipoProduto#ordinal()}, junto
+ * com subtotal, peso tributável total e quantidade de itens frágeis. As etapas de precificação de
+ * {@link CompraService} leem apenas deste resumo, montado dos itens do carrinho ou das linhas de um
+ * {@link PrecificacaoCarrinho}. Quando o carrinho mantém {@link TotaisCarrinho}, o resumo é copiado
+ * deles sem percorrer os itens.
+ */
+final class ResumoCarrinho
+{
+	private static final TipoProduto[] TIPOS = TipoProduto.values();
+
+	private final long[] quantidadePorTipo = new long[TIPOS.length];
+	private final BigDecimal[] subtotalPorTipo = new BigDecimal[TIPOS.length];
+	private BigDecimal subtotal = BigDecimal.ZERO;
+	private BigDecimal pesoTributavel = BigDecimal.ZERO;
+	private long quantidadeFragil;
+	private boolean vazio = true;
+
+	private ResumoCarrinho()
+	{
+	}
+
+	static ResumoCarrinho de(CarrinhoDeCompras carrinho, CachePerfilFrete cachePerfilFrete)
+	{
+		ResumoCarrinho resumo = new ResumoCarrinho();
+		if (carrinho == null || carrinho.getItens() == null)
+		{
+			return resumo;
+		}
+
+		for (ItemCompra item : carrinho.getItens())
+		{
+			Produto produto = item.getProduto();
+			resumo.adicionar(produto.getPreco(), produto.getTipo(), cachePerfilFrete.obter(produto),
+					item.getQuantidade());
+		}
+		return resumo;
+	}
+
+	static ResumoCarrinho de(PrecificacaoCarrinho precificacao, CachePerfilFrete cachePerfilFrete)
+	{
+		ResumoCarrinho resumo = new ResumoCarrinho();
+		for (LinhaPrecificacao linha : precificacao.linhas())
+		{
+			resumo.adicionar(linha.preco(), linha.tipo(), cachePerfilFrete.obter(linha), linha.quantidade());
+		}
+		return resumo;
+	}
+
+	static ResumoCarrinho de(TotaisCarrinho totais)
+	{
+		ResumoCarrinho resumo = new ResumoCarrinho();
+		for (TipoProduto tipo : TIPOS)
+		{
+			resumo.quantidadePorTipo[tipo.ordinal()] = totais.getQuantidadePorTipo(tipo);
+			resumo.subtotalPorTipo[tipo.ordinal()] = totais.getSubtotalPorTipo(tipo);
+		}
+		resumo.subtotal = totais.getSubtotal();
+		resumo.pesoTributavel = totais.getPesoTributavel();
+		resumo.quantidadeFragil = totais.getQuantidadeFragil();
+		resumo.vazio = totais.isVazio();
+		return resumo;
+	}
+
+	private void adicionar(BigDecimal preco, TipoProduto tipoProduto, PerfilFreteProduto perfil, long quantidade)
+	{
+		BigDecimal qtd = BigDecimal.valueOf(quantidade);
+		BigDecimal totalItem = preco.multiply(qtd);
+		int tipo = tipoProduto.ordinal();
+
+		vazio = false;
+		subtotal = subtotal.add(totalItem);
+		quantidadePorTipo[tipo] += quantidade;
+		subtotalPorTipo[tipo] = subtotalPorTipo[tipo] == null ? totalItem : subtotalPorTipo[tipo].add(totalItem);
+		pesoTributavel = pesoTributavel.add(perfil.pesoTributavel().multiply(qtd));
+
+		if (perfil.fragil())
+		{
+			quantidadeFragil += quantidade;
+		}
+	}
+
+	boolean isVazio()
+	{
+		return vazio;
+	}
+
+	int quantidadeDeTipos()
+	{
+		return TIPOS.length;
+	}
+
+	long getQuantidadePorTipo(int ordinal)
+	{
+		return quantidadePorTipo[ordinal];
+	}
+
+	/** Subtotal do tipo, ou {@code null} quando o carrinho não tem itens desse tipo. */
+	BigDecimal getSubtotalPorTipo(int ordinal)
+	{
+		return subtotalPorTipo[ordinal];
+	}
+
+	BigDecimal getSubtotal()
+	{
+		return subtotal;
+	}
+
+	BigDecimal getPesoTributavel()
+	{
+		return pesoTributavel;
+	}
+
+	long getQuantidadeFragil()
+	{
+		return quantidadeFragil;
+	}
+}
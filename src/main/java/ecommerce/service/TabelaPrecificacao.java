@@ -0,0 +1,346 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.service.DefinicaoRegrasPrecificacao.FaixaDescontoPorTipo;
+import ecommerce.service.DefinicaoRegrasPrecificacao.FaixaDescontoPorValor;
+import ecommerce.service.DefinicaoRegrasPrecificacao.FaixaFretePorPeso;
+
+/**
+ * Regras de precificação compiladas em estruturas de consulta planas e imutáveis.
+ *
+ * Faixas ficam em arrays ordenados de limites, consultados por busca binária; o fator de frete (multiplicador da
+ * região x benefício do tipo de cliente) fica em uma matriz {@link Regiao} x {@link TipoCliente} achatada em um array.
+ * Todos os valores são criados na compilação, de modo que as consultas não alocam.
+ *
+ * Cada regra é guardada em {@link BigDecimal} e, quando cabe, também nas escalas do motor de ponto fixo (percentuais
+ * em pontos-base, limites de peso em mg, valores em escala 6 e fatores de frete em escala 4). Se alguma regra não
+ * couber, {@link #suportaPontoFixo()} é falso e o motor de ponto fixo usa o cálculo {@code BigDecimal}.
+ */
+final class TabelaPrecificacao
+{
+	private static final int QUANTIDADE_TIPOS_CLIENTE = TipoCliente.values().length;
+	/** Linha da matriz de fator de frete usada quando a região é nula. */
+	private static final int LINHA_REGIAO_PADRAO = Regiao.values().length;
+
+	private static final AtomicLong GERACOES = new AtomicLong();
+
+	private static final int ESCALA_PERCENTUAL = 4;
+	private static final int ESCALA_VALOR = 6;
+	private static final int ESCALA_PESO = 6;
+	private static final int ESCALA_FATOR_FRETE = 4;
+
+	/** Identifica esta compilação; muda a cada recarga das regras. */
+	private final long geracao = GERACOES.incrementAndGet();
+
+	// desconto por tipo: quantidade mínima de cada faixa (crescente)
+	private final long[] quantidadesMinimasTipo;
+	private final BigDecimal[] percentuaisTipo;
+
+	// desconto por valor: subtotal acima do qual a faixa vale (crescente)
+	private final BigDecimal[] limitesValor;
+	private final BigDecimal[] percentuaisValor;
+
+	// frete por peso: limite superior inclusivo de cada faixa (crescente); valoresPorKg tem uma posição a mais
+	private final BigDecimal[] limitesPeso;
+	private final BigDecimal[] valoresPorKg;
+	private final BigDecimal taxaMinimaFrete;
+	private final BigDecimal taxaFragilPorItem;
+
+	// matriz [regiao][tipoCliente], com uma linha extra para região nula
+	private final BigDecimal[] fatoresFrete;
+
+	private final boolean suportaPontoFixo;
+	private final long[] percentuaisTipoPontosBase;
+	private final long[] limitesValorEscala6;
+	private final long[] percentuaisValorPontosBase;
+	private final long[] limitesPesoMg;
+	private final long[] valoresPorKgInteiros;
+	private final long taxaMinimaFreteEscala6;
+	private final long taxaFragilPorItemEscala6;
+	private final long[] fatoresFreteEscala4;
+
+	private TabelaPrecificacao(DefinicaoRegrasPrecificacao definicao)
+	{
+		List<FaixaDescontoPorTipo> faixasTipo = obrigatorio(definicao.descontoPorTipo(), "descontoPorTipo");
+		quantidadesMinimasTipo = new long[faixasTipo.size()];
+		percentuaisTipo = new BigDecimal[faixasTipo.size()];
+		for (int i = 0; i < faixasTipo.size(); i++)
+		{
+			FaixaDescontoPorTipo faixa = faixasTipo.get(i);
+			quantidadesMinimasTipo[i] = faixa.quantidadeMinima();
+			percentuaisTipo[i] = percentual(faixa.percentual(), "descontoPorTipo");
+			if (quantidadesMinimasTipo[i] < 1)
+			{
+				// com zero, o desconto valeria também para os tipos ausentes do carrinho
+				throw new IllegalArgumentException("descontoPorTipo: quantidade mínima deve ser pelo menos 1.");
+			}
+			if (i > 0 && quantidadesMinimasTipo[i] <= quantidadesMinimasTipo[i - 1])
+			{
+				throw new IllegalArgumentException("descontoPorTipo: quantidades mínimas devem ser crescentes.");
+			}
+		}
+
+		List<FaixaDescontoPorValor> faixasValor = obrigatorio(definicao.descontoPorValor(), "descontoPorValor");
+		limitesValor = new BigDecimal[faixasValor.size()];
+		percentuaisValor = new BigDecimal[faixasValor.size()];
+		for (int i = 0; i < faixasValor.size(); i++)
+		{
+			FaixaDescontoPorValor faixa = faixasValor.get(i);
+			limitesValor[i] = obrigatorio(faixa.acimaDe(), "descontoPorValor.acimaDe");
+			percentuaisValor[i] = percentual(faixa.percentual(), "descontoPorValor");
+		}
+		verificarCrescente(limitesValor, "descontoPorValor");
+
+		List<FaixaFretePorPeso> faixasPeso = obrigatorio(definicao.fretePorPeso(), "fretePorPeso");
+		if (faixasPeso.isEmpty() || faixasPeso.get(faixasPeso.size() - 1).ate() != null)
+		{
+			throw new IllegalArgumentException("fretePorPeso: a última faixa não deve ter limite ('ate').");
+		}
+		limitesPeso = new BigDecimal[faixasPeso.size() - 1];
+		valoresPorKg = new BigDecimal[faixasPeso.size()];
+		for (int i = 0; i < faixasPeso.size(); i++)
+		{
+			FaixaFretePorPeso faixa = faixasPeso.get(i);
+			if (i < limitesPeso.length)
+			{
+				limitesPeso[i] = obrigatorio(faixa.ate(), "fretePorPeso.ate");
+			}
+			valoresPorKg[i] = naoNegativo(faixa.valorPorKg(), "fretePorPeso.valorPorKg");
+		}
+		verificarCrescente(limitesPeso, "fretePorPeso");
+
+		taxaMinimaFrete = naoNegativo(definicao.taxaMinimaFrete(), "taxaMinimaFrete");
+		taxaFragilPorItem = naoNegativo(definicao.taxaFragilPorItem(), "taxaFragilPorItem");
+
+		fatoresFrete = new BigDecimal[(LINHA_REGIAO_PADRAO + 1) * QUANTIDADE_TIPOS_CLIENTE];
+		BigDecimal multiplicadorPadrao = naoNegativo(definicao.multiplicadorRegiaoPadrao(), "multiplicadorRegiaoPadrao");
+		for (TipoCliente tipoCliente : TipoCliente.values())
+		{
+			BigDecimal fatorCliente = naoNegativo(obrigatorio(definicao.fatorFretePorTipoCliente(),
+					"fatorFretePorTipoCliente").get(tipoCliente), "fatorFretePorTipoCliente." + tipoCliente);
+			for (Regiao regiao : Regiao.values())
+			{
+				BigDecimal multiplicador = naoNegativo(obrigatorio(definicao.multiplicadorPorRegiao(),
+						"multiplicadorPorRegiao").get(regiao), "multiplicadorPorRegiao." + regiao);
+				fatoresFrete[indiceFator(regiao.ordinal(), tipoCliente)] = multiplicador.multiply(fatorCliente);
+			}
+			fatoresFrete[indiceFator(LINHA_REGIAO_PADRAO, tipoCliente)] = multiplicadorPadrao.multiply(fatorCliente);
+		}
+
+		// representação em ponto fixo
+		percentuaisTipoPontosBase = new long[percentuaisTipo.length];
+		limitesValorEscala6 = new long[limitesValor.length];
+		percentuaisValorPontosBase = new long[percentuaisValor.length];
+		limitesPesoMg = new long[limitesPeso.length];
+		valoresPorKgInteiros = new long[valoresPorKg.length];
+		fatoresFreteEscala4 = new long[fatoresFrete.length];
+		long taxaMinima = 0;
+		long taxaFragil = 0;
+		boolean suporta = true;
+		try
+		{
+			paraEscala(percentuaisTipo, ESCALA_PERCENTUAL, percentuaisTipoPontosBase);
+			paraEscala(limitesValor, ESCALA_VALOR, limitesValorEscala6);
+			paraEscala(percentuaisValor, ESCALA_PERCENTUAL, percentuaisValorPontosBase);
+			paraEscala(limitesPeso, ESCALA_PESO, limitesPesoMg);
+			paraEscala(valoresPorKg, 0, valoresPorKgInteiros);
+			paraEscala(fatoresFrete, ESCALA_FATOR_FRETE, fatoresFreteEscala4);
+			taxaMinima = CalculadoraCustoPontoFixo.paraEscala(taxaMinimaFrete, ESCALA_VALOR);
+			taxaFragil = CalculadoraCustoPontoFixo.paraEscala(taxaFragilPorItem, ESCALA_VALOR);
+		}
+		catch (ArithmeticException e)
+		{
+			suporta = false;
+		}
+		suportaPontoFixo = suporta;
+		taxaMinimaFreteEscala6 = taxaMinima;
+		taxaFragilPorItemEscala6 = taxaFragil;
+	}
+
+	static TabelaPrecificacao compilar(DefinicaoRegrasPrecificacao definicao)
+	{
+		return new TabelaPrecificacao(obrigatorio(definicao, "definição"));
+	}
+
+	long getGeracao()
+	{
+		return geracao;
+	}
+
+	// ======= CONSULTAS BigDecimal =======
+
+	/** Percentual de desconto para {@code quantidade} itens de um mesmo tipo, ou {@code null} se não há desconto. */
+	BigDecimal percentualDescontoPorTipo(long quantidade)
+	{
+		int faixa = quantidadeDeLimitesMenoresOuIguais(quantidadesMinimasTipo, quantidade);
+		return faixa == 0 ? null : percentuaisTipo[faixa - 1];
+	}
+
+	/** Percentual de desconto por valor do carrinho, ou {@code null} se não há desconto. */
+	BigDecimal percentualDescontoPorValor(BigDecimal subtotal)
+	{
+		int faixa = quantidadeDeLimitesMenores(limitesValor, subtotal);
+		return faixa == 0 ? null : percentuaisValor[faixa - 1];
+	}
+
+	BigDecimal valorPorKg(BigDecimal pesoTotal)
+	{
+		return valoresPorKg[quantidadeDeLimitesMenores(limitesPeso, pesoTotal)];
+	}
+
+	BigDecimal getTaxaMinimaFrete()
+	{
+		return taxaMinimaFrete;
+	}
+
+	BigDecimal getTaxaFragilPorItem()
+	{
+		return taxaFragilPorItem;
+	}
+
+	/** Multiplicador da região já combinado com o benefício de frete do tipo de cliente. */
+	BigDecimal fatorFrete(Regiao regiao, TipoCliente tipoCliente)
+	{
+		return fatoresFrete[indiceFator(regiao == null ? LINHA_REGIAO_PADRAO : regiao.ordinal(), tipoCliente)];
+	}
+
+	// ======= CONSULTAS PONTO FIXO =======
+
+	boolean suportaPontoFixo()
+	{
+		return suportaPontoFixo;
+	}
+
+	long percentualDescontoPorTipoPontosBase(long quantidade)
+	{
+		int faixa = quantidadeDeLimitesMenoresOuIguais(quantidadesMinimasTipo, quantidade);
+		return faixa == 0 ? 0 : percentuaisTipoPontosBase[faixa - 1];
+	}
+
+	long percentualDescontoPorValorPontosBase(long subtotalEscala6)
+	{
+		int faixa = quantidadeDeLimitesMenores(limitesValorEscala6, subtotalEscala6);
+		return faixa == 0 ? 0 : percentuaisValorPontosBase[faixa - 1];
+	}
+
+	long valorPorKgInteiro(long pesoMg)
+	{
+		return valoresPorKgInteiros[quantidadeDeLimitesMenores(limitesPesoMg, pesoMg)];
+	}
+
+	long getTaxaMinimaFreteEscala6()
+	{
+		return taxaMinimaFreteEscala6;
+	}
+
+	long getTaxaFragilPorItemEscala6()
+	{
+		return taxaFragilPorItemEscala6;
+	}
+
+	long fatorFreteEscala4(Regiao regiao, TipoCliente tipoCliente)
+	{
+		return fatoresFreteEscala4[indiceFator(regiao == null ? LINHA_REGIAO_PADRAO : regiao.ordinal(), tipoCliente)];
+	}
+
+	// ======= AUXILIARES =======
+
+	private static int indiceFator(int linhaRegiao, TipoCliente tipoCliente)
+	{
+		return linhaRegiao * QUANTIDADE_TIPOS_CLIENTE + tipoCliente.ordinal();
+	}
+
+	private static int quantidadeDeLimitesMenores(BigDecimal[] limites, BigDecimal valor)
+	{
+		int baixo = 0;
+		int alto = limites.length;
+		while (baixo < alto)
+		{
+			int meio = (baixo + alto) >>> 1;
+			if (limites[meio].compareTo(valor) < 0)
+			{
+				baixo = meio + 1;
+			}
+			else
+			{
+				alto = meio;
+			}
+		}
+		return baixo;
+	}
+
+	private static int quantidadeDeLimitesMenores(long[] limites, long valor)
+	{
+		int baixo = 0;
+		int alto = limites.length;
+		while (baixo < alto)
+		{
+			int meio = (baixo + alto) >>> 1;
+			if (limites[meio] < valor)
+			{
+				baixo = meio + 1;
+			}
+			else
+			{
+				alto = meio;
+			}
+		}
+		return baixo;
+	}
+
+	private static int quantidadeDeLimitesMenoresOuIguais(long[] limites, long valor)
+	{
+		return valor == Long.MAX_VALUE ? limites.length : quantidadeDeLimitesMenores(limites, valor + 1);
+	}
+
+	private static void paraEscala(BigDecimal[] valores, int escala, long[] destino)
+	{
+		for (int i = 0; i < valores.length; i++)
+		{
+			destino[i] = CalculadoraCustoPontoFixo.paraEscala(valores[i], escala);
+		}
+	}
+
+	private static void verificarCrescente(BigDecimal[] limites, String regra)
+	{
+		for (int i = 1; i < limites.length; i++)
+		{
+			if (limites[i].compareTo(limites[i - 1]) <= 0)
+			{
+				throw new IllegalArgumentException(regra + ": limites devem ser crescentes.");
+			}
+		}
+	}
+
+	private static BigDecimal percentual(BigDecimal percentual, String regra)
+	{
+		if (percentual == null || percentual.signum() < 0 || percentual.compareTo(BigDecimal.ONE) > 0)
+		{
+			throw new IllegalArgumentException(regra + ": percentual deve estar entre 0 e 1.");
+		}
+		return percentual;
+	}
+
+	private static BigDecimal naoNegativo(BigDecimal valor, String regra)
+	{
+		if (valor == null || valor.signum() < 0)
+		{
+			throw new IllegalArgumentException(regra + ": valor ausente ou negativo.");
+		}
+		return valor;
+	}
+
+	private static <T> T obrigatorio(T valor, String regra)
+	{
+		if (valor == null)
+		{
+			throw new IllegalArgumentException(regra + ": regra ausente.");
+		}
+		return valor;
+	}
+}
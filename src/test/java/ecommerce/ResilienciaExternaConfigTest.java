@@ -0,0 +1,76 @@
+package ecommerce;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import ecommerce.external.ChamadaRecusadaException;
+import ecommerce.external.IBaixaEmLoteEstoqueExternal;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.external.IReservaEstoqueExternal;
+import ecommerce.external.TempoEsgotadoException;
+import io.micrometer.core.instrument.MeterRegistry;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "ecommerce.estoque.latencia=PT5S",
+        "ecommerce.pagamento.taxa-tempo-esgotado=1",
+        "ecommerce.pagamento.tempo-esgotado=PT5S",
+        "ecommerce.resiliencia.estoque.tempo-limite=PT0.1S",
+        "ecommerce.resiliencia.pagamento.tempo-limite=PT0.1S",
+        "ecommerce.resiliencia.pagamento.falhas-para-abrir=2" })
+public class ResilienciaExternaConfigTest {
+
+    @Autowired
+    private IEstoqueExternal estoque;
+
+    @Autowired
+    private IPagamentoExternal pagamento;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Test
+    @DisplayName("Estoque protegido mantém reservas e baixas em lote do estoque simulado")
+    public void estoqueProtegido_mantemCapacidades() {
+        assertThat(estoque).isInstanceOf(IReservaEstoqueExternal.class).isInstanceOf(IBaixaEmLoteEstoqueExternal.class);
+    }
+
+    @Test
+    @DisplayName("Estoque travado responde com tempo esgotado no prazo configurado")
+    public void estoqueTravado_tempoEsgotado() {
+        long inicio = System.nanoTime();
+
+        assertThatThrownBy(() -> estoque.verificarDisponibilidade(List.of(1L), List.of(1L)))
+                .isInstanceOf(TempoEsgotadoException.class)
+                .hasMessage("Tempo esgotado na chamada ao serviço de estoque.");
+        assertThat(System.nanoTime() - inicio).isLessThan(TimeUnit.SECONDS.toNanos(2));
+    }
+
+    @Test
+    @DisplayName("Pagamento travado abre o circuito, que passa a recusar na hora; o estado aparece nas métricas")
+    public void pagamentoTravado_abreCircuito() {
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> pagamento.autorizarPagamento(1L, 10.0))
+                    .isInstanceOf(TempoEsgotadoException.class);
+        }
+
+        long inicio = System.nanoTime();
+        assertThatThrownBy(() -> pagamento.autorizarPagamento(1L, 10.0))
+                .isInstanceOf(ChamadaRecusadaException.class)
+                .hasMessage("Serviço de pagamento indisponível (circuito aberto).");
+        assertThat(System.nanoTime() - inicio).isLessThan(TimeUnit.MILLISECONDS.toNanos(50));
+
+        assertThat(registry.get("ecommerce.externo.circuito.estado").tag("dependencia", "pagamento").gauge().value())
+                .isEqualTo(2.0);
+        assertThat(registry.get("ecommerce.externo.recusadas").tags("dependencia", "pagamento", "motivo", "circuito")
+                .functionCounter().count()).isEqualTo(1.0);
+    }
+}
@@ -0,0 +1,78 @@
+package ecommerce;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.service.CompraService;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "ecommerce.threads-virtuais.habilitado=true",
+        "server.tomcat.threads.max=" + ThreadsVirtuaisCargaTest.THREADS_TOMCAT })
+public class ThreadsVirtuaisCargaTest {
+
+    static final int THREADS_TOMCAT = 8;
+    private static final int COMPRAS = 400;
+
+    @LocalServerPort
+    private int porta;
+
+    @MockBean
+    private CompraService compraService;
+
+    @Test
+    @DisplayName("Com threads virtuais, compras em andamento ao mesmo tempo excedem o pool de threads do Tomcat")
+    public void comprasSimultaneas_excedemPoolDoTomcat() throws Exception {
+        // cada compra fica bloqueada (como em uma chamada externa) até que todas estejam em andamento
+        CountDownLatch todasEmAndamento = new CountDownLatch(COMPRAS);
+        AtomicInteger emAndamento = new AtomicInteger();
+        AtomicInteger picoEmAndamento = new AtomicInteger();
+        when(compraService.finalizarCompra(any(), any())).thenAnswer(invocacao -> {
+            picoEmAndamento.accumulateAndGet(emAndamento.incrementAndGet(), Math::max);
+            todasEmAndamento.countDown();
+            boolean todas = todasEmAndamento.await(20, TimeUnit.SECONDS);
+            emAndamento.decrementAndGet();
+            return new CompraDTO(todas, 1L, "Compra finalizada com sucesso.");
+        });
+
+        List<CompletableFuture<HttpResponse<String>>> respostas = new ArrayList<>();
+        try (ExecutorService clientes = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient http = HttpClient.newBuilder().executor(clientes).connectTimeout(Duration.ofSeconds(5)).build();
+            for (int i = 0; i < COMPRAS; i++) {
+                HttpRequest requisicao = HttpRequest.newBuilder(
+                                URI.create("http://localhost:" + porta + "/finalizar?carrinhoId=" + i + "&clienteId=1"))
+                        .POST(HttpRequest.BodyPublishers.noBody())
+                        .build();
+                respostas.add(http.sendAsync(requisicao, HttpResponse.BodyHandlers.ofString()));
+            }
+            for (CompletableFuture<HttpResponse<String>> resposta : respostas) {
+                HttpResponse<String> r = resposta.get(30, TimeUnit.SECONDS);
+                assertThat(r.statusCode()).isEqualTo(200);
+                assertThat(r.body()).contains("\"sucesso\":true");
+            }
+        }
+
+        assertThat(picoEmAndamento.get()).isEqualTo(COMPRAS).isGreaterThan(THREADS_TOMCAT);
+    }
+}
@@ -0,0 +1,285 @@
+package ecommerce.external.fake;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.dto.BaixaEstoqueDTO;
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
+
+public class EstoqueSimuladoTest {
+
+    @Test
+    @DisplayName("Baixa de vários produtos é tudo-ou-nada")
+    public void baixaTudoOuNada() {
+        EstoqueSimulado estoque = new EstoqueSimulado();
+        estoque.definirQuantidade(1L, 5);
+        estoque.definirQuantidade(2L, 1);
+
+        assertThat(estoque.darBaixa(List.of(1L, 2L), List.of(3L, 2L)).sucesso()).isFalse();
+        assertThat(estoque.quantidadeDisponivel(1L)).isEqualTo(5);
+        assertThat(estoque.quantidadeDisponivel(2L)).isEqualTo(1);
+
+        assertThat(estoque.darBaixa(List.of(2L, 1L), List.of(1L, 3L)).sucesso()).isTrue();
+        assertThat(estoque.quantidadeDisponivel(1L)).isEqualTo(2);
+        assertThat(estoque.quantidadeDisponivel(2L)).isZero();
+    }
+
+    @Test
+    @DisplayName("Indisponibilidade por posição do pedido, somando as quantidades do mesmo produto em várias posições")
+    public void indisponiveis_porPosicao() {
+        EstoqueSimulado estoque = new EstoqueSimulado();
+        estoque.definirQuantidade(1L, 5);
+        estoque.definirQuantidade(2L, 3);
+        estoque.definirQuantidade(3L, 1);
+
+        BitSet indisponiveis = estoque.verificarIndisponiveis(new long[] { 3L, 1L, 2L, 3L }, new long[] { 1, 5, 2, 1 });
+
+        // produto 3 aparece duas vezes: 1 + 1 unidades contra saldo 1
+        assertThat(indisponiveis.stream().toArray()).containsExactly(0, 3);
+        assertThat(estoque.verificarIndisponiveis(new long[] { 1L, 2L }, new long[] { 5, 3 }).isEmpty()).isTrue();
+        assertThat(estoque.verificarDisponibilidade(List.of(3L, 1L, 2L, 3L), List.of(1L, 5L, 2L, 1L)))
+                .isEqualTo(new DisponibilidadeDTO(false, List.of(3L)));
+    }
+
+    @Test
+    @DisplayName("Baixa com arrays é tudo-ou-nada e recusa pedidos inválidos como a baixa com listas")
+    public void baixaComArrays() {
+        EstoqueSimulado estoque = new EstoqueSimulado();
+        estoque.definirQuantidade(1L, 5);
+        estoque.definirQuantidade(2L, 1);
+
+        assertThat(estoque.darBaixa(new long[] { 1L, 2L, 2L }, new long[] { 1, 1, 1 })).isFalse();
+        assertThat(estoque.darBaixa(new long[] { 2L, 1L, 1L }, new long[] { 1, 1, 2 })).isTrue();
+        assertThat(estoque.quantidadeDisponivel(1L)).isEqualTo(2);
+        assertThat(estoque.quantidadeDisponivel(2L)).isZero();
+
+        assertThatThrownBy(() -> estoque.darBaixa(new long[] { 1L }, new long[0]))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Listas de produtos e quantidades devem ter o mesmo tamanho.");
+        assertThatThrownBy(() -> estoque.darBaixa(new long[] { 1L }, new long[] { 0 }))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Produto e quantidade (maior que zero) são obrigatórios.");
+    }
+
+    @Test
+    @DisplayName("Baixa em lote: cada pedido é tudo-ou-nada e independente dos demais, na ordem do lote")
+    public void baixaEmLote_resultadosIndependentes() {
+        EstoqueSimulado estoque = new EstoqueSimulado();
+        estoque.definirQuantidade(1L, 5);
+        estoque.definirQuantidade(2L, 1);
+
+        List<EstoqueBaixaDTO> resultados = estoque.darBaixaEmLote(List.of(
+                new BaixaEstoqueDTO(List.of(1L), List.of(3L)),
+                new BaixaEstoqueDTO(List.of(1L, 2L), List.of(1L, 2L)),
+                new BaixaEstoqueDTO(List.of(1L), List.of(0L)),
+                new BaixaEstoqueDTO(List.of(2L, 1L), List.of(1L, 2L)),
+                new BaixaEstoqueDTO(List.of(1L), List.of(1L))));
+
+        // o último pedido já não encontra saldo do produto 1: 5 - 3 - 2
+        assertThat(resultados).extracting(EstoqueBaixaDTO::sucesso).containsExactly(true, false, false, true, false);
+        assertThat(estoque.quantidadeDisponivel(1L)).isZero();
+        assertThat(estoque.quantidadeDisponivel(2L)).isZero();
+    }
+
+    @Test
+    @DisplayName("Baixa em lote com arrays: mesmos resultados independentes, em booleanos na ordem do lote")
+    public void baixaEmLoteArrays_resultadosIndependentes() {
+        EstoqueSimulado estoque = new EstoqueSimulado();
+        estoque.definirQuantidade(1L, 5);
+        estoque.definirQuantidade(2L, 1);
+
+        boolean[] aplicadas = estoque.darBaixaEmLote(
+                new long[][] { { 1L }, { 1L, 2L }, { 1L }, { 2L, 1L }, { 1L } },
+                new long[][] { { 3L }, { 1L, 2L }, { 0L }, { 1L, 2L }, { 1L } });
+
+        assertThat(aplicadas).containsExactly(true, false, false, true, false);
+        assertThat(estoque.quantidadeDisponivel(1L)).isZero();
+        assertThat(estoque.quantidadeDisponivel(2L)).isZero();
+    }
+
+    @Test
+    @DisplayName("Disponibilidade informa os ids indisponíveis, somando linhas repetidas do mesmo produto")
+    public void disponibilidade_informaIdsIndisponiveis() {
+        EstoqueSimulado estoque = new EstoqueSimulado(10);
+        estoque.definirQuantidade(3L, 4);
+
+        DisponibilidadeDTO disponibilidade = estoque.verificarDisponibilidade(
+                List.of(3L, 7L, 3L, 99L), List.of(3L, 10L, 2L, 11L));
+
+        // 3: 5 pedidos, 4 em estoque; 7: 10 de 10 (quantidade inicial); 99: 11 de 10
+        assertThat(disponibilidade.disponivel()).isFalse();
+        assertThat(disponibilidade.idsProdutosIndisponiveis()).containsExactly(3L, 99L);
+        assertThat(estoque.verificarDisponibilidade(List.of(7L), List.of(10L)).disponivel()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Pedido inválido é rejeitado")
+    public void pedidoInvalido_rejeitado() {
+        EstoqueSimulado estoque = new EstoqueSimulado();
+
+        assertThatThrownBy(() -> estoque.darBaixa(List.of(1L), List.of()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> estoque.darBaixa(List.of(1L), List.of(0L)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Reserva separa as unidades; confirmar mantém a baixa e liberar devolve")
+    public void reserva_confirmarELiberar() {
+        EstoqueSimulado estoque = new EstoqueSimulado(10);
+
+        ReservaEstoqueDTO confirmada = estoque.reservar(List.of(1L), List.of(4L));
+        ReservaEstoqueDTO liberada = estoque.reservar(List.of(1L), List.of(3L));
+        assertThat(confirmada.reservado()).isTrue();
+        assertThat(estoque.quantidadeDisponivel(1L)).isEqualTo(3);
+
+        assertThat(estoque.confirmar(confirmada.reservaId()).sucesso()).isTrue();
+        estoque.liberar(liberada.reservaId());
+
+        assertThat(estoque.quantidadeDisponivel(1L)).isEqualTo(6);
+        assertThat(estoque.confirmar(liberada.reservaId()).sucesso()).isFalse();
+        assertThat(estoque.confirmar(confirmada.reservaId()).sucesso()).isFalse();
+        assertThat(estoque.reservasPendentes()).isZero();
+        estoque.encerrar();
+    }
+
+    @Test
+    @DisplayName("Reserva sem estoque informa os ids indisponíveis e não separa nada")
+    public void reservaSemEstoque_informaIndisponiveis() {
+        EstoqueSimulado estoque = new EstoqueSimulado(2);
+
+        ReservaEstoqueDTO reserva = estoque.reservar(List.of(1L, 2L), List.of(1L, 3L));
+
+        assertThat(reserva.reservado()).isFalse();
+        assertThat(reserva.idsProdutosIndisponiveis()).containsExactly(2L);
+        assertThat(estoque.quantidadeDisponivel(1L)).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Reserva não confirmada expira e devolve as unidades")
+    public void reservaNaoConfirmada_expira() throws InterruptedException {
+        EstoqueSimulado estoque = new EstoqueSimulado(5, Duration.ofMillis(50));
+
+        ReservaEstoqueDTO reserva = estoque.reservar(List.of(1L), List.of(5L));
+        assertThat(estoque.quantidadeDisponivel(1L)).isZero();
+
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (estoque.quantidadeDisponivel(1L) == 0 && System.nanoTime() < limite) {
+            Thread.sleep(10);
+        }
+
+        assertThat(estoque.quantidadeDisponivel(1L)).isEqualTo(5);
+        assertThat(estoque.confirmar(reserva.reservaId()).sucesso()).isFalse();
+        assertThat(estoque.reservasPendentes()).isZero();
+        estoque.encerrar();
+    }
+
+    @Test
+    @DisplayName("Milhares de reservas com prazos variados expiram todas na mesma roda")
+    public void muitasReservas_expiramNaRoda() throws InterruptedException {
+        EstoqueSimulado estoque = new EstoqueSimulado(1_000_000, Duration.ofMillis(100));
+        for (int i = 0; i < 10_000; i++) {
+            estoque.reservar(List.of((long) (i % 50)), List.of(1L));
+        }
+
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (estoque.reservasPendentes() > 0 && System.nanoTime() < limite) {
+            Thread.sleep(10);
+        }
+
+        assertThat(estoque.reservasPendentes()).isZero();
+        for (long id = 0; id < 50; id++) {
+            assertThat(estoque.quantidadeDisponivel(id)).isEqualTo(1_000_000);
+        }
+        estoque.encerrar();
+    }
+
+    @Test
+    @DisplayName("Reservas que expiram já no primeiro tique não deixam entradas para trás")
+    public void expiracaoImediata_naoDeixaReservaPendente() throws InterruptedException {
+        EstoqueSimulado estoque = new EstoqueSimulado(1_000_000, Duration.ZERO);
+        for (int i = 0; i < 10_000; i++) {
+            estoque.reservar(List.of(1L), List.of(1L));
+        }
+
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (estoque.reservasPendentes() > 0 && System.nanoTime() < limite) {
+            Thread.sleep(10);
+        }
+
+        assertThat(estoque.reservasPendentes()).isZero();
+        assertThat(estoque.quantidadeDisponivel(1L)).isEqualTo(1_000_000);
+        estoque.encerrar();
+    }
+
+    @Test
+    @DisplayName("Baixas concorrentes de vários produtos nunca vendem além do estoque")
+    public void baixasConcorrentes_nuncaVendemAlemDoEstoque() throws Exception {
+        final int produtos = 32;
+        final long inicial = 20_000;
+        final int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        final int pedidosPorThread = 20_000;
+
+        EstoqueSimulado estoque = new EstoqueSimulado(inicial);
+        AtomicLongArray vendidos = new AtomicLongArray(produtos + 1);
+        CountDownLatch largada = new CountDownLatch(1);
+
+        List<Future<?>> tarefas = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            for (int t = 0; t < threads; t++) {
+                tarefas.add(executor.submit(() -> {
+                    largada.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int p = 0; p < pedidosPorThread; p++) {
+                        // pedidos de 1 a 4 linhas, em ordem arbitrária e com produtos repetidos
+                        int linhas = 1 + random.nextInt(4);
+                        List<Long> ids = new ArrayList<>(linhas);
+                        List<Long> quantidades = new ArrayList<>(linhas);
+                        for (int l = 0; l < linhas; l++) {
+                            ids.add(1L + random.nextInt(produtos));
+                            quantidades.add(1L + random.nextInt(3));
+                        }
+                        if (estoque.darBaixa(ids, quantidades).sucesso()) {
+                            for (int l = 0; l < linhas; l++) {
+                                vendidos.addAndGet(ids.get(l).intValue(), quantidades.get(l));
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            largada.countDown();
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get(2, TimeUnit.MINUTES);
+            }
+        }
+
+        long totalVendido = 0;
+        for (int id = 1; id <= produtos; id++) {
+            long saldo = estoque.quantidadeDisponivel((long) id);
+            assertThat(saldo).as("saldo do produto %d", id).isGreaterThanOrEqualTo(0);
+            assertThat(saldo + vendidos.get(id)).as("saldo + vendido do produto %d", id).isEqualTo(inicial);
+            totalVendido += vendidos.get(id);
+        }
+        // a demanda (threads x pedidos x ~5 unidades) excede o estoque: parte dos produtos se esgota
+        assertThat(totalVendido).isPositive();
+        assertThat(estoque.verificarDisponibilidade(List.of(1L), List.of(inicial + 1)).disponivel()).isFalse();
+    }
+}
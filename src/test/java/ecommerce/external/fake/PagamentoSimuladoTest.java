@@ -0,0 +1,194 @@
+package ecommerce.external.fake;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.external.TempoEsgotadoException;
+
+public class PagamentoSimuladoTest {
+
+    private static PagamentoSimulado.Configuracao configuracao(DistribuicaoLatencia distribuicao, long baseMillis,
+            long desvioMillis, long p99Millis, double taxaRecusa, double taxaTempoEsgotado, long tempoEsgotadoMillis) {
+        return new PagamentoSimulado.Configuracao(distribuicao, Duration.ofMillis(baseMillis),
+                Duration.ofMillis(desvioMillis), Duration.ofMillis(p99Millis), taxaRecusa, taxaTempoEsgotado,
+                Duration.ofMillis(tempoEsgotadoMillis));
+    }
+
+    @Test
+    @DisplayName("Sem configuração, autoriza imediatamente com transacaoId")
+    public void semConfiguracao_autoriza() {
+        PagamentoSimulado pagamento = new PagamentoSimulado();
+
+        PagamentoDTO dto = pagamento.autorizarPagamento(1L, 100.0);
+
+        assertThat(dto.autorizado()).isTrue();
+        assertThat(dto.transacaoId()).isNotNull();
+        assertThat(pagamento.getAutorizados()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("transacaoId é único entre autorizações concorrentes")
+    public void transacaoId_unicoSobConcorrencia() throws Exception {
+        PagamentoSimulado pagamento = new PagamentoSimulado();
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService threads = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> tarefas = new ArrayList<>();
+            for (int t = 0; t < 16; t++) {
+                tarefas.add(threads.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        ids.add(pagamento.autorizarPagamento(1L, 10.0).transacaoId());
+                    }
+                }));
+            }
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        assertThat(ids).hasSize(160_000);
+        assertThat(pagamento.getAutorizados()).isEqualTo(160_000);
+    }
+
+    @Test
+    @DisplayName("Taxa de recusa 1 recusa todas as autorizações, sem transacaoId")
+    public void taxaRecusaTotal_recusaTudo() {
+        PagamentoSimulado pagamento = new PagamentoSimulado(
+                configuracao(DistribuicaoLatencia.FIXA, 0, 0, 0, 1.0, 0, 0));
+
+        PagamentoDTO dto = pagamento.autorizarPagamento(1L, 100.0);
+
+        assertThat(dto.autorizado()).isFalse();
+        assertThat(dto.transacaoId()).isNull();
+        assertThat(pagamento.getRecusados()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Tempo esgotado espera o prazo configurado e lança TempoEsgotadoException")
+    public void tempoEsgotado_esperaELanca() {
+        PagamentoSimulado pagamento = new PagamentoSimulado(
+                configuracao(DistribuicaoLatencia.FIXA, 0, 0, 0, 0, 1.0, 40));
+
+        long inicio = System.nanoTime();
+        assertThatThrownBy(() -> pagamento.autorizarPagamento(1L, 100.0))
+                .isInstanceOf(TempoEsgotadoException.class)
+                .hasMessage("Tempo esgotado ao autorizar pagamento.");
+
+        assertThat(System.nanoTime() - inicio).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(40));
+        assertThat(pagamento.getTemposEsgotados()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Frações de recusa e de tempo esgotado seguem as taxas configuradas")
+    public void taxas_aproximadas() {
+        PagamentoSimulado pagamento = new PagamentoSimulado(
+                configuracao(DistribuicaoLatencia.FIXA, 0, 0, 0, 0.2, 0.1, 0));
+
+        int tentativas = 50_000;
+        for (int i = 0; i < tentativas; i++) {
+            try {
+                pagamento.autorizarPagamento(1L, 10.0);
+            } catch (TempoEsgotadoException e) {
+                // contado pelo simulador
+            }
+        }
+
+        assertThat((double) pagamento.getRecusados() / tentativas).isCloseTo(0.2, within(0.02));
+        assertThat((double) pagamento.getTemposEsgotados() / tentativas).isCloseTo(0.1, within(0.02));
+        assertThat(pagamento.getAutorizados() + pagamento.getRecusados() + pagamento.getTemposEsgotados())
+                .isEqualTo(tentativas);
+    }
+
+    @Test
+    @DisplayName("Cancelamentos recebidos ficam registrados por transacaoId")
+    public void cancelamentos_registrados() {
+        PagamentoSimulado pagamento = new PagamentoSimulado();
+        Long transacao = pagamento.autorizarPagamento(1L, 10.0).transacaoId();
+        Long outra = pagamento.autorizarPagamento(1L, 10.0).transacaoId();
+
+        pagamento.cancelarPagamento(1L, transacao);
+
+        assertThat(pagamento.getCancelamentos()).isEqualTo(1);
+        assertThat(pagamento.foiCancelado(transacao)).isTrue();
+        assertThat(pagamento.foiCancelado(outra)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Latência fixa é aplicada a cada chamada")
+    public void latenciaFixa_aplicada() {
+        PagamentoSimulado pagamento = new PagamentoSimulado(
+                configuracao(DistribuicaoLatencia.FIXA, 30, 0, 0, 0, 0, 0));
+
+        long inicio = System.nanoTime();
+        pagamento.autorizarPagamento(1L, 10.0);
+
+        assertThat(System.nanoTime() - inicio).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(30));
+        assertThat(pagamento.sortearLatenciaNanos()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(30));
+    }
+
+    @Test
+    @DisplayName("Latência normal tem a média e o desvio configurados, sem valores negativos")
+    public void latenciaNormal_mediaEDesvio() {
+        PagamentoSimulado pagamento = new PagamentoSimulado(
+                configuracao(DistribuicaoLatencia.NORMAL, 100, 10, 0, 0, 0, 0));
+
+        long[] amostras = amostrar(pagamento, 100_000);
+        double media = Arrays.stream(amostras).average().orElseThrow();
+        double variancia = Arrays.stream(amostras).mapToDouble(a -> (a - media) * (a - media)).average().orElseThrow();
+
+        assertThat(media / 1e6).isCloseTo(100.0, within(0.5));
+        assertThat(Math.sqrt(variancia) / 1e6).isCloseTo(10.0, within(0.5));
+        assertThat(amostras[0]).isNotNegative();
+    }
+
+    @Test
+    @DisplayName("Cauda longa tem a mediana e o p99 configurados")
+    public void latenciaCaudaLonga_percentis() {
+        PagamentoSimulado pagamento = new PagamentoSimulado(
+                configuracao(DistribuicaoLatencia.CAUDA_LONGA, 20, 0, 400, 0, 0, 0));
+
+        long[] amostras = amostrar(pagamento, 200_000);
+
+        assertThat(amostras[amostras.length / 2] / 1e6).isCloseTo(20.0, within(1.0));
+        assertThat(amostras[(int) (amostras.length * 0.99)] / 1e6).isCloseTo(400.0, within(40.0));
+    }
+
+    @Test
+    @DisplayName("Configuração inválida é rejeitada")
+    public void configuracaoInvalida_rejeitada() {
+        assertThatThrownBy(() -> configuracao(DistribuicaoLatencia.FIXA, 0, 0, 0, 0.7, 0.5, 0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Taxas de recusa e de tempo esgotado devem somar entre 0 e 1.");
+        assertThatThrownBy(() -> configuracao(DistribuicaoLatencia.CAUDA_LONGA, 50, 0, 10, 0, 0, 0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Cauda longa exige latência base positiva e p99 não menor que ela.");
+    }
+
+    /** Latências sorteadas, em ordem crescente. */
+    private static long[] amostrar(PagamentoSimulado pagamento, int quantidade) {
+        long[] amostras = new long[quantidade];
+        for (int i = 0; i < quantidade; i++) {
+            amostras[i] = pagamento.sortearLatenciaNanos();
+        }
+        Arrays.sort(amostras);
+        return amostras;
+    }
+}
@@ -0,0 +1,156 @@
+package ecommerce.external.http;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.external.TempoEsgotadoException;
+import ecommerce.external.fake.EstoqueSimulado;
+import ecommerce.external.fake.PagamentoSimulado;
+import ecommerce.repository.CarrinhoDeComprasRepository;
+import ecommerce.repository.ClienteRepository;
+import ecommerce.repository.ProdutoRepository;
+import ecommerce.service.CompraService;
+import io.micrometer.core.instrument.MeterRegistry;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "ecommerce.externo.modo=HTTP",
+        "ecommerce.estoque.cache-disponibilidade.ttl=0",
+        "spring.cloud.openfeign.client.config.pagamento.read-timeout=300" })
+public class ClientesHttpTest {
+
+    private static final int COMPRAS = 40;
+
+    private static final ServidorExternoSimulado servidor = iniciarServidor();
+
+    private static ServidorExternoSimulado iniciarServidor() {
+        try {
+            return new ServidorExternoSimulado(new EstoqueSimulado(1000, Duration.ofSeconds(30)),
+                    new PagamentoSimulado());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void urls(DynamicPropertyRegistry propriedades) {
+        propriedades.add("ecommerce.estoque.url", servidor::url);
+        propriedades.add("ecommerce.pagamento.url", servidor::url);
+    }
+
+    @AfterAll
+    public static void encerrarServidor() {
+        servidor.close();
+    }
+
+    @Autowired
+    private CompraService compraService;
+
+    @Autowired
+    private IEstoqueExternal estoque;
+
+    @Autowired
+    private IPagamentoExternal pagamento;
+
+    @Autowired
+    private ClienteRepository clienteRepository;
+
+    @Autowired
+    private ProdutoRepository produtoRepository;
+
+    @Autowired
+    private CarrinhoDeComprasRepository carrinhoRepository;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @AfterEach
+    public void semAtraso() {
+        servidor.setAtrasoMs(0);
+    }
+
+    @Test
+    @DisplayName("Compras concorrentes por HTTP reaproveitam conexões, recebem respostas comprimidas e geram métricas")
+    public void comprasConcorrentes_porHttp() throws Exception {
+        Cliente cliente = clienteRepository.save(new Cliente(null, "Ana", Regiao.SUDESTE, TipoCliente.BRONZE));
+        Produto produto = produtoRepository.save(new Produto(null, "Livro", "Livro", new BigDecimal("50.00"),
+                BigDecimal.ONE, BigDecimal.TEN, BigDecimal.TEN, BigDecimal.TEN, false, TipoProduto.LIVRO));
+        List<Long> carrinhos = new ArrayList<>();
+        for (int i = 0; i < COMPRAS; i++) {
+            List<ItemCompra> itens = new ArrayList<>(List.of(new ItemCompra(null, produto, 1L)));
+            carrinhos.add(carrinhoRepository.save(new CarrinhoDeCompras(null, cliente, itens, LocalDate.now())).getId());
+        }
+
+        List<Future<CompraDTO>> compras = new ArrayList<>();
+        try (ExecutorService clientes = Executors.newFixedThreadPool(8)) {
+            for (Long carrinhoId : carrinhos) {
+                compras.add(clientes.submit(() -> compraService.finalizarCompra(carrinhoId, cliente.getId())));
+            }
+            for (Future<CompraDTO> compra : compras) {
+                assertThat(compra.get(10, TimeUnit.SECONDS).sucesso()).isTrue();
+            }
+        }
+
+        // verificação, autorização e baixa de cada compra
+        assertThat(servidor.getRequisicoes()).isGreaterThanOrEqualTo(3 * COMPRAS);
+        assertThat(servidor.getConexoes()).isLessThan(servidor.getRequisicoes() / 4);
+        assertThat(servidor.getComprimidas()).isEqualTo(servidor.getRequisicoes());
+
+        assertThat(registry.get("http.client.requests").tags("http.url", "/estoque/baixas", "http.status_code", "200")
+                .timer().count()).isEqualTo(COMPRAS);
+        assertThat(registry.get("ecommerce.externo.http.conexoes").tags("cliente", "estoque", "estado", "ociosas")
+                .gauge().value()).isPositive();
+        assertThat(registry.get("ecommerce.externo.http.conexoes").tags("cliente", "pagamento", "estado", "maximo")
+                .gauge().value()).isEqualTo(64.0);
+    }
+
+    @Test
+    @DisplayName("Pedido recusado pelo serviço (400) chega como IllegalArgumentException com a mensagem dele")
+    public void pedidoInvalido_illegalArgument() {
+        assertThatThrownBy(() -> estoque.verificarDisponibilidade(List.of(1L), List.of()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Listas de produtos e quantidades devem ter o mesmo tamanho.");
+    }
+
+    @Test
+    @DisplayName("Resposta mais lenta que o tempo de leitura do cliente vira tempo esgotado")
+    public void respostaLenta_tempoEsgotado() {
+        servidor.setAtrasoMs(2_000);
+        long inicio = System.nanoTime();
+
+        assertThatThrownBy(() -> pagamento.autorizarPagamento(1L, 10.0))
+                .isInstanceOf(TempoEsgotadoException.class)
+                .hasMessage("Tempo esgotado na chamada ao serviço de pagamento.");
+        assertThat(System.nanoTime() - inicio).isLessThan(TimeUnit.MILLISECONDS.toNanos(1_500));
+    }
+}
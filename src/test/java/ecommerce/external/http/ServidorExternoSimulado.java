@@ -0,0 +1,197 @@
+package ecommerce.external.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import ecommerce.dto.BaixaEstoqueDTO;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+
+/**
+ * Servidor HTTP local que atende a API de {@link EstoqueClient} e {@link PagamentoClient} com serviços em memória,
+ * para testar a compra por sockets de verdade em uma só máquina. Conta as requisições, as conexões TCP distintas
+ * (para ver o reaproveitamento) e as respostas comprimidas; {@link #setAtrasoMs} atrasa todas as respostas.
+ */
+public class ServidorExternoSimulado implements AutoCloseable {
+
+    private final IEstoqueExternal estoque;
+    private final IPagamentoExternal pagamento;
+    private final HttpServer servidor;
+    private final ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+    private final ObjectMapper json = new ObjectMapper();
+
+    private final AtomicInteger requisicoes = new AtomicInteger();
+    private final AtomicInteger comprimidas = new AtomicInteger();
+    private final Set<InetSocketAddress> conexoes = ConcurrentHashMap.newKeySet();
+    private volatile long atrasoMs;
+
+    public ServidorExternoSimulado(IEstoqueExternal estoque, IPagamentoExternal pagamento) throws IOException {
+        this.estoque = estoque;
+        this.pagamento = pagamento;
+        this.servidor = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        servidor.setExecutor(threads);
+        servidor.createContext("/", this::atender);
+        servidor.start();
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + servidor.getAddress().getPort();
+    }
+
+    private void atender(HttpExchange troca) throws IOException {
+        try (troca) {
+            requisicoes.incrementAndGet();
+            conexoes.add(troca.getRemoteAddress());
+            byte[] corpo = lerCorpo(troca.getRequestBody());
+            esperar();
+
+            Object resposta;
+            try {
+                resposta = executar(troca.getRequestMethod() + " " + troca.getRequestURI().getPath(),
+                        parametros(troca.getRequestURI().getRawQuery()), corpo);
+            } catch (IllegalArgumentException e) {
+                responder(troca, 400, "text/plain", e.getMessage().getBytes(StandardCharsets.UTF_8));
+                return;
+            } catch (RuntimeException e) {
+                responder(troca, 500, "text/plain", String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            if (resposta == null) {
+                troca.sendResponseHeaders(404, -1);
+                return;
+            }
+            responder(troca, 200, "application/json", json.writeValueAsBytes(resposta));
+        }
+    }
+
+    private Object executar(String operacao, Map<String, List<String>> parametros, byte[] corpo) throws IOException {
+        switch (operacao) {
+            case "GET /estoque/disponibilidade":
+                return estoque.verificarDisponibilidade(longs(parametros, "produtosIds"),
+                        longs(parametros, "produtosQuantidades"));
+            case "POST /estoque/baixas":
+                BaixaEstoqueDTO baixa = json.readValue(corpo, BaixaEstoqueDTO.class);
+                return estoque.darBaixa(baixa.produtosIds(), baixa.produtosQuantidades());
+            case "POST /pagamentos/autorizacoes":
+                return pagamento.autorizarPagamento(longs(parametros, "clienteId").get(0),
+                        Double.valueOf(parametros.get("custoTotal").get(0)),
+                        parametros.get("chaveIdempotencia").get(0));
+            case "POST /pagamentos/cancelamentos":
+                List<String> chave = parametros.getOrDefault("chaveIdempotencia", List.of());
+                if (!chave.isEmpty()) {
+                    pagamento.cancelarPorChave(longs(parametros, "clienteId").get(0), chave.get(0));
+                    return Map.of();
+                }
+                List<Long> transacao = longs(parametros, "transacaoId");
+                pagamento.cancelarPagamento(longs(parametros, "clienteId").get(0),
+                        transacao.isEmpty() ? null : transacao.get(0));
+                return Map.of();
+            default:
+                return null;
+        }
+    }
+
+    private void responder(HttpExchange troca, int status, String tipo, byte[] corpo) throws IOException {
+        String aceita = troca.getRequestHeaders().getFirst("Accept-Encoding");
+        if (aceita != null && aceita.contains("gzip")) {
+            ByteArrayOutputStream comprimido = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(comprimido)) {
+                gzip.write(corpo);
+            }
+            corpo = comprimido.toByteArray();
+            troca.getResponseHeaders().set("Content-Encoding", "gzip");
+            comprimidas.incrementAndGet();
+        }
+        troca.getResponseHeaders().set("Content-Type", tipo);
+        troca.sendResponseHeaders(status, corpo.length);
+        try (OutputStream saida = troca.getResponseBody()) {
+            saida.write(corpo);
+        }
+    }
+
+    private static byte[] lerCorpo(InputStream entrada) throws IOException {
+        try (entrada) {
+            return entrada.readAllBytes();
+        }
+    }
+
+    private void esperar() {
+        long atraso = atrasoMs;
+        if (atraso > 0) {
+            try {
+                Thread.sleep(atraso);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static Map<String, List<String>> parametros(String query) {
+        Map<String, List<String>> parametros = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return parametros;
+        }
+        for (String par : query.split("&")) {
+            int igual = par.indexOf('=');
+            String nome = URLDecoder.decode(igual < 0 ? par : par.substring(0, igual), StandardCharsets.UTF_8);
+            String valor = igual < 0 ? "" : URLDecoder.decode(par.substring(igual + 1), StandardCharsets.UTF_8);
+            parametros.computeIfAbsent(nome, n -> new ArrayList<>()).add(valor);
+        }
+        return parametros;
+    }
+
+    private static List<Long> longs(Map<String, List<String>> parametros, String nome) {
+        List<Long> valores = new ArrayList<>();
+        for (String valor : parametros.getOrDefault(nome, List.of())) {
+            for (String parte : valor.split(",")) {
+                if (!parte.isBlank()) {
+                    valores.add(Long.valueOf(parte.trim()));
+                }
+            }
+        }
+        return valores;
+    }
+
+    public void setAtrasoMs(long atrasoMs) {
+        this.atrasoMs = atrasoMs;
+    }
+
+    public int getRequisicoes() {
+        return requisicoes.get();
+    }
+
+    public int getComprimidas() {
+        return comprimidas.get();
+    }
+
+    /** Conexões TCP distintas que já fizeram requisições. */
+    public int getConexoes() {
+        return conexoes.size();
+    }
+
+    @Override
+    public void close() {
+        servidor.stop(0);
+        threads.shutdownNow();
+    }
+}
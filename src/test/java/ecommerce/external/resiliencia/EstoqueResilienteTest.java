@@ -0,0 +1,91 @@
+package ecommerce.external.resiliencia;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.dto.BaixaEstoqueDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.external.IBaixaEmLoteEstoqueExternal;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IReservaEstoqueExternal;
+
+public class EstoqueResilienteTest {
+
+    private final ProtecaoChamadas protecao = new ProtecaoChamadas("estoque",
+            new ProtecaoChamadas.Configuracao(4, Duration.ofSeconds(1), 3, Duration.ofSeconds(10)), false);
+
+    @AfterEach
+    public void encerrar() {
+        protecao.encerrar();
+    }
+
+    @Test
+    @DisplayName("Estoque só com reservas: o decorador aceita reservas e não baixas em lote")
+    public void somenteReservas_decoradorComReserva() {
+        IReservaEstoqueExternal estoque = mock(IReservaEstoqueExternal.class);
+        when(estoque.confirmar(7L)).thenReturn(new EstoqueBaixaDTO(true));
+
+        IEstoqueExternal decorado = EstoqueResiliente.decorar(estoque, protecao);
+
+        assertThat(decorado).isInstanceOf(IReservaEstoqueExternal.class)
+                .isNotInstanceOf(IBaixaEmLoteEstoqueExternal.class);
+        assertThat(((IReservaEstoqueExternal) decorado).confirmar(7L).sucesso()).isTrue();
+        verify(estoque).confirmar(7L);
+    }
+
+    @Test
+    @DisplayName("Estoque só com baixas em lote: o decorador aceita baixas em lote e não reservas")
+    public void somenteBaixasEmLote_decoradorComBaixaEmLote() {
+        IBaixaEmLoteEstoqueExternal estoque = mock(IBaixaEmLoteEstoqueExternal.class);
+        List<BaixaEstoqueDTO> baixas = List.of(new BaixaEstoqueDTO(List.of(1L), List.of(2L)));
+        when(estoque.darBaixaEmLote(baixas)).thenReturn(List.of(new EstoqueBaixaDTO(true)));
+
+        IEstoqueExternal decorado = EstoqueResiliente.decorar(estoque, protecao);
+
+        assertThat(decorado).isInstanceOf(IBaixaEmLoteEstoqueExternal.class)
+                .isNotInstanceOf(IReservaEstoqueExternal.class);
+        assertThat(((IBaixaEmLoteEstoqueExternal) decorado).darBaixaEmLote(baixas)).hasSize(1);
+        verify(estoque).darBaixaEmLote(baixas);
+    }
+
+    @Test
+    @DisplayName("Baixas em lote em arrays passam pelo decorador sem conversão para listas")
+    public void baixasEmLoteEmArrays_repassadasComoArrays() {
+        IBaixaEmLoteEstoqueExternal estoque = mock(IBaixaEmLoteEstoqueExternal.class);
+        long[][] ids = { { 1L } };
+        long[][] quantidades = { { 2L } };
+        when(estoque.darBaixaEmLote(ids, quantidades)).thenReturn(new boolean[] { true });
+
+        IBaixaEmLoteEstoqueExternal decorado = (IBaixaEmLoteEstoqueExternal) EstoqueResiliente.decorar(estoque,
+                protecao);
+
+        assertThat(decorado.darBaixaEmLote(ids, quantidades)).containsExactly(true);
+        verify(estoque).darBaixaEmLote(ids, quantidades);
+        verify(estoque, never()).darBaixaEmLote(anyList());
+    }
+
+    @Test
+    @DisplayName("Estoque com as duas capacidades ou nenhuma: o decorador mantém exatamente as do estoque")
+    public void demaisCombinacoes_mantemCapacidades() {
+        IEstoqueExternal completo = mock(IReservaEstoqueExternal.class,
+                withSettings().extraInterfaces(IBaixaEmLoteEstoqueExternal.class));
+        IEstoqueExternal simples = mock(IEstoqueExternal.class);
+
+        assertThat(EstoqueResiliente.decorar(completo, protecao)).isInstanceOf(IReservaEstoqueExternal.class)
+                .isInstanceOf(IBaixaEmLoteEstoqueExternal.class);
+        assertThat(EstoqueResiliente.decorar(simples, protecao)).isNotInstanceOf(IReservaEstoqueExternal.class)
+                .isNotInstanceOf(IBaixaEmLoteEstoqueExternal.class);
+    }
+}
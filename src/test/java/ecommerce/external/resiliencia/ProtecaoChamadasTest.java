@@ -0,0 +1,207 @@
+package ecommerce.external.resiliencia;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.external.ChamadaRecusadaException;
+import ecommerce.external.TempoEsgotadoException;
+import ecommerce.external.resiliencia.ProtecaoChamadas.EstadoCircuito;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ProtecaoChamadasTest {
+
+    private final AtomicLong relogio = new AtomicLong();
+    private final ExecutorService chamadores = Executors.newCachedThreadPool();
+    private ProtecaoChamadas protecao;
+
+    @AfterEach
+    public void encerrar() {
+        chamadores.shutdownNow();
+        if (protecao != null) {
+            protecao.encerrar();
+        }
+    }
+
+    private ProtecaoChamadas protecao(int concorrencia, long tempoLimiteMillis, int falhasParaAbrir) {
+        protecao = new ProtecaoChamadas("pagamento", new ProtecaoChamadas.Configuracao(concorrencia,
+                Duration.ofMillis(tempoLimiteMillis), falhasParaAbrir, Duration.ofSeconds(10)), false, relogio::get);
+        return protecao;
+    }
+
+    /** A vaga volta ao fim da thread que executou a chamada, logo depois de o chamador receber o resultado. */
+    private void aguardarVagasLiberadas() throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (protecao.getEmAndamento() > 0 && System.nanoTime() < limite) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static Integer falhar() {
+        throw new IllegalStateException("Falha no serviço.");
+    }
+
+    @Test
+    @DisplayName("Chamada dentro do prazo devolve o resultado do serviço")
+    public void chamadaNoPrazo_devolveResultado() throws Exception {
+        assertThat(protecao(4, 1000, 3).executar(() -> 42)).isEqualTo(42);
+        aguardarVagasLiberadas();
+        assertThat(protecao.getEmAndamento()).isZero();
+    }
+
+    @Test
+    @DisplayName("Com o limite de chamadas simultâneas atingido, a seguinte é recusada na hora")
+    public void limiteDeConcorrencia_recusaNaHora() throws Exception {
+        protecao(2, 5000, 3);
+        CountDownLatch liberar = new CountDownLatch(1);
+        CountDownLatch ocupadas = new CountDownLatch(2);
+        Future<?> primeira = chamadores.submit(() -> protecao.executar(() -> {
+            ocupadas.countDown();
+            return liberar.await(5, TimeUnit.SECONDS);
+        }));
+        Future<?> segunda = chamadores.submit(() -> protecao.executar(() -> {
+            ocupadas.countDown();
+            return liberar.await(5, TimeUnit.SECONDS);
+        }));
+        assertThat(ocupadas.await(5, TimeUnit.SECONDS)).isTrue();
+
+        long inicio = System.nanoTime();
+        assertThatThrownBy(() -> protecao.executar(() -> 1))
+                .isInstanceOf(ChamadaRecusadaException.class)
+                .hasMessage("Serviço de pagamento indisponível (limite de chamadas simultâneas).");
+        assertThat(System.nanoTime() - inicio).isLessThan(TimeUnit.SECONDS.toNanos(1));
+
+        liberar.countDown();
+        primeira.get(5, TimeUnit.SECONDS);
+        segunda.get(5, TimeUnit.SECONDS);
+        assertThat(protecao.executar(() -> 1)).isEqualTo(1);
+        assertThat(protecao.getRecusadasPorConcorrencia()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Chamada travada esgota o tempo limite, é interrompida e devolve a vaga ao terminar")
+    public void chamadaTravada_tempoEsgotado() throws Exception {
+        protecao(1, 50, 3);
+        CountDownLatch interrompida = new CountDownLatch(1);
+
+        long inicio = System.nanoTime();
+        assertThatThrownBy(() -> protecao.executar(() -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrompida.countDown();
+            }
+            return 1;
+        })).isInstanceOf(TempoEsgotadoException.class)
+                .hasMessage("Tempo esgotado na chamada ao serviço de pagamento.");
+
+        assertThat(System.nanoTime() - inicio).isLessThan(TimeUnit.SECONDS.toNanos(5));
+        assertThat(interrompida.await(5, TimeUnit.SECONDS)).isTrue();
+        aguardarVagasLiberadas();
+        assertThat(protecao.executar(() -> 2)).isEqualTo(2);
+        assertThat(protecao.getTemposEsgotados()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Falhas seguidas abrem o circuito, que recusa chamadas sem chamar o serviço")
+    public void falhasSeguidas_abremCircuito() {
+        protecao(4, 1000, 3);
+        AtomicLong chamadas = new AtomicLong();
+
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> protecao.executar(() -> {
+                chamadas.incrementAndGet();
+                return falhar();
+            })).hasMessage("Falha no serviço.");
+        }
+
+        assertThat(protecao.getEstado()).isEqualTo(EstadoCircuito.ABERTO);
+        assertThatThrownBy(() -> protecao.executar(chamadas::incrementAndGet))
+                .isInstanceOf(ChamadaRecusadaException.class)
+                .hasMessage("Serviço de pagamento indisponível (circuito aberto).");
+        assertThat(chamadas.get()).isEqualTo(3);
+        assertThat(protecao.getRecusadasPorCircuito()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Depois do tempo aberto, uma chamada de teste bem-sucedida fecha o circuito")
+    public void chamadaDeTeste_fechaCircuito() {
+        protecao(4, 1000, 1);
+        assertThatThrownBy(() -> protecao.executar(ProtecaoChamadasTest::falhar));
+        assertThat(protecao.getEstado()).isEqualTo(EstadoCircuito.ABERTO);
+
+        relogio.addAndGet(TimeUnit.SECONDS.toNanos(10));
+
+        assertThat(protecao.executar(() -> 7)).isEqualTo(7);
+        assertThat(protecao.getEstado()).isEqualTo(EstadoCircuito.FECHADO);
+    }
+
+    @Test
+    @DisplayName("Chamada de teste com falha reabre o circuito por mais um período")
+    public void chamadaDeTesteComFalha_reabreCircuito() {
+        protecao(4, 1000, 1);
+        assertThatThrownBy(() -> protecao.executar(ProtecaoChamadasTest::falhar));
+        relogio.addAndGet(TimeUnit.SECONDS.toNanos(10));
+
+        assertThatThrownBy(() -> protecao.executar(ProtecaoChamadasTest::falhar))
+                .hasMessage("Falha no serviço.");
+
+        assertThat(protecao.getEstado()).isEqualTo(EstadoCircuito.ABERTO);
+        relogio.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        assertThatThrownBy(() -> protecao.executar(() -> 1)).isInstanceOf(ChamadaRecusadaException.class);
+    }
+
+    @Test
+    @DisplayName("Sucesso zera as falhas seguidas e erro de quem chamou não conta como falha do serviço")
+    public void sucessoEErroDoChamador_naoAbremCircuito() {
+        protecao(4, 1000, 2);
+
+        assertThatThrownBy(() -> protecao.executar(ProtecaoChamadasTest::falhar));
+        protecao.executar(() -> 1);
+        assertThatThrownBy(() -> protecao.executar(ProtecaoChamadasTest::falhar));
+        assertThatThrownBy(() -> protecao.executar(() -> {
+            throw new IllegalArgumentException("Lista inválida.");
+        })).isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(protecao.getEstado()).isEqualTo(EstadoCircuito.FECHADO);
+    }
+
+    @Test
+    @DisplayName("Estado do circuito e recusas são publicados como métricas por dependência")
+    public void metricas_publicadas() {
+        protecao(4, 1000, 1);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        protecao.bindTo(registry);
+
+        assertThatThrownBy(() -> protecao.executar(ProtecaoChamadasTest::falhar));
+        assertThatThrownBy(() -> protecao.executar(() -> 1));
+
+        assertThat(registry.get("ecommerce.externo.circuito.estado").tag("dependencia", "pagamento").gauge().value())
+                .isEqualTo(EstadoCircuito.ABERTO.ordinal());
+        assertThat(registry.get("ecommerce.externo.recusadas").tags("dependencia", "pagamento", "motivo", "circuito")
+                .functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("ecommerce.externo.circuito.aberturas").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Configuração inválida é rejeitada")
+    public void configuracaoInvalida_rejeitada() {
+        assertThatThrownBy(() -> new ProtecaoChamadas.Configuracao(0, Duration.ofSeconds(1), 1, Duration.ZERO))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Concorrência máxima e falhas para abrir devem ser maiores que zero.");
+        assertThatThrownBy(() -> new ProtecaoChamadas.Configuracao(1, Duration.ZERO, 1, Duration.ZERO))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Tempo limite deve ser positivo e tempo aberto não pode ser negativo.");
+    }
+}
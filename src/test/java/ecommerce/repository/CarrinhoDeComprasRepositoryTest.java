@@ -0,0 +1,174 @@
+package ecommerce.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.PrecificacaoCarrinho;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.service.CarrinhoDeComprasService;
+import ecommerce.service.CompraService;
+import jakarta.persistence.EntityManagerFactory;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        // a entrega periódica dos cancelamentos também consulta o banco
+        "ecommerce.pagamento.compensacao.intervalo=PT1H" })
+public class CarrinhoDeComprasRepositoryTest {
+
+    @Autowired
+    private ClienteRepository clienteRepository;
+
+    @Autowired
+    private ProdutoRepository produtoRepository;
+
+    @Autowired
+    private CarrinhoDeComprasRepository carrinhoRepository;
+
+    @Autowired
+    private CarrinhoDeComprasService carrinhoService;
+
+    @Autowired
+    private CompraService compraService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transacoes;
+
+    private Statistics estatisticas;
+
+    @BeforeEach
+    public void setup() {
+        estatisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    /** Carrinho salvo com {@code linhas} itens, cada um de um produto diferente. */
+    private CarrinhoDeCompras carrinhoCom(Cliente cliente, int linhas) {
+        List<ItemCompra> itens = new ArrayList<>();
+        for (int i = 0; i < linhas; i++) {
+            Produto produto = produtoRepository.save(new Produto(null, "Produto " + i, "Descrição " + i,
+                    new BigDecimal("10.00"), BigDecimal.ONE, BigDecimal.TEN, BigDecimal.TEN, BigDecimal.TEN, false,
+                    TipoProduto.LIVRO));
+            itens.add(new ItemCompra(null, produto, 1L));
+        }
+        return carrinhoRepository.save(new CarrinhoDeCompras(null, cliente, itens, LocalDate.now()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 20, 200 })
+    @DisplayName("Carrinho com itens e produtos carregado em uma única consulta, qualquer que seja o tamanho")
+    public void carrinhoComItens_umaConsulta(int linhas) {
+        Cliente cliente = clienteRepository.save(new Cliente(null, "Ana", Regiao.SUDESTE, TipoCliente.BRONZE));
+        Long carrinhoId = carrinhoCom(cliente, linhas).getId();
+        TransactionTemplate leitura = new TransactionTemplate(transacoes);
+        leitura.setReadOnly(true);
+
+        estatisticas.clear();
+        BigDecimal total = leitura.execute(status -> {
+            CarrinhoDeCompras carrinho = carrinhoService.buscarPorCarrinhoIdEClienteId(carrinhoId, cliente);
+            BigDecimal soma = BigDecimal.ZERO;
+            for (ItemCompra item : carrinho.getItens()) {
+                soma = soma.add(item.getProduto().getPreco().multiply(BigDecimal.valueOf(item.getQuantidade())));
+            }
+            return soma;
+        });
+
+        assertThat(total).isEqualByComparingTo(new BigDecimal("10.00").multiply(BigDecimal.valueOf(linhas)));
+        assertThat(estatisticas.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 200 })
+    @DisplayName("Retrato de precificação lido em uma única consulta, sem carregar entidades")
+    public void precificacao_umaConsultaSemEntidades(int linhas) {
+        Cliente cliente = clienteRepository.save(new Cliente(null, "Ana", Regiao.NORTE, TipoCliente.OURO));
+        Long carrinhoId = carrinhoCom(cliente, linhas).getId();
+
+        estatisticas.clear();
+        PrecificacaoCarrinho precificacao = carrinhoService.buscarPrecificacao(carrinhoId, cliente.getId()).orElseThrow();
+
+        assertThat(precificacao.regiao()).isEqualTo(Regiao.NORTE);
+        assertThat(precificacao.tipoCliente()).isEqualTo(TipoCliente.OURO);
+        assertThat(precificacao.linhas()).hasSize(linhas)
+                .allSatisfy(linha -> assertThat(linha.preco()).isEqualByComparingTo("10.00"));
+        assertThat(estatisticas.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(estatisticas.getEntityLoadCount()).isZero();
+        assertThat(carrinhoService.buscarPrecificacao(carrinhoId, cliente.getId() + 1)).isEmpty();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 200 })
+    @DisplayName("Finalizar compra faz uma única consulta ao banco, qualquer que seja o tamanho")
+    public void finalizarCompra_consultasIndependemDoTamanho(int linhas) {
+        Cliente cliente = clienteRepository.save(new Cliente(null, "Ana", Regiao.SUDESTE, TipoCliente.BRONZE));
+        Long carrinhoId = carrinhoCom(cliente, linhas).getId();
+
+        estatisticas.clear();
+        CompraDTO compra = compraService.finalizarCompra(carrinhoId, cliente.getId());
+
+        assertThat(compra.sucesso()).isTrue();
+        assertThat(estatisticas.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(estatisticas.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Carrinho carregado do banco vem sem totais; eles passam a existir com uma alteração pelo carrinho")
+    public void carrinhoCarregado_semTotaisAteAlteracao() {
+        Cliente cliente = clienteRepository.save(new Cliente(null, "Ana", Regiao.SUDESTE, TipoCliente.BRONZE));
+        Long carrinhoId = carrinhoCom(cliente, 3).getId();
+        TransactionTemplate leitura = new TransactionTemplate(transacoes);
+        leitura.setReadOnly(true);
+
+        CarrinhoDeCompras carrinho = leitura.execute(
+                status -> carrinhoService.buscarPorCarrinhoIdEClienteId(carrinhoId, cliente));
+
+        assertThat(carrinho.getTotais()).isNull();
+        // 30.00 com 5% de desconto por tipo e 3 kg de frete isento
+        assertThat(compraService.calcularCustoTotal(carrinho, Regiao.SUDESTE, TipoCliente.BRONZE)).isEqualTo("28.50");
+
+        carrinho.alterarQuantidade(carrinho.getItens().get(0), 2);
+
+        assertThat(carrinho.getTotais()).isNotNull();
+        assertThat(carrinho.getTotais().getSubtotal()).isEqualByComparingTo("40.00");
+        assertThat(carrinho.getTotais().getQuantidadePorTipo(TipoProduto.LIVRO)).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Existência do carrinho consultada só pelo id e pelo cliente, em uma consulta e sem carregar entidades")
+    public void existe_somenteDoCliente() {
+        Cliente cliente = clienteRepository.save(new Cliente(null, "Ana", Regiao.SUDESTE, TipoCliente.BRONZE));
+        Long carrinhoId = carrinhoCom(cliente, 2).getId();
+
+        estatisticas.clear();
+        assertThat(carrinhoService.existe(carrinhoId, cliente.getId())).isTrue();
+        assertThat(estatisticas.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(estatisticas.getEntityLoadCount()).isZero();
+
+        assertThat(carrinhoService.existe(carrinhoId, cliente.getId() + 1)).isFalse();
+        assertThat(carrinhoService.existe(carrinhoId + 1000, cliente.getId())).isFalse();
+    }
+}
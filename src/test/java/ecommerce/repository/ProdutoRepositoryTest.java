@@ -0,0 +1,84 @@
+package ecommerce.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import ecommerce.entity.Produto;
+import ecommerce.entity.TipoProduto;
+
+/** Gravação de produtos com a versão ({@code @Version}) usada como controle otimista. */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        // a entrega periódica dos cancelamentos também consulta o banco
+        "ecommerce.pagamento.compensacao.intervalo=PT1H" })
+public class ProdutoRepositoryTest {
+
+    @Autowired
+    private ProdutoRepository produtoRepository;
+
+    private Produto livro(Long id, String preco) {
+        return new Produto(id, "Livro", "Livro", new BigDecimal(preco), BigDecimal.ONE, BigDecimal.TEN,
+                BigDecimal.TEN, BigDecimal.TEN, false, TipoProduto.LIVRO);
+    }
+
+    @Test
+    @DisplayName("Produto novo é gravado com a versão 0")
+    public void novo_versaoZero() {
+        Produto salvo = produtoRepository.save(livro(null, "10.00"));
+
+        assertThat(salvo.getId()).isNotNull();
+        assertThat(salvo.getVersao()).isZero();
+    }
+
+    @Test
+    @DisplayName("Produto existente lido do banco e salvo de novo é alterado, com a versão seguinte")
+    public void existente_alteradoComNovaVersao() {
+        Long id = produtoRepository.save(livro(null, "10.00")).getId();
+
+        Produto lido = produtoRepository.findById(id).orElseThrow();
+        lido.setPreco(new BigDecimal("12.00"));
+        Produto salvo = produtoRepository.save(lido);
+
+        assertThat(salvo.getVersao()).isEqualTo(1L);
+        assertThat(produtoRepository.findById(id).orElseThrow().getPreco()).isEqualByComparingTo("12.00");
+    }
+
+    @Test
+    @DisplayName("Produto existente montado fora do banco, com id e a versão lida, é alterado")
+    public void existenteDesligadoComVersao_alterado() {
+        Produto salvo = produtoRepository.save(livro(null, "10.00"));
+
+        Produto alteracao = livro(salvo.getId(), "15.00");
+        alteracao.setVersao(salvo.getVersao());
+        produtoRepository.save(alteracao);
+
+        Produto lido = produtoRepository.findById(salvo.getId()).orElseThrow();
+        assertThat(lido.getPreco()).isEqualByComparingTo("15.00");
+        assertThat(lido.getVersao()).isEqualTo(1L);
+    }
+
+    @Test
+    @DisplayName("Alteração feita sobre uma versão já substituída é recusada (controle otimista), sem inserir outro produto")
+    public void versaoAntiga_recusada() {
+        Produto salvo = produtoRepository.save(livro(null, "10.00"));
+        Produto alterado = produtoRepository.findById(salvo.getId()).orElseThrow();
+        alterado.setPreco(new BigDecimal("11.00"));
+        produtoRepository.save(alterado);
+        long produtos = produtoRepository.count();
+
+        // montado com o id e sem a versão lida: continua sendo o produto existente, na versão 0
+        Produto atrasado = livro(salvo.getId(), "9.00");
+
+        assertThatThrownBy(() -> produtoRepository.save(atrasado))
+                .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        assertThat(produtoRepository.findById(salvo.getId()).orElseThrow().getPreco()).isEqualByComparingTo("11.00");
+        assertThat(produtoRepository.count()).isEqualTo(produtos);
+    }
+}
@@ -0,0 +1,121 @@
+package ecommerce.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.dto.CotacaoDTO;
+import ecommerce.dto.CotacaoRequisicaoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.repository.CarrinhoDeComprasRepository;
+import ecommerce.repository.ClienteRepository;
+import ecommerce.repository.ProdutoRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/** Cache de cotações com carrinhos gravados e lidos do banco, como nas requisições. */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        // a entrega periódica dos cancelamentos também consulta o banco
+        "ecommerce.pagamento.compensacao.intervalo=PT1H" })
+public class CacheCotacoesIntegracaoTest {
+
+    @Autowired
+    private ClienteRepository clienteRepository;
+
+    @Autowired
+    private ProdutoRepository produtoRepository;
+
+    @Autowired
+    private CarrinhoDeComprasRepository carrinhoRepository;
+
+    @Autowired
+    private CotacaoService cotacaoService;
+
+    @Autowired
+    private CompraService compraService;
+
+    @Autowired
+    private CacheCotacoes cacheCotacoes;
+
+    @Autowired
+    private CarrinhoDeComprasService carrinhoService;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    /** Carrinho salvo com um item de cada preço, em ordem decrescente de produto. */
+    private CarrinhoDeCompras carrinhoCom(Cliente cliente, String... precos) {
+        List<Produto> produtos = new ArrayList<>();
+        for (String preco : precos) {
+            produtos.add(produtoRepository.save(new Produto(null, "Livro", "Livro", new BigDecimal(preco),
+                    BigDecimal.ONE, BigDecimal.TEN, BigDecimal.TEN, BigDecimal.TEN, false, TipoProduto.LIVRO)));
+        }
+        List<ItemCompra> itens = new ArrayList<>();
+        for (int i = produtos.size() - 1; i >= 0; i--) {
+            itens.add(new ItemCompra(null, produtos.get(i), 1L));
+        }
+        return carrinhoRepository.save(new CarrinhoDeCompras(null, cliente, itens, LocalDate.now()));
+    }
+
+    private CotacaoDTO cotar(CarrinhoDeCompras carrinho, Cliente cliente) {
+        try (LoteCotacao lote = cotacaoService.cotar(List.of(new CotacaoRequisicaoDTO(carrinho.getId(), cliente.getId())))) {
+            return lote.next();
+        }
+    }
+
+    @Test
+    @DisplayName("Cotação (POST /cotacoes) seguida de finalizarCompra do mesmo carrinho: a finalização usa a cotação")
+    public void cotacaoEFinalizacao_hitNoCache() {
+        Cliente cliente = clienteRepository.save(new Cliente(null, "Ana", Regiao.SUL, TipoCliente.PRATA));
+        CarrinhoDeCompras carrinho = carrinhoCom(cliente, "20.00", "35.00");
+        long hits = cacheCotacoes.getHits();
+        long misses = cacheCotacoes.getMisses();
+
+        CotacaoDTO cotacao = cotar(carrinho, cliente);
+        CompraDTO compra = compraService.finalizarCompra(carrinho.getId(), cliente.getId());
+
+        assertThat(cotacao.sucesso()).isTrue();
+        assertThat(compra.sucesso()).isTrue();
+        assertThat(cacheCotacoes.getMisses() - misses).isEqualTo(1);
+        assertThat(cacheCotacoes.getHits() - hits).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Carrinho carregado pelo repositório: a segunda cotação é hit e entra na métrica de acertos")
+    public void carrinhoCarregado_hitNaMetrica() {
+        Cliente cliente = clienteRepository.save(new Cliente(null, "Bia", Regiao.NORDESTE, TipoCliente.BRONZE));
+        Long carrinhoId = carrinhoCom(cliente, "12.00", "48.00", "7.50").getId();
+        double acertos = contador("hit");
+        double falhas = contador("miss");
+
+        List<BigDecimal> cotacoes = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            CarrinhoDeCompras carregado = carrinhoService.buscarComItensPorIds(List.of(carrinhoId)).get(0);
+            assertThat(carregado.getTotais()).isNull();
+            cotacoes.add(compraService.calcularCustoTotal(carregado, cliente.getRegiao(), cliente.getTipo()));
+        }
+
+        assertThat(cotacoes.get(1)).isEqualTo(cotacoes.get(0));
+        assertThat(contador("miss") - falhas).isEqualTo(1.0);
+        assertThat(contador("hit") - acertos).isEqualTo(1.0);
+        assertThat(registry.get("ecommerce.cotacao.cache.taxa.acerto").gauge().value()).isPositive();
+    }
+
+    private double contador(String resultado) {
+        return registry.get("ecommerce.cotacao.cache").tag("resultado", resultado).functionCounter().count();
+    }
+}
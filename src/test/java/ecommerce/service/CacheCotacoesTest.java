@@ -0,0 +1,155 @@
+package ecommerce.service;
+
+import static ecommerce.service.CompraServiceBuilder.compraService;
+import static ecommerce.service.FixturesCompra.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.entity.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class CacheCotacoesTest {
+
+    private CacheCotacoes cache;
+    private CompraService compraService;
+
+    @BeforeEach
+    public void setup() {
+        cache = new CacheCotacoes(2);
+        compraService = compraService().cacheCotacoes(cache).build();
+    }
+
+    private static Produto livro(Long id, long versao, String preco) {
+        Produto p = criarLivro(id, preco);
+        p.setVersao(versao);
+        return p;
+    }
+
+    @Test
+    @DisplayName("Mesma cotação repetida é atendida pelo cache")
+    public void mesmaCotacao_hitNaSegundaConsulta() {
+        CarrinhoDeCompras carrinho = criarCarrinho(criarItem(livro(1L, 0L, "100.00"), 2));
+
+        BigDecimal primeira = compraService.calcularCustoTotal(carrinho, Regiao.SUL, TipoCliente.BRONZE);
+        BigDecimal segunda = compraService.calcularCustoTotal(carrinho, Regiao.SUL, TipoCliente.BRONZE);
+
+        assertThat(segunda).isEqualTo(primeira).isEqualTo("200.00");
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Região e tipo de cliente fazem parte da chave")
+    public void regiaoETipoCliente_chavesDistintas() {
+        // 6 kg: frete de 12.00 antes dos fatores
+        Produto pesado = livro(1L, 0L, "100.00");
+        pesado.setPesoFisico(new BigDecimal("6.00"));
+        CarrinhoDeCompras carrinho = criarCarrinho(criarItem(pesado, 1));
+
+        assertThat(compraService.calcularCustoTotal(carrinho, Regiao.SUDESTE, TipoCliente.BRONZE)).isEqualTo("112.00");
+        assertThat(compraService.calcularCustoTotal(carrinho, Regiao.NORTE, TipoCliente.BRONZE)).isEqualTo("115.60");
+        assertThat(compraService.calcularCustoTotal(carrinho, Regiao.NORTE, TipoCliente.OURO)).isEqualTo("100.00");
+        assertThat(cache.getHits()).isZero();
+    }
+
+    @Test
+    @DisplayName("Nova versão do produto (preço alterado) gera nova cotação")
+    public void novaVersaoDoProduto_recalcula() {
+        Produto livro = livro(1L, 0L, "100.00");
+        CarrinhoDeCompras carrinho = criarCarrinho(criarItem(livro, 1));
+        compraService.calcularCustoTotal(carrinho, Regiao.SUL, TipoCliente.BRONZE);
+
+        livro.setPreco(new BigDecimal("80.00"));
+        livro.setVersao(1L);
+
+        assertThat(compraService.calcularCustoTotal(carrinho, Regiao.SUL, TipoCliente.BRONZE)).isEqualTo("80.00");
+        assertThat(cache.getHits()).isZero();
+    }
+
+    @Test
+    @DisplayName("Cotação da versão anterior do produto não é mais usada e sai do cache quando falta espaço")
+    public void versaoAnterior_saiPelaCapacidade() {
+        Produto livro = livro(1L, 0L, "100.00");
+        CarrinhoDeCompras carrinho = criarCarrinho(criarItem(livro, 1));
+        compraService.calcularCustoTotal(carrinho, Regiao.SUL, TipoCliente.BRONZE);
+
+        livro.setVersao(1L);
+        compraService.calcularCustoTotal(carrinho, Regiao.SUL, TipoCliente.BRONZE);
+        compraService.calcularCustoTotal(carrinho, Regiao.SUL, TipoCliente.BRONZE);
+        compraService.calcularCustoTotal(criarCarrinho(criarItem(livro(2L, 0L, "50.00"), 1)), Regiao.SUL, TipoCliente.BRONZE);
+
+        assertThat(cache.tamanho()).isEqualTo(2);
+        assertThat(cache.getRemocoes()).isEqualTo(1);
+        assertThat(compraService.calcularCustoTotal(carrinho, Regiao.SUL, TipoCliente.BRONZE)).isEqualTo("100.00");
+        assertThat(cache.getHits()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Acima da capacidade, a cotação menos usada recentemente é removida")
+    public void acimaDaCapacidade_removeMenosUsada() {
+        CarrinhoDeCompras a = criarCarrinho(criarItem(livro(1L, 0L, "10.00"), 1));
+        CarrinhoDeCompras b = criarCarrinho(criarItem(livro(2L, 0L, "20.00"), 1));
+        CarrinhoDeCompras c = criarCarrinho(criarItem(livro(3L, 0L, "30.00"), 1));
+
+        compraService.calcularCustoTotal(a, Regiao.SUL, TipoCliente.BRONZE);
+        compraService.calcularCustoTotal(b, Regiao.SUL, TipoCliente.BRONZE);
+        compraService.calcularCustoTotal(a, Regiao.SUL, TipoCliente.BRONZE); // a passa a ser a mais recente
+        compraService.calcularCustoTotal(c, Regiao.SUL, TipoCliente.BRONZE); // remove b
+
+        compraService.calcularCustoTotal(a, Regiao.SUL, TipoCliente.BRONZE);
+        compraService.calcularCustoTotal(b, Regiao.SUL, TipoCliente.BRONZE);
+
+        assertThat(cache.getRemocoes()).isEqualTo(2);
+        assertThat(cache.getHits()).isEqualTo(2);
+        assertThat(cache.getMisses()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Produtos sem id (ainda não persistidos) não são guardados")
+    public void produtoSemId_naoEhGuardado() {
+        CarrinhoDeCompras carrinho = criarCarrinho(criarItem(livro(null, 0L, "100.00"), 1));
+
+        compraService.calcularCustoTotal(carrinho, Regiao.SUL, TipoCliente.BRONZE);
+        compraService.calcularCustoTotal(carrinho, Regiao.SUL, TipoCliente.BRONZE);
+
+        assertThat(cache.tamanho()).isZero();
+        assertThat(cache.getHits() + cache.getMisses()).isZero();
+    }
+
+    @Test
+    @DisplayName("Acertos, remoções, tamanho e taxa de acerto são publicados como métricas")
+    public void metricas_publicadas() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+        CarrinhoDeCompras carrinho = criarCarrinho(criarItem(livro(1L, 0L, "100.00"), 1));
+
+        compraService.calcularCustoTotal(carrinho, Regiao.SUL, TipoCliente.BRONZE);
+        compraService.calcularCustoTotal(carrinho, Regiao.SUL, TipoCliente.BRONZE);
+
+        assertThat(registry.get("ecommerce.cotacao.cache").tag("resultado", "hit").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("ecommerce.cotacao.cache").tag("resultado", "miss").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("ecommerce.cotacao.cache.tamanho").gauge().value()).isEqualTo(1);
+        assertThat(registry.get("ecommerce.cotacao.cache.taxa.acerto").gauge().value()).isEqualTo(0.5);
+    }
+
+    @Test
+    @DisplayName("Cotação do carrinho e finalização pelo retrato de precificação usam a mesma entrada, em qualquer ordem")
+    public void carrinhoERetrato_mesmaEntrada() {
+        Cliente cliente = criarCliente();
+        ItemCompra a = criarItem(livro(1L, 0L, "100.00"), 2);
+        ItemCompra b = criarItem(livro(2L, 3L, "30.00"), 1);
+        CarrinhoDeCompras carrinho = criarCarrinho(b, a);
+        PrecificacaoCarrinho retrato = PrecificacaoCarrinho.de(criarCarrinho(a, b), cliente);
+
+        BigDecimal cotacao = compraService.calcularCustoTotal(carrinho, Regiao.SUDESTE, TipoCliente.BRONZE);
+
+        assertThat(compraService.calcularCustoTotal(retrato)).isEqualTo(cotacao);
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.tamanho()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,136 @@
+package ecommerce.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.external.ItensEstoque;
+
+public class CacheDisponibilidadeTest {
+
+    private static final long[] UM = { 1 };
+
+    private AtomicLong relogio;
+    private CacheDisponibilidade cache;
+
+    @BeforeEach
+    public void setup() {
+        relogio = new AtomicLong();
+        cache = new CacheDisponibilidade(Duration.ofSeconds(1), 100, relogio::get);
+    }
+
+    private static BitSet posicoes(int... indices) {
+        BitSet posicoes = new BitSet();
+        for (int indice : indices) {
+            posicoes.set(indice);
+        }
+        return posicoes;
+    }
+
+    @Test
+    @DisplayName("Produto visto esgotado é recusado pelo cache, sem consultar o estoque, até o TTL vencer")
+    public void esgotado_recusadoAteVencer() {
+        assertThat(cache.consultar(new long[] { 7L }, UM)).isNull();
+        cache.registrarVerificacao(new long[] { 7L }, UM, posicoes(0));
+
+        assertThat(cache.consultar(new long[] { 3L, 7L, 7L }, new long[] { 1, 1, 2 })).isEqualTo(posicoes(1, 2));
+        assertThat(cache.consultarIndisponiveis(new long[] { 7L }, new long[] { 5 })).isEqualTo(posicoes(0));
+
+        relogio.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertThat(cache.consultar(new long[] { 7L }, UM)).isNull();
+        assertThat(cache.getHits()).isEqualTo(2);
+        assertThat(cache.getMisses()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Recusa sem produtos identificados não cria entradas; só apaga a disponibilidade já guardada")
+    public void recusaSemProdutos_naoCriaEntradas() {
+        long[] ids = { 1L, 2L };
+        long[] quantidades = { 1, 1 };
+        cache.registrarVerificacao(ids, quantidades, ItensEstoque.indisponiveis(ids, List.of()));
+
+        assertThat(cache.tamanho()).isZero();
+        assertThat(cache.consultarIndisponiveis(new long[] { 2L }, UM)).isNull();
+
+        cache.registrarVerificacao(new long[] { 1L }, new long[] { 3 }, new BitSet());
+        cache.registrarVerificacao(ids, quantidades, ItensEstoque.indisponiveis(ids, List.of(9L)));
+
+        // o produto 1 só tinha a disponibilidade: a entrada sai do cache
+        assertThat(cache.tamanho()).isZero();
+        assertThat(cache.consultar(new long[] { 1L }, UM)).isNull();
+        assertThat(cache.consultarIndisponiveis(new long[] { 1L }, UM)).isNull();
+    }
+
+    @Test
+    @DisplayName("Quantidade já vista disponível dispensa a verificação; quantidade maior consulta o estoque")
+    public void disponivel_ateQuantidadeVerificada() {
+        cache.registrarVerificacao(new long[] { 1L, 2L }, new long[] { 3, 2 }, new BitSet());
+
+        assertThat(cache.consultar(new long[] { 2L, 1L }, new long[] { 2, 3 })).isEqualTo(new BitSet());
+        assertThat(cache.consultar(new long[] { 1L, 1L }, new long[] { 2, 2 })).isNull();
+        assertThat(cache.consultar(new long[] { 1L, 9L }, new long[] { 1, 1 })).isNull();
+        // a reserva vai ao estoque de qualquer jeito: só o que está esgotado interessa
+        assertThat(cache.consultarIndisponiveis(new long[] { 1L }, UM)).isNull();
+    }
+
+    @Test
+    @DisplayName("Baixa aplicada reduz os limites; baixa recusada apaga a disponibilidade e conta a decisão obsoleta")
+    public void baixas_ajustamLimites() {
+        cache.registrarVerificacao(new long[] { 1L }, new long[] { 5 }, new BitSet());
+        cache.registrarVerificacao(new long[] { 1L }, new long[] { 8 }, posicoes(0));
+
+        cache.registrarBaixa(new long[] { 1L }, new long[] { 2 }, true);
+        // saldo entre 3 e 5: 3 disponíveis, 6 indisponíveis
+        assertThat(cache.consultar(new long[] { 1L }, new long[] { 3 })).isEqualTo(new BitSet());
+        assertThat(cache.consultar(new long[] { 1L }, new long[] { 4 })).isNull();
+        assertThat(cache.consultar(new long[] { 1L }, new long[] { 6 })).isEqualTo(posicoes(0));
+        assertThat(cache.getObsoletas()).isZero();
+
+        cache.registrarBaixa(new long[] { 1L }, new long[] { 3 }, false);
+        assertThat(cache.getObsoletas()).isEqualTo(1);
+        assertThat(cache.consultar(new long[] { 1L }, UM)).isNull();
+    }
+
+    @Test
+    @DisplayName("Baixa aplicada de produto que o cache dava como esgotado desfaz o limite e conta a decisão obsoleta")
+    public void baixaDeEsgotado_desfazLimite() {
+        cache.registrarVerificacao(new long[] { 1L }, new long[] { 2 }, posicoes(0));
+
+        cache.registrarBaixa(new long[] { 1L }, new long[] { 2 }, true);
+
+        assertThat(cache.getObsoletas()).isEqualTo(1);
+        assertThat(cache.consultar(new long[] { 1L }, new long[] { 2 })).isNull();
+    }
+
+    @Test
+    @DisplayName("Verificação recente prevalece sobre o limite que ela contradiz")
+    public void verificacaoRecente_prevalece() {
+        cache.registrarVerificacao(new long[] { 1L }, new long[] { 1 }, posicoes(0));
+        relogio.addAndGet(Duration.ofMillis(100).toNanos());
+
+        // reposição: o produto voltou
+        cache.registrarVerificacao(new long[] { 1L }, new long[] { 4 }, new BitSet());
+
+        assertThat(cache.consultar(new long[] { 1L }, new long[] { 4 })).isEqualTo(new BitSet());
+    }
+
+    @Test
+    @DisplayName("Cheio, o cache deixa novos produtos de fora; desabilitado, nunca responde")
+    public void capacidade_eDesabilitado() {
+        cache = new CacheDisponibilidade(Duration.ofSeconds(1), 1, relogio::get);
+        cache.registrarVerificacao(new long[] { 1L, 2L }, new long[] { 1, 1 }, new BitSet());
+        assertThat(cache.tamanho()).isEqualTo(1);
+
+        CacheDisponibilidade desabilitado = CacheDisponibilidade.desabilitado();
+        desabilitado.registrarVerificacao(new long[] { 1L }, UM, posicoes(0));
+        assertThat(desabilitado.consultar(new long[] { 1L }, UM)).isNull();
+        assertThat(desabilitado.getMisses()).isZero();
+    }
+}
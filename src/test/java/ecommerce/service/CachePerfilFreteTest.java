@@ -0,0 +1,172 @@
+package ecommerce.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.entity.Produto;
+import ecommerce.entity.ProdutoAlteradoEvento;
+import ecommerce.entity.TipoProduto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class CachePerfilFreteTest {
+
+    private CachePerfilFrete cache;
+
+    @BeforeEach
+    public void setup() {
+        cache = new CachePerfilFrete();
+    }
+
+    private Produto criarMovel(Long id, String comprimento) {
+        Produto p = new Produto();
+        p.setId(id);
+        p.setPreco(new BigDecimal("1500.00"));
+        p.setPesoFisico(new BigDecimal("30.00"));
+        p.setComprimento(new BigDecimal(comprimento));
+        p.setLargura(new BigDecimal("100"));
+        p.setAltura(new BigDecimal("90"));
+        p.setTipo(TipoProduto.MOVEL);
+        p.setFragil(true);
+        return p;
+    }
+
+    @Test
+    @DisplayName("Segunda consulta do mesmo produto é atendida pelo cache")
+    public void mesmoProduto_hitNaSegundaConsulta() {
+        Produto sofa = criarMovel(1L, "200");
+
+        PerfilFreteProduto primeiro = cache.obter(sofa);
+        PerfilFreteProduto segundo = cache.obter(sofa);
+
+        // 200 x 100 x 90 / 6000 = 300 kg cúbicos > 30 kg físicos
+        assertThat(primeiro.pesoTributavel()).isEqualByComparingTo("300");
+        assertThat(primeiro.pesoTributavelMg()).isEqualTo(300_000_000L);
+        assertThat(primeiro.fragil()).isTrue();
+        assertThat(segundo).isSameAs(primeiro);
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Evento de alteração do produto invalida o perfil em cache")
+    public void produtoAlterado_recalculaPerfil() {
+        cache.obter(criarMovel(1L, "200"));
+
+        Produto sofaMenor = criarMovel(1L, "100");
+        cache.aoAlterarProduto(new ProdutoAlteradoEvento(1L));
+
+        assertThat(cache.obter(sofaMenor).pesoTributavel()).isEqualByComparingTo("150");
+        assertThat(cache.getMisses()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Produto lido em outra versão recalcula o perfil, mesmo sem evento de alteração")
+    public void outraVersao_recalculaPerfil() {
+        Produto sofa = criarMovel(1L, "200");
+        sofa.setVersao(1L);
+        cache.obter(sofa);
+
+        Produto sofaMenor = criarMovel(1L, "100");
+        sofaMenor.setVersao(2L);
+
+        assertThat(cache.obter(sofaMenor).pesoTributavel()).isEqualByComparingTo("150");
+        assertThat(cache.obter(sofaMenor).pesoTributavel()).isEqualByComparingTo("150");
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(2);
+        assertThat(cache.tamanho()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Cheio, o cache troca o produto usado há mais tempo pelo novo")
+    public void capacidade_removeUsadoHaMaisTempo() {
+        cache = new CachePerfilFrete(2);
+        Produto sofa = criarMovel(1L, "200");
+        Produto mesa = criarMovel(2L, "200");
+
+        cache.obter(sofa);
+        cache.obter(mesa);
+        cache.obter(sofa);
+        cache.obter(criarMovel(3L, "200"));
+        cache.obter(sofa);
+        cache.obter(mesa);
+
+        assertThat(cache.tamanho()).isEqualTo(2);
+        assertThat(cache.getRemocoes()).isEqualTo(2);
+        // sofá: hit nas duas consultas seguintes à primeira; mesa: removida pela cadeira e calculada de novo
+        assertThat(cache.getHits()).isEqualTo(2);
+        assertThat(cache.getMisses()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Inclusões concorrentes com o cache cheio não passam da capacidade")
+    public void capacidade_respeitadaComInclusoesConcorrentes() throws Exception {
+        cache = new CachePerfilFrete(100);
+        int threads = 8;
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> tarefas = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long base = t * 10_000L;
+                tarefas.add(executor.submit(() -> {
+                    largada.await();
+                    for (long id = 1; id <= 2_000; id++) {
+                        cache.obter(criarMovel(base + id, "200"));
+                    }
+                    return null;
+                }));
+            }
+            largada.countDown();
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(cache.tamanho()).isEqualTo(100);
+        assertThat(cache.getRemocoes()).isEqualTo(threads * 2_000L - 100);
+    }
+
+    @Test
+    @DisplayName("Produto sem id não é guardado no cache")
+    public void produtoSemId_naoEhGuardado() {
+        Produto novo = criarMovel(null, "200");
+
+        cache.obter(novo);
+        cache.obter(novo);
+
+        assertThat(cache.getHits()).isZero();
+        assertThat(cache.getMisses()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Hits e misses são publicados como métricas")
+    public void metricas_hitsEMisses() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+
+        Produto sofa = criarMovel(1L, "200");
+        cache.obter(sofa);
+        cache.obter(sofa);
+        cache.obter(sofa);
+
+        assertThat(registry.get("ecommerce.frete.perfil.cache").tag("resultado", "hit").functionCounter().count())
+                .isEqualTo(2.0);
+        assertThat(registry.get("ecommerce.frete.perfil.cache").tag("resultado", "miss").functionCounter().count())
+                .isEqualTo(1.0);
+        assertThat(registry.get("ecommerce.frete.perfil.cache.tamanho").gauge().value()).isEqualTo(1.0);
+    }
+}
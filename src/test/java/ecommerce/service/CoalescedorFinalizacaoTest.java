@@ -0,0 +1,165 @@
+package ecommerce.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.dto.CompraDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class CoalescedorFinalizacaoTest {
+
+    private static final CompraDTO SUCESSO = new CompraDTO(true, 77L, "Compra finalizada com sucesso.");
+
+    private CompraService compraService;
+    private AtomicLong relogio;
+    private CoalescedorFinalizacao coalescedor;
+
+    @BeforeEach
+    public void setup() {
+        compraService = mock(CompraService.class);
+        relogio = new AtomicLong();
+        coalescedor = new CoalescedorFinalizacao(compraService, Duration.ofSeconds(30), relogio::get);
+    }
+
+    /** Faz a finalização do carrinho 10 bloquear até {@code liberar} e avisar em {@code iniciada}. */
+    private void finalizacaoBloqueada(CountDownLatch iniciada, CountDownLatch liberar, RuntimeException falha) {
+        when(compraService.finalizarCompra(10L, 1L)).thenAnswer(invocacao -> {
+            iniciada.countDown();
+            liberar.await(5, TimeUnit.SECONDS);
+            if (falha != null) {
+                throw falha;
+            }
+            return SUCESSO;
+        });
+    }
+
+    private List<Future<CompraDTO>> repetir(ExecutorService threads, int vezes) {
+        List<Future<CompraDTO>> chamadas = new ArrayList<>();
+        for (int i = 0; i < vezes; i++) {
+            chamadas.add(threads.submit(() -> coalescedor.finalizarCompra(10L, 1L)));
+        }
+        return chamadas;
+    }
+
+    private void aguardarSeguidoras(int quantidade) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (coalescedor.getCoalescidas() < quantidade && System.nanoTime() < limite) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    @DisplayName("Chamadas simultâneas para o mesmo carrinho executam a compra uma única vez")
+    public void chamadasSimultaneas_executamUmaVez() throws Exception {
+        CountDownLatch iniciada = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        finalizacaoBloqueada(iniciada, liberar, null);
+
+        try (ExecutorService threads = Executors.newFixedThreadPool(3)) {
+            List<Future<CompraDTO>> chamadas = repetir(threads, 3);
+            assertThat(iniciada.await(5, TimeUnit.SECONDS)).isTrue();
+            aguardarSeguidoras(2);
+            liberar.countDown();
+
+            for (Future<CompraDTO> chamada : chamadas) {
+                assertThat(chamada.get(5, TimeUnit.SECONDS)).isSameAs(SUCESSO);
+            }
+        }
+
+        verify(compraService, times(1)).finalizarCompra(10L, 1L);
+        assertThat(coalescedor.getExecutadas()).isEqualTo(1);
+        assertThat(coalescedor.getCoalescidas()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Falha da primeira chamada chega às seguidoras e não é guardada")
+    public void falha_propagadaESemCache() throws Exception {
+        CountDownLatch iniciada = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        IllegalStateException foraDeEstoque = new IllegalStateException("Itens fora de estoque.");
+        finalizacaoBloqueada(iniciada, liberar, foraDeEstoque);
+
+        try (ExecutorService threads = Executors.newFixedThreadPool(2)) {
+            List<Future<CompraDTO>> chamadas = repetir(threads, 2);
+            assertThat(iniciada.await(5, TimeUnit.SECONDS)).isTrue();
+            aguardarSeguidoras(1);
+            liberar.countDown();
+
+            for (Future<CompraDTO> chamada : chamadas) {
+                assertThatThrownBy(() -> chamada.get(5, TimeUnit.SECONDS)).hasCause(foraDeEstoque);
+            }
+        }
+
+        // nova tentativa depois da falha executa de novo
+        doReturn(SUCESSO).when(compraService).finalizarCompra(10L, 1L);
+        assertThat(coalescedor.finalizarCompra(10L, 1L)).isSameAs(SUCESSO);
+        assertThat(coalescedor.getExecutadas()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Repetição tardia recebe a compra concluída até o fim do prazo")
+    public void repeticaoTardia_respondidaPeloCacheAteExpirar() {
+        when(compraService.finalizarCompra(10L, 1L)).thenReturn(SUCESSO);
+
+        coalescedor.finalizarCompra(10L, 1L);
+        relogio.addAndGet(Duration.ofSeconds(29).toNanos());
+        CompraDTO repetida = coalescedor.finalizarCompra(10L, 1L);
+
+        assertThat(repetida).isSameAs(SUCESSO);
+        assertThat(repetida.transacaoPagamentoId()).isEqualTo(77L);
+        assertThat(coalescedor.getRespondidasPeloCache()).isEqualTo(1);
+
+        relogio.addAndGet(Duration.ofSeconds(1).toNanos());
+        coalescedor.finalizarCompra(10L, 1L);
+        verify(compraService, times(2)).finalizarCompra(10L, 1L);
+    }
+
+    @Test
+    @DisplayName("Mesmo carrinho com outro cliente não recebe a compra de outro cliente")
+    public void outroCliente_naoCompartilhaResultado() {
+        when(compraService.finalizarCompra(10L, 1L)).thenReturn(SUCESSO);
+        when(compraService.finalizarCompra(10L, 2L)).thenThrow(new IllegalArgumentException("Carrinho não encontrado."));
+
+        coalescedor.finalizarCompra(10L, 1L);
+
+        assertThatThrownBy(() -> coalescedor.finalizarCompra(10L, 2L))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Carrinho não encontrado.");
+    }
+
+    @Test
+    @DisplayName("Execuções, agrupamentos e respostas do cache são publicados como métricas")
+    public void metricas_publicadas() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        coalescedor.bindTo(registry);
+        when(compraService.finalizarCompra(10L, 1L)).thenReturn(SUCESSO);
+
+        coalescedor.finalizarCompra(10L, 1L);
+        coalescedor.finalizarCompra(10L, 1L);
+
+        assertThat(registry.get("ecommerce.finalizacao").tag("resultado", "executada").functionCounter().count())
+                .isEqualTo(1);
+        assertThat(registry.get("ecommerce.finalizacao").tag("resultado", "cache").functionCounter().count())
+                .isEqualTo(1);
+        assertThat(registry.get("ecommerce.finalizacao.concluidas.tamanho").gauge().value()).isEqualTo(1);
+    }
+}
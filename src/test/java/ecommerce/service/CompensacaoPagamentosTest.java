@@ -0,0 +1,169 @@
+package ecommerce.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionOperations;
+
+import ecommerce.entity.CancelamentoPagamentoPendente;
+import ecommerce.external.ChamadaRecusadaException;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.repository.CancelamentoPagamentoRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class CompensacaoPagamentosTest {
+
+    private static final Instant AGORA = Instant.parse("2026-01-10T12:00:00Z");
+
+    private CancelamentoPagamentoRepository repository;
+    private IPagamentoExternal pagamento;
+    private CompensacaoPagamentos compensacao;
+
+    @BeforeEach
+    public void setup() {
+        repository = mock(CancelamentoPagamentoRepository.class);
+        pagamento = mock(IPagamentoExternal.class);
+        compensacao = new CompensacaoPagamentos(repository, pagamento, TransactionOperations.withoutTransaction(),
+                Duration.ofSeconds(1), Duration.ofSeconds(30), 50, Clock.fixed(AGORA, ZoneOffset.UTC));
+    }
+
+    private void devidos(CancelamentoPagamentoPendente... cancelamentos) {
+        when(repository.findByProximaTentativaLessThanEqualOrderByProximaTentativaAsc(eq(AGORA), any(Pageable.class)))
+                .thenReturn(List.of(cancelamentos));
+    }
+
+    @Test
+    @DisplayName("Registrar só grava o cancelamento, sem chamar o provedor de pagamento")
+    public void registrar_gravaSemChamarProvedor() {
+        compensacao.registrarCancelamento(1L, 77L);
+
+        ArgumentCaptor<CancelamentoPagamentoPendente> gravado = ArgumentCaptor.forClass(CancelamentoPagamentoPendente.class);
+        verify(repository).save(gravado.capture());
+        assertThat(gravado.getValue().getTransacaoId()).isEqualTo(77L);
+        assertThat(gravado.getValue().getProximaTentativa()).isEqualTo(AGORA);
+        verify(pagamento, never()).cancelarPagamento(any(), any());
+        assertThat(compensacao.getRegistrados()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Cancelamento repetido para a mesma transação não é gravado de novo")
+    public void registrarRepetido_ignorado() {
+        when(repository.existsByTransacaoId(77L)).thenReturn(true);
+        compensacao.registrarCancelamento(1L, 77L);
+
+        when(repository.existsByTransacaoId(78L)).thenReturn(false);
+        when(repository.save(any())).thenThrow(new DataIntegrityViolationException("transacao_id duplicado"));
+        compensacao.registrarCancelamento(1L, 78L);
+
+        assertThat(compensacao.getRepetidos()).isEqualTo(2);
+        assertThat(compensacao.getRegistrados()).isZero();
+    }
+
+    @Test
+    @DisplayName("Cancelamento entregue é removido do outbox")
+    public void entregue_removido() {
+        CancelamentoPagamentoPendente cancelamento = new CancelamentoPagamentoPendente(1L, 77L, AGORA);
+        devidos(cancelamento);
+
+        compensacao.entregarPendentes();
+
+        verify(pagamento).cancelarPagamento(1L, 77L);
+        verify(repository).deleteById(cancelamento.getId());
+        assertThat(compensacao.getEntregues()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Autorização sem resposta: cancelamento gravado pela chave e entregue pela chave, uma vez por chave")
+    public void porChave_gravadoEEntreguePelaChave() {
+        compensacao.registrarCancelamentoPorChave(1L, "chave-1");
+        when(repository.existsByChaveIdempotencia("chave-1")).thenReturn(true);
+        compensacao.registrarCancelamentoPorChave(1L, "chave-1");
+
+        ArgumentCaptor<CancelamentoPagamentoPendente> gravado = ArgumentCaptor.forClass(CancelamentoPagamentoPendente.class);
+        verify(repository).save(gravado.capture());
+        assertThat(gravado.getValue().getTransacaoId()).isNull();
+        assertThat(gravado.getValue().getChaveIdempotencia()).isEqualTo("chave-1");
+        assertThat(compensacao.getRegistrados()).isEqualTo(1);
+        assertThat(compensacao.getRepetidos()).isEqualTo(1);
+
+        devidos(gravado.getValue());
+        compensacao.entregarPendentes();
+
+        verify(pagamento).cancelarPorChave(1L, "chave-1");
+        verify(pagamento, never()).cancelarPagamento(any(), any());
+        assertThat(compensacao.getEntregues()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Falha na entrega reagenda com espera exponencial e não impede os demais cancelamentos")
+    public void falha_reagendaComEspera() {
+        CancelamentoPagamentoPendente falha = new CancelamentoPagamentoPendente(1L, 77L, AGORA);
+        falha.falhou("anterior", AGORA); // segunda falha: espera dobra
+        CancelamentoPagamentoPendente entregue = new CancelamentoPagamentoPendente(2L, 78L, AGORA);
+        devidos(falha, entregue);
+        doThrow(new ChamadaRecusadaException("Serviço de pagamento indisponível (circuito aberto)."))
+                .when(pagamento).cancelarPagamento(1L, 77L);
+
+        compensacao.entregarPendentes();
+
+        verify(repository).save(falha);
+        assertThat(falha.getTentativas()).isEqualTo(2);
+        assertThat(falha.getProximaTentativa()).isEqualTo(AGORA.plusSeconds(2));
+        assertThat(falha.getUltimoErro()).isEqualTo("Serviço de pagamento indisponível (circuito aberto).");
+        verify(pagamento).cancelarPagamento(2L, 78L);
+        assertThat(compensacao.getFalhas()).isEqualTo(1);
+        assertThat(compensacao.getEntregues()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Espera dobra a cada falha até o máximo configurado")
+    public void espera_limitadaAoMaximo() {
+        assertThat(compensacao.espera(1)).isEqualTo(Duration.ofSeconds(1));
+        assertThat(compensacao.espera(3)).isEqualTo(Duration.ofSeconds(4));
+        assertThat(compensacao.espera(10)).isEqualTo(Duration.ofSeconds(30));
+        assertThat(compensacao.espera(100)).isEqualTo(Duration.ofSeconds(30));
+    }
+
+    @Test
+    @DisplayName("Métrica única por resultado, com a mesma descrição em todos")
+    public void metricas_umaPorResultado() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        compensacao.bindTo(registry);
+        compensacao.registrarCancelamento(1L, 77L);
+
+        List<FunctionCounter> contadores = List.copyOf(registry.get("ecommerce.pagamento.compensacao").functionCounters());
+        assertThat(contadores).extracting(c -> c.getId().getTag("resultado"))
+                .containsExactlyInAnyOrder("registrada", "repetida", "entregue", "falha");
+        assertThat(contadores).extracting(c -> c.getId().getDescription()).containsOnly(
+                contadores.get(0).getId().getDescription());
+        assertThat(registry.get("ecommerce.pagamento.compensacao").tag("resultado", "registrada").functionCounter()
+                .count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Sem outbox, o cancelamento é enviado na hora")
+    public void direta_cancelaNaHora() {
+        CompensacaoPagamentos.direta(pagamento).registrarCancelamento(1L, 77L);
+
+        verify(pagamento).cancelarPagamento(1L, 77L);
+    }
+}
@@ -0,0 +1,132 @@
+package ecommerce.service;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+
+/**
+ * Monta um {@link CompraService} para testes e benchmarks, fora do Spring. Sem configuração, o serviço só precifica:
+ * motor BIG_DECIMAL, regras padrão, caches desabilitados, baixas sem lote, verificação sem hedge, cancelamento enviado
+ * na hora e leitura sem transação. Os componentes que dependem do estoque ou do pagamento são criados com os
+ * informados, a menos que também sejam informados.
+ */
+public final class CompraServiceBuilder {
+
+    private static final PlatformTransactionManager SEM_TRANSACAO = new PlatformTransactionManager() {
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definicao) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    };
+
+    private CarrinhoDeComprasService carrinhoService;
+    private ClienteService clienteService;
+    private IEstoqueExternal estoque;
+    private IPagamentoExternal pagamento;
+    private MotorPrecificacao motor = MotorPrecificacao.BIG_DECIMAL;
+    private CachePerfilFrete cachePerfilFrete;
+    private RegrasPrecificacao regras = RegrasPrecificacao.padrao();
+    private CacheCotacoes cacheCotacoes = CacheCotacoes.desabilitado();
+    private ExecutorChamadasExternas executor = ExecutorChamadasExternas.padrao();
+    private LoteBaixasEstoque loteBaixas;
+    private ConsultaDisponibilidade consultaDisponibilidade;
+    private PlatformTransactionManager transacoes = SEM_TRANSACAO;
+    private CompensacaoPagamentos compensacao;
+    private CacheDisponibilidade cacheDisponibilidade = CacheDisponibilidade.desabilitado();
+
+    public static CompraServiceBuilder compraService() {
+        return new CompraServiceBuilder();
+    }
+
+    public CompraServiceBuilder carrinhos(CarrinhoDeComprasService carrinhoService) {
+        this.carrinhoService = carrinhoService;
+        return this;
+    }
+
+    public CompraServiceBuilder clientes(ClienteService clienteService) {
+        this.clienteService = clienteService;
+        return this;
+    }
+
+    public CompraServiceBuilder estoque(IEstoqueExternal estoque) {
+        this.estoque = estoque;
+        return this;
+    }
+
+    public CompraServiceBuilder pagamento(IPagamentoExternal pagamento) {
+        this.pagamento = pagamento;
+        return this;
+    }
+
+    public CompraServiceBuilder motor(MotorPrecificacao motor) {
+        this.motor = motor;
+        return this;
+    }
+
+    public CompraServiceBuilder cachePerfilFrete(CachePerfilFrete cachePerfilFrete) {
+        this.cachePerfilFrete = cachePerfilFrete;
+        return this;
+    }
+
+    public CompraServiceBuilder regras(RegrasPrecificacao regras) {
+        this.regras = regras;
+        return this;
+    }
+
+    public CompraServiceBuilder cacheCotacoes(CacheCotacoes cacheCotacoes) {
+        this.cacheCotacoes = cacheCotacoes;
+        return this;
+    }
+
+    public CompraServiceBuilder executor(ExecutorChamadasExternas executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    public CompraServiceBuilder loteBaixas(LoteBaixasEstoque loteBaixas) {
+        this.loteBaixas = loteBaixas;
+        return this;
+    }
+
+    public CompraServiceBuilder consultaDisponibilidade(ConsultaDisponibilidade consultaDisponibilidade) {
+        this.consultaDisponibilidade = consultaDisponibilidade;
+        return this;
+    }
+
+    public CompraServiceBuilder transacoes(PlatformTransactionManager transacoes) {
+        this.transacoes = transacoes;
+        return this;
+    }
+
+    public CompraServiceBuilder compensacao(CompensacaoPagamentos compensacao) {
+        this.compensacao = compensacao;
+        return this;
+    }
+
+    public CompraServiceBuilder cacheDisponibilidade(CacheDisponibilidade cacheDisponibilidade) {
+        this.cacheDisponibilidade = cacheDisponibilidade;
+        return this;
+    }
+
+    public CompraService build() {
+        return new CompraService(carrinhoService, clienteService, estoque, pagamento, motor,
+                cachePerfilFrete != null ? cachePerfilFrete : new CachePerfilFrete(), regras, cacheCotacoes,
+                executor, loteBaixas != null ? loteBaixas : LoteBaixasEstoque.desabilitado(estoque),
+                consultaDisponibilidade != null ? consultaDisponibilidade
+                        : ConsultaDisponibilidade.semHedge(estoque, executor),
+                transacoes, compensacao != null ? compensacao : CompensacaoPagamentos.direta(pagamento),
+                cacheDisponibilidade);
+    }
+}
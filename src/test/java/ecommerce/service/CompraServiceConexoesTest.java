@@ -0,0 +1,130 @@
+package ecommerce.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.repository.CarrinhoDeComprasRepository;
+import ecommerce.repository.ClienteRepository;
+import ecommerce.repository.ProdutoRepository;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "ecommerce.resiliencia.habilitado=false",
+        "spring.datasource.hikari.maximum-pool-size=" + CompraServiceConexoesTest.CONEXOES })
+public class CompraServiceConexoesTest {
+
+    static final int CONEXOES = 4;
+    private static final int COMPRAS = 3 * CONEXOES;
+
+    /** Todas as verificações de estoque em andamento; liberadas só depois de medir o pool. */
+    private static final CountDownLatch todasNoEstoque = new CountDownLatch(COMPRAS);
+    private static final CountDownLatch liberarEstoque = new CountDownLatch(1);
+
+    @TestConfiguration
+    static class EstoqueLentoConfig {
+
+        @Bean
+        @Primary
+        IEstoqueExternal estoqueLento() {
+            return new IEstoqueExternal() {
+                @Override
+                public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds,
+                        List<Long> produtosQuantidades) {
+                    todasNoEstoque.countDown();
+                    try {
+                        liberarEstoque.await(20, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return new DisponibilidadeDTO(true, List.of());
+                }
+
+                @Override
+                public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades) {
+                    return new EstoqueBaixaDTO(true);
+                }
+            };
+        }
+    }
+
+    @Autowired
+    private CompraService compraService;
+
+    @Autowired
+    private ClienteRepository clienteRepository;
+
+    @Autowired
+    private ProdutoRepository produtoRepository;
+
+    @Autowired
+    private CarrinhoDeComprasRepository carrinhoRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    @DisplayName("Compras esperando o estoque não prendem conexões: o pool fica livre e aceita mais compras que conexões")
+    public void estoqueLento_naoPrendeConexoes() throws Exception {
+        Cliente cliente = clienteRepository.save(new Cliente(null, "Ana", Regiao.SUDESTE, TipoCliente.BRONZE));
+        Produto produto = produtoRepository.save(new Produto(null, "Livro", "Livro", new BigDecimal("50.00"),
+                BigDecimal.ONE, BigDecimal.TEN, BigDecimal.TEN, BigDecimal.TEN, false, TipoProduto.LIVRO));
+        List<Long> carrinhos = new ArrayList<>();
+        for (int i = 0; i < COMPRAS; i++) {
+            List<ItemCompra> itens = new ArrayList<>(List.of(new ItemCompra(null, produto, 2L)));
+            carrinhos.add(carrinhoRepository.save(new CarrinhoDeCompras(null, cliente, itens, LocalDate.now())).getId());
+        }
+        HikariPoolMXBean pool = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+
+        List<Future<CompraDTO>> compras = new ArrayList<>();
+        try (ExecutorService clientes = Executors.newFixedThreadPool(COMPRAS)) {
+            for (Long carrinhoId : carrinhos) {
+                compras.add(clientes.submit(() -> compraService.finalizarCompra(carrinhoId, cliente.getId())));
+            }
+
+            // com a conexão presa durante a verificação, só CONEXOES compras chegariam ao estoque
+            boolean todasChegaram = todasNoEstoque.await(10, TimeUnit.SECONDS);
+            int conexoesAtivas = pool.getActiveConnections();
+            int aguardandoConexao = pool.getThreadsAwaitingConnection();
+            liberarEstoque.countDown();
+
+            assertThat(todasChegaram).isTrue();
+            assertThat(conexoesAtivas).isZero();
+            assertThat(aguardandoConexao).isZero();
+            for (Future<CompraDTO> compra : compras) {
+                assertThat(compra.get(10, TimeUnit.SECONDS).sucesso()).isTrue();
+            }
+        }
+    }
+}
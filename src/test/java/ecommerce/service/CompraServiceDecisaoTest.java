@@ -1,10 +1,10 @@
 package ecommerce.service;
 
+import static ecommerce.service.CompraServiceBuilder.compraService;
+import static ecommerce.service.FixturesCompra.*;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.List;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -19,36 +19,7 @@ public class CompraServiceDecisaoTest {
 
     @BeforeEach
     public void setup() {
-        service = new CompraService(null, null, null, null);
-    }
-
-    private Produto criarProduto(String preco, String peso, TipoProduto tipo, boolean fragil) {
-        Produto p = new Produto();
-        p.setPreco(new BigDecimal(preco));
-        p.setPesoFisico(new BigDecimal(peso));
-        p.setComprimento(BigDecimal.TEN);
-        p.setLargura(BigDecimal.TEN);
-        p.setAltura(BigDecimal.TEN);
-        p.setTipo(tipo);
-        p.setFragil(fragil);
-        return p;
-    }
-
-    private ItemCompra criarItem(Produto produto, long quantidade) {
-        ItemCompra item = new ItemCompra();
-        item.setProduto(produto);
-        item.setQuantidade(quantidade);
-        return item;
-    }
-
-    private CarrinhoDeCompras criarCarrinho(ItemCompra... itens) {
-        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
-        List<ItemCompra> lista = new ArrayList<>();
-        for (ItemCompra it : itens) {
-            lista.add(it);
-        }
-        carrinho.setItens(lista);
-        return carrinho;
+        service = compraService().build();
     }
 
     @DisplayName("Testes combinados das regras da tabela de decisão")
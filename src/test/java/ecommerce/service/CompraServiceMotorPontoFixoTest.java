@@ -0,0 +1,155 @@
+package ecommerce.service;
+
+import static ecommerce.service.CompraServiceBuilder.compraService;
+import static ecommerce.service.FixturesCompra.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import ecommerce.entity.*;
+
+public class CompraServiceMotorPontoFixoTest {
+
+    private CompraService referencia;
+    private CompraService pontoFixo;
+
+    @BeforeEach
+    public void setup() {
+        referencia = compraService().motor(MotorPrecificacao.BIG_DECIMAL).build();
+        pontoFixo = compraService().motor(MotorPrecificacao.PONTO_FIXO).build();
+    }
+
+    private void assertMesmoResultado(CarrinhoDeCompras carrinho, Regiao regiao, TipoCliente tipoCliente) {
+        BigDecimal esperado = referencia.calcularCustoTotal(carrinho, regiao, tipoCliente);
+        BigDecimal obtido = pontoFixo.calcularCustoTotal(carrinho, regiao, tipoCliente);
+
+        // equals compara também a escala: o resultado deve ser idêntico, não apenas numericamente igual
+        assertThat(obtido).as("Motor ponto fixo diverge do BigDecimal").isEqualTo(esperado);
+    }
+
+    // Carrinhos usados nos testes CompraService*Test
+    static Stream<CarrinhoDeCompras> carrinhosDosTestes() {
+        Produto livro = criarProduto("10.00", "1.00", "10", "10", "10", TipoProduto.LIVRO, false);
+        Produto eletronico = criarProduto("200.00", "3.00", "10", "10", "10", TipoProduto.ELETRONICO, false);
+        Produto livroGrande = criarProduto("50.00", "2.00", "15", "15", "15", TipoProduto.LIVRO, false);
+        Produto movelFragil = criarProduto("1000.00", "27.00", "50", "30", "25", TipoProduto.MOVEL, true);
+
+        return Stream.of(
+                criarCarrinho(),
+                criarCarrinho(criarItem(criarProduto("100.00", "2.00", "10", "10", "10", TipoProduto.ELETRONICO, false), 1)),
+                criarCarrinho(criarItem(livro, 1), criarItem(livro, 1), criarItem(livro, 1)),
+                criarCarrinho(criarItem(livro, 3)),
+                criarCarrinho(criarItem(livro, 5)),
+                criarCarrinho(criarItem(livro, 8)),
+                criarCarrinho(criarItem(criarProduto("1100.00", "2.00", "10", "10", "10", TipoProduto.LIVRO, false), 1)),
+                criarCarrinho(criarItem(criarProduto("100.00", "6.00", "10", "10", "10", TipoProduto.MOVEL, true), 1)),
+                criarCarrinho(criarItem(criarProduto("100.00", "6.00", "10", "10", "10", TipoProduto.ELETRONICO, true), 2)),
+                criarCarrinho(criarItem(criarProduto("200.00", "8.00", "10", "10", "10", TipoProduto.ELETRONICO, true), 1)),
+                criarCarrinho(criarItem(criarProduto("1200.00", "6.00", "10", "10", "10", TipoProduto.ELETRONICO, true), 1)),
+                criarCarrinho(criarItem(criarProduto("800.00", "6.00", "10", "10", "10", TipoProduto.ELETRONICO, true), 1)),
+                criarCarrinho(criarItem(criarProduto("600.00", "5.00", "10", "10", "10", TipoProduto.ROUPA, false), 1)),
+                criarCarrinho(criarItem(criarProduto("250.00", "8.00", "10", "10", "10", TipoProduto.ALIMENTO, false), 1)),
+                criarCarrinho(criarItem(criarProduto("10.00", "5.5", "10", "10", "10", TipoProduto.ROUPA, false), 1)),
+                criarCarrinho(criarItem(criarProduto("10.00", "10.00", "10", "10", "10", TipoProduto.ROUPA, false), 1)),
+                criarCarrinho(criarItem(criarProduto("10.00", "50.01", "10", "10", "10", TipoProduto.ROUPA, false), 1)),
+                criarCarrinho(criarItem(criarProduto("20.00", "1.00", "200", "200", "200", TipoProduto.MOVEL, false), 1)),
+                criarCarrinho(criarItem(criarProduto("500.00", "1.00", "10", "10", "10", TipoProduto.LIVRO, false), 1)),
+                criarCarrinho(criarItem(criarProduto("1000.00", "1.00", "10", "10", "10", TipoProduto.LIVRO, false), 1)),
+                criarCarrinho(criarItem(eletronico, 2), criarItem(livroGrande, 4), criarItem(movelFragil, 1))
+        );
+    }
+
+    static Stream<Arguments> carrinhosDosTestesEmTodasAsCombinacoes() {
+        List<Arguments> casos = new ArrayList<>();
+        carrinhosDosTestes().forEach(carrinho -> {
+            for (Regiao regiao : Regiao.values()) {
+                for (TipoCliente tipoCliente : TipoCliente.values()) {
+                    casos.add(Arguments.of(carrinho, regiao, tipoCliente));
+                }
+            }
+        });
+        return casos.stream();
+    }
+
+    @DisplayName("Motor ponto fixo reproduz os carrinhos dos testes existentes")
+    @ParameterizedTest
+    @MethodSource("carrinhosDosTestesEmTodasAsCombinacoes")
+    public void carrinhosDosTestes_mesmoResultado(CarrinhoDeCompras carrinho, Regiao regiao, TipoCliente tipoCliente) {
+        assertMesmoResultado(carrinho, regiao, tipoCliente);
+    }
+
+    private static String decimal(Random random, long maximoCentesimos, int escala) {
+        long valor = random.nextLong(maximoCentesimos + 1);
+        return BigDecimal.valueOf(valor, escala).toPlainString();
+    }
+
+    private static CarrinhoDeCompras carrinhoAleatorio(Random random) {
+        int linhas = random.nextInt(12);
+        ItemCompra[] itens = new ItemCompra[linhas];
+        TipoProduto[] tipos = TipoProduto.values();
+        for (int i = 0; i < linhas; i++) {
+            // escalas variadas, inclusive algumas que o motor ponto fixo não representa (retorno ao BigDecimal)
+            int escalaPreco = random.nextInt(10) == 0 ? 3 : 2;
+            int escalaPeso = random.nextInt(10) == 0 ? 7 : random.nextInt(4);
+            int escalaDimensao = random.nextInt(2) * 2;
+            Produto produto = criarProduto(
+                    decimal(random, 200_000, escalaPreco),
+                    decimal(random, 8_000, escalaPeso),
+                    decimal(random, 20_000, escalaDimensao),
+                    decimal(random, 10_000, escalaDimensao),
+                    decimal(random, 10_000, escalaDimensao),
+                    tipos[random.nextInt(tipos.length)],
+                    random.nextBoolean());
+            itens[i] = criarItem(produto, 1 + random.nextInt(9));
+        }
+        return criarCarrinho(itens);
+    }
+
+    static IntStream sementes() {
+        return IntStream.range(0, 500);
+    }
+
+    @DisplayName("Motor ponto fixo reproduz carrinhos aleatórios")
+    @ParameterizedTest
+    @MethodSource("sementes")
+    public void carrinhosAleatorios_mesmoResultado(int semente) {
+        Random random = new Random(semente);
+        CarrinhoDeCompras carrinho = carrinhoAleatorio(random);
+        Regiao regiao = Regiao.values()[random.nextInt(Regiao.values().length)];
+        TipoCliente tipoCliente = TipoCliente.values()[random.nextInt(TipoCliente.values().length)];
+
+        assertMesmoResultado(carrinho, regiao, tipoCliente);
+    }
+
+    @Test
+    @DisplayName("Valores fora da escala de ponto fixo usam o motor BigDecimal")
+    public void valoresForaDaEscala_retornaAoBigDecimal() {
+        CarrinhoDeCompras carrinho = criarCarrinho(
+                criarItem(criarProduto("10.005", "1.1234567", "10.123", "10", "10", TipoProduto.ROUPA, true), 3),
+                criarItem(criarProduto("92233720368547758.07", "1.00", "10", "10", "10", TipoProduto.LIVRO, false), 1));
+
+        assertMesmoResultado(carrinho, Regiao.NORTE, TipoCliente.BRONZE);
+    }
+
+    @Test
+    @DisplayName("Carrinho nulo ou sem lista de itens retorna 0.00 nos dois motores")
+    public void carrinhoNulo_mesmoResultado() {
+        CarrinhoDeCompras semItens = new CarrinhoDeCompras();
+        semItens.setItens(null);
+
+        assertMesmoResultado(null, Regiao.SUDESTE, TipoCliente.BRONZE);
+        assertMesmoResultado(semItens, Regiao.SUL, TipoCliente.PRATA);
+    }
+}
@@ -1,10 +1,11 @@
 package ecommerce.service;
 
+import static ecommerce.service.CompraServiceBuilder.compraService;
+import static ecommerce.service.FixturesCompra.*;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.List;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -22,7 +23,7 @@ public class CompraServiceParticaoTest {
 
     @BeforeEach
     public void setup() {
-        service = new CompraService(null, null, null, null);
+        service = compraService().build();
 
         produtoEletronico = criarProduto("200.00", "3.00", "10", "10", "10",
                 TipoProduto.ELETRONICO, false);
@@ -34,36 +35,6 @@ public class CompraServiceParticaoTest {
                 TipoProduto.MOVEL, true);
     }
 
-    private Produto criarProduto(String preco, String peso, String comprimento, String largura, String altura,
-                                 TipoProduto tipo, boolean fragil) {
-        Produto p = new Produto();
-        p.setPreco(new BigDecimal(preco));
-        p.setPesoFisico(new BigDecimal(peso));
-        p.setComprimento(new BigDecimal(comprimento));
-        p.setLargura(new BigDecimal(largura));
-        p.setAltura(new BigDecimal(altura));
-        p.setTipo(tipo);
-        p.setFragil(fragil);
-        return p;
-    }
-
-    private ItemCompra criarItem(Produto produto, long quantidade) {
-        ItemCompra item = new ItemCompra();
-        item.setProduto(produto);
-        item.setQuantidade(quantidade);
-        return item;
-    }
-
-    private CarrinhoDeCompras criarCarrinho(ItemCompra... itens) {
-        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
-        List<ItemCompra> lista = new ArrayList<>();
-        for (ItemCompra it : itens) {
-            lista.add(it);
-        }
-        carrinho.setItens(lista);
-        return carrinho;
-    }
-
     @DisplayName("Teste carrinho vazio retorna 0")
     @ParameterizedTest
     @CsvSource({
@@ -0,0 +1,344 @@
+package ecommerce.service;
+
+import static ecommerce.service.CompraServiceBuilder.compraService;
+import static ecommerce.service.FixturesCompra.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.entity.*;
+import ecommerce.external.ChamadaRecusadaException;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.external.TempoEsgotadoException;
+
+public class CompraServicePipelineTest {
+
+    private static final long ATRASO_MS = 300;
+
+    private ClienteService clienteService;
+    private CarrinhoDeComprasService carrinhoService;
+    private EstoqueComAtraso estoque;
+    private PagamentoRegistrado pagamento;
+    private ExecutorChamadasExternas executor;
+    private Cliente cliente;
+
+    @BeforeEach
+    public void setup() {
+        cliente = criarCliente();
+        clienteService = mock(ClienteService.class);
+        carrinhoService = mock(CarrinhoDeComprasService.class);
+        when(clienteService.buscarPorId(1L)).thenReturn(cliente);
+        estoque = new EstoqueComAtraso();
+        pagamento = new PagamentoRegistrado();
+        executor = new ExecutorChamadasExternas(4);
+    }
+
+    @AfterEach
+    public void encerrar() {
+        executor.encerrar();
+    }
+
+    private void carrinhoCom(Produto produto) {
+        when(carrinhoService.buscarPorCarrinhoIdEClienteId(eq(10L), any()))
+                .thenReturn(criarCarrinho(10L, cliente, criarItem(produto, 1)));
+    }
+
+    private CompraServiceBuilder compra() {
+        return compraService().carrinhos(carrinhoService).clientes(clienteService).estoque(estoque)
+                .pagamento(pagamento).executor(executor);
+    }
+
+    /** Serviço cuja precificação leva {@code atrasoMs}, simulando um carrinho caro de calcular. */
+    private CompraService servico(long atrasoPrecificacaoMs) {
+        return compra().cachePerfilFrete(new CachePerfilFrete() {
+            @Override
+            PerfilFreteProduto obter(LinhaPrecificacao linha) {
+                dormir(atrasoPrecificacaoMs);
+                return super.obter(linha);
+            }
+        }).build();
+    }
+
+    private static void dormir(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    @DisplayName("Verificação de estoque e precificação se sobrepõem: latência próxima do maior dos dois, não da soma")
+    public void verificacaoEPrecificacao_emParalelo() {
+        carrinhoCom(criarLivro(1L, "100.00"));
+        estoque.atrasoVerificacaoMs = ATRASO_MS;
+        CompraService service = servico(ATRASO_MS);
+
+        long inicio = System.nanoTime();
+        CompraDTO compra = service.finalizarCompra(10L, 1L);
+        long decorridoMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+
+        assertThat(compra.sucesso()).isTrue();
+        assertThat(compra.transacaoPagamentoId()).isEqualTo(77L);
+        assertThat(pagamento.valorAutorizado).isEqualTo(100.00);
+        // sequencial seria >= 2 x ATRASO_MS
+        assertThat(decorridoMs).isGreaterThanOrEqualTo(ATRASO_MS).isLessThan(ATRASO_MS * 2 - 50);
+    }
+
+    @Test
+    @DisplayName("Itens indisponíveis: compra recusada sem autorizar pagamento")
+    public void itensIndisponiveis_naoAutorizaPagamento() {
+        carrinhoCom(criarLivro(1L, "100.00"));
+        estoque.disponivel = false;
+
+        assertThatThrownBy(() -> servico(0).finalizarCompra(10L, 1L))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Itens fora de estoque.");
+        assertThat(pagamento.autorizacoes.get()).isZero();
+    }
+
+    @Test
+    @DisplayName("Falha na precificação com itens disponíveis: erro da precificação, sem autorizar pagamento")
+    public void falhaNaPrecificacao_comItensDisponiveis_propagaErroDaPrecificacao() {
+        carrinhoCom(criarLivro(1L, null));
+        estoque.atrasoVerificacaoMs = 50;
+
+        assertThatThrownBy(() -> servico(0).finalizarCompra(10L, 1L))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Preço inválido (nulo ou negativo).");
+        assertThat(estoque.verificacoes.get()).isEqualTo(1);
+        assertThat(pagamento.autorizacoes.get()).isZero();
+    }
+
+    @Test
+    @DisplayName("Itens indisponíveis e precificação inválida: prevalece o erro de estoque, como com a verificação antes da precificação")
+    public void falhaNaPrecificacao_comItensIndisponiveis_prevaleceErroDeEstoque() {
+        carrinhoCom(criarLivro(1L, null));
+        estoque.disponivel = false;
+        estoque.atrasoVerificacaoMs = 50;
+
+        assertThatThrownBy(() -> servico(0).finalizarCompra(10L, 1L))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Itens fora de estoque.");
+        assertThat(pagamento.autorizacoes.get()).isZero();
+    }
+
+    @Test
+    @DisplayName("Exceção da verificação de estoque chega ao chamador sem ser embrulhada")
+    public void falhaNaVerificacao_propagaExcecaoOriginal() {
+        carrinhoCom(criarLivro(1L, "100.00"));
+        estoque.falhaVerificacao = new IllegalStateException("Estoque indisponível.");
+
+        assertThatThrownBy(() -> servico(0).finalizarCompra(10L, 1L))
+                .isSameAs(estoque.falhaVerificacao);
+        assertThat(pagamento.autorizacoes.get()).isZero();
+    }
+
+    @Test
+    @DisplayName("Falha ao dar baixa cancela o pagamento autorizado")
+    public void falhaNaBaixa_cancelaPagamento() {
+        carrinhoCom(criarLivro(1L, "100.00"));
+        estoque.baixaComSucesso = false;
+
+        assertThatThrownBy(() -> servico(0).finalizarCompra(10L, 1L))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Erro ao dar baixa no estoque.");
+        assertThat(pagamento.transacaoCancelada).isEqualTo(77L);
+    }
+
+    @Test
+    @DisplayName("Com outbox, a falha na baixa só registra o cancelamento: o provedor não é chamado na requisição")
+    public void falhaNaBaixa_comOutbox_registraCancelamento() {
+        carrinhoCom(criarLivro(1L, "100.00"));
+        estoque.baixaComSucesso = false;
+        CompensacaoPagamentos compensacao = mock(CompensacaoPagamentos.class);
+        CompraService service = compra().compensacao(compensacao).build();
+
+        assertThatThrownBy(() -> service.finalizarCompra(10L, 1L))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Erro ao dar baixa no estoque.");
+        verify(compensacao).registrarCancelamento(1L, 77L);
+        assertThat(pagamento.transacaoCancelada).isNull();
+    }
+
+    @Test
+    @DisplayName("Baixa sem resposta cancela o pagamento e esquece o produto no cache, sem registrá-la como recusada")
+    public void baixaSemResposta_cancelaPagamentoEEsqueceProduto() {
+        carrinhoCom(criarLivro(1L, "100.00"));
+        estoque.falhaBaixa = new TempoEsgotadoException("Tempo esgotado na chamada ao serviço de estoque.");
+        CompensacaoPagamentos compensacao = mock(CompensacaoPagamentos.class);
+        CacheDisponibilidade cacheDisponibilidade = new CacheDisponibilidade(Duration.ofMinutes(1), 100);
+        CompraService service = compra().compensacao(compensacao).cacheDisponibilidade(cacheDisponibilidade).build();
+
+        assertThatThrownBy(() -> service.finalizarCompra(10L, 1L))
+                .isSameAs(estoque.falhaBaixa);
+        verify(compensacao).registrarCancelamento(1L, 77L);
+        assertThat(cacheDisponibilidade.tamanho()).isZero();
+    }
+
+    @Test
+    @DisplayName("Falha ao registrar o cancelamento não esconde a falha da baixa")
+    public void baixaRecusadaPeloCircuito_falhaNoCancelamento_propagaFalhaDaBaixa() {
+        carrinhoCom(criarLivro(1L, "100.00"));
+        estoque.falhaBaixa = new ChamadaRecusadaException("Serviço de estoque indisponível (circuito aberto).");
+        pagamento.falhaCancelamento = new IllegalStateException("Provedor fora do ar.");
+
+        assertThatThrownBy(() -> servico(0).finalizarCompra(10L, 1L))
+                .isSameAs(estoque.falhaBaixa)
+                .hasSuppressedException(pagamento.falhaCancelamento);
+    }
+
+    @Test
+    @DisplayName("Autorização sem resposta agenda o cancelamento pela chave de idempotência usada")
+    public void autorizacaoSemResposta_cancelaPelaChave() {
+        carrinhoCom(criarLivro(1L, "100.00"));
+        pagamento.falhaAutorizacao = new TempoEsgotadoException("Tempo esgotado na chamada ao serviço de pagamento.");
+        CompensacaoPagamentos compensacao = mock(CompensacaoPagamentos.class);
+        CompraService service = compra().compensacao(compensacao).build();
+
+        assertThatThrownBy(() -> service.finalizarCompra(10L, 1L))
+                .isSameAs(pagamento.falhaAutorizacao);
+        assertThat(pagamento.chaveAutorizada).isNotBlank();
+        verify(compensacao).registrarCancelamentoPorChave(1L, pagamento.chaveAutorizada);
+        assertThat(estoque.baixas.get()).isZero();
+    }
+
+    @Test
+    @DisplayName("Autorização recusada pela proteção não foi feita: nada a cancelar")
+    public void autorizacaoRecusadaPeloCircuito_semCancelamento() {
+        carrinhoCom(criarLivro(1L, "100.00"));
+        pagamento.falhaAutorizacao = new ChamadaRecusadaException("Serviço de pagamento indisponível (circuito aberto).");
+        CompensacaoPagamentos compensacao = mock(CompensacaoPagamentos.class);
+        CompraService service = compra().compensacao(compensacao).build();
+
+        assertThatThrownBy(() -> service.finalizarCompra(10L, 1L))
+                .isSameAs(pagamento.falhaAutorizacao);
+        verify(compensacao, never()).registrarCancelamentoPorChave(any(), any());
+    }
+
+    @Test
+    @DisplayName("Produto visto esgotado é recusado pelo cache de disponibilidade sem nova verificação no estoque")
+    public void esgotado_recusadoPeloCache() {
+        carrinhoCom(criarLivro(1L, "100.00"));
+        estoque.disponivel = false;
+        CacheDisponibilidade cacheDisponibilidade = new CacheDisponibilidade(Duration.ofMinutes(1), 100);
+        CompraService service = compra().compensacao(mock(CompensacaoPagamentos.class))
+                .cacheDisponibilidade(cacheDisponibilidade).build();
+
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> service.finalizarCompra(10L, 1L))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessage("Itens fora de estoque.");
+        }
+
+        assertThat(estoque.verificacoes.get()).isEqualTo(1);
+        assertThat(cacheDisponibilidade.getHits()).isEqualTo(2);
+        assertThat(pagamento.autorizacoes.get()).isZero();
+    }
+
+    @Test
+    @DisplayName("Estoque que recusa sem dizer quais produtos: compra recusada, sem nada aprendido pelo cache")
+    public void indisponivelSemProdutos_naoEntraNoCache() {
+        carrinhoCom(criarLivro(1L, "100.00"));
+        estoque.disponivel = false;
+        estoque.identificaIndisponiveis = false;
+        CacheDisponibilidade cacheDisponibilidade = new CacheDisponibilidade(Duration.ofMinutes(1), 100);
+        CompraService service = compra().cacheDisponibilidade(cacheDisponibilidade).build();
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> service.finalizarCompra(10L, 1L))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessage("Itens fora de estoque.");
+        }
+
+        assertThat(estoque.verificacoes.get()).isEqualTo(2);
+        assertThat(cacheDisponibilidade.tamanho()).isZero();
+        assertThat(pagamento.autorizacoes.get()).isZero();
+    }
+
+    private static class EstoqueComAtraso implements IEstoqueExternal {
+        final AtomicInteger verificacoes = new AtomicInteger();
+        volatile long atrasoVerificacaoMs;
+        volatile boolean disponivel = true;
+        volatile boolean identificaIndisponiveis = true;
+        final AtomicInteger baixas = new AtomicInteger();
+        volatile boolean baixaComSucesso = true;
+        volatile RuntimeException falhaVerificacao;
+        volatile RuntimeException falhaBaixa;
+
+        @Override
+        public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades) {
+            verificacoes.incrementAndGet();
+            try {
+                Thread.sleep(atrasoVerificacaoMs);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException("Verificação cancelada.");
+            }
+            if (falhaVerificacao != null) {
+                throw falhaVerificacao;
+            }
+            return new DisponibilidadeDTO(disponivel, disponivel || !identificaIndisponiveis ? List.of() : produtosIds);
+        }
+
+        @Override
+        public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades) {
+            baixas.incrementAndGet();
+            if (falhaBaixa != null) {
+                throw falhaBaixa;
+            }
+            return new EstoqueBaixaDTO(baixaComSucesso);
+        }
+    }
+
+    private static class PagamentoRegistrado implements IPagamentoExternal {
+        final AtomicInteger autorizacoes = new AtomicInteger();
+        volatile Double valorAutorizado;
+        volatile Long transacaoCancelada;
+        volatile String chaveAutorizada;
+        volatile RuntimeException falhaAutorizacao;
+        volatile RuntimeException falhaCancelamento;
+
+        @Override
+        public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal, String chaveIdempotencia) {
+            autorizacoes.incrementAndGet();
+            valorAutorizado = custoTotal;
+            chaveAutorizada = chaveIdempotencia;
+            if (falhaAutorizacao != null) {
+                throw falhaAutorizacao;
+            }
+            return new PagamentoDTO(true, 77L);
+        }
+
+        @Override
+        public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId) {
+            if (falhaCancelamento != null) {
+                throw falhaCancelamento;
+            }
+            transacaoCancelada = pagamentoTransacaoId;
+        }
+
+        @Override
+        public void cancelarPorChave(Long clienteId, String chaveIdempotencia) {
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package ecommerce.service;
+
+import static ecommerce.service.CompraServiceBuilder.compraService;
+import static ecommerce.service.FixturesCompra.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.entity.*;
+import ecommerce.external.ChamadaRecusadaException;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.external.TempoEsgotadoException;
+import ecommerce.external.fake.EstoqueSimulado;
+
+public class CompraServiceReservaTest {
+
+    private ClienteService clienteService;
+    private CarrinhoDeComprasService carrinhoService;
+    private EstoqueComFalhas estoque;
+    private PagamentoRegistrado pagamento;
+    private Cliente cliente;
+
+    @BeforeEach
+    public void setup() {
+        cliente = criarCliente();
+        clienteService = mock(ClienteService.class);
+        carrinhoService = mock(CarrinhoDeComprasService.class);
+        when(clienteService.buscarPorId(1L)).thenReturn(cliente);
+        estoque = new EstoqueComFalhas();
+        pagamento = new PagamentoRegistrado();
+    }
+
+    @AfterEach
+    public void encerrar() {
+        estoque.encerrar();
+    }
+
+    private CompraService servico() {
+        return compraService().carrinhos(carrinhoService).clientes(clienteService).estoque(estoque).pagamento(pagamento)
+                .build();
+    }
+
+    private void carrinhoCom(Long produtoId, String preco, long quantidade) {
+        when(carrinhoService.buscarPorCarrinhoIdEClienteId(eq(10L), any()))
+                .thenReturn(criarCarrinho(10L, cliente, criarItem(criarLivro(produtoId, preco), quantidade)));
+    }
+
+    @Test
+    @DisplayName("Compra com estoque reservado confirma a reserva e dá baixa")
+    public void comEstoque_confirmaReserva() {
+        estoque.definirQuantidade(1L, 5);
+        carrinhoCom(1L, "100.00", 2);
+
+        CompraDTO compra = servico().finalizarCompra(10L, 1L);
+
+        assertThat(compra.sucesso()).isTrue();
+        assertThat(estoque.quantidadeDisponivel(1L)).isEqualTo(3);
+        assertThat(estoque.reservasPendentes()).isZero();
+    }
+
+    @Test
+    @DisplayName("Sem estoque, a compra é recusada antes de autorizar o pagamento")
+    public void semEstoque_naoAutorizaPagamento() {
+        estoque.definirQuantidade(1L, 1);
+        carrinhoCom(1L, "100.00", 2);
+
+        assertThatThrownBy(() -> servico().finalizarCompra(10L, 1L))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Itens fora de estoque.");
+        assertThat(pagamento.autorizacoes.get()).isZero();
+        assertThat(pagamento.cancelamentos.get()).isZero();
+    }
+
+    @Test
+    @DisplayName("Pagamento recusado libera a reserva, sem cancelamento de pagamento")
+    public void pagamentoRecusado_liberaReserva() {
+        estoque.definirQuantidade(1L, 5);
+        carrinhoCom(1L, "100.00", 2);
+        pagamento.autorizar = false;
+
+        assertThatThrownBy(() -> servico().finalizarCompra(10L, 1L))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Pagamento não autorizado.");
+        assertThat(estoque.quantidadeDisponivel(1L)).isEqualTo(5);
+        assertThat(estoque.reservasPendentes()).isZero();
+        assertThat(pagamento.cancelamentos.get()).isZero();
+    }
+
+    @Test
+    @DisplayName("Falha na precificação libera a reserva feita em paralelo")
+    public void falhaNaPrecificacao_liberaReserva() {
+        estoque.definirQuantidade(1L, 5);
+        carrinhoCom(1L, null, 2);
+
+        assertThatThrownBy(() -> servico().finalizarCompra(10L, 1L))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Preço inválido (nulo ou negativo).");
+        assertThat(estoque.quantidadeDisponivel(1L)).isEqualTo(5);
+        assertThat(estoque.reservasPendentes()).isZero();
+    }
+
+    @Test
+    @DisplayName("Sem estoque e com precificação inválida, prevalece o erro de estoque")
+    public void semEstoque_falhaNaPrecificacao_prevaleceErroDeEstoque() {
+        estoque.definirQuantidade(1L, 1);
+        carrinhoCom(1L, null, 2);
+
+        assertThatThrownBy(() -> servico().finalizarCompra(10L, 1L))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Itens fora de estoque.");
+        assertThat(estoque.quantidadeDisponivel(1L)).isEqualTo(1);
+        assertThat(pagamento.autorizacoes.get()).isZero();
+    }
+
+    @Test
+    @DisplayName("Reserva expirada antes da confirmação cancela o pagamento autorizado")
+    public void reservaExpirada_cancelaPagamento() {
+        estoque.definirQuantidade(1L, 5);
+        carrinhoCom(1L, "100.00", 2);
+        pagamento.antesDeResponder = () -> {
+            // a reserva expira enquanto o pagamento é autorizado
+            estoque.liberar(1L);
+        };
+
+        assertThatThrownBy(() -> servico().finalizarCompra(10L, 1L))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Erro ao dar baixa no estoque.");
+        assertThat(pagamento.cancelamentos.get()).isEqualTo(1);
+        assertThat(estoque.quantidadeDisponivel(1L)).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("Confirmação sem resposta cancela o pagamento autorizado e libera a reserva")
+    public void confirmacaoSemResposta_cancelaPagamentoELiberaReserva() {
+        estoque.definirQuantidade(1L, 5);
+        carrinhoCom(1L, "100.00", 2);
+        estoque.falhaConfirmacao = new TempoEsgotadoException("Tempo esgotado na chamada ao serviço de estoque.");
+
+        assertThatThrownBy(() -> servico().finalizarCompra(10L, 1L))
+                .isSameAs(estoque.falhaConfirmacao);
+        assertThat(pagamento.cancelamentos.get()).isEqualTo(1);
+        assertThat(estoque.quantidadeDisponivel(1L)).isEqualTo(5);
+        assertThat(estoque.reservasPendentes()).isZero();
+    }
+
+    @Test
+    @DisplayName("Autorização sem resposta: a falha chega ao chamador mesmo se a liberação falha, e é cancelada pela chave")
+    public void autorizacaoSemResposta_liberacaoFalha_propagaFalhaDoPagamento() {
+        estoque.definirQuantidade(1L, 5);
+        carrinhoCom(1L, "100.00", 2);
+        TempoEsgotadoException falha = new TempoEsgotadoException("Tempo esgotado na chamada ao serviço de pagamento.");
+        pagamento.antesDeResponder = () -> {
+            throw falha;
+        };
+        estoque.falhaLiberacao = new ChamadaRecusadaException("Serviço de estoque indisponível (circuito aberto).");
+
+        assertThatThrownBy(() -> servico().finalizarCompra(10L, 1L))
+                .isSameAs(falha);
+        assertThat(pagamento.chaveCancelada).isNotNull().isEqualTo(pagamento.chaveAutorizada);
+        assertThat(estoque.reservasPendentes()).isEqualTo(1); // expira sozinha
+    }
+
+    @Test
+    @DisplayName("Confirmações de compras concorrentes são enviadas ao estoque em lotes")
+    public void comprasConcorrentes_confirmacoesEmLote() throws Exception {
+        int compras = 16;
+        estoque.definirQuantidade(1L, 100);
+        carrinhoCom(1L, "100.00", 2);
+        LoteBaixasEstoque lote = new LoteBaixasEstoque(estoque, ExecutorChamadasExternas.padrao(),
+                Duration.ofMillis(50), 64);
+        CompraService service = compraService().carrinhos(carrinhoService).clientes(clienteService).estoque(estoque)
+                .pagamento(pagamento).loteBaixas(lote).build();
+        ExecutorService chamadores = Executors.newFixedThreadPool(compras);
+        try {
+            CountDownLatch largada = new CountDownLatch(1);
+            List<Future<CompraDTO>> resultados = new ArrayList<>();
+            for (int i = 0; i < compras; i++) {
+                resultados.add(chamadores.submit(() -> {
+                    largada.await();
+                    return service.finalizarCompra(10L, 1L);
+                }));
+            }
+            largada.countDown();
+            for (Future<CompraDTO> resultado : resultados) {
+                assertThat(resultado.get(10, TimeUnit.SECONDS).sucesso()).isTrue();
+            }
+        } finally {
+            chamadores.shutdownNow();
+            lote.encerrar();
+        }
+
+        assertThat(estoque.quantidadeDisponivel(1L)).isEqualTo(100 - 2 * compras);
+        assertThat(estoque.reservasPendentes()).isZero();
+        assertThat(lote.getBaixasEmLote()).isEqualTo(compras);
+        assertThat(lote.getLotes()).isLessThan(compras);
+    }
+
+    private static class PagamentoRegistrado implements IPagamentoExternal {
+        final AtomicInteger autorizacoes = new AtomicInteger();
+        final AtomicInteger cancelamentos = new AtomicInteger();
+        volatile boolean autorizar = true;
+        volatile Runnable antesDeResponder = () -> {
+        };
+        volatile String chaveAutorizada;
+        volatile String chaveCancelada;
+
+        @Override
+        public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal, String chaveIdempotencia) {
+            autorizacoes.incrementAndGet();
+            chaveAutorizada = chaveIdempotencia;
+            antesDeResponder.run();
+            return new PagamentoDTO(autorizar, 77L);
+        }
+
+        @Override
+        public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId) {
+            cancelamentos.incrementAndGet();
+        }
+
+        @Override
+        public void cancelarPorChave(Long clienteId, String chaveIdempotencia) {
+            chaveCancelada = chaveIdempotencia;
+        }
+    }
+
+    /** Estoque simulado cuja confirmação ou liberação pode falhar. */
+    private static class EstoqueComFalhas extends EstoqueSimulado {
+        volatile RuntimeException falhaConfirmacao;
+        volatile RuntimeException falhaLiberacao;
+
+        EstoqueComFalhas() {
+            super(0, Duration.ofSeconds(30));
+        }
+
+        @Override
+        public EstoqueBaixaDTO confirmar(Long reservaId) {
+            if (falhaConfirmacao != null) {
+                throw falhaConfirmacao;
+            }
+            return super.confirmar(reservaId);
+        }
+
+        @Override
+        public void liberar(Long reservaId) {
+            if (falhaLiberacao != null) {
+                throw falhaLiberacao;
+            }
+            super.liberar(reservaId);
+        }
+    }
+}
@@ -1,11 +1,12 @@
 package ecommerce.service;
 
+import static ecommerce.service.CompraServiceBuilder.compraService;
+import static ecommerce.service.FixturesCompra.*;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.List;
 
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -19,40 +20,10 @@ import ecommerce.entity.TipoProduto;
 
 public class CompraServiceTest {
 
-    private Produto criarProduto(String preco, String peso, String comprimento, String largura, String altura,
-                                 TipoProduto tipo, boolean fragil) {
-        Produto p = new Produto();
-        p.setPreco(new BigDecimal(preco));
-        p.setPesoFisico(new BigDecimal(peso));
-        p.setComprimento(new BigDecimal(comprimento));
-        p.setLargura(new BigDecimal(largura));
-        p.setAltura(new BigDecimal(altura));
-        p.setTipo(tipo);
-        p.setFragil(fragil);
-        return p;
-    }
-
-    private ItemCompra criarItem(Produto produto, long quantidade) {
-        ItemCompra item = new ItemCompra();
-        item.setProduto(produto);
-        item.setQuantidade(quantidade);
-        return item;
-    }
-
-    private CarrinhoDeCompras criarCarrinho(ItemCompra... itens) {
-        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
-        List<ItemCompra> lista = new ArrayList<>();
-        for (ItemCompra it : itens) {
-            lista.add(it);
-        }
-        carrinho.setItens(lista);
-        return carrinho;
-    }
-
     @Test
     @DisplayName("Deve retornar total 0.00 para carrinho vazio")
     public void calcularCustoTotalcarrinhoVazio() {
-        CompraService service = new CompraService(null, null, null, null);
+        CompraService service = compraService().build();
 
         CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
         carrinho.setItens(new ArrayList<>());
@@ -67,7 +38,7 @@ public class CompraServiceTest {
     @Test
     @DisplayName("Deve calcular subtotal simples sem frete (peso <= 5kg)")
     public void calcularCustoTotalsemDescontos_freteIsento() {
-        CompraService service = new CompraService(null, null, null, null);
+        CompraService service = compraService().build();
 
         Produto produto = criarProduto("100.00", "2.00", "10", "10", "10",
                 TipoProduto.ELETRONICO, false);
@@ -84,7 +55,7 @@ public class CompraServiceTest {
     @Test
     @DisplayName("Deve aplicar 5% de desconto para 3 itens do mesmo tipo")
     public void calcularCustoTotaldescontoPorTipo3itens() {
-        CompraService service = new CompraService(null, null, null, null);
+        CompraService service = compraService().build();
 
         Produto produto = criarProduto("10.00", "1.00", "10", "10", "10",
                 TipoProduto.LIVRO, false);
@@ -106,7 +77,7 @@ public class CompraServiceTest {
     @Test
     @DisplayName("Deve aplicar 20% de desconto em subtotal > 1000")
     public void calcularCustoTotal_descontoPorValorMaiorQue1000() {
-        CompraService service = new CompraService(null, null, null, null);
+        CompraService service = compraService().build();
 
         Produto produto = criarProduto("1100.00", "2.00", "10", "10", "10",
                 TipoProduto.LIVRO, false);
@@ -123,7 +94,7 @@ public class CompraServiceTest {
     @Test
     @DisplayName("Deve calcular frete com taxa mínima e adicional de frágil, multiplicador da região e desconto de cliente PRATA")
     public void calcularCustoTotal_frete_com_taxas_e_fidelidade() {
-        CompraService service = new CompraService(null, null, null, null);
+        CompraService service = compraService().build();
 
         // Peso total = 6kg => faixa B (2/kg) = 12.00 (igual à taxa mínima)
         // Produto frágil: +5.00
@@ -150,7 +121,7 @@ public class CompraServiceTest {
     @Test
     @DisplayName("Cliente OURO deve ter frete zerado após cálculo")
     public void calcularCustoTotalclienteOuro_freteZerado() {
-        CompraService service = new CompraService(null, null, null, null);
+        CompraService service = compraService().build();
 
         Produto produto = criarProduto("200.00", "8.00", "10", "10", "10",
                 TipoProduto.ELETRONICO, true);
@@ -167,7 +138,7 @@ public class CompraServiceTest {
     @Test
     @DisplayName("Carrinho nulo deve retornar total 0.00")
     public void calcularCustoTotalcarrinhoNulo() {
-        CompraService service = new CompraService(null, null, null, null);
+        CompraService service = compraService().build();
         CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
         carrinho.setItens(null);
 
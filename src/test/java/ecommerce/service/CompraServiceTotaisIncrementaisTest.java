@@ -0,0 +1,200 @@
+package ecommerce.service;
+
+import static ecommerce.service.CompraServiceBuilder.compraService;
+import static ecommerce.service.FixturesCompra.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import ecommerce.entity.*;
+
+public class CompraServiceTotaisIncrementaisTest {
+
+    private CompraService bigDecimal;
+    private CompraService pontoFixo;
+
+    @BeforeEach
+    public void setup() {
+        bigDecimal = compraService().motor(MotorPrecificacao.BIG_DECIMAL).build();
+        pontoFixo = compraService().motor(MotorPrecificacao.PONTO_FIXO).build();
+    }
+
+    /** Cópia do carrinho sem totais mantidos: força o cálculo completo pelos itens. */
+    private static CarrinhoDeCompras copiaSemTotais(CarrinhoDeCompras carrinho) {
+        List<ItemCompra> itens = new ArrayList<>();
+        for (ItemCompra item : carrinho.getItens()) {
+            itens.add(new ItemCompra(null, item.getProduto(), item.getQuantidade()));
+        }
+        CarrinhoDeCompras copia = new CarrinhoDeCompras();
+        copia.setItens(itens);
+        return copia;
+    }
+
+    private void assertTotaisConsistentes(CarrinhoDeCompras carrinho) {
+        TotaisCarrinho incrementais = carrinho.getTotais();
+        TotaisCarrinho recalculados = copiaSemTotais(carrinho).recalcularTotais();
+
+        assertThat(incrementais).isNotNull();
+        for (TipoProduto tipo : TipoProduto.values()) {
+            assertThat(incrementais.getQuantidadePorTipo(tipo)).isEqualTo(recalculados.getQuantidadePorTipo(tipo));
+            assertThat(incrementais.getSubtotalPorTipo(tipo)).isEqualByComparingTo(recalculados.getSubtotalPorTipo(tipo));
+        }
+        assertThat(incrementais.getSubtotal()).isEqualByComparingTo(recalculados.getSubtotal());
+        assertThat(incrementais.getPesoTributavel()).isEqualByComparingTo(recalculados.getPesoTributavel());
+        assertThat(incrementais.getQuantidadeFragil()).isEqualTo(recalculados.getQuantidadeFragil());
+        assertThat(incrementais.getLinhas()).isEqualTo(carrinho.getItens().size());
+
+        for (Regiao regiao : Regiao.values()) {
+            for (TipoCliente tipoCliente : TipoCliente.values()) {
+                BigDecimal esperado = bigDecimal.calcularCustoTotal(copiaSemTotais(carrinho), regiao, tipoCliente);
+                assertThat(bigDecimal.calcularCustoTotal(carrinho, regiao, tipoCliente)).isEqualTo(esperado);
+                assertThat(pontoFixo.calcularCustoTotal(carrinho, regiao, tipoCliente)).isEqualTo(esperado);
+
+                PrecificacaoCarrinho retrato = PrecificacaoCarrinho.de(carrinho,
+                        new Cliente(null, null, regiao, tipoCliente));
+                assertThat(bigDecimal.calcularCustoTotal(retrato)).isEqualTo(esperado);
+                assertThat(pontoFixo.calcularCustoTotal(retrato)).isEqualTo(esperado);
+            }
+        }
+    }
+
+    static IntStream sementes() {
+        return IntStream.range(0, 50);
+    }
+
+    @DisplayName("Totais incrementais coincidem com o recálculo completo após alterações aleatórias")
+    @ParameterizedTest
+    @MethodSource("sementes")
+    public void alteracoesAleatorias_totaisConsistentes(int semente) {
+        Random random = new Random(semente);
+        TipoProduto[] tipos = TipoProduto.values();
+        List<Produto> catalogo = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            String preco = BigDecimal.valueOf(random.nextInt(150_000), 2).toPlainString();
+            String peso = BigDecimal.valueOf(random.nextInt(3_000), random.nextInt(3)).toPlainString();
+            catalogo.add(criarProduto(i + 1, preco, peso, tipos[random.nextInt(tipos.length)], random.nextBoolean()));
+        }
+
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        for (int passo = 0; passo < 30; passo++) {
+            List<ItemCompra> itens = carrinho.getItens();
+            int operacao = itens.isEmpty() ? 0 : random.nextInt(3);
+            if (operacao == 0) {
+                carrinho.adicionarItem(catalogo.get(random.nextInt(catalogo.size())), 1 + random.nextInt(5));
+            } else if (operacao == 1) {
+                carrinho.alterarQuantidade(itens.get(random.nextInt(itens.size())), 1 + random.nextInt(9));
+            } else {
+                carrinho.removerItem(itens.get(random.nextInt(itens.size())));
+            }
+            assertTotaisConsistentes(carrinho);
+        }
+    }
+
+    @Test
+    @DisplayName("Adicionar o mesmo produto soma à linha existente")
+    public void mesmoProduto_somaNaLinha() {
+        Produto livro = criarProduto(1L, "10.00", "1.00", TipoProduto.LIVRO, false);
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+
+        ItemCompra primeira = carrinho.adicionarItem(livro, 1);
+        ItemCompra segunda = carrinho.adicionarItem(livro, 2);
+
+        assertThat(segunda).isSameAs(primeira);
+        assertThat(carrinho.getItens()).hasSize(1);
+        assertThat(carrinho.getTotais().getQuantidadePorTipo(TipoProduto.LIVRO)).isEqualTo(3);
+        // 3 livros: 5% de desconto por tipo sobre 30.00
+        assertThat(bigDecimal.calcularCustoTotal(carrinho, Regiao.SUDESTE, TipoCliente.BRONZE)).isEqualTo("28.50");
+    }
+
+    @Test
+    @DisplayName("Itens inválidos são rejeitados na inclusão")
+    public void itemInvalido_rejeitado() {
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        Produto livro = criarProduto(1L, "10.00", "1.00", TipoProduto.LIVRO, false);
+        Produto semPreco = criarProduto(2L, "10.00", "1.00", TipoProduto.LIVRO, false);
+        semPreco.setPreco(null);
+
+        assertThatThrownBy(() -> carrinho.adicionarItem(livro, 0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Quantidade deve ser maior que zero.");
+        assertThatThrownBy(() -> carrinho.adicionarItem(semPreco, 1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Preço inválido (nulo ou negativo).");
+        assertThatThrownBy(() -> carrinho.alterarQuantidade(new ItemCompra(null, livro, 1L), 2))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Item não pertence ao carrinho.");
+        assertThat(carrinho.getItens()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Retrato de precificação com linha inválida é rejeitado com as mesmas mensagens do carrinho")
+    public void retratoInvalido_rejeitado() {
+        LinhaPrecificacao valida = new LinhaPrecificacao(Regiao.SUDESTE, TipoCliente.BRONZE, 1L, 0L, 1L,
+                new BigDecimal("10.00"), BigDecimal.ONE, BigDecimal.TEN, BigDecimal.TEN, BigDecimal.TEN, false,
+                TipoProduto.LIVRO);
+        LinhaPrecificacao semQuantidade = new LinhaPrecificacao(Regiao.SUDESTE, TipoCliente.BRONZE, 1L, 0L, 0L,
+                new BigDecimal("10.00"), BigDecimal.ONE, BigDecimal.TEN, BigDecimal.TEN, BigDecimal.TEN, false,
+                TipoProduto.LIVRO);
+        LinhaPrecificacao precoNegativo = new LinhaPrecificacao(Regiao.SUDESTE, TipoCliente.BRONZE, 1L, 0L, 1L,
+                new BigDecimal("-1.00"), BigDecimal.ONE, BigDecimal.TEN, BigDecimal.TEN, BigDecimal.TEN, false,
+                TipoProduto.LIVRO);
+
+        assertThat(bigDecimal.calcularCustoTotal(PrecificacaoCarrinho.de(List.of(valida)))).isEqualTo("10.00");
+        assertThatThrownBy(() -> bigDecimal.calcularCustoTotal(PrecificacaoCarrinho.de(List.of(valida, semQuantidade))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Quantidade deve ser maior que zero.");
+        assertThatThrownBy(() -> pontoFixo.calcularCustoTotal(PrecificacaoCarrinho.de(List.of(precoNegativo))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Preço inválido (nulo ou negativo).");
+    }
+
+    @Test
+    @DisplayName("Linhas incluídas direto na lista invalidam os totais mantidos")
+    public void alteracaoDiretaDaLista_descartaTotais() {
+        Produto livro = criarProduto(1L, "10.00", "1.00", TipoProduto.LIVRO, false);
+        Produto movel = criarProduto(2L, "100.00", "6.00", TipoProduto.MOVEL, true);
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        carrinho.adicionarItem(livro, 1);
+
+        carrinho.getItens().add(new ItemCompra(null, movel, 1L));
+
+        assertThat(carrinho.getTotais()).isNull();
+        // cálculo completo: 110.00 + frete 7 kg x 2.00 + taxa frágil 5.00
+        assertThat(bigDecimal.calcularCustoTotal(carrinho, Regiao.SUDESTE, TipoCliente.BRONZE)).isEqualTo("129.00");
+
+        carrinho.adicionarItem(livro, 1); // volta a manter os totais, recalculados a partir dos itens
+        assertTotaisConsistentes(carrinho);
+    }
+
+    @Test
+    @DisplayName("Quantidade ou produto alterados pelos setters invalidam os totais mantidos")
+    public void alteracaoPelosSetters_descartaTotais() {
+        Produto livro = criarProduto(1L, "10.00", "1.00", TipoProduto.LIVRO, false);
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        ItemCompra linha = carrinho.adicionarItem(livro, 1);
+
+        linha.setQuantidade(3L);
+
+        assertThat(carrinho.getTotais()).isNull();
+        // 3 livros: 5% de desconto por tipo sobre 30.00
+        assertThat(bigDecimal.calcularCustoTotal(carrinho, Regiao.SUDESTE, TipoCliente.BRONZE)).isEqualTo("28.50");
+
+        carrinho.recalcularTotais();
+        livro.setPreco(new BigDecimal("20.00"));
+
+        assertThat(carrinho.getTotais()).isNull();
+        assertThat(bigDecimal.calcularCustoTotal(carrinho, Regiao.SUDESTE, TipoCliente.BRONZE)).isEqualTo("57.00");
+        assertThat(pontoFixo.calcularCustoTotal(carrinho, Regiao.SUDESTE, TipoCliente.BRONZE)).isEqualTo("57.00");
+    }
+}
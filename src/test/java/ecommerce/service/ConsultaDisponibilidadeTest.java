@@ -0,0 +1,212 @@
+package ecommerce.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntBiFunction;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.external.IEstoqueExternal;
+
+public class ConsultaDisponibilidadeTest {
+
+    private static final List<Long> IDS = List.of(1L);
+    private static final List<Long> QTDS = List.of(1L);
+
+    private final ExecutorChamadasExternas executor = new ExecutorChamadasExternas(16);
+    private ConsultaDisponibilidade consulta;
+
+    @AfterEach
+    public void encerrar() {
+        executor.encerrar();
+        if (consulta != null) {
+            consulta.encerrar();
+        }
+    }
+
+    private ConsultaDisponibilidade comHedge(IEstoqueExternal estoque, double orcamento) {
+        consulta = new ConsultaDisponibilidade(estoque, executor, true, 0.95, Duration.ofMillis(20), orcamento);
+        return consulta;
+    }
+
+    /** Consultas rápidas até o atraso de cobertura ser calculado a partir das latências. */
+    private static void aquecer(ConsultaDisponibilidade consulta) throws Exception {
+        for (int i = 0; i < 100; i++) {
+            consulta.consultar(IDS, QTDS).get(5, TimeUnit.SECONDS);
+        }
+        assertThat(consulta.getAtraso()).isEqualTo(Duration.ofMillis(20));
+    }
+
+    @Test
+    @DisplayName("Consulta lenta recebe chamada de cobertura; vale a primeira resposta e a lenta é interrompida")
+    public void consultaLenta_coberturaVence() throws Exception {
+        EstoqueLento estoque = new EstoqueLento((chamada, produtoId) -> chamada == 101 ? 10_000 : 0);
+        comHedge(estoque, 0.05);
+        aquecer(consulta);
+
+        long inicio = System.nanoTime();
+        DisponibilidadeDTO disponibilidade = consulta.consultar(IDS, QTDS).get(5, TimeUnit.SECONDS);
+
+        assertThat(disponibilidade.disponivel()).isTrue();
+        assertThat(System.nanoTime() - inicio).isLessThan(TimeUnit.SECONDS.toNanos(2));
+        assertThat(consulta.getCoberturasEnviadas()).isEqualTo(1);
+        // a cobertura vencedora é contada logo depois de completar a consulta, já na thread dela
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (consulta.getCoberturasVencedoras() == 0 && System.nanoTime() < limite) {
+            Thread.sleep(5);
+        }
+        assertThat(consulta.getCoberturasVencedoras()).isEqualTo(1);
+        assertThat(estoque.interrompidas.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Orçamento limita as coberturas a uma fração das consultas")
+    public void orcamento_limitaCoberturas() throws Exception {
+        // depois do aquecimento, a primeira chamada de cada consulta (produto novo) demora; a cobertura responde na hora
+        Set<Long> consultados = ConcurrentHashMap.newKeySet();
+        EstoqueLento estoque = new EstoqueLento((chamada, produtoId) -> produtoId >= 1000 && consultados.add(produtoId)
+                ? 150 : 0);
+        comHedge(estoque, 0.05);
+        aquecer(consulta);
+
+        for (long produto = 1000; produto < 1010; produto++) {
+            assertThat(consulta.consultar(List.of(produto), QTDS).get(5, TimeUnit.SECONDS).disponivel()).isTrue();
+        }
+
+        // 100 consultas de aquecimento + 5 com cobertura, a 0,05 de crédito por consulta
+        assertThat(consulta.getCoberturasEnviadas()).isEqualTo(5);
+        assertThat(consulta.getCoberturasNegadas()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("Sem hedge, nenhuma chamada extra é feita, mesmo com o estoque lento")
+    public void semHedge_umaChamadaPorConsulta() throws Exception {
+        EstoqueLento estoque = new EstoqueLento((chamada, produtoId) -> 30);
+        consulta = ConsultaDisponibilidade.semHedge(estoque, executor);
+
+        for (int i = 0; i < 5; i++) {
+            consulta.consultar(IDS, QTDS).get(5, TimeUnit.SECONDS);
+        }
+
+        assertThat(estoque.chamadas.get()).isEqualTo(5);
+        assertThat(consulta.getAtraso()).isNull();
+    }
+
+    @Test
+    @DisplayName("Falha do estoque chega a quem consultou")
+    public void falhaDoEstoque_propagada() {
+        IEstoqueExternal estoque = new EstoqueLento((chamada, produtoId) -> {
+            throw new IllegalStateException("Estoque fora do ar.");
+        });
+        consulta = ConsultaDisponibilidade.semHedge(estoque, executor);
+
+        assertThatThrownBy(() -> consulta.consultar(IDS, QTDS).get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class)
+                .hasRootCauseMessage("Estoque fora do ar.");
+    }
+
+    @Test
+    @DisplayName("Falhas lentas também entram nas latências: o atraso da cobertura acompanha o tempo que elas levam")
+    public void falhasLentas_entramNoAtraso() throws Exception {
+        IEstoqueExternal estoque = new EstoqueLento((chamada, produtoId) -> 60) {
+            @Override
+            public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds,
+                    List<Long> produtosQuantidades) {
+                super.verificarDisponibilidade(produtosIds, produtosQuantidades);
+                throw new IllegalStateException("Tempo esgotado.");
+            }
+        };
+        comHedge(estoque, 0);
+
+        List<Future<DisponibilidadeDTO>> consultas = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            consultas.add(consulta.consultar(IDS, QTDS));
+        }
+        for (Future<DisponibilidadeDTO> resultado : consultas) {
+            assertThatThrownBy(() -> resultado.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+        }
+
+        assertThat(consulta.getAtraso()).isGreaterThanOrEqualTo(Duration.ofMillis(60));
+    }
+
+    @Test
+    @DisplayName("Consulta com arrays em estoque só com listas devolve as posições dos produtos indisponíveis")
+    public void consultaComArrays_posicoesIndisponiveis() throws Exception {
+        IEstoqueExternal estoque = new EstoqueLento((chamada, produtoId) -> 0) {
+            @Override
+            public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds,
+                    List<Long> produtosQuantidades) {
+                assertThat(produtosIds).containsExactly(4L, 2L, 4L);
+                return new DisponibilidadeDTO(false, List.of(4L));
+            }
+        };
+        consulta = ConsultaDisponibilidade.semHedge(estoque, executor);
+
+        BitSet indisponiveis = consulta.consultar(new long[] { 4L, 2L, 4L }, new long[] { 1, 1, 1 })
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(indisponiveis.stream().toArray()).containsExactly(0, 2);
+    }
+
+    @Test
+    @DisplayName("Cancelar a consulta interrompe a chamada em andamento")
+    public void cancelar_interrompeChamada() throws Exception {
+        EstoqueLento estoque = new EstoqueLento((chamada, produtoId) -> 10_000);
+        consulta = ConsultaDisponibilidade.semHedge(estoque, executor);
+
+        Future<DisponibilidadeDTO> resultado = consulta.consultar(IDS, QTDS);
+        assertThat(estoque.iniciadas.await(5, TimeUnit.SECONDS)).isTrue();
+        resultado.cancel(true);
+
+        assertThat(estoque.interrompidas.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    /**
+     * Estoque em que cada verificação demora o que a função indicar, em ms, a partir do número da chamada (desde 1) e do
+     * primeiro produto consultado.
+     */
+    private static class EstoqueLento implements IEstoqueExternal {
+        final AtomicInteger chamadas = new AtomicInteger();
+        final CountDownLatch iniciadas = new CountDownLatch(1);
+        final CountDownLatch interrompidas = new CountDownLatch(1);
+        private final ToIntBiFunction<Integer, Long> atrasoMillis;
+
+        EstoqueLento(ToIntBiFunction<Integer, Long> atrasoMillis) {
+            this.atrasoMillis = atrasoMillis;
+        }
+
+        @Override
+        public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades) {
+            int atraso = atrasoMillis.applyAsInt(chamadas.incrementAndGet(), produtosIds.get(0));
+            iniciadas.countDown();
+            try {
+                Thread.sleep(atraso);
+            } catch (InterruptedException e) {
+                interrompidas.countDown();
+            }
+            return new DisponibilidadeDTO(true, List.of());
+        }
+
+        @Override
+        public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package ecommerce.service;
+
+import static ecommerce.service.CompraServiceBuilder.compraService;
+import static ecommerce.service.FixturesCompra.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.dto.CotacaoDTO;
+import ecommerce.dto.CotacaoRequisicaoDTO;
+import ecommerce.entity.*;
+
+public class CotacaoServiceTest {
+
+    private CarrinhoDeComprasService carrinhoService;
+    private CotacaoService cotacaoService;
+
+    @BeforeEach
+    public void setup() {
+        carrinhoService = mock(CarrinhoDeComprasService.class);
+        cotacaoService = new CotacaoService(carrinhoService, compraService().build(), 4, 10);
+    }
+
+    @AfterEach
+    public void encerrar() {
+        cotacaoService.encerrar();
+    }
+
+    private List<CotacaoDTO> todas(LoteCotacao lote) {
+        List<CotacaoDTO> cotacoes = new ArrayList<>();
+        try (lote) {
+            lote.forEachRemaining(cotacoes::add);
+        }
+        return cotacoes;
+    }
+
+    @Test
+    @DisplayName("Cota cada carrinho do lote com o mesmo valor de calcularCustoTotal")
+    public void lote_cotaTodosOsCarrinhos() {
+        Cliente prata = new Cliente(1L, "Ana", Regiao.SUL, TipoCliente.PRATA);
+        Cliente bronze = new Cliente(2L, "Bia", Regiao.NORDESTE, TipoCliente.BRONZE);
+        when(carrinhoService.buscarComItensPorIds(anyCollection())).thenReturn(List.of(
+                criarCarrinho(10L, prata, criarItem(criarProduto("100.00", "6.00", TipoProduto.MOVEL, true), 1)),
+                criarCarrinho(20L, bronze, criarItem(criarProduto("1200.00", "6.00", TipoProduto.ELETRONICO, true), 1))));
+
+        List<CotacaoDTO> cotacoes = todas(cotacaoService.cotar(List.of(
+                new CotacaoRequisicaoDTO(10L, 1L), new CotacaoRequisicaoDTO(20L, 2L))));
+
+        assertThat(cotacoes).extracting(CotacaoDTO::carrinhoId).containsExactlyInAnyOrder(10L, 20L);
+        assertThat(cotacoes).allMatch(CotacaoDTO::sucesso);
+        assertThat(cotacoes).filteredOn(c -> c.carrinhoId().equals(10L)).singleElement()
+                .extracting(CotacaoDTO::custoTotal).isEqualTo(new BigDecimal("108.93"));
+        assertThat(cotacoes).filteredOn(c -> c.carrinhoId().equals(20L)).singleElement()
+                .extracting(CotacaoDTO::custoTotal).isEqualTo(new BigDecimal("978.70"));
+    }
+
+    @Test
+    @DisplayName("Carrinho inexistente ou de outro cliente é devolvido como falha sem interromper o lote")
+    public void carrinhoInexistenteOuDeOutroCliente_falhaIndividual() {
+        Cliente ouro = new Cliente(1L, "Ana", Regiao.SUDESTE, TipoCliente.OURO);
+        when(carrinhoService.buscarComItensPorIds(anyCollection())).thenReturn(List.of(
+                criarCarrinho(10L, ouro, criarItem(criarProduto("50.00", "1.00", TipoProduto.LIVRO, false), 2))));
+
+        List<CotacaoDTO> cotacoes = todas(cotacaoService.cotar(List.of(
+                new CotacaoRequisicaoDTO(10L, 1L), new CotacaoRequisicaoDTO(10L, 99L),
+                new CotacaoRequisicaoDTO(30L, 1L), new CotacaoRequisicaoDTO(null, 1L))));
+
+        assertThat(cotacoes).hasSize(4);
+        assertThat(cotacoes).filteredOn(CotacaoDTO::sucesso).singleElement()
+                .extracting(CotacaoDTO::custoTotal).isEqualTo(new BigDecimal("100.00"));
+        assertThat(cotacoes).filteredOn(c -> !c.sucesso())
+                .extracting(CotacaoDTO::mensagem).containsOnly("Carrinho não encontrado.");
+    }
+
+    @Test
+    @DisplayName("Lote vazio ou acima do limite lança IllegalArgumentException")
+    public void loteInvalido_lancaExcecao() {
+        List<CotacaoRequisicaoDTO> grande = Collections.nCopies(11, new CotacaoRequisicaoDTO(1L, 1L));
+
+        assertThrows(IllegalArgumentException.class, () -> cotacaoService.cotar(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> cotacaoService.cotar(grande));
+    }
+}
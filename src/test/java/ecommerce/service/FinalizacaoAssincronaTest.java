@@ -0,0 +1,180 @@
+package ecommerce.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.dto.SituacaoFinalizacao;
+
+public class FinalizacaoAssincronaTest {
+
+    private static final CompraDTO SUCESSO = new CompraDTO(true, 77L, "Compra finalizada com sucesso.");
+
+    private CoalescedorFinalizacao coalescedor;
+    private ClienteService clienteService;
+    private CarrinhoDeComprasService carrinhoService;
+    private AtomicLong relogio;
+    private FinalizacaoAssincrona assincrona;
+
+    @BeforeEach
+    public void setup() {
+        coalescedor = mock(CoalescedorFinalizacao.class);
+        clienteService = mock(ClienteService.class);
+        carrinhoService = mock(CarrinhoDeComprasService.class);
+        when(clienteService.existe(anyLong())).thenReturn(true);
+        when(carrinhoService.existe(anyLong(), anyLong())).thenReturn(true);
+        relogio = new AtomicLong();
+        assincrona = criar(100);
+    }
+
+    private FinalizacaoAssincrona criar(int maximoGuardadas) {
+        return new FinalizacaoAssincrona(coalescedor, clienteService, carrinhoService, 1, 1, Duration.ofSeconds(30),
+                maximoGuardadas, relogio::get);
+    }
+
+    @AfterEach
+    public void encerrar() {
+        assincrona.encerrar();
+    }
+
+    private FinalizacaoAssincrona.Resultado aguardarTermino(String id) throws InterruptedException {
+        long prazo = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        FinalizacaoAssincrona.Resultado resultado = assincrona.consultar(id);
+        while (resultado.situacao() == SituacaoFinalizacao.PENDENTE
+                || resultado.situacao() == SituacaoFinalizacao.PROCESSANDO) {
+            assertThat(System.nanoTime()).isLessThan(prazo);
+            Thread.sleep(5);
+            resultado = assincrona.consultar(id);
+        }
+        return resultado;
+    }
+
+    @Test
+    @DisplayName("Finalização enfileirada é executada em segundo plano e o resultado é consultado pelo identificador")
+    public void enfileirar_resultadoConsultado() throws Exception {
+        when(coalescedor.finalizarCompra(1L, 2L)).thenReturn(SUCESSO);
+
+        String id = assincrona.enfileirar(1L, 2L);
+        FinalizacaoAssincrona.Resultado resultado = aguardarTermino(id);
+
+        assertThat(resultado.situacao()).isEqualTo(SituacaoFinalizacao.CONCLUIDA);
+        assertThat(resultado.compra()).isEqualTo(SUCESSO);
+        assertThat(assincrona.getAceitas()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Falha da compra fica guardada com a exceção original")
+    public void falha_guardaExcecao() throws Exception {
+        when(coalescedor.finalizarCompra(1L, 2L)).thenThrow(new IllegalStateException("Itens fora de estoque."));
+
+        FinalizacaoAssincrona.Resultado resultado = aguardarTermino(assincrona.enfileirar(1L, 2L));
+
+        assertThat(resultado.situacao()).isEqualTo(SituacaoFinalizacao.FALHOU);
+        assertThat(resultado.erro()).isInstanceOf(IllegalStateException.class).hasMessage("Itens fora de estoque.");
+    }
+
+    @Test
+    @DisplayName("Pedido inválido é recusado antes de entrar na fila")
+    public void pedidoInvalido_recusado() {
+        assertThatThrownBy(() -> assincrona.enfileirar(null, 2L))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Carrinho e cliente devem ser informados.");
+        assertThat(assincrona.getAceitas()).isZero();
+    }
+
+    @Test
+    @DisplayName("Com a thread ocupada e a fila cheia, o pedido é recusado na hora")
+    public void filaCheia_recusaNaHora() throws Exception {
+        CountDownLatch liberar = new CountDownLatch(1);
+        CountDownLatch executando = new CountDownLatch(1);
+        when(coalescedor.finalizarCompra(1L, 2L)).thenAnswer(invocacao -> {
+            executando.countDown();
+            liberar.await(5, TimeUnit.SECONDS);
+            return SUCESSO;
+        });
+        String emExecucao = assincrona.enfileirar(1L, 2L);
+        assertThat(executando.await(5, TimeUnit.SECONDS)).isTrue();
+        String naFila = assincrona.enfileirar(1L, 2L);
+
+        long inicio = System.nanoTime();
+        assertThatThrownBy(() -> assincrona.enfileirar(1L, 2L))
+                .isInstanceOf(FilaCheiaException.class);
+        assertThat(System.nanoTime() - inicio).isLessThan(TimeUnit.MILLISECONDS.toNanos(100));
+        assertThat(assincrona.getRecusadas()).isEqualTo(1);
+        assertThat(assincrona.consultar(emExecucao).situacao()).isEqualTo(SituacaoFinalizacao.PROCESSANDO);
+        assertThat(assincrona.consultar(naFila).situacao()).isEqualTo(SituacaoFinalizacao.PENDENTE);
+
+        liberar.countDown();
+        assertThat(aguardarTermino(naFila).compra()).isEqualTo(SUCESSO);
+    }
+
+    @Test
+    @DisplayName("Resultado expira depois do TTL; identificador desconhecido não é encontrado")
+    public void resultadoExpira() throws Exception {
+        when(coalescedor.finalizarCompra(1L, 2L)).thenReturn(SUCESSO);
+        String id = assincrona.enfileirar(1L, 2L);
+        aguardarTermino(id);
+
+        relogio.addAndGet(Duration.ofSeconds(30).toNanos());
+        assincrona.removerExpiradas();
+
+        assertThat(assincrona.consultar(id)).isNull();
+        assertThat(assincrona.consultar("desconhecido")).isNull();
+    }
+
+    @Test
+    @DisplayName("Cliente ou carrinho inexistente é recusado antes do 202, sem entrar na fila")
+    public void clienteOuCarrinhoInexistente_recusado() {
+        when(clienteService.existe(9L)).thenReturn(false);
+        when(carrinhoService.existe(8L, 2L)).thenReturn(false);
+
+        assertThatThrownBy(() -> assincrona.enfileirar(1L, 9L))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Cliente não encontrado");
+        assertThatThrownBy(() -> assincrona.enfileirar(8L, 2L))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Carrinho não encontrado.");
+        assertThat(assincrona.getAceitas()).isZero();
+        verifyNoInteractions(coalescedor);
+    }
+
+    @Test
+    @DisplayName("No máximo de acompanhadas, a terminada que expiraria primeiro é descartada antes do prazo")
+    public void maximoGuardadas_descartaTerminadaMaisAntiga() throws Exception {
+        assincrona.encerrar();
+        assincrona = criar(2);
+        when(coalescedor.finalizarCompra(1L, 2L)).thenReturn(SUCESSO);
+
+        String primeira = assincrona.enfileirar(1L, 2L);
+        aguardarTermino(primeira);
+        relogio.addAndGet(Duration.ofSeconds(1).toNanos());
+        String segunda = assincrona.enfileirar(1L, 2L);
+        aguardarTermino(segunda);
+        String terceira = assincrona.enfileirar(1L, 2L);
+
+        assertThat(assincrona.consultar(primeira)).isNull();
+        assertThat(assincrona.consultar(segunda).compra()).isEqualTo(SUCESSO);
+        assertThat(aguardarTermino(terceira).compra()).isEqualTo(SUCESSO);
+        assertThat(assincrona.getDescartadas()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Máximo de acompanhadas menor que threads mais fila é recusado na criação")
+    public void maximoGuardadasPequeno_recusado() {
+        assertThatThrownBy(() -> criar(1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,96 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+
+/**
+ * Produtos, itens, carrinhos e clientes dos testes de {@link CompraService} e dos serviços que precificam carrinhos.
+ * Valores informados como {@code null} ficam nulos no produto, para os testes de validação.
+ */
+public final class FixturesCompra {
+
+    private FixturesCompra() {
+    }
+
+    public static Produto criarProduto(String preco, String peso, String comprimento, String largura, String altura,
+                                       TipoProduto tipo, boolean fragil) {
+        Produto p = new Produto();
+        p.setPreco(decimal(preco));
+        p.setPesoFisico(decimal(peso));
+        p.setComprimento(decimal(comprimento));
+        p.setLargura(decimal(largura));
+        p.setAltura(decimal(altura));
+        p.setTipo(tipo);
+        p.setFragil(fragil);
+        return p;
+    }
+
+    /** Produto em uma caixa de 10 x 10 x 10 cm. */
+    public static Produto criarProduto(String preco, String peso, TipoProduto tipo, boolean fragil) {
+        return criarProduto(preco, peso, "10", "10", "10", tipo, fragil);
+    }
+
+    /** Produto cadastrado (com id) em uma caixa de 10 x 10 x 10 cm. */
+    public static Produto criarProduto(long id, String preco, String peso, TipoProduto tipo, boolean fragil) {
+        Produto p = criarProduto(preco, peso, tipo, fragil);
+        p.setId(id);
+        return p;
+    }
+
+    /** Roupa não frágil de 10 x 10 x 10 cm. */
+    public static Produto criarProduto(String preco, String peso) {
+        return criarProduto(preco, peso, TipoProduto.ROUPA, false);
+    }
+
+    /** Livro de 1 kg, não frágil, em uma caixa de 10 x 10 x 10 cm. */
+    public static Produto criarLivro(Long id, String preco) {
+        Produto p = criarProduto(preco, "1.00", TipoProduto.LIVRO, false);
+        p.setId(id);
+        return p;
+    }
+
+    public static ItemCompra criarItem(Produto produto, long quantidade) {
+        ItemCompra item = new ItemCompra();
+        item.setProduto(produto);
+        item.setQuantidade(quantidade);
+        return item;
+    }
+
+    /** Carrinho novo, sem id nem cliente. */
+    public static CarrinhoDeCompras criarCarrinho(ItemCompra... itens) {
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        carrinho.setItens(lista(itens));
+        return carrinho;
+    }
+
+    /** Carrinho salvo de um cliente, como devolvido pelo {@link CarrinhoDeComprasService}. */
+    public static CarrinhoDeCompras criarCarrinho(Long id, Cliente cliente, ItemCompra... itens) {
+        return new CarrinhoDeCompras(id, cliente, lista(itens), null);
+    }
+
+    /** Cliente 1, bronze, do Sudeste. */
+    public static Cliente criarCliente() {
+        return new Cliente(1L, "Cliente", Regiao.SUDESTE, TipoCliente.BRONZE);
+    }
+
+    private static List<ItemCompra> lista(ItemCompra... itens) {
+        List<ItemCompra> lista = new ArrayList<>();
+        for (ItemCompra it : itens) {
+            lista.add(it);
+        }
+        return lista;
+    }
+
+    private static BigDecimal decimal(String valor) {
+        return valor == null ? null : new BigDecimal(valor);
+    }
+}
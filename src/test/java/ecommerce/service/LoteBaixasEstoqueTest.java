@@ -0,0 +1,211 @@
+package ecommerce.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ecommerce.dto.BaixaEstoqueDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.external.fake.EstoqueSimulado;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class LoteBaixasEstoqueTest {
+
+    private final ExecutorService chamadores = Executors.newFixedThreadPool(32);
+    private LoteBaixasEstoque lote;
+
+    @AfterEach
+    public void encerrar() {
+        chamadores.shutdownNow();
+        if (lote != null) {
+            lote.encerrar();
+        }
+    }
+
+    /** Dispara as baixas ao mesmo tempo e devolve os resultados na ordem das baixas. */
+    private List<Future<EstoqueBaixaDTO>> disparar(List<BaixaEstoqueDTO> baixas) {
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<EstoqueBaixaDTO>> resultados = new ArrayList<>();
+        for (BaixaEstoqueDTO baixa : baixas) {
+            resultados.add(chamadores.submit(() -> {
+                largada.await();
+                return lote.darBaixa(baixa.produtosIds(), baixa.produtosQuantidades());
+            }));
+        }
+        largada.countDown();
+        return resultados;
+    }
+
+    @Test
+    @DisplayName("Baixas concorrentes são enviadas em poucos lotes e cada chamador recebe o seu resultado")
+    public void baixasConcorrentes_agrupadasEmLotes() throws Exception {
+        EstoqueRegistrado estoque = new EstoqueRegistrado(100);
+        lote = new LoteBaixasEstoque(estoque, ExecutorChamadasExternas.padrao(), Duration.ofMillis(50), 64);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        lote.bindTo(registry);
+
+        List<BaixaEstoqueDTO> baixas = new ArrayList<>();
+        for (long i = 0; i < 32; i++) {
+            baixas.add(new BaixaEstoqueDTO(List.of(i % 4), List.of(2L)));
+        }
+        for (Future<EstoqueBaixaDTO> resultado : disparar(baixas)) {
+            assertThat(resultado.get(5, TimeUnit.SECONDS).sucesso()).isTrue();
+        }
+
+        assertThat(estoque.lotesRecebidos).hasSizeLessThan(32);
+        assertThat(estoque.lotesRecebidos.stream().mapToInt(Integer::intValue).sum()).isEqualTo(32);
+        assertThat(estoque.quantidadeDisponivel(0L)).isEqualTo(100 - 8 * 2);
+        assertThat(lote.getBaixasEmLote()).isEqualTo(32);
+        assertThat(registry.get("ecommerce.estoque.lote.tamanho").summary().count())
+                .isEqualTo(estoque.lotesRecebidos.size());
+        assertThat(registry.get("ecommerce.estoque.lote.espera").timer().count()).isEqualTo(32);
+    }
+
+    @Test
+    @DisplayName("Carrinho sem estoque falha sozinho; as demais baixas do mesmo lote são aplicadas")
+    public void carrinhoSemEstoque_naoFalhaOsDemais() throws Exception {
+        EstoqueRegistrado estoque = new EstoqueRegistrado(10);
+        estoque.definirQuantidade(99L, 1);
+        lote = new LoteBaixasEstoque(estoque, ExecutorChamadasExternas.padrao(), Duration.ofMillis(50), 64);
+
+        List<Future<EstoqueBaixaDTO>> resultados = disparar(List.of(
+                new BaixaEstoqueDTO(List.of(1L), List.of(1L)),
+                new BaixaEstoqueDTO(List.of(1L, 99L), List.of(1L, 5L)),
+                new BaixaEstoqueDTO(List.of(2L), List.of(3L))));
+
+        assertThat(resultados.get(0).get(5, TimeUnit.SECONDS).sucesso()).isTrue();
+        assertThat(resultados.get(1).get(5, TimeUnit.SECONDS).sucesso()).isFalse();
+        assertThat(resultados.get(2).get(5, TimeUnit.SECONDS).sucesso()).isTrue();
+        assertThat(estoque.quantidadeDisponivel(1L)).isEqualTo(9);
+        assertThat(estoque.quantidadeDisponivel(99L)).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Lote nunca passa do tamanho máximo")
+    public void loteRespeitaTamanhoMaximo() throws Exception {
+        EstoqueRegistrado estoque = new EstoqueRegistrado(1000);
+        lote = new LoteBaixasEstoque(estoque, ExecutorChamadasExternas.padrao(), Duration.ofMillis(50), 4);
+
+        List<BaixaEstoqueDTO> baixas = new ArrayList<>();
+        for (long i = 0; i < 30; i++) {
+            baixas.add(new BaixaEstoqueDTO(List.of(i), List.of(1L)));
+        }
+        for (Future<EstoqueBaixaDTO> resultado : disparar(baixas)) {
+            assertThat(resultado.get(5, TimeUnit.SECONDS).sucesso()).isTrue();
+        }
+
+        assertThat(estoque.lotesRecebidos).allSatisfy(tamanho -> assertThat(tamanho).isBetween(1, 4));
+        assertThat(estoque.lotesRecebidos.stream().mapToInt(Integer::intValue).sum()).isEqualTo(30);
+    }
+
+    @Test
+    @DisplayName("Baixa com listas inválidas é recusada ao chamador, sem entrar no lote")
+    public void baixaInvalida_recusadaAoChamador() {
+        EstoqueRegistrado estoque = new EstoqueRegistrado(10);
+        lote = new LoteBaixasEstoque(estoque, ExecutorChamadasExternas.padrao(), Duration.ofMillis(5), 64);
+
+        assertThatThrownBy(() -> lote.darBaixa(List.of(1L, 2L), List.of(1L)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Listas de produtos e quantidades devem ter o mesmo tamanho.");
+        assertThatThrownBy(() -> lote.darBaixa(List.of(1L), List.of(0L)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Produto e quantidade (maior que zero) são obrigatórios.");
+        assertThat(estoque.lotesRecebidos).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Falha na chamada do lote chega a todos os chamadores do lote")
+    public void falhaDoLote_chegaATodos() {
+        EstoqueRegistrado estoque = new EstoqueRegistrado(10);
+        estoque.falha = new IllegalStateException("Estoque indisponível.");
+        lote = new LoteBaixasEstoque(estoque, ExecutorChamadasExternas.padrao(), Duration.ofMillis(5), 64);
+
+        assertThatThrownBy(() -> lote.darBaixa(List.of(1L), List.of(1L)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Estoque indisponível.");
+    }
+
+    @Test
+    @DisplayName("Baixas em arrays chegam ao estoque em arrays, sem conversão para listas no lote")
+    public void baixasEmArrays_loteEmArrays() throws Exception {
+        EstoqueRegistrado estoque = new EstoqueRegistrado(10);
+        estoque.definirQuantidade(99L, 1);
+        lote = new LoteBaixasEstoque(estoque, ExecutorChamadasExternas.padrao(), Duration.ofMillis(50), 64);
+
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<EstoqueBaixaDTO>> resultados = new ArrayList<>();
+        long[][] ids = { { 1L }, { 1L, 99L }, { 2L, 2L } };
+        long[][] quantidades = { { 1L }, { 1L, 5L }, { 3L, 4L } };
+        for (int i = 0; i < ids.length; i++) {
+            long[] produtosIds = ids[i];
+            long[] produtosQuantidades = quantidades[i];
+            resultados.add(chamadores.submit(() -> {
+                largada.await();
+                return lote.darBaixa(produtosIds, produtosQuantidades);
+            }));
+        }
+        largada.countDown();
+
+        assertThat(resultados.get(0).get(5, TimeUnit.SECONDS).sucesso()).isTrue();
+        assertThat(resultados.get(1).get(5, TimeUnit.SECONDS).sucesso()).isFalse();
+        assertThat(resultados.get(2).get(5, TimeUnit.SECONDS).sucesso()).isTrue();
+        assertThat(estoque.lotesRecebidos.stream().mapToInt(Integer::intValue).sum()).isEqualTo(3);
+        assertThat(estoque.lotesEmListas).isEmpty();
+        assertThat(estoque.quantidadeDisponivel(1L)).isEqualTo(9);
+        assertThat(estoque.quantidadeDisponivel(2L)).isEqualTo(3);
+        assertThatThrownBy(() -> lote.darBaixa(new long[] { 1L }, new long[] { 0L }))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Produto e quantidade (maior que zero) são obrigatórios.");
+    }
+
+    @Test
+    @DisplayName("Sem janela, cada baixa vai direto ao estoque pela thread do chamador")
+    public void desabilitado_baixaDireta() {
+        EstoqueRegistrado estoque = new EstoqueRegistrado(10);
+        lote = LoteBaixasEstoque.desabilitado(estoque);
+
+        assertThat(lote.darBaixa(List.of(1L), List.of(4L)).sucesso()).isTrue();
+
+        assertThat(estoque.lotesRecebidos).isEmpty();
+        assertThat(estoque.quantidadeDisponivel(1L)).isEqualTo(6);
+        assertThat(lote.getLotes()).isZero();
+    }
+
+    private static class EstoqueRegistrado extends EstoqueSimulado {
+        final List<Integer> lotesRecebidos = new CopyOnWriteArrayList<>();
+        final List<Integer> lotesEmListas = new CopyOnWriteArrayList<>();
+        volatile RuntimeException falha;
+
+        EstoqueRegistrado(long quantidadeInicial) {
+            super(quantidadeInicial);
+        }
+
+        @Override
+        public boolean[] darBaixaEmLote(long[][] produtosIds, long[][] produtosQuantidades) {
+            lotesRecebidos.add(produtosIds.length);
+            if (falha != null) {
+                throw falha;
+            }
+            return super.darBaixaEmLote(produtosIds, produtosQuantidades);
+        }
+
+        @Override
+        public List<EstoqueBaixaDTO> darBaixaEmLote(List<BaixaEstoqueDTO> baixas) {
+            lotesEmListas.add(baixas.size());
+            return super.darBaixaEmLote(baixas);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package ecommerce.service;
+
+import static ecommerce.service.CompraServiceBuilder.compraService;
+import static ecommerce.service.FixturesCompra.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ecommerce.entity.*;
+
+public class RegrasPrecificacaoTest {
+
+    @TempDir
+    Path diretorio;
+
+    private Path arquivo;
+    private String regrasPadrao;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        arquivo = diretorio.resolve("regras.json");
+        try (var entrada = getClass().getResourceAsStream("/regras-precificacao.json")) {
+            regrasPadrao = new String(entrada.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        Files.writeString(arquivo, regrasPadrao);
+    }
+
+    private CarrinhoDeCompras carrinhoComLivros(long quantidade) {
+        return criarCarrinho(criarItem(criarLivro(null, "10.00"), quantidade));
+    }
+
+    private void reescrever(String conteudo) throws IOException {
+        Files.writeString(arquivo, conteudo);
+        // garante uma data de modificação diferente mesmo em sistemas de arquivos com resolução de segundos
+        Files.setLastModifiedTime(arquivo, FileTime.fromMillis(Files.getLastModifiedTime(arquivo).toMillis() + 2000));
+    }
+
+    @Test
+    @DisplayName("Arquivo alterado é recompilado e passa a valer nos dois motores")
+    public void arquivoAlterado_recarregaRegras() throws IOException {
+        RegrasPrecificacao regras = new RegrasPrecificacao(new FileSystemResource(arquivo), new ObjectMapper());
+        CompraService bigDecimal = compraService().motor(MotorPrecificacao.BIG_DECIMAL).regras(regras).build();
+        CompraService pontoFixo = compraService().motor(MotorPrecificacao.PONTO_FIXO).regras(regras).build();
+
+        // 3 livros: 5% de desconto -> 28.50
+        assertThat(bigDecimal.calcularCustoTotal(carrinhoComLivros(3), Regiao.SUDESTE, TipoCliente.BRONZE))
+                .isEqualTo(new BigDecimal("28.50"));
+
+        reescrever(regrasPadrao.replace("\"quantidadeMinima\": 3, \"percentual\": 0.05",
+                "\"quantidadeMinima\": 2, \"percentual\": 0.25"));
+        regras.recarregarSeAlterado();
+
+        // 3 livros: 25% de desconto -> 22.50
+        assertThat(bigDecimal.calcularCustoTotal(carrinhoComLivros(3), Regiao.SUDESTE, TipoCliente.BRONZE))
+                .isEqualTo(new BigDecimal("22.50"));
+        assertThat(pontoFixo.calcularCustoTotal(carrinhoComLivros(3), Regiao.SUDESTE, TipoCliente.BRONZE))
+                .isEqualTo(new BigDecimal("22.50"));
+    }
+
+    @Test
+    @DisplayName("Arquivo inválido é rejeitado e as regras anteriores continuam valendo")
+    public void arquivoInvalido_mantemRegrasAnteriores() throws IOException {
+        RegrasPrecificacao regras = new RegrasPrecificacao(new FileSystemResource(arquivo), new ObjectMapper());
+        TabelaPrecificacao anterior = regras.atual();
+
+        // faixas de desconto por valor fora de ordem
+        reescrever(regrasPadrao.replace("\"acimaDe\": 500", "\"acimaDe\": 5000"));
+        regras.recarregarSeAlterado();
+
+        assertThat(regras.atual()).isSameAs(anterior);
+        assertThrows(IllegalArgumentException.class, regras::recarregar);
+        assertThat(regras.atual()).isSameAs(anterior);
+    }
+
+    @Test
+    @DisplayName("Quantidade mínima zero no desconto por tipo é rejeitada e as regras anteriores continuam valendo")
+    public void quantidadeMinimaZero_mantemRegrasAnteriores() throws IOException {
+        RegrasPrecificacao regras = new RegrasPrecificacao(new FileSystemResource(arquivo), new ObjectMapper());
+        TabelaPrecificacao anterior = regras.atual();
+
+        reescrever(regrasPadrao.replace("\"quantidadeMinima\": 3", "\"quantidadeMinima\": 0"));
+
+        assertThrows(IllegalArgumentException.class, regras::recarregar);
+        assertThat(regras.atual()).isSameAs(anterior);
+        assertThat(compraService().regras(regras).build()
+                .calcularCustoTotal(carrinhoComLivros(3), Regiao.SUDESTE, TipoCliente.BRONZE))
+                .isEqualTo(new BigDecimal("28.50"));
+    }
+
+    @Test
+    @DisplayName("Regras fora das escalas de ponto fixo fazem o motor ponto fixo usar BigDecimal")
+    public void regraForaDaEscala_pontoFixoRetornaAoBigDecimal() throws IOException {
+        reescrever(regrasPadrao.replace("\"valorPorKg\": 2", "\"valorPorKg\": 2.35"));
+        RegrasPrecificacao regras = new RegrasPrecificacao(new FileSystemResource(arquivo), new ObjectMapper());
+        CompraService bigDecimal = compraService().motor(MotorPrecificacao.BIG_DECIMAL).regras(regras).build();
+        CompraService pontoFixo = compraService().motor(MotorPrecificacao.PONTO_FIXO).regras(regras).build();
+
+        assertThat(regras.atual().suportaPontoFixo()).isFalse();
+        // 7 kg -> 7 x 2.35 = 16.45 de frete
+        assertThat(pontoFixo.calcularCustoTotal(carrinhoComLivros(7), Regiao.SUDESTE, TipoCliente.BRONZE))
+                .isEqualTo(bigDecimal.calcularCustoTotal(carrinhoComLivros(7), Regiao.SUDESTE, TipoCliente.BRONZE))
+                .isEqualTo(new BigDecimal("79.45"));
+    }
+}